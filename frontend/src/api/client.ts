@@ -160,6 +160,8 @@ export interface HistoryResult<T> {
   total: number;
   retentionMonths: number;
   retentionHorizon: string;
+  nextCursor?: string;
+  prevCursor?: string;
 }
 export interface InventoryItem  {
   id: string;
@@ -377,14 +379,15 @@ async createUser(payload: Partial<User> & { password?: string }): Promise<User>
     return this.request(`/reservations/${encodeURIComponent(reservationId)}`);
   }
 
-  async getReservationHistory(params: { status?: string; startUtc?: string; endUtc?: string; userId?: string; page?: number; pageSize?: number; }): Promise<HistoryResult<Reservation>> {
+  async getReservationHistory(params: { status?: string; startUtc?: string; endUtc?: string; userId?: string; page?: number; pageSize?: number; cursor?: string; }): Promise<HistoryResult<Reservation>> {
     const query = this.historyQuery({
       status: params.status,
       start_utc: params.startUtc,
       end_utc: params.endUtc,
       userId: params.userId,
-      page: params.page || 1,
+      page: params.cursor ? undefined : params.page || 1,
       pageSize: this.boundedPageSize(params.pageSize),
+      cursor: params.cursor,
     });
     return this.request(`/reservations/history${query}`);
   }
@@ -537,14 +540,15 @@ async updateBookingSettings(settings: BookingSettings): Promise<BookingSettings>
     return response;
   }
 
-  async getOrderHistory(params: { status?: string; startUtc?: string; endUtc?: string; userId?: string; page?: number; pageSize?: number; }): Promise<HistoryResult<Order>> {
+  async getOrderHistory(params: { status?: string; startUtc?: string; endUtc?: string; userId?: string; page?: number; pageSize?: number; cursor?: string; }): Promise<HistoryResult<Order>> {
     const query = this.historyQuery({
       status: params.status,
       start_utc: params.startUtc,
       end_utc: params.endUtc,
       userId: params.userId,
-      page: params.page || 1,
+      page: params.cursor ? undefined : params.page || 1,
       pageSize: this.boundedPageSize(params.pageSize),
+      cursor: params.cursor,
     });
     return this.request(`/orders/history${query}`);
   }
@@ -0,0 +1,171 @@
+package com.RBOS.bench;
+
+import com.RBOS.utils.DatabaseConnection;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+/**
+ * Generates a throwaway SQLite database shaped like a busy restaurant: customers, a menu,
+ * orders with line items, and reservations spread over the last 90 days. The data is
+ * derived from a fixed seed so runs of the same size are comparable.
+ *
+ * The database is created from schema.sql (including its seed rows) and pointed to with the
+ * RBOS_DB system property, so DAOs built with a null context use it.
+ */
+public final class BenchmarkDataset implements AutoCloseable {
+    public static final int MENU_ITEMS = 40;
+    private static final String[] STATUSES = {"placed", "paid", "paid", "paid", "cancelled"};
+    private static final String[] SOURCES = {"web", "web", "phone", "walkin"};
+    private static final String[] RESERVATION_STATUSES = {"pending", "confirmed", "confirmed", "cancelled", "no_show"};
+
+    private final Path db;
+    private final int orders;
+
+    private BenchmarkDataset(Path db, int orders) {
+        this.db = db;
+        this.orders = orders;
+    }
+
+    /**
+     * Create a database holding the given number of orders; customers and reservations scale with it.
+     */
+    public static BenchmarkDataset create(int orders) throws Exception {
+        Path db = Files.createTempFile("rbos-jmh-", ".db");
+        System.setProperty("RBOS_DB", db.toString());
+        BenchmarkDataset dataset = new BenchmarkDataset(db, orders);
+        dataset.seed();
+        return dataset;
+    }
+
+    public int getOrders() {
+        return orders;
+    }
+
+    public int getCustomers() {
+        return Math.max(10, orders / 10);
+    }
+
+    public String customerId(int i) {
+        return "bench-user-" + i;
+    }
+
+    public String orderId(int i) {
+        return "bench-order-" + i;
+    }
+
+    public String itemId(int i) {
+        return "bench-item-" + i;
+    }
+
+    private void seed() throws SQLException {
+        Random random = new Random(42);
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        try (Connection conn = DatabaseConnection.getConnection(null)) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DELETE FROM order_items");
+                stmt.execute("DELETE FROM orders");
+                stmt.execute("DELETE FROM reservations");
+            }
+
+            try (PreparedStatement user = conn.prepareStatement(
+                    "INSERT INTO users (user_id, role, full_name, email, phone) VALUES (?, 'customer', ?, ?, ?)")) {
+                for (int i = 0; i < getCustomers(); i++) {
+                    user.setString(1, customerId(i));
+                    user.setString(2, "Bench Customer " + i);
+                    user.setString(3, "bench" + i + "@example.com");
+                    user.setString(4, String.format("555-%04d", i % 10000));
+                    user.addBatch();
+                }
+                user.executeBatch();
+            }
+
+            try (PreparedStatement item = conn.prepareStatement(
+                    "INSERT INTO menu_items (item_id, name, category, price, active) VALUES (?, ?, ?, ?, 1)")) {
+                for (int i = 0; i < MENU_ITEMS; i++) {
+                    item.setString(1, itemId(i));
+                    item.setString(2, (i % 4 == 0 ? "Pizza " : i % 4 == 1 ? "Burger " : i % 4 == 2 ? "Salad " : "Soda ") + i);
+                    item.setString(3, "Main");
+                    item.setDouble(4, 4.5 + (i % 12));
+                    item.addBatch();
+                }
+                item.executeBatch();
+            }
+
+            try (PreparedStatement order = conn.prepareStatement(
+                         "INSERT INTO orders (order_id, user_id, source, status, subtotal, tax, total, customer_name, created_utc) "
+                                 + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                 PreparedStatement line = conn.prepareStatement(
+                         "INSERT INTO order_items (order_item_id, order_id, item_id, qty, unit_price, line_total) "
+                                 + "VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < orders; i++) {
+                    String orderId = orderId(i);
+                    int lines = 1 + random.nextInt(5);
+                    double subtotal = 0;
+                    for (int j = 0; j < lines; j++) {
+                        int menuIndex = random.nextInt(MENU_ITEMS);
+                        int qty = 1 + random.nextInt(3);
+                        double price = 4.5 + (menuIndex % 12);
+                        line.setString(1, orderId + "-" + j);
+                        line.setString(2, orderId);
+                        line.setString(3, itemId(menuIndex));
+                        line.setInt(4, qty);
+                        line.setDouble(5, price);
+                        line.setDouble(6, qty * price);
+                        line.addBatch();
+                        subtotal += qty * price;
+                    }
+                    order.setString(1, orderId);
+                    order.setString(2, customerId(random.nextInt(getCustomers())));
+                    order.setString(3, SOURCES[random.nextInt(SOURCES.length)]);
+                    order.setString(4, STATUSES[random.nextInt(STATUSES.length)]);
+                    order.setDouble(5, subtotal);
+                    order.setDouble(6, subtotal * 0.08);
+                    order.setDouble(7, subtotal * 1.08);
+                    order.setString(8, "Bench Customer");
+                    order.setString(9, now.minusSeconds(random.nextInt(90 * 24 * 3600)).toString());
+                    order.addBatch();
+                }
+                order.executeBatch();
+                line.executeBatch();
+            }
+
+            try (PreparedStatement reservation = conn.prepareStatement(
+                    "INSERT INTO reservations (reservation_id, user_id, guest_name, table_id, start_utc, end_utc, party_size, status, created_utc) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < orders / 2; i++) {
+                    Instant start = now.minus(random.nextInt(90 * 24), ChronoUnit.HOURS);
+                    reservation.setString(1, "bench-res-" + i);
+                    reservation.setString(2, customerId(random.nextInt(getCustomers())));
+                    reservation.setString(3, "Bench Guest " + i);
+                    reservation.setString(4, String.valueOf(1 + random.nextInt(3)));
+                    reservation.setString(5, start.toString());
+                    reservation.setString(6, start.plus(90, ChronoUnit.MINUTES).toString());
+                    reservation.setInt(7, 1 + random.nextInt(6));
+                    reservation.setString(8, RESERVATION_STATUSES[random.nextInt(RESERVATION_STATUSES.length)]);
+                    reservation.setString(9, start.minus(2, ChronoUnit.DAYS).toString());
+                    reservation.addBatch();
+                }
+                reservation.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        DatabaseConnection.shutdown();
+        Files.deleteIfExists(db);
+        Files.deleteIfExists(Path.of(db + "-wal"));
+        Files.deleteIfExists(Path.of(db + "-shm"));
+    }
+}
@@ -0,0 +1,80 @@
+package com.RBOS.bench;
+
+import com.RBOS.models.Inventory;
+import com.RBOS.models.MenuItem;
+import com.RBOS.models.OrderItem;
+import com.RBOS.services.CartMergeService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Merging a guest cart into a signed-in cart. The local and server carts overlap on half
+ * their lines and some items are short on stock, so every conflict branch is exercised.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CartMergeBenchmark {
+
+    @Param({"5", "50"})
+    public int cartLines;
+
+    private final CartMergeService service = new CartMergeService();
+    private List<CartMergeService.MergeItem> incoming;
+    private List<OrderItem> existing;
+    private Map<String, Inventory> inventoryByItem;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(7);
+        incoming = new ArrayList<>();
+        existing = new ArrayList<>();
+        inventoryByItem = new HashMap<>();
+
+        for (int i = 0; i < cartLines * 2; i++) {
+            String itemId = "item-" + i;
+            MenuItem menuItem = new MenuItem();
+            menuItem.setItemId(itemId);
+            menuItem.setName("Item " + i);
+            Inventory inventory = new Inventory();
+            inventory.setItemId(itemId);
+            inventory.setActive(i % 10 != 0);
+            inventory.setQtyOnHand(random.nextInt(6));
+            inventory.setMenuItem(menuItem);
+            inventoryByItem.put(itemId, inventory);
+        }
+
+        for (int i = 0; i < cartLines; i++) {
+            CartMergeService.MergeItem local = new CartMergeService.MergeItem();
+            local.itemId = "item-" + i;
+            local.qty = 1 + random.nextInt(4);
+            local.unitPrice = 9.5;
+            local.name = "Item " + i;
+            local.notes = i % 3 == 0 ? "no onions" : null;
+            incoming.add(local);
+
+            OrderItem server = new OrderItem();
+            server.setItemId("item-" + (i + cartLines / 2));
+            server.setQty(1 + random.nextInt(3));
+            server.setUnitPrice(9.5);
+            existing.add(server);
+        }
+    }
+
+    @Benchmark
+    public CartMergeService.MergeResult merge() {
+        return service.merge(incoming, existing, inventoryByItem);
+    }
+}
@@ -0,0 +1,39 @@
+package com.RBOS.bench;
+
+import com.RBOS.services.EmailTemplates;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Rendering the transactional emails queued on checkout and reservation writes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EmailTemplateBenchmark {
+
+    @Benchmark
+    public String orderConfirmation() {
+        return EmailTemplates.getOrderConfirmationTemplate("Bench Customer", "1234567890", 42.18, "20-30 minutes");
+    }
+
+    @Benchmark
+    public String deliveryOrderConfirmation() {
+        return EmailTemplates.getDeliveryOrderConfirmationTemplate("Bench Customer", "1234567890", 42.18,
+                "45-60 minutes", "12 Main St", "Apt 4", "Springfield", "IL", "62701", "Ring the bell");
+    }
+
+    @Benchmark
+    public String reservationConfirmation() {
+        return EmailTemplates.getReservationConfirmationTemplate("Bench Customer", "March 01, 2025",
+                "7:00 PM CST", 4, "Table 3", "9876543210");
+    }
+
+    @Benchmark
+    public String orderStatusUpdate() {
+        return EmailTemplates.getOrderStatusUpdateTemplate("Bench Customer", "1234567890", "ready",
+                "Your order is ready!");
+    }
+}
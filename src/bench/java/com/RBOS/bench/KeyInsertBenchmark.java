@@ -0,0 +1,107 @@
+package com.RBOS.bench;
+
+import com.RBOS.utils.IdGenerator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Inserts into a TEXT primary key table shaped like orders, comparing the old random
+ * 10-digit ids and UUIDs with {@link IdGenerator} ids. The table is pre-filled so inserts
+ * land in a B-tree that no longer fits in a few pages. Pages per 1000 rows for each key
+ * kind are printed at teardown to compare index size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class KeyInsertBenchmark {
+    private static final int BATCH = 500;
+
+    @Param({"random10", "uuid", "ordered"})
+    public String keys;
+
+    @Param({"50000"})
+    public int prefill;
+
+    private final IdGenerator generator = new IdGenerator(0);
+    private Path db;
+    private Connection conn;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        db = Files.createTempFile("rbos-jmh-keys-", ".db");
+        conn = DriverManager.getConnection("jdbc:sqlite:" + db);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL");
+            stmt.execute("CREATE TABLE orders (order_id TEXT PRIMARY KEY, status TEXT, total REAL)");
+        }
+        for (int i = 0; i < prefill; i += BATCH) {
+            insertBatch();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (Statement stmt = conn.createStatement()) {
+            long count;
+            long pageCount;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM orders")) {
+                count = rs.getLong(1);
+            }
+            try (ResultSet rs = stmt.executeQuery("PRAGMA page_count")) {
+                pageCount = rs.getLong(1);
+            }
+            System.out.printf("[%s] rows=%d pages=%d pages/1000 rows=%.1f%n", keys, count, pageCount,
+                    pageCount * 1000.0 / count);
+        }
+        conn.close();
+        Files.deleteIfExists(db);
+        Files.deleteIfExists(Path.of(db + "-wal"));
+        Files.deleteIfExists(Path.of(db + "-shm"));
+    }
+
+    @Benchmark
+    public int insertBatch() throws Exception {
+        conn.setAutoCommit(false);
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT OR IGNORE INTO orders (order_id, status, total) VALUES (?, 'placed', 12.5)")) {
+            for (int i = 0; i < BATCH; i++) {
+                pstmt.setString(1, nextKey());
+                pstmt.addBatch();
+            }
+            int[] counts = pstmt.executeBatch();
+            conn.commit();
+            return counts.length;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private String nextKey() {
+        switch (keys) {
+            case "random10":
+                return Long.toString(ThreadLocalRandom.current().nextLong(1_000_000_000L, 10_000_000_000L));
+            case "uuid":
+                return UUID.randomUUID().toString();
+            default:
+                return generator.next();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.RBOS.bench;
+
+import com.RBOS.dao.OrderDAO;
+import com.RBOS.dao.OrderItemDAO;
+import com.RBOS.models.OrderItem;
+import com.RBOS.models.Order;
+import com.RBOS.models.PagedResult;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Order history paging and the per-order item lookup used by the order detail view.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrderDaoBenchmark {
+
+    @Param({"1000", "10000"})
+    public int orders;
+
+    @Param({"25"})
+    public int pageSize;
+
+    private BenchmarkDataset dataset;
+    private OrderDAO orderDAO;
+    private OrderItemDAO orderItemDAO;
+
+    @Setup
+    public void setup() throws Exception {
+        dataset = BenchmarkDataset.create(orders);
+        orderDAO = new OrderDAO(null);
+        orderItemDAO = new OrderItemDAO(null);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        dataset.close();
+    }
+
+    @Benchmark
+    public PagedResult<Order> ordersFirstPage() throws Exception {
+        return orderDAO.getOrdersWithFilters("all", null, null, null, 1, pageSize);
+    }
+
+    @Benchmark
+    public PagedResult<Order> ordersFilteredByStatusAndUser() throws Exception {
+        String userId = dataset.customerId(ThreadLocalRandom.current().nextInt(dataset.getCustomers()));
+        return orderDAO.getOrdersWithFilters("paid", null, null, userId, 1, pageSize);
+    }
+
+    @Benchmark
+    public PagedResult<Order> ordersDeepPage() throws Exception {
+        int lastPage = Math.max(1, orders / pageSize);
+        return orderDAO.getOrdersWithFilters("all", null, null, null, lastPage, pageSize);
+    }
+
+    @Benchmark
+    public List<OrderItem> orderItemsForOneOrder() throws Exception {
+        return orderItemDAO.getOrderItemsByOrderId(dataset.orderId(ThreadLocalRandom.current().nextInt(orders)));
+    }
+}
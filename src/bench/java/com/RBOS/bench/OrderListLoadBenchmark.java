@@ -0,0 +1,73 @@
+package com.RBOS.bench;
+
+import com.RBOS.dao.OrderDAO;
+import com.RBOS.dao.OrderItemDAO;
+import com.RBOS.models.Order;
+import com.RBOS.utils.DatabaseConnection;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Loading the full order list with one item query per order (the old N+1 path) against the
+ * bulk path OrderDAO uses, which fetches the items for many orders per IN query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrderListLoadBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    public int orders;
+
+    private BenchmarkDataset dataset;
+    private OrderDAO orderDAO;
+    private OrderItemDAO orderItemDAO;
+
+    @Setup
+    public void setup() throws Exception {
+        dataset = BenchmarkDataset.create(orders);
+        orderDAO = new OrderDAO(null);
+        orderItemDAO = new OrderItemDAO(null);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        dataset.close();
+    }
+
+    @Benchmark
+    public List<Order> itemsPerOrder() throws Exception {
+        List<Order> list = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection(null);
+             PreparedStatement pstmt = conn.prepareStatement("SELECT order_id FROM orders ORDER BY created_utc DESC");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                Order order = new Order();
+                order.setOrderId(rs.getString("order_id"));
+                list.add(order);
+            }
+        }
+        for (Order order : list) {
+            order.setOrderItems(orderItemDAO.getOrderItemsByOrderId(order.getOrderId()));
+        }
+        return list;
+    }
+
+    @Benchmark
+    public List<Order> bulkItems() throws Exception {
+        return orderDAO.getAllOrders();
+    }
+}
@@ -0,0 +1,132 @@
+package com.RBOS.bench;
+
+import com.RBOS.servlets.ReportServlet;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Each report endpoint end to end through {@link ReportServlet#service}, including the JSON
+ * write, against the generated dataset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReportBenchmark {
+
+    @Param({"1000", "10000"})
+    public int orders;
+
+    @Param({"dashboard-metrics", "reservation-analytics", "sales-analytics", "customer-analytics", "menu-performance"})
+    public String report;
+
+    @Param({"month"})
+    public String period;
+
+    private BenchmarkDataset dataset;
+    private ReportServlet servlet;
+    private HttpServletRequest request;
+
+    @Setup
+    public void setup() throws Exception {
+        dataset = BenchmarkDataset.create(orders);
+        servlet = new ReportServlet();
+        servlet.init(servletConfig());
+        request = request("/" + report, period);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        dataset.close();
+    }
+
+    @Benchmark
+    public String render() throws Exception {
+        StringWriter body = new StringWriter();
+        int[] status = {HttpServletResponse.SC_OK};
+        servlet.service(request, response(body, status));
+        if (status[0] != HttpServletResponse.SC_OK) {
+            throw new IllegalStateException("Report " + report + " returned " + status[0]);
+        }
+        return body.toString();
+    }
+
+    private static HttpServletRequest request(String pathInfo, String period) {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                HttpServletRequest.class.getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class},
+                (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getMethod": return "GET";
+                        case "getPathInfo": return pathInfo;
+                        case "getParameter": return "period".equals(args[0]) ? period : null;
+                        case "getHeader": return null;
+                        default: return null;
+                    }
+                });
+    }
+
+    private static HttpServletResponse response(StringWriter body, int[] status) {
+        PrintWriter writer = new PrintWriter(body);
+        return (HttpServletResponse) Proxy.newProxyInstance(
+                HttpServletResponse.class.getClassLoader(),
+                new Class<?>[] {HttpServletResponse.class},
+                (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getWriter":
+                            return writer;
+                        case "setStatus":
+                        case "sendError":
+                            status[0] = (int) args[0];
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private static ServletConfig servletConfig() {
+        ServletContext context = (ServletContext) Proxy.newProxyInstance(
+                ServletContext.class.getClassLoader(),
+                new Class<?>[] {ServletContext.class},
+                (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getAttributeNames":
+                        case "getInitParameterNames":
+                            return Collections.emptyEnumeration();
+                        default:
+                            return null;
+                    }
+                });
+        return (ServletConfig) Proxy.newProxyInstance(
+                ServletConfig.class.getClassLoader(),
+                new Class<?>[] {ServletConfig.class},
+                (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getServletName":
+                            return "ReportServlet";
+                        case "getServletContext":
+                            return context;
+                        case "getInitParameterNames":
+                            return Collections.emptyEnumeration();
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
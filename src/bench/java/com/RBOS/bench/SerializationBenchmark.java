@@ -0,0 +1,76 @@
+package com.RBOS.bench;
+
+import com.RBOS.dao.OrderDAO;
+import com.RBOS.dao.ReservationDAO;
+import com.RBOS.models.Order;
+import com.RBOS.models.Reservation;
+import com.RBOS.utils.Json;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Jackson serialization of the order and reservation lists the admin views fetch. The lists
+ * are loaded from the generated dataset once, so only the JSON write is measured.
+ *
+ * The single-order pair compares a mapper built per message, which rebuilds its serializers
+ * on every call, with the shared writer from {@link Json} that sends the same order event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"1000"})
+    public int orders;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<Order> orderList;
+    private List<Reservation> reservationList;
+
+    @Setup
+    public void setup() throws Exception {
+        try (BenchmarkDataset dataset = BenchmarkDataset.create(orders)) {
+            orderList = new OrderDAO(null).getAllOrders();
+            reservationList = new ReservationDAO(null).getAllReservations();
+            // schema.sql seeds a few orders of its own, so expect at least the generated ones
+            if (orderList.size() < dataset.getOrders()) {
+                throw new IllegalStateException("Loaded " + orderList.size() + " orders, generated "
+                        + dataset.getOrders());
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] orders() throws Exception {
+        return objectMapper.writeValueAsBytes(orderList);
+    }
+
+    @Benchmark
+    public byte[] reservations() throws Exception {
+        return objectMapper.writeValueAsBytes(reservationList);
+    }
+
+    @Benchmark
+    public byte[] ordersSharedMapper() throws Exception {
+        return Json.mapper().writeValueAsBytes(orderList);
+    }
+
+    @Benchmark
+    public String orderNewMapperPerCall() throws Exception {
+        return new ObjectMapper().writeValueAsString(orderList.get(0));
+    }
+
+    @Benchmark
+    public String orderSharedWriter() throws Exception {
+        return Json.ORDER_WRITER.writeValueAsString(orderList.get(0));
+    }
+}
@@ -0,0 +1,77 @@
+package com.RBOS.bench;
+
+import com.RBOS.utils.DatabaseConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost of the per-statement timing the pool adds: the same primary key lookup on a bare
+ * connection and on a pooled connection, whose statements record into Metrics.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatementTimingBenchmark {
+    private static final String LOOKUP = "SELECT name, price FROM menu_items WHERE item_id = ?";
+
+    private Path db;
+    private Connection bare;
+    private Connection pooled;
+
+    @Setup
+    public void setup() throws Exception {
+        db = Files.createTempFile("rbos-jmh-metrics-", ".db");
+        System.setProperty("RBOS_DB", db.toString());
+        pooled = DatabaseConnection.getConnection(null);
+        try (Statement stmt = pooled.createStatement()) {
+            stmt.execute("PRAGMA foreign_keys = OFF");
+            for (int i = 0; i < 1000; i++) {
+                stmt.execute("INSERT OR IGNORE INTO menu_items (item_id, name, price, active) VALUES ('bench-" + i
+                        + "', 'Item " + i + "', 9.5, 1)");
+            }
+        }
+        bare = DriverManager.getConnection("jdbc:sqlite:" + db);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        bare.close();
+        pooled.close();
+        DatabaseConnection.shutdown();
+        Files.deleteIfExists(db);
+    }
+
+    @Benchmark
+    public String bareConnection() throws Exception {
+        return lookup(bare);
+    }
+
+    @Benchmark
+    public String timedPooledConnection() throws Exception {
+        return lookup(pooled);
+    }
+
+    private static String lookup(Connection conn) throws Exception {
+        try (PreparedStatement pstmt = conn.prepareStatement(LOOKUP)) {
+            pstmt.setString(1, "bench-" + ThreadLocalRandom.current().nextInt(1000));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+}
@@ -1,17 +1,31 @@
 package com.RBOS.dao;
 
 import com.RBOS.models.AuditLog;
+import com.RBOS.services.AuditLogWriter;
 import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.IdGenerator;
+import com.RBOS.utils.Json;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.ServletContext;
+import java.io.IOException;
 import java.sql.*;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 public class AuditLogDAO {
+    private static final int STREAM_FETCH_SIZE = 500;
+    // 9 columns per row keeps each statement under SQLite's default 999 bound parameters
+    private static final int ROWS_PER_INSERT = 100;
+    // Same text form as the column default strftime('%Y-%m-%dT%H:%M:%fZ','now')
+    private static final DateTimeFormatter CREATED_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
     private final ServletContext context;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper objectMapper = Json.mapper();
 
     public AuditLogDAO(ServletContext context) {
         this.context = context;
@@ -25,31 +39,69 @@ public class AuditLogDAO {
         logAction(userId, userName, entityType, entityId, action, oldMap, newMap);
     }
 
+    /**
+     * Record an action. The row is handed to the {@link AuditLogWriter} for this database,
+     * which writes it according to its durability mode; values are serialized here so later
+     * changes to the maps cannot leak into the log.
+     */
     public void logAction(String userId, String userName, String entityType, String entityId,
                           String action, Map<String, Object> oldValues, Map<String, Object> newValues) throws SQLException {
-        String sql = "INSERT INTO audit_log (log_id, user_id, user_name, entity_type, entity_id, action, old_values, new_values) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            String logId = java.util.UUID.randomUUID().toString();
-            String oldValuesJson = oldValues != null ? objectMapper.writeValueAsString(oldValues) : null;
-            String newValuesJson = newValues != null ? objectMapper.writeValueAsString(newValues) : null;
-
-            pstmt.setString(1, logId);
-            pstmt.setString(2, userId);
-            pstmt.setString(3, userName);
-            pstmt.setString(4, entityType);
-            pstmt.setString(5, entityId);
-            pstmt.setString(6, action);
-            pstmt.setString(7, oldValuesJson);
-            pstmt.setString(8, newValuesJson);
-
-            pstmt.executeUpdate();
+        AuditLog log;
+        try {
+            log = new AuditLog(
+                    IdGenerator.newId(),
+                    entityType,
+                    entityId,
+                    action,
+                    userId,
+                    userName,
+                    oldValues != null ? objectMapper.writeValueAsString(oldValues) : null,
+                    newValues != null ? objectMapper.writeValueAsString(newValues) : null,
+                    CREATED_FORMAT.format(Instant.now()));
         } catch (Exception e) {
             throw new SQLException("Error logging audit action", e);
         }
+        AuditLogWriter.forContext(context).write(log);
+    }
+
+    /**
+     * Insert rows in one transaction on the database's writer using multi-row INSERTs. Used by
+     * the audit writer.
+     */
+    public void insertBatch(List<AuditLog> logs) throws SQLException {
+        if (logs.isEmpty()) {
+            return;
+        }
+        DatabaseConnection.write(context, conn -> {
+            for (int from = 0; from < logs.size(); from += ROWS_PER_INSERT) {
+                List<AuditLog> chunk = logs.subList(from, Math.min(logs.size(), from + ROWS_PER_INSERT));
+                try (PreparedStatement pstmt = conn.prepareStatement(insertSql(chunk.size()))) {
+                    int i = 1;
+                    for (AuditLog log : chunk) {
+                        pstmt.setString(i++, log.logId);
+                        pstmt.setString(i++, log.userId);
+                        pstmt.setString(i++, log.userName);
+                        pstmt.setString(i++, log.entityType);
+                        pstmt.setString(i++, log.entityId);
+                        pstmt.setString(i++, log.action);
+                        pstmt.setString(i++, log.oldValue);
+                        pstmt.setString(i++, log.newValue);
+                        pstmt.setString(i++, log.createdUtc);
+                    }
+                    pstmt.executeUpdate();
+                }
+            }
+            return null;
+        });
+    }
+
+    private static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO audit_log (log_id, user_id, user_name, entity_type, " +
+                "entity_id, action, old_values, new_values, created_utc) VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        }
+        return sql.toString();
     }
 
     public List<AuditLog> getLogsByEntityType(String entityType) throws SQLException {
@@ -63,18 +115,7 @@ public class AuditLogDAO {
             ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
-                AuditLog log = new AuditLog(
-                        rs.getString("log_id"),
-                        rs.getString("user_id"),
-                        rs.getString("user_name"),
-                        rs.getString("entity_type"),
-                        rs.getString("entity_id"),
-                        rs.getString("action"),
-                        rs.getString("old_values"),
-                        rs.getString("new_values"),
-                        rs.getString("created_utc")
-                );
-                logs.add(log);
+                logs.add(mapLog(rs));
             }
         }
         return logs;
@@ -89,20 +130,75 @@ public class AuditLogDAO {
              ResultSet rs = pstmt.executeQuery()) {
 
             while (rs.next()) {
-                AuditLog log = new AuditLog(
-                        rs.getString("log_id"),
-                        rs.getString("user_id"),
-                        rs.getString("user_name"),
-                        rs.getString("entity_type"),
-                        rs.getString("entity_id"),
-                        rs.getString("action"),
-                        rs.getString("old_values"),
-                        rs.getString("new_values"),
-                        rs.getString("created_utc")
-                );
-                logs.add(log);
+                logs.add(mapLog(rs));
             }
         }
         return logs;
     }
+
+    /**
+     * Stream matching rows newest first to the handler without holding them in memory. The
+     * statement is forward-only and read-only with a bounded fetch size, so memory stays
+     * flat whatever the row count. It runs on a read connection, since a download to a slow
+     * client holds it open for the whole export. Null filters are ignored; returns the
+     * number of rows.
+     */
+    public int streamLogs(String entityType, String entityId, String fromUtc, String toUtc,
+                          LogHandler handler) throws SQLException, IOException {
+        StringBuilder sql = new StringBuilder("SELECT * FROM audit_log WHERE 1=1");
+        List<String> params = new ArrayList<>();
+        if (entityType != null && !entityType.isEmpty()) {
+            sql.append(" AND entity_type = ?");
+            params.add(entityType);
+        }
+        if (entityId != null && !entityId.isEmpty()) {
+            sql.append(" AND entity_id = ?");
+            params.add(entityId);
+        }
+        if (fromUtc != null && !fromUtc.isEmpty()) {
+            sql.append(" AND created_utc >= ?");
+            params.add(fromUtc);
+        }
+        if (toUtc != null && !toUtc.isEmpty()) {
+            sql.append(" AND created_utc <= ?");
+            params.add(toUtc);
+        }
+        sql.append(" ORDER BY created_utc DESC, log_id DESC");
+
+        int rows = 0;
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString(),
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(STREAM_FETCH_SIZE);
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setString(i + 1, params.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(mapLog(rs));
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    private AuditLog mapLog(ResultSet rs) throws SQLException {
+        return new AuditLog(
+                rs.getString("log_id"),
+                rs.getString("entity_type"),
+                rs.getString("entity_id"),
+                rs.getString("action"),
+                rs.getString("user_id"),
+                rs.getString("user_name"),
+                rs.getString("old_values"),
+                rs.getString("new_values"),
+                rs.getString("created_utc")
+        );
+    }
+
+    @FunctionalInterface
+    public interface LogHandler {
+        void accept(AuditLog log) throws IOException;
+    }
 }
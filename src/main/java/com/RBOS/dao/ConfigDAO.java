@@ -30,11 +30,12 @@ public class ConfigDAO {
     public boolean setConfigValue(String key, String value) throws SQLException {
         String sql = "INSERT INTO restaurant_config (config_key, config_value) VALUES (?, ?) " +
                 "ON CONFLICT(config_key) DO UPDATE SET config_value = excluded.config_value";
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, key);
-            pstmt.setString(2, value);
-            return pstmt.executeUpdate() > 0;
-        }
+        return DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, key);
+                pstmt.setString(2, value);
+                return pstmt.executeUpdate() > 0;
+            }
+        });
     }
 }
@@ -1,7 +1,9 @@
 package com.RBOS.dao;
 
 import com.RBOS.models.DiningTable;
+import com.RBOS.services.TableAvailabilityIndex;
 import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.IdGenerator;
 import jakarta.servlet.ServletContext;
 import java.sql.*;
 import java.util.ArrayList;
@@ -18,7 +20,7 @@ public class DiningTableDAO {
         List<DiningTable> tables = new ArrayList<>();
         String sql = "SELECT * FROM dining_tables ORDER BY table_id";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
 
@@ -40,7 +42,7 @@ public class DiningTableDAO {
     public DiningTable getTableById(String tableId) throws SQLException {
         String sql = "SELECT * FROM dining_tables WHERE table_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, tableId);
@@ -62,6 +64,10 @@ public class DiningTableDAO {
     }
     
     public List<DiningTable> getAvailableTables(String startUtc, String endUtc, int partySize) throws SQLException {
+        if (TableAvailabilityIndex.toEpochMillis(startUtc) != null && TableAvailabilityIndex.toEpochMillis(endUtc) != null) {
+            return TableAvailabilityIndex.forContext(context).getAvailableTables(startUtc, endUtc, partySize);
+        }
+
         List<DiningTable> tables = new ArrayList<>();
         
         // Find tables that are available for the given time slot and have sufficient capacity
@@ -74,7 +80,7 @@ public class DiningTableDAO {
                     ") " +
                     "ORDER BY dt.capacity";
         
-        try (Connection conn = DatabaseConnection.getConnection(context);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, partySize);
@@ -99,36 +105,36 @@ public class DiningTableDAO {
     }
 
     public String createTable(DiningTable table) throws SQLException {
-        String tableId = table.getTableId() != null ? table.getTableId() : java.util.UUID.randomUUID().toString();
+        String tableId = table.getTableId() != null ? table.getTableId() : IdGenerator.newId();
         String sql = "INSERT INTO dining_tables (table_id, name, capacity, base_price, pos_x, pos_y) VALUES (?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-
-            pstmt.setString(1, tableId);
-            pstmt.setString(2, table.getName());
-            pstmt.setInt(3, table.getCapacity());
-            if (table.getBasePrice() != null) {
-                pstmt.setDouble(4, table.getBasePrice());
-            } else {
-                pstmt.setNull(4, Types.REAL);
-            }
-            if (table.getPosX() != null) {
-                pstmt.setDouble(5, table.getPosX());
-            } else {
-                pstmt.setNull(5, Types.REAL);
-            }
-            if (table.getPosY() != null) {
-                pstmt.setDouble(6, table.getPosY());
-            } else {
-                pstmt.setNull(6, Types.REAL);
-            }
-
-            int affectedRows = pstmt.executeUpdate();
-
-            if (affectedRows > 0) {
-                return tableId;
+        boolean inserted = DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                pstmt.setString(1, tableId);
+                pstmt.setString(2, table.getName());
+                pstmt.setInt(3, table.getCapacity());
+                if (table.getBasePrice() != null) {
+                    pstmt.setDouble(4, table.getBasePrice());
+                } else {
+                    pstmt.setNull(4, Types.REAL);
+                }
+                if (table.getPosX() != null) {
+                    pstmt.setDouble(5, table.getPosX());
+                } else {
+                    pstmt.setNull(5, Types.REAL);
+                }
+                if (table.getPosY() != null) {
+                    pstmt.setDouble(6, table.getPosY());
+                } else {
+                    pstmt.setNull(6, Types.REAL);
+                }
+
+                return pstmt.executeUpdate() > 0;
             }
+        });
+        if (inserted) {
+            TableAvailabilityIndex.tablesChanged(context);
+            return tableId;
         }
         return null;
     }
@@ -136,38 +142,47 @@ public class DiningTableDAO {
     public boolean updateTable(DiningTable table) throws SQLException {
         String sql = "UPDATE dining_tables SET name = ?, capacity = ?, base_price = ?, pos_x = ?, pos_y = ? WHERE table_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, table.getName());
-            pstmt.setInt(2, table.getCapacity());
-            if (table.getBasePrice() != null) {
-                pstmt.setDouble(3, table.getBasePrice());
-            } else {
-                pstmt.setNull(3, Types.REAL);
-            }
-            if (table.getPosX() != null) {
-                pstmt.setDouble(4, table.getPosX());
-            } else {
-                pstmt.setNull(4, Types.REAL);
-            }
-            if (table.getPosY() != null) {
-                pstmt.setDouble(5, table.getPosY());
-            } else {
-                pstmt.setNull(5, Types.REAL);
+        return changed(DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, table.getName());
+                pstmt.setInt(2, table.getCapacity());
+                if (table.getBasePrice() != null) {
+                    pstmt.setDouble(3, table.getBasePrice());
+                } else {
+                    pstmt.setNull(3, Types.REAL);
+                }
+                if (table.getPosX() != null) {
+                    pstmt.setDouble(4, table.getPosX());
+                } else {
+                    pstmt.setNull(4, Types.REAL);
+                }
+                if (table.getPosY() != null) {
+                    pstmt.setDouble(5, table.getPosY());
+                } else {
+                    pstmt.setNull(5, Types.REAL);
+                }
+                pstmt.setString(6, table.getTableId());
+
+                return pstmt.executeUpdate() > 0;
             }
-            pstmt.setString(6, table.getTableId());
-
-            return pstmt.executeUpdate() > 0;
-        }
+        }));
     }
 
     public boolean deleteTable(String tableId) throws SQLException {
         String sql = "DELETE FROM dining_tables WHERE table_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, tableId);
-            return pstmt.executeUpdate() > 0;
+        return changed(DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, tableId);
+                return pstmt.executeUpdate() > 0;
+            }
+        }));
+    }
+
+    // Capacity and deletes (which cascade to reservations) change availability, so the index reloads
+    private boolean changed(boolean updated) {
+        if (updated) {
+            TableAvailabilityIndex.tablesChanged(context);
         }
+        return updated;
     }
 }
@@ -0,0 +1,192 @@
+package com.RBOS.dao;
+
+import com.RBOS.models.OutboxEmail;
+import com.RBOS.utils.DatabaseConnection;
+import jakarta.servlet.ServletContext;
+import java.sql.*;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EmailOutboxDAO {
+    // Same shape as strftime('%Y-%m-%dT%H:%M:%fZ') so stored timestamps compare as strings
+    private static final DateTimeFormatter UTC_MILLIS =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private ServletContext context;
+
+    public EmailOutboxDAO(ServletContext context) {
+        this.context = context;
+    }
+
+    public static String formatUtc(Instant instant) {
+        return UTC_MILLIS.format(instant);
+    }
+
+    public long enqueue(String recipient, String subject, String htmlBody) throws SQLException {
+        return DatabaseConnection.write(context, conn -> enqueue(conn, recipient, subject, htmlBody));
+    }
+
+    // Overloaded method to accept connection so the email commits or rolls back with the caller's change
+    public long enqueue(Connection conn, String recipient, String subject, String htmlBody) throws SQLException {
+        String sql = "INSERT INTO email_outbox (recipient, subject, html_body) VALUES (?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, recipient);
+            pstmt.setString(2, subject);
+            pstmt.setString(3, htmlBody);
+            pstmt.executeUpdate();
+
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                return keys.next() ? keys.getLong(1) : -1;
+            }
+        }
+    }
+
+    // Pending emails whose next attempt is due, oldest first
+    public List<OutboxEmail> getDueEmails(int limit) throws SQLException {
+        String sql = "SELECT outbox_id, recipient, subject, html_body, attempts FROM email_outbox " +
+                "WHERE status = 'pending' AND next_attempt_utc <= ? ORDER BY outbox_id LIMIT ?";
+
+        List<OutboxEmail> emails = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection(context);
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, formatUtc(Instant.now()));
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    emails.add(new OutboxEmail(
+                            rs.getLong("outbox_id"),
+                            rs.getString("recipient"),
+                            rs.getString("subject"),
+                            rs.getString("html_body"),
+                            rs.getInt("attempts")));
+                }
+            }
+        }
+        return emails;
+    }
+
+    public OutboxEmail getEmailById(long outboxId) throws SQLException {
+        String sql = "SELECT * FROM email_outbox WHERE outbox_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection(context);
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, outboxId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    OutboxEmail email = new OutboxEmail(
+                            rs.getLong("outbox_id"),
+                            rs.getString("recipient"),
+                            rs.getString("subject"),
+                            rs.getString("html_body"),
+                            rs.getInt("attempts"));
+                    email.setStatus(rs.getString("status"));
+                    email.setNextAttemptUtc(rs.getString("next_attempt_utc"));
+                    email.setLastError(rs.getString("last_error"));
+                    email.setCreatedUtc(rs.getString("created_utc"));
+                    email.setSentUtc(rs.getString("sent_utc"));
+                    return email;
+                }
+            }
+        }
+        return null;
+    }
+
+    public void markSent(Collection<Long> outboxIds) throws SQLException {
+        if (outboxIds.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(",", Collections.nCopies(outboxIds.size(), "?"));
+        String sql = "UPDATE email_outbox SET status = 'sent', sent_utc = ?, attempts = attempts + 1, last_error = NULL " +
+                "WHERE outbox_id IN (" + placeholders + ")";
+
+        DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, formatUtc(Instant.now()));
+                int i = 2;
+                for (Long id : outboxIds) {
+                    pstmt.setLong(i++, id);
+                }
+                return pstmt.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Record a failed attempt; dead emails are kept for inspection but never retried.
+     */
+    public void markFailed(long outboxId, String error, Instant nextAttempt, boolean dead) throws SQLException {
+        String sql = "UPDATE email_outbox SET status = ?, attempts = attempts + 1, last_error = ?, next_attempt_utc = ? " +
+                "WHERE outbox_id = ?";
+
+        DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, dead ? "dead" : "pending");
+                pstmt.setString(2, error);
+                pstmt.setString(3, formatUtc(nextAttempt));
+                pstmt.setLong(4, outboxId);
+                return pstmt.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Push pending emails back without charging an attempt, for when the server could not be
+     * reached at all.
+     */
+    public void defer(Collection<Long> outboxIds, String error, Instant nextAttempt) throws SQLException {
+        if (outboxIds.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(",", Collections.nCopies(outboxIds.size(), "?"));
+        String sql = "UPDATE email_outbox SET last_error = ?, next_attempt_utc = ? " +
+                "WHERE status = 'pending' AND outbox_id IN (" + placeholders + ")";
+
+        DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, error);
+                pstmt.setString(2, formatUtc(nextAttempt));
+                int i = 3;
+                for (Long id : outboxIds) {
+                    pstmt.setLong(i++, id);
+                }
+                return pstmt.executeUpdate();
+            }
+        });
+    }
+
+    public int purgeSentBefore(Instant cutoff) throws SQLException {
+        String sql = "DELETE FROM email_outbox WHERE status = 'sent' AND sent_utc < ?";
+
+        return DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, formatUtc(cutoff));
+                return pstmt.executeUpdate();
+            }
+        });
+    }
+
+    public Map<String, Long> countByStatus() throws SQLException {
+        String sql = "SELECT status, COUNT(*) FROM email_outbox GROUP BY status";
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("pending", 0L);
+        counts.put("sent", 0L);
+        counts.put("dead", 0L);
+        try (Connection conn = DatabaseConnection.getConnection(context);
+                PreparedStatement pstmt = conn.prepareStatement(sql);
+                ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                counts.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,64 @@
+package com.RBOS.dao;
+
+import com.RBOS.models.IdempotencyRecord;
+import com.RBOS.utils.DatabaseConnection;
+import jakarta.servlet.ServletContext;
+import java.sql.*;
+import java.time.Instant;
+
+public class IdempotencyKeyDAO {
+    private ServletContext context;
+
+    public IdempotencyKeyDAO(ServletContext context) {
+        this.context = context;
+    }
+
+    public IdempotencyRecord findByKey(String key) throws SQLException {
+        String sql = "SELECT idem_key, request_hash, status_code, response_body, order_id, created_utc " +
+                "FROM idempotency_keys WHERE idem_key = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection(context);
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, key);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new IdempotencyRecord(
+                            rs.getString("idem_key"),
+                            rs.getString("request_hash"),
+                            rs.getInt("status_code"),
+                            rs.getString("response_body"),
+                            rs.getString("order_id"),
+                            rs.getString("created_utc"));
+                }
+            }
+        }
+        return null;
+    }
+
+    // Takes the caller's connection so the key commits or rolls back with the order it records
+    public void insert(Connection conn, IdempotencyRecord record) throws SQLException {
+        String sql = "INSERT INTO idempotency_keys (idem_key, request_hash, status_code, response_body, order_id, created_utc) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, record.getKey());
+            pstmt.setString(2, record.getRequestHash());
+            pstmt.setInt(3, record.getStatusCode());
+            pstmt.setString(4, record.getResponseBody());
+            pstmt.setString(5, record.getOrderId());
+            pstmt.setString(6, record.getCreatedUtc());
+            pstmt.executeUpdate();
+        }
+    }
+
+    public int purgeBefore(Instant cutoff) throws SQLException {
+        String sql = "DELETE FROM idempotency_keys WHERE created_utc < ?";
+
+        return DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, EmailOutboxDAO.formatUtc(cutoff));
+                return pstmt.executeUpdate();
+            }
+        });
+    }
+}
@@ -1,11 +1,16 @@
 package com.RBOS.dao;
 
 import com.RBOS.models.*;
+import com.RBOS.services.MenuCatalogCache;
 import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.IdGenerator;
 import jakarta.servlet.ServletContext;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class InventoryDAO {
     private ServletContext context;
@@ -33,15 +38,21 @@ public class InventoryDAO {
         return null;
     }
 
+    private static final String ALL_INVENTORY_SQL = "SELECT i.*, m.name as menu_item_name, m.price as menu_item_price " +
+            "FROM inventory i " +
+            "LEFT JOIN menu_items m ON i.item_id = m.item_id " +
+            "ORDER BY i.inventory_id";
+    private static final String LOW_STOCK_SQL = "SELECT i.*, m.name as menu_item_name, m.price as menu_item_price " +
+            "FROM inventory i " +
+            "LEFT JOIN menu_items m ON i.item_id = m.item_id " +
+            "WHERE i.qty_on_hand <= i.reorder_point AND i.active = 1 " +
+            "ORDER BY i.qty_on_hand ASC";
+
     public List<Inventory> getAllInventory() throws SQLException {
         List<Inventory> inventoryList = new ArrayList<>();
-        String sql = "SELECT i.*, m.name as menu_item_name, m.price as menu_item_price " +
-                "FROM inventory i " +
-                "LEFT JOIN menu_items m ON i.item_id = m.item_id " +
-                "ORDER BY i.inventory_id";
 
         try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql);
+             PreparedStatement pstmt = conn.prepareStatement(ALL_INVENTORY_SQL);
              ResultSet rs = pstmt.executeQuery()) {
 
             while (rs.next()) {
@@ -52,6 +63,33 @@ public class InventoryDAO {
         return inventoryList;
     }
 
+    /**
+     * Stream the rows {@link #getAllInventory} lists, one at a time. Returns the number of rows.
+     */
+    public int streamAllInventory(RowHandler<? super Inventory> handler) throws SQLException, IOException {
+        return streamInventory(ALL_INVENTORY_SQL, handler);
+    }
+
+    /**
+     * Stream the rows {@link #getLowStockItems} lists, one at a time. Returns the number of rows.
+     */
+    public int streamLowStockItems(RowHandler<? super Inventory> handler) throws SQLException, IOException {
+        return streamInventory(LOW_STOCK_SQL, handler);
+    }
+
+    private int streamInventory(String sql, RowHandler<? super Inventory> handler) throws SQLException, IOException {
+        int rows = 0;
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                handler.accept(mapResultSetToInventory(rs));
+                rows++;
+            }
+        }
+        return rows;
+    }
+
     private Inventory mapResultSetToInventory(ResultSet rs) throws SQLException {
         Inventory inventory = new Inventory();
         inventory.setInventoryId(rs.getString("inventory_id"));
@@ -136,20 +174,17 @@ public class InventoryDAO {
     public boolean updateInventoryQuantity(String itemId, int newQuantity) throws SQLException {
         String sql = "UPDATE inventory SET qty_on_hand = ?, last_counted_at = datetime('now') WHERE item_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, newQuantity);
-            pstmt.setString(2, itemId);
-
-            return pstmt.executeUpdate() > 0;
-        }
+        return changed(DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, newQuantity);
+                pstmt.setString(2, itemId);
+                return pstmt.executeUpdate() > 0;
+            }
+        }));
     }
 
     public boolean decrementInventory(String itemId, int quantity) throws SQLException {
-        try (Connection conn = DatabaseConnection.getConnection(context)) {
-            return decrementInventory(itemId, quantity, conn);
-        }
+        return changed(DatabaseConnection.write(context, conn -> decrementInventory(itemId, quantity, conn)));
     }
 
     public boolean decrementInventory(String itemId, int quantity, Connection conn) throws SQLException {
@@ -164,38 +199,109 @@ public class InventoryDAO {
         }
     }
 
-    public boolean linkInventoryBySku(String sku, String itemId) throws SQLException {
-        if (sku == null || sku.isBlank() || itemId == null || itemId.isBlank()) return false;
-        String sql = "UPDATE inventory SET item_id = ? WHERE sku = ?";
+    // Stock levels for every linked inventory row, keyed by menu item; the first row per item wins
+    public Map<String, Inventory> getStockLevelsByItemId() throws SQLException {
+        Map<String, Inventory> stock = new LinkedHashMap<>();
+        String sql = "SELECT item_id, name, active, qty_on_hand FROM inventory " +
+                "WHERE item_id IS NOT NULL ORDER BY rowid";
+
         try (Connection conn = DatabaseConnection.getConnection(context);
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            while (rs.next()) {
+                Inventory inventory = new Inventory();
+                inventory.setItemId(rs.getString("item_id"));
+                inventory.setName(rs.getString("name"));
+                inventory.setActive(rs.getInt("active") == 1);
+                inventory.setQtyOnHand(rs.getInt("qty_on_hand"));
+                stock.putIfAbsent(inventory.getItemId(), inventory);
+            }
+        }
+        return stock;
+    }
+
+    /**
+     * Subtract the given quantities from on-hand stock in one batched transaction. Returns the
+     * item ids whose update matched no inventory row (deleted or unlinked since they were
+     * loaded); their quantities were not applied anywhere.
+     */
+    public List<String> applyStockDeltas(Map<String, Integer> quantitiesByItemId) throws SQLException {
+        String sql = "UPDATE inventory SET qty_on_hand = qty_on_hand - ?, last_counted_at = datetime('now') " +
+                "WHERE item_id = ?";
+
+        List<String> itemIds = new ArrayList<>(quantitiesByItemId.keySet());
+        int[] counts = DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (String itemId : itemIds) {
+                    pstmt.setInt(1, quantitiesByItemId.get(itemId));
+                    pstmt.setString(2, itemId);
+                    pstmt.addBatch();
+                }
+                return pstmt.executeBatch();
+            }
+        });
+        MenuCatalogCache.inventoryChanged(context);
+
+        List<String> unmatched = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                unmatched.add(itemIds.get(i));
+            }
+        }
+        return unmatched;
+    }
+
+    public Inventory getInventoryBySku(String sku) throws SQLException {
+        String sql = "SELECT i.*, m.name as menu_item_name, m.price as menu_item_price " +
+                "FROM inventory i " +
+                "LEFT JOIN menu_items m ON i.item_id = m.item_id " +
+                "WHERE i.sku = ?";
+
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, itemId);
-            pstmt.setString(2, sku);
-            return pstmt.executeUpdate() > 0;
+
+            pstmt.setString(1, sku);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapResultSetToInventory(rs);
+                }
+            }
         }
+        return null;
     }
 
+    // Moves stock between menu items; call inside InventoryLedger.update with both item ids
+    public boolean linkInventoryBySku(String sku, String itemId) throws SQLException {
+        if (sku == null || sku.isBlank() || itemId == null || itemId.isBlank()) return false;
+        String sql = "UPDATE inventory SET item_id = ? WHERE sku = ?";
+        return changed(DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, itemId);
+                pstmt.setString(2, sku);
+                return pstmt.executeUpdate() > 0;
+            }
+        }));
+    }
+
+    // Moves stock between menu items; call inside InventoryLedger.update with both item ids
     public boolean linkInventoryById(String inventoryId, String itemId) throws SQLException {
         if (inventoryId == null || inventoryId.isBlank() || itemId == null || itemId.isBlank()) return false;
         String sql = "UPDATE inventory SET item_id = ? WHERE inventory_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, itemId);
-            pstmt.setString(2, inventoryId);
-            return pstmt.executeUpdate() > 0;
-        }
+        return changed(DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, itemId);
+                pstmt.setString(2, inventoryId);
+                return pstmt.executeUpdate() > 0;
+            }
+        }));
     }
 
     public List<Inventory> getLowStockItems() throws SQLException {
         List<Inventory> lowStockList = new ArrayList<>();
-        String sql = "SELECT i.*, m.name as menu_item_name, m.price as menu_item_price " +
-                "FROM inventory i " +
-                "LEFT JOIN menu_items m ON i.item_id = m.item_id " +
-                "WHERE i.qty_on_hand <= i.reorder_point AND i.active = 1 " +
-                "ORDER BY i.qty_on_hand ASC";
 
         try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql);
+             PreparedStatement pstmt = conn.prepareStatement(LOW_STOCK_SQL);
              ResultSet rs = pstmt.executeQuery()) {
 
             while (rs.next()) {
@@ -209,7 +315,7 @@ public class InventoryDAO {
     public String createInventory(Inventory inventory) throws SQLException {
         String inventoryId = inventory.getInventoryId();
         if (inventoryId == null || inventoryId.isBlank()) {
-            inventoryId = java.util.UUID.randomUUID().toString();
+            inventoryId = IdGenerator.newId();
             inventory.setInventoryId(inventoryId);
         }
         // If no menu item is linked, store NULL to avoid FK failures
@@ -223,17 +329,15 @@ public class InventoryDAO {
                 "lot, expiry_date, allergen, conversion) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-
-            pstmt.setString(1, inventoryId);
-            setInventoryPreparedStatement(pstmt, inventory, 2);
-
-            if (pstmt.executeUpdate() > 0) {
-                return inventoryId;
+        String id = inventoryId;
+        boolean inserted = DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, id);
+                setInventoryPreparedStatement(pstmt, inventory, 2);
+                return pstmt.executeUpdate() > 0;
             }
-        }
-        return null;
+        });
+        return changed(inserted) ? inventoryId : null;
     }
 
     private void setInventoryPreparedStatement(PreparedStatement pstmt, Inventory inventory, int startIndex) throws SQLException {
@@ -273,25 +377,24 @@ public class InventoryDAO {
                 "count_freq = ?, lot = ?, expiry_date = ?, allergen = ?, conversion = ? " +
                 "WHERE inventory_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            setInventoryPreparedStatement(pstmt, inventory, 1);
-            pstmt.setString(23, inventory.getInventoryId());
-
-            return pstmt.executeUpdate() > 0;
-        }
+        return changed(DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                setInventoryPreparedStatement(pstmt, inventory, 1);
+                pstmt.setString(23, inventory.getInventoryId());
+                return pstmt.executeUpdate() > 0;
+            }
+        }));
     }
 
     public boolean deleteInventory(String inventoryId) throws SQLException {
         String sql = "DELETE FROM inventory WHERE inventory_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, inventoryId);
-            return pstmt.executeUpdate() > 0;
-        }
+        return changed(DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, inventoryId);
+                return pstmt.executeUpdate() > 0;
+            }
+        }));
     }
 
     public List<Inventory> getInventoryByCategory(String category) throws SQLException {
@@ -315,4 +418,12 @@ public class InventoryDAO {
         }
         return inventoryList;
     }
+
+    // Stock shows on the with-inventory menu, so every committed write bumps its version
+    private boolean changed(boolean updated) {
+        if (updated) {
+            MenuCatalogCache.inventoryChanged(context);
+        }
+        return updated;
+    }
 }
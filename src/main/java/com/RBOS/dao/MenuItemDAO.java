@@ -2,19 +2,25 @@ package com.RBOS.dao;
 
 import com.RBOS.models.MenuItem;
 import com.RBOS.models.MenuItemWithInventory;
+import com.RBOS.services.MenuCatalogCache;
 import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.IdGenerator;
+import com.RBOS.utils.Json;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.ServletContext;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
 public class MenuItemDAO {
     private ServletContext context;
     private AuditLogDAO auditLogDAO;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper objectMapper = Json.mapper();
 
     public MenuItemDAO(ServletContext context) {
         this.context = context;
@@ -25,7 +31,7 @@ public class MenuItemDAO {
         List<MenuItem> menuItems = new ArrayList<>();
         String sql = "SELECT item_id, name, description, category, price, active, image_url, dietary_tags, out_of_stock FROM menu_items ORDER BY item_id";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
 
@@ -53,7 +59,7 @@ public class MenuItemDAO {
         List<MenuItem> menuItems = new ArrayList<>();
         String sql = "SELECT * FROM menu_items WHERE active = 1 ORDER BY item_id";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
 
@@ -80,7 +86,7 @@ public class MenuItemDAO {
     public MenuItem getMenuItemById(String itemId) throws SQLException {
         String sql = "SELECT * FROM menu_items WHERE item_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, itemId);
@@ -106,6 +112,47 @@ public class MenuItemDAO {
         return null;
     }
 
+    /**
+     * Load many menu items with one IN query per chunk of ids on the caller's connection.
+     * Ids with no row are absent from the returned map.
+     */
+    public Map<String, MenuItem> getMenuItemsByIds(Collection<String> itemIds, Connection conn) throws SQLException {
+        Map<String, MenuItem> items = new HashMap<>();
+        if (itemIds == null || itemIds.isEmpty()) {
+            return items;
+        }
+
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(itemIds));
+        for (int from = 0; from < ids.size(); from += OrderItemDAO.IN_CLAUSE_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(from + OrderItemDAO.IN_CLAUSE_CHUNK_SIZE, ids.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            String sql = "SELECT * FROM menu_items WHERE item_id IN (" + placeholders + ")";
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setString(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        MenuItem item = new MenuItem(
+                            rs.getString("item_id"),
+                            rs.getString("name"),
+                            rs.getString("description"),
+                            rs.getString("category"),
+                            rs.getDouble("price"),
+                            rs.getInt("active") == 1,
+                            rs.getString("image_url"),
+                            rs.getString("dietary_tags")
+                        );
+                        item.setOutOfStock(rs.getInt("out_of_stock") == 1);
+                        items.put(item.getItemId(), item);
+                    }
+                }
+            }
+        }
+        return items;
+    }
+
     public List<MenuItemWithInventory> getActiveMenuItemsWithInventory() throws SQLException {
         List<MenuItemWithInventory> menuItems = new ArrayList<>();
         String sql = "SELECT m.*, i.qty_on_hand, i.par_level, i.reorder_point, " +
@@ -115,7 +162,7 @@ public class MenuItemDAO {
                     "WHERE m.active = 1 " +
                     "ORDER BY m.item_id";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
             PreparedStatement pstmt = conn.prepareStatement(sql);
             ResultSet rs = pstmt.executeQuery()) {
 
@@ -153,49 +200,49 @@ public class MenuItemDAO {
     }
 
     public String createMenuItem(MenuItem menuItem, String userId, String userName) throws SQLException {
-        String itemId = menuItem.getItemId();
-        if (itemId == null || itemId.isBlank()) {
-            itemId = java.util.UUID.randomUUID().toString();
-            menuItem.setItemId(itemId);
-        }
+        String itemId = menuItem.getItemId() != null && !menuItem.getItemId().isBlank()
+                ? menuItem.getItemId()
+                : IdGenerator.newId();
+        menuItem.setItemId(itemId);
 
         String sql = "INSERT INTO menu_items (name, description, category, price, active, image_url, dietary_tags, item_id) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-
-            pstmt.setString(1, menuItem.getName());
-            pstmt.setString(2, menuItem.getDescription());
-            pstmt.setString(3, menuItem.getCategory());
-            pstmt.setDouble(4, menuItem.getPrice());
-            pstmt.setBoolean(5, menuItem.getActive());
-            pstmt.setString(6, menuItem.getImageUrl());
-            pstmt.setString(7, menuItem.getDietaryTags());
-            pstmt.setString(8, itemId);
-
-            int affectedRows = pstmt.executeUpdate();
-
-            if (affectedRows > 0) {
-                // Log the creation
-                if (userId != null && userName != null) {
-                    Map<String, Object> newValues = new HashMap<>();
-                    newValues.put("name", menuItem.getName());
-                    newValues.put("price", menuItem.getPrice());
-                    newValues.put("category", menuItem.getCategory());
-                    newValues.put("active", menuItem.getActive());
-                    auditLogDAO.log(
-                            "menu_item",
-                            itemId,
-                            "create",
-                            userId,
-                            userName,
-                            null,
-                            objectToJson(newValues)
-                    );
-                }
-                return itemId;
+        boolean inserted = DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                pstmt.setString(1, menuItem.getName());
+                pstmt.setString(2, menuItem.getDescription());
+                pstmt.setString(3, menuItem.getCategory());
+                pstmt.setDouble(4, menuItem.getPrice());
+                pstmt.setBoolean(5, menuItem.getActive());
+                pstmt.setString(6, menuItem.getImageUrl());
+                pstmt.setString(7, menuItem.getDietaryTags());
+                pstmt.setString(8, itemId);
+
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+
+        if (inserted) {
+            // Log the creation
+            if (userId != null && userName != null) {
+                Map<String, Object> newValues = new HashMap<>();
+                newValues.put("name", menuItem.getName());
+                newValues.put("price", menuItem.getPrice());
+                newValues.put("category", menuItem.getCategory());
+                newValues.put("active", menuItem.getActive());
+                auditLogDAO.log(
+                        "menu_item",
+                        itemId,
+                        "create",
+                        userId,
+                        userName,
+                        null,
+                        objectToJson(newValues)
+                );
             }
+            MenuCatalogCache.menuChanged(context);
+            return itemId;
         }
         return null;
     }
@@ -212,50 +259,53 @@ public class MenuItemDAO {
         String sql = "UPDATE menu_items SET name = ?, description = ?, category = ?, " +
                 "price = ?, active = ?, image_url = ?, dietary_tags = ?, out_of_stock = ? WHERE item_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, menuItem.getName());
-            pstmt.setString(2, menuItem.getDescription());
-            pstmt.setString(3, menuItem.getCategory());
-            pstmt.setDouble(4, menuItem.getPrice());
-            pstmt.setBoolean(5, menuItem.getActive());
-            pstmt.setString(6, menuItem.getImageUrl());
-            pstmt.setString(7, menuItem.getDietaryTags());
-            pstmt.setBoolean(8, menuItem.getOutOfStock() != null ? menuItem.getOutOfStock() : false);
-            pstmt.setString(9, menuItem.getItemId());
-
-            boolean success = pstmt.executeUpdate() > 0;
-
-            // Log the update
-            if (success && userId != null && userName != null && oldItem != null) {
-                Map<String, Object> oldValues = new HashMap<>();
-                oldValues.put("name", oldItem.getName());
-                oldValues.put("price", oldItem.getPrice());
-                oldValues.put("category", oldItem.getCategory());
-                oldValues.put("active", oldItem.getActive());
-                oldValues.put("outOfStock", oldItem.getOutOfStock());
-
-                Map<String, Object> newValues = new HashMap<>();
-                newValues.put("name", menuItem.getName());
-                newValues.put("price", menuItem.getPrice());
-                newValues.put("category", menuItem.getCategory());
-                newValues.put("active", menuItem.getActive());
-                newValues.put("outOfStock", menuItem.getOutOfStock());
+        boolean success = DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, menuItem.getName());
+                pstmt.setString(2, menuItem.getDescription());
+                pstmt.setString(3, menuItem.getCategory());
+                pstmt.setDouble(4, menuItem.getPrice());
+                pstmt.setBoolean(5, menuItem.getActive());
+                pstmt.setString(6, menuItem.getImageUrl());
+                pstmt.setString(7, menuItem.getDietaryTags());
+                pstmt.setBoolean(8, menuItem.getOutOfStock() != null ? menuItem.getOutOfStock() : false);
+                pstmt.setString(9, menuItem.getItemId());
+
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+
+        // Log the update
+        if (success && userId != null && userName != null && oldItem != null) {
+            Map<String, Object> oldValues = new HashMap<>();
+            oldValues.put("name", oldItem.getName());
+            oldValues.put("price", oldItem.getPrice());
+            oldValues.put("category", oldItem.getCategory());
+            oldValues.put("active", oldItem.getActive());
+            oldValues.put("outOfStock", oldItem.getOutOfStock());
+
+            Map<String, Object> newValues = new HashMap<>();
+            newValues.put("name", menuItem.getName());
+            newValues.put("price", menuItem.getPrice());
+            newValues.put("category", menuItem.getCategory());
+            newValues.put("active", menuItem.getActive());
+            newValues.put("outOfStock", menuItem.getOutOfStock());
+
+            auditLogDAO.log(
+                    "menu_item",
+                    menuItem.getItemId(),
+                    "update",
+                    userId,
+                    userName,
+                    objectToJson(oldValues),
+                    objectToJson(newValues)
+            );
+        }
 
-                auditLogDAO.log(
-                        "menu_item",
-                        menuItem.getItemId(),
-                        "update",
-                        userId,
-                        userName,
-                        objectToJson(oldValues),
-                        objectToJson(newValues)
-                );
-            }
-
-            return success;
+        if (success) {
+            MenuCatalogCache.menuChanged(context);
         }
+        return success;
     }
     
     // Backward compatible version without audit logging
@@ -269,35 +319,38 @@ public class MenuItemDAO {
 
         String sql = "UPDATE menu_items SET active = ? WHERE item_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setBoolean(1, active);
-            pstmt.setString(2, itemId);
-
-            boolean success = pstmt.executeUpdate() > 0;
+        boolean success = DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setBoolean(1, active);
+                pstmt.setString(2, itemId);
 
-            // Log the toggle
-            if (success && userId != null && userName != null && oldItem != null) {
-                Map<String, Object> oldValues = new HashMap<>();
-                oldValues.put("active", oldItem.getActive());
-
-                Map<String, Object> newValues = new HashMap<>();
-                newValues.put("active", active);
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+
+        // Log the toggle
+        if (success && userId != null && userName != null && oldItem != null) {
+            Map<String, Object> oldValues = new HashMap<>();
+            oldValues.put("active", oldItem.getActive());
+
+            Map<String, Object> newValues = new HashMap<>();
+            newValues.put("active", active);
+
+            auditLogDAO.log(
+                    "menu_item",
+                    itemId,
+                    "toggle_active",
+                    userId,
+                    userName,
+                    objectToJson(oldValues),
+                    objectToJson(newValues)
+            );
+        }
 
-                auditLogDAO.log(
-                        "menu_item",
-                        itemId,
-                        "toggle_active",
-                        userId,
-                        userName,
-                        objectToJson(oldValues),
-                        objectToJson(newValues)
-                );
-            }
-
-            return success;
+        if (success) {
+            MenuCatalogCache.menuChanged(context);
         }
+        return success;
     }
 
     // Backward compatible version without audit logging
@@ -311,32 +364,35 @@ public class MenuItemDAO {
 
         String sql = "DELETE FROM menu_items WHERE item_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, itemId);
-            boolean success = pstmt.executeUpdate() > 0;
-
-            // Log the deletion
-            if (success && userId != null && userName != null && oldItem != null) {
-                Map<String, Object> oldValues = new HashMap<>();
-                oldValues.put("name", oldItem.getName());
-                oldValues.put("price", oldItem.getPrice());
-                oldValues.put("category", oldItem.getCategory());
+        boolean success = DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, itemId);
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+
+        // Log the deletion
+        if (success && userId != null && userName != null && oldItem != null) {
+            Map<String, Object> oldValues = new HashMap<>();
+            oldValues.put("name", oldItem.getName());
+            oldValues.put("price", oldItem.getPrice());
+            oldValues.put("category", oldItem.getCategory());
+
+            auditLogDAO.log(
+                    "menu_item",
+                    itemId,
+                    "delete",
+                    userId,
+                    userName,
+                    objectToJson(oldValues),
+                    null
+            );
+        }
 
-                auditLogDAO.log(
-                        "menu_item",
-                        itemId,
-                        "delete",
-                        userId,
-                        userName,
-                        objectToJson(oldValues),
-                        null
-                );
-            }
-
-            return success;
+        if (success) {
+            MenuCatalogCache.menuChanged(context);
         }
+        return success;
     }
 
     private String objectToJson(Map<String, Object> value) {
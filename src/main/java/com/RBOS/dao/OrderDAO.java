@@ -3,10 +3,14 @@ package com.RBOS.dao;
 import com.RBOS.models.Order;
 import com.RBOS.models.OrderItem;
 import com.RBOS.models.PagedResult;
-import com.RBOS.services.EmailService;
+import com.RBOS.models.User;
+import com.RBOS.services.EmailDispatcher;
 import com.RBOS.services.EmailTemplates;
 import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.HistoryCursor;
+import com.RBOS.utils.IdGenerator;
 import jakarta.servlet.ServletContext;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -14,12 +18,17 @@ import java.util.List;
 import java.util.Map;
 
 public class OrderDAO {
+    // Orders per streamed batch; matches the item query's IN clause chunk
+    private static final int STREAM_BATCH_SIZE = OrderItemDAO.IN_CLAUSE_CHUNK_SIZE;
+
     private ServletContext context;
     private OrderItemDAO orderItemDAO;
+    private EmailOutboxDAO emailOutboxDAO;
 
     public OrderDAO(ServletContext context) {
         this.context = context;
         this.orderItemDAO = new OrderItemDAO(context);
+        this.emailOutboxDAO = new EmailOutboxDAO(context);
     }
 
     public List<Order> getAllOrders() throws SQLException {
@@ -29,19 +38,103 @@ public class OrderDAO {
                 "LEFT JOIN users u ON o.user_id = u.user_id " +
                 "ORDER BY o.created_utc DESC";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
                 PreparedStatement pstmt = conn.prepareStatement(sql);
                 ResultSet rs = pstmt.executeQuery()) {
 
             while (rs.next()) {
-                Order order = mapOrder(rs);
-                order.setOrderItems(orderItemDAO.getOrderItemsByOrderId(order.getOrderId()));
-                orders.add(order);
+                orders.add(mapOrder(rs));
             }
+            attachOrderItems(orders, conn);
         }
         return orders;
     }
 
+    /**
+     * Stream every order newest first, with its items, without holding the whole list. Orders
+     * are read in batches so their items still load with one query per batch; only one batch
+     * is in memory at a time. Returns the number of orders.
+     */
+    public int streamAllOrders(RowHandler<? super Order> handler) throws SQLException, IOException {
+        String sql = "SELECT o.*, u.full_name, u.email " +
+                "FROM orders o " +
+                "LEFT JOIN users u ON o.user_id = u.user_id " +
+                "WHERE 1=1";
+        return streamOrders(sql, List.of(), true, handler);
+    }
+
+    /**
+     * Stream a user's orders newest first, like {@link #getOrdersByUser}. A null or "all"
+     * status streams every order.
+     */
+    public int streamOrdersByUser(String userId, String status, RowHandler<? super Order> handler)
+            throws SQLException, IOException {
+        if (status == null || status.isEmpty() || "all".equalsIgnoreCase(status)) {
+            return streamOrders("SELECT * FROM orders o WHERE o.user_id = ?",
+                    List.of(userId), false, handler);
+        }
+        return streamOrders("SELECT * FROM orders o WHERE o.user_id = ? AND o.status = ?",
+                List.of(userId, status), false, handler);
+    }
+
+    /**
+     * Stream orders with the given status (or every order for "all"), like {@link #getOrdersByStatus}.
+     */
+    public int streamOrdersByStatus(String status, RowHandler<? super Order> handler) throws SQLException, IOException {
+        String sql = "SELECT o.*, u.full_name, u.email " +
+                "FROM orders o " +
+                "LEFT JOIN users u ON o.user_id = u.user_id " +
+                ("all".equalsIgnoreCase(status) ? "WHERE 1=1" : "WHERE o.status = ?");
+        return streamOrders(sql, "all".equalsIgnoreCase(status) ? List.of() : List.of(status), false, handler);
+    }
+
+    /**
+     * Read the matching orders a batch at a time, newest first, and hand each batch to the
+     * handler only after its read connection is back in the pool, so a slow client never
+     * pins a connection. Each batch after the first seeks past the last (created_utc,
+     * order_id) it saw. The query must end in a WHERE clause the keyset can extend.
+     */
+    private int streamOrders(String sql, List<String> params, boolean withItems, RowHandler<? super Order> handler)
+            throws SQLException, IOException {
+        int rows = 0;
+        Order last = null;
+        while (true) {
+            List<String> batchParams = new ArrayList<>(params);
+            StringBuilder batchSql = new StringBuilder(sql);
+            if (last != null) {
+                batchSql.append(" AND (o.created_utc, o.order_id) < (?, ?)");
+                batchParams.add(last.getCreatedUtc());
+                batchParams.add(last.getOrderId());
+            }
+            batchSql.append(" ORDER BY o.created_utc DESC, o.order_id DESC LIMIT ").append(STREAM_BATCH_SIZE);
+
+            List<Order> batch = new ArrayList<>();
+            try (Connection conn = DatabaseConnection.getReadConnection(context);
+                    PreparedStatement pstmt = conn.prepareStatement(batchSql.toString())) {
+                for (int i = 0; i < batchParams.size(); i++) {
+                    pstmt.setString(i + 1, batchParams.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        batch.add(mapOrder(rs));
+                    }
+                }
+                if (withItems) {
+                    attachOrderItems(batch, conn);
+                }
+            }
+
+            for (Order order : batch) {
+                handler.accept(order);
+            }
+            rows += batch.size();
+            if (batch.size() < STREAM_BATCH_SIZE) {
+                return rows;
+            }
+            last = batch.get(batch.size() - 1);
+        }
+    }
+
     public Order getOrderById(String orderId) throws SQLException {
         String sql = "SELECT o.*, u.full_name, u.email " +
                 "FROM orders o " +
@@ -67,7 +160,7 @@ public class OrderDAO {
         List<Order> orders = new ArrayList<>();
         String sql = "SELECT * FROM orders WHERE user_id = ? ORDER BY created_utc DESC";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, userId);
@@ -87,23 +180,7 @@ public class OrderDAO {
         List<String> params = new ArrayList<>();
         int total = 0;
 
-        StringBuilder where = new StringBuilder(" WHERE 1=1");
-        if (status != null && !status.isEmpty() && !"all".equalsIgnoreCase(status)) {
-            where.append(" AND o.status = ?");
-            params.add(status);
-        }
-        if (startUtc != null && !startUtc.isEmpty()) {
-            where.append(" AND o.created_utc >= ?");
-            params.add(startUtc);
-        }
-        if (endUtc != null && !endUtc.isEmpty()) {
-            where.append(" AND o.created_utc <= ?");
-            params.add(endUtc);
-        }
-        if (userId != null && !userId.isEmpty()) {
-            where.append(" AND o.user_id = ?");
-            params.add(userId);
-        }
+        StringBuilder where = historyWhere(status, startUtc, endUtc, userId, params);
 
         String countSql = "SELECT COUNT(*) FROM orders o" + where;
         String dataSql = "SELECT o.*, u.full_name, u.email " +
@@ -112,7 +189,7 @@ public class OrderDAO {
                 where +
                 " ORDER BY o.created_utc DESC LIMIT ? OFFSET ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context)) {
+        try (Connection conn = DatabaseConnection.getReadConnection(context)) {
             try (PreparedStatement countStmt = conn.prepareStatement(countSql)) {
                 for (int i = 0; i < params.size(); i++) {
                     countStmt.setString(i + 1, params.get(i));
@@ -132,16 +209,92 @@ public class OrderDAO {
 
                 try (ResultSet dataRs = dataStmt.executeQuery()) {
                     while (dataRs.next()) {
-                        Order order = mapOrder(dataRs);
-                        order.setOrderItems(orderItemDAO.getOrderItemsByOrderId(order.getOrderId()));
-                        orders.add(order);
+                        orders.add(mapOrder(dataRs));
                     }
                 }
             }
+            attachOrderItems(orders, conn);
         }
         return new PagedResult<>(orders, total);
     }
 
+    /**
+     * Keyset variant of {@link #getOrdersWithFilters}: reads the page after (or before) the
+     * cursor on (created_utc, order_id), so every page costs the same as the first. Only the
+     * first page runs the COUNT; later pages report the total carried in the cursor.
+     */
+    public PagedResult<Order> getOrdersPage(String status, String startUtc, String endUtc,
+            String userId, HistoryCursor cursor, int pageSize) throws SQLException {
+        List<Order> orders = new ArrayList<>();
+        List<String> params = new ArrayList<>();
+
+        StringBuilder where = historyWhere(status, startUtc, endUtc, userId, params);
+        String countSql = "SELECT COUNT(*) FROM orders o" + where;
+        List<String> countParams = new ArrayList<>(params);
+        if (cursor != null) {
+            where.append(cursor.keysetClause("o.created_utc", "o.order_id"));
+            cursor.bindParams(params);
+        }
+        String dataSql = "SELECT o.*, u.full_name, u.email " +
+                "FROM orders o " +
+                "LEFT JOIN users u ON o.user_id = u.user_id " +
+                where +
+                HistoryCursor.orderBy(cursor, "o.created_utc", "o.order_id") + " LIMIT ?";
+
+        try (Connection conn = DatabaseConnection.getReadConnection(context)) {
+            int total = cursor != null ? cursor.getTotal() : count(conn, countSql, countParams);
+            try (PreparedStatement dataStmt = conn.prepareStatement(dataSql)) {
+                for (int i = 0; i < params.size(); i++) {
+                    dataStmt.setString(i + 1, params.get(i));
+                }
+                dataStmt.setInt(params.size() + 1, pageSize + 1);
+
+                try (ResultSet dataRs = dataStmt.executeQuery()) {
+                    while (dataRs.next()) {
+                        orders.add(mapOrder(dataRs));
+                    }
+                }
+            }
+            PagedResult<Order> result = HistoryCursor.toPage(orders, cursor, pageSize, total,
+                    Order::getCreatedUtc, Order::getOrderId);
+            attachOrderItems(result.getItems(), conn);
+            return result;
+        }
+    }
+
+    private StringBuilder historyWhere(String status, String startUtc, String endUtc, String userId,
+            List<String> params) {
+        StringBuilder where = new StringBuilder(" WHERE 1=1");
+        if (status != null && !status.isEmpty() && !"all".equalsIgnoreCase(status)) {
+            where.append(" AND o.status = ?");
+            params.add(status);
+        }
+        if (startUtc != null && !startUtc.isEmpty()) {
+            where.append(" AND o.created_utc >= ?");
+            params.add(startUtc);
+        }
+        if (endUtc != null && !endUtc.isEmpty()) {
+            where.append(" AND o.created_utc <= ?");
+            params.add(endUtc);
+        }
+        if (userId != null && !userId.isEmpty()) {
+            where.append(" AND o.user_id = ?");
+            params.add(userId);
+        }
+        return where;
+    }
+
+    private int count(Connection conn, String countSql, List<String> params) throws SQLException {
+        try (PreparedStatement countStmt = conn.prepareStatement(countSql)) {
+            for (int i = 0; i < params.size(); i++) {
+                countStmt.setString(i + 1, params.get(i));
+            }
+            try (ResultSet rs = countStmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
     public List<Order> getOrdersByDateRange(String startDate, String endDate) throws SQLException {
         List<Order> orders = new ArrayList<>();
         String sql = "SELECT o.*, u.full_name, u.email " +
@@ -150,21 +303,35 @@ public class OrderDAO {
                 "WHERE DATE(o.created_utc) BETWEEN ? AND ? " +
                 "ORDER BY o.created_utc DESC";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, startDate);
             pstmt.setString(2, endDate);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    Order order = mapOrder(rs);
-                    order.setOrderItems(orderItemDAO.getOrderItemsByOrderId(order.getOrderId()));
-                    orders.add(order);
+                    orders.add(mapOrder(rs));
                 }
             }
+            attachOrderItems(orders, conn);
         }
         return orders;
     }
 
+    // Load items for a whole list of orders in bulk rather than one query per order
+    private void attachOrderItems(List<Order> orders, Connection conn) throws SQLException {
+        if (orders.isEmpty()) {
+            return;
+        }
+        List<String> orderIds = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            orderIds.add(order.getOrderId());
+        }
+        Map<String, List<OrderItem>> itemsByOrder = orderItemDAO.getOrderItemsByOrderIds(orderIds, conn);
+        for (Order order : orders) {
+            order.setOrderItems(itemsByOrder.getOrDefault(order.getOrderId(), new ArrayList<>()));
+        }
+    }
+
     public Map<String, Object> getOrderStatistics(String period) throws SQLException {
         Map<String, Object> stats = new HashMap<>();
         String sql = "";
@@ -184,7 +351,7 @@ public class OrderDAO {
                 break;
         }
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
                 PreparedStatement pstmt = conn.prepareStatement(sql);
                 ResultSet rs = pstmt.executeQuery()) {
             if (rs.next()) {
@@ -212,7 +379,7 @@ public class OrderDAO {
                     "ORDER BY o.created_utc DESC";
         }
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             if (!"all".equalsIgnoreCase(status)) {
@@ -231,27 +398,15 @@ public class OrderDAO {
     }
 
     public String createOrder(Order order) throws SQLException {
-        try (Connection conn = DatabaseConnection.getConnection(context)) {
-            boolean shouldRestoreAutoCommit = conn.getAutoCommit();
-            conn.setAutoCommit(false);
-
-            try {
-                String orderId = createOrder(order, conn);
-                conn.commit();
-                return orderId;
-            } catch (SQLException e) {
-                conn.rollback();
-                throw e;
-            } finally {
-                conn.setAutoCommit(shouldRestoreAutoCommit);
-            }
-        }
+        String orderId = DatabaseConnection.write(context, conn -> createOrder(order, conn));
+        EmailDispatcher.signal();
+        return orderId;
     }
 
     public String createOrder(Order order, Connection conn) throws SQLException {
         String orderId = order.getOrderId();
         if (orderId == null || orderId.isBlank()) {
-            orderId = java.util.concurrent.ThreadLocalRandom.current().nextLong(1_000_000_000L, 10_000_000_000L) + "";
+            orderId = IdGenerator.newId();
             order.setOrderId(orderId);
         }
 
@@ -292,23 +447,18 @@ public class OrderDAO {
                 if (order.getOrderItems() != null && !order.getOrderItems().isEmpty()) {
                     for (OrderItem item : order.getOrderItems()) {
                         item.setOrderId(orderId);
-                        orderItemDAO.createOrderItem(item, conn);
                     }
+                    orderItemDAO.createOrderItems(order.getOrderItems(), conn);
                 }
 
-                // send order confirmation email asynchronously
+                // queue order confirmation email in the same transaction as the order
                 try {
                     // Get user email if user is logged in
                     String customerEmail = null;
                     if (order.getUserId() != null && !order.getUserId().isBlank()) {
-                        String emailQuery = "SELECT email FROM users WHERE user_id = ?";
-                        try (PreparedStatement emailStmt = conn.prepareStatement(emailQuery)) {
-                            emailStmt.setString(1, order.getUserId());
-                            try (ResultSet emailRs = emailStmt.executeQuery()) {
-                                if (emailRs.next()) {
-                                    customerEmail = emailRs.getString("email");
-                                }
-                            }
+                        User user = new UserDAO(context).getUserById(order.getUserId(), conn);
+                        if (user != null) {
+                            customerEmail = user.getEmail();
                         }
                     }
                     if ((customerEmail == null || customerEmail.isBlank()) && order.getCustomerEmail() != null) {
@@ -317,7 +467,6 @@ public class OrderDAO {
 
                     // Only send email if we have a valid email address
                     if (customerEmail != null && !customerEmail.isBlank()) {
-                        EmailService emailService = new EmailService();
                         String customerName = order.getCustomerName() != null ? order.getCustomerName() : "Valued Customer";
                         String emailBody;
 
@@ -343,7 +492,7 @@ public class OrderDAO {
                                     "30 minutes");
                         }
 
-                        emailService.sendEmailAsync(
+                        emailOutboxDAO.enqueue(conn,
                                 customerEmail,
                                 "Order Confirmation - " + orderId,
                                 emailBody);
@@ -351,7 +500,7 @@ public class OrderDAO {
                         System.out.println("No email address available for order " + orderId + ", skipping email notification");
                     }
                 } catch (Exception e) {
-                    System.err.println("Failed to send order confirmation email: " + e.getMessage());
+                    System.err.println("Failed to queue order confirmation email: " + e.getMessage());
                     // Don't fail the order if email fails
                 }
 
@@ -367,51 +516,80 @@ public class OrderDAO {
                 "delivery_address2 = ?, delivery_city = ?, delivery_state = ?, delivery_postal_code = ?, " +
                 "delivery_instructions = ? WHERE order_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, order.getUserId());
-            pstmt.setString(2, order.getCartToken());
-            pstmt.setString(3, order.getSource());
-            pstmt.setString(4, order.getStatus());
-            pstmt.setString(5, order.getFulfillmentType());
-            pstmt.setDouble(6, order.getSubtotal() != null ? order.getSubtotal() : 0.0);
-            pstmt.setDouble(7, order.getTax() != null ? order.getTax() : 0.0);
-            pstmt.setDouble(8, order.getTotal() != null ? order.getTotal() : 0.0);
-
-            pstmt.setString(9, order.getCustomerName());
-            pstmt.setString(10, order.getCustomerPhone());
-            pstmt.setString(11, order.getCustomerEmail());
-            pstmt.setString(12, order.getDeliveryAddress());
-            pstmt.setString(13, order.getDeliveryAddress2());
-            pstmt.setString(14, order.getDeliveryCity());
-            pstmt.setString(15, order.getDeliveryState());
-            pstmt.setString(16, order.getDeliveryPostalCode());
-            pstmt.setString(17, order.getDeliveryInstructions());
+        return DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, order.getUserId());
+                pstmt.setString(2, order.getCartToken());
+                pstmt.setString(3, order.getSource());
+                pstmt.setString(4, order.getStatus());
+                pstmt.setString(5, order.getFulfillmentType());
+                pstmt.setDouble(6, order.getSubtotal() != null ? order.getSubtotal() : 0.0);
+                pstmt.setDouble(7, order.getTax() != null ? order.getTax() : 0.0);
+                pstmt.setDouble(8, order.getTotal() != null ? order.getTotal() : 0.0);
+
+                pstmt.setString(9, order.getCustomerName());
+                pstmt.setString(10, order.getCustomerPhone());
+                pstmt.setString(11, order.getCustomerEmail());
+                pstmt.setString(12, order.getDeliveryAddress());
+                pstmt.setString(13, order.getDeliveryAddress2());
+                pstmt.setString(14, order.getDeliveryCity());
+                pstmt.setString(15, order.getDeliveryState());
+                pstmt.setString(16, order.getDeliveryPostalCode());
+                pstmt.setString(17, order.getDeliveryInstructions());
+
+                pstmt.setString(18, order.getOrderId());
 
-            pstmt.setString(18, order.getOrderId());
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+    }
 
-            return pstmt.executeUpdate() > 0;
+    public boolean updateOrderStatus(String orderId, String status) throws SQLException {
+        boolean updated = DatabaseConnection.write(context, conn -> updateOrderStatus(orderId, status, conn));
+        if (updated) {
+            EmailDispatcher.signal();
         }
+        return updated;
     }
 
-    public boolean updateOrderStatus(String orderId, String status) throws SQLException {
+    // Updates the status and queues the customer's status email on the caller's connection
+    public boolean updateOrderStatus(String orderId, String status, Connection conn) throws SQLException {
         String sql = "UPDATE orders SET status = ? WHERE order_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, status);
             pstmt.setString(2, orderId);
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
 
-            return pstmt.executeUpdate() > 0;
+        String userSql = "SELECT u.email, u.full_name FROM orders o JOIN users u ON o.user_id = u.user_id " +
+                "WHERE o.order_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(userSql)) {
+            pstmt.setString(1, orderId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next() && rs.getString("email") != null) {
+                    String updateMessage = "Your order status has been updated to: " + status;
+                    if ("ready".equals(status)) {
+                        updateMessage = "Your order is ready!";
+                    } else if ("cancelled".equals(status)) {
+                        updateMessage = "Your order has been cancelled. Please contact us if this is an error.";
+                    }
+
+                    emailOutboxDAO.enqueue(conn,
+                            rs.getString("email"),
+                            "Order Status Update - Restaurant GEM",
+                            EmailTemplates.getOrderStatusUpdateTemplate(
+                                    rs.getString("full_name"), orderId, status, updateMessage));
+                }
+            }
         }
+        return true;
     }
 
     public boolean updateOrderTotals(String orderId, double subtotal, double tax, double total) throws SQLException {
-        try (Connection conn = DatabaseConnection.getConnection(context)) {
-            return updateOrderTotals(orderId, subtotal, tax, total, conn);
-        }
+        return DatabaseConnection.write(context, conn -> updateOrderTotals(orderId, subtotal, tax, total, conn));
     }
 
     public boolean updateOrderTotals(String orderId, double subtotal, double tax, double total, Connection conn)
@@ -527,14 +705,7 @@ public class OrderDAO {
     }
 
     public boolean deleteOrder(String orderId) throws SQLException {
-        String sql = "DELETE FROM orders WHERE order_id = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, orderId);
-            return pstmt.executeUpdate() > 0;
-        }
+        return DatabaseConnection.write(context, conn -> deleteOrder(orderId, conn));
     }
 
     public void recalculateOrderTotals(String orderId) throws SQLException {
@@ -544,16 +715,16 @@ public class OrderDAO {
                 "total = (SELECT COALESCE(SUM(line_total), 0) * 1.08 FROM order_items WHERE order_id = ?) " +
                 "WHERE order_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, orderId);
+                pstmt.setString(2, orderId);
+                pstmt.setString(3, orderId);
+                pstmt.setString(4, orderId);
 
-            pstmt.setString(1, orderId);
-            pstmt.setString(2, orderId);
-            pstmt.setString(3, orderId);
-            pstmt.setString(4, orderId);
-
-            pstmt.executeUpdate();
-        }
+                return pstmt.executeUpdate();
+            }
+        });
     }
 
     private Order mapOrder(ResultSet rs) throws SQLException {
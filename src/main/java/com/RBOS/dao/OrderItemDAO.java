@@ -3,12 +3,21 @@ package com.RBOS.dao;
 import com.RBOS.models.MenuItem;
 import com.RBOS.models.OrderItem;
 import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.IdGenerator;
 import jakarta.servlet.ServletContext;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 public class OrderItemDAO {
+    // Stay well under SQLite's default host parameter limit (999 on older builds)
+    static final int IN_CLAUSE_CHUNK_SIZE = 500;
+
     private ServletContext context;
     
     public OrderItemDAO(ServletContext context) {
@@ -30,102 +39,164 @@ public class OrderItemDAO {
             ResultSet rs = pstmt.executeQuery();
             
             while (rs.next()) {
-                OrderItem orderItem = new OrderItem(
-                    rs.getString("order_item_id"),
-                    rs.getString("order_id"),
-                    rs.getString("item_id"),
-                    rs.getInt("qty"),
-                    rs.getDouble("unit_price"),
-                    rs.getDouble("line_total"),
-                    rs.getString("notes")
-                );
-                MenuItem menuItem = new MenuItem();
-                menuItem.setItemId(orderItem.getItemId());
-                menuItem.setName(rs.getString("item_name"));
-                menuItem.setPrice(rs.getDouble("item_price"));
-                orderItem.setMenuItem(menuItem);
-                orderItems.add(orderItem);
+                orderItems.add(mapOrderItem(rs));
             }
         }
         return orderItems;
     }
     
+    public Map<String, List<OrderItem>> getOrderItemsByOrderIds(Collection<String> orderIds) throws SQLException {
+        if (orderIds == null || orderIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        try (Connection conn = DatabaseConnection.getReadConnection(context)) {
+            return getOrderItemsByOrderIds(orderIds, conn);
+        }
+    }
+
+    /**
+     * Load the items for many orders with one IN query per chunk of ids instead of one
+     * query per order. Orders without items are simply absent from the returned map.
+     */
+    public Map<String, List<OrderItem>> getOrderItemsByOrderIds(Collection<String> orderIds, Connection conn)
+            throws SQLException {
+        Map<String, List<OrderItem>> itemsByOrder = new HashMap<>();
+        if (orderIds == null || orderIds.isEmpty()) {
+            return itemsByOrder;
+        }
+
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(orderIds));
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            String sql = "SELECT oi.*, mi.name as item_name, mi.price as item_price " +
+                        "FROM order_items oi " +
+                        "JOIN menu_items mi ON oi.item_id = mi.item_id " +
+                        "WHERE oi.order_id IN (" + placeholders + ") " +
+                        "ORDER BY oi.order_id, oi.order_item_id";
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setString(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        OrderItem orderItem = mapOrderItem(rs);
+                        itemsByOrder.computeIfAbsent(orderItem.getOrderId(), k -> new ArrayList<>()).add(orderItem);
+                    }
+                }
+            }
+        }
+        return itemsByOrder;
+    }
+
+    private OrderItem mapOrderItem(ResultSet rs) throws SQLException {
+        OrderItem orderItem = new OrderItem(
+            rs.getString("order_item_id"),
+            rs.getString("order_id"),
+            rs.getString("item_id"),
+            rs.getInt("qty"),
+            rs.getDouble("unit_price"),
+            rs.getDouble("line_total"),
+            rs.getString("notes")
+        );
+        MenuItem menuItem = new MenuItem();
+        menuItem.setItemId(orderItem.getItemId());
+        menuItem.setName(rs.getString("item_name"));
+        menuItem.setPrice(rs.getDouble("item_price"));
+        orderItem.setMenuItem(menuItem);
+        return orderItem;
+    }
+    
     public String createOrderItem(OrderItem orderItem) throws SQLException {
-        return createOrderItem(orderItem, null);
+        return DatabaseConnection.write(context, conn -> createOrderItem(orderItem, conn));
     }
     
     // Overloaded method to accept connection for transaction handling
     public String createOrderItem(OrderItem orderItem, Connection existingConn) throws SQLException {
-        String sql = "INSERT INTO order_items (order_id, item_id, qty, unit_price, line_total, notes) VALUES (?, ?, ?, ?, ?, ?)";
-        
-        boolean shouldClose = false;
-        Connection conn = existingConn;
+        String sql = "INSERT INTO order_items (order_item_id, order_id, item_id, qty, unit_price, line_total, notes) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String orderItemId = orderItem.getOrderItemId() != null && !orderItem.getOrderItemId().isBlank()
+                ? orderItem.getOrderItemId()
+                : IdGenerator.newId();
         
-        try {
-            if (conn == null) {
-                conn = DatabaseConnection.getConnection(context);
-                shouldClose = true;
-            }
+        try (PreparedStatement pstmt = existingConn.prepareStatement(sql)) {
             
-            try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                
-                pstmt.setString(1, orderItem.getOrderId());
-                pstmt.setString(2, orderItem.getItemId());
-                pstmt.setInt(3, orderItem.getQty());
-                pstmt.setDouble(4, orderItem.getUnitPrice());
-                pstmt.setDouble(5, orderItem.getLineTotal());
-                pstmt.setString(6, orderItem.getNotes());
-                
-                int affectedRows = pstmt.executeUpdate();
-                
-                if (affectedRows > 0) {
-                    try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
-                        if (generatedKeys.next()) {
-                            return generatedKeys.getString(1);
-                        }
-                    }
-                }
-            }
-        } finally {
-            if (shouldClose && conn != null) {
-                conn.close();
+            pstmt.setString(1, orderItemId);
+            pstmt.setString(2, orderItem.getOrderId());
+            pstmt.setString(3, orderItem.getItemId());
+            pstmt.setInt(4, orderItem.getQty());
+            pstmt.setDouble(5, orderItem.getUnitPrice());
+            pstmt.setDouble(6, orderItem.getLineTotal());
+            pstmt.setString(7, orderItem.getNotes());
+            
+            int affectedRows = pstmt.executeUpdate();
+            
+            if (affectedRows > 0) {
+                orderItem.setOrderItemId(orderItemId);
+                return orderItemId;
             }
         }
         return null;
     }
     
+    /**
+     * Insert every line of an order with one batched statement on the caller's connection.
+     * Lines without an id are given one.
+     */
+    public void createOrderItems(List<OrderItem> orderItems, Connection conn) throws SQLException {
+        if (orderItems == null || orderItems.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO order_items (order_item_id, order_id, item_id, qty, unit_price, line_total, notes) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (OrderItem orderItem : orderItems) {
+                if (orderItem.getOrderItemId() == null || orderItem.getOrderItemId().isBlank()) {
+                    orderItem.setOrderItemId(IdGenerator.newId());
+                }
+                pstmt.setString(1, orderItem.getOrderItemId());
+                pstmt.setString(2, orderItem.getOrderId());
+                pstmt.setString(3, orderItem.getItemId());
+                pstmt.setInt(4, orderItem.getQty());
+                pstmt.setDouble(5, orderItem.getUnitPrice());
+                pstmt.setDouble(6, orderItem.getLineTotal());
+                pstmt.setString(7, orderItem.getNotes());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
     public boolean updateOrderItem(OrderItem orderItem) throws SQLException {
         String sql = "UPDATE order_items SET item_id = ?, qty = ?, unit_price = ?, line_total = ?, notes = ? WHERE order_item_id = ?";
         
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, orderItem.getItemId());
-            pstmt.setInt(2, orderItem.getQty());
-            pstmt.setDouble(3, orderItem.getUnitPrice());
-            pstmt.setDouble(4, orderItem.getLineTotal());
-            pstmt.setString(5, orderItem.getNotes());
-            pstmt.setString(6, orderItem.getOrderItemId());
-            
-            return pstmt.executeUpdate() > 0;
-        }
+        return DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, orderItem.getItemId());
+                pstmt.setInt(2, orderItem.getQty());
+                pstmt.setDouble(3, orderItem.getUnitPrice());
+                pstmt.setDouble(4, orderItem.getLineTotal());
+                pstmt.setString(5, orderItem.getNotes());
+                pstmt.setString(6, orderItem.getOrderItemId());
+
+                return pstmt.executeUpdate() > 0;
+            }
+        });
     }
     
     public boolean deleteOrderItem(String orderItemId) throws SQLException {
         String sql = "DELETE FROM order_items WHERE order_item_id = ?";
         
-        try (Connection conn = DatabaseConnection.getConnection(context);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, orderItemId);
-            return pstmt.executeUpdate() > 0;
-        }
+        return DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, orderItemId);
+                return pstmt.executeUpdate() > 0;
+            }
+        });
     }
     
     public boolean deleteOrderItemsByOrderId(String orderId) throws SQLException {
-        try (Connection conn = DatabaseConnection.getConnection(context)) {
-            return deleteOrderItemsByOrderId(orderId, conn);
-        }
+        return DatabaseConnection.write(context, conn -> deleteOrderItemsByOrderId(orderId, conn));
     }
 
     public boolean deleteOrderItemsByOrderId(String orderId, Connection conn) throws SQLException {
@@ -0,0 +1,189 @@
+package com.RBOS.dao;
+
+import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.RollupSchema;
+import jakarta.servlet.ServletContext;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read access to the daily report aggregates maintained by {@link RollupSchema}.
+ * Days are "yyyy-MM-dd" strings; a null bound means unbounded.
+ */
+public class ReportRollupDAO {
+    private ServletContext context;
+
+    public ReportRollupDAO(ServletContext context) {
+        this.context = context;
+    }
+
+    public Map<String, Object> getOrderTotals(String fromDay, String toDay, String status) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT COALESCE(SUM(order_count), 0) AS order_count, COALESCE(SUM(revenue), 0) AS revenue " +
+                "FROM rollup_orders_daily" + where(fromDay, toDay, status, params);
+
+        Map<String, Object> totals = new HashMap<>();
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
+                PreparedStatement pstmt = prepare(conn, sql, params);
+                ResultSet rs = pstmt.executeQuery()) {
+            if (rs.next()) {
+                totals.put("orderCount", rs.getLong("order_count"));
+                totals.put("revenue", round(rs.getDouble("revenue")));
+            }
+        }
+        return totals;
+    }
+
+    // One entry per day with orders: date, count, revenue
+    public List<Map<String, Object>> getDailyOrderTotals(String fromDay, String status) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT day, SUM(order_count) AS order_count, SUM(revenue) AS revenue " +
+                "FROM rollup_orders_daily" + where(fromDay, null, status, params) +
+                " GROUP BY day HAVING SUM(order_count) > 0 ORDER BY day";
+
+        List<Map<String, Object>> days = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
+                PreparedStatement pstmt = prepare(conn, sql, params);
+                ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                Map<String, Object> day = new LinkedHashMap<>();
+                day.put("date", rs.getString("day"));
+                day.put("count", rs.getLong("order_count"));
+                day.put("revenue", round(rs.getDouble("revenue")));
+                days.add(day);
+            }
+        }
+        return days;
+    }
+
+    public Map<String, Long> getOrderCountsBySource() throws SQLException {
+        return countsBy("SELECT source, SUM(order_count) FROM rollup_orders_daily " +
+                "GROUP BY source HAVING SUM(order_count) > 0 ORDER BY source");
+    }
+
+    public Map<String, Object> getReservationTotals(String fromDay, String toDay, String status) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT COALESCE(SUM(reservation_count), 0) AS reservation_count, " +
+                "COALESCE(SUM(reservation_count * party_size), 0) AS guest_count " +
+                "FROM rollup_reservations_daily" + where(fromDay, toDay, status, params);
+
+        Map<String, Object> totals = new HashMap<>();
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
+                PreparedStatement pstmt = prepare(conn, sql, params);
+                ResultSet rs = pstmt.executeQuery()) {
+            if (rs.next()) {
+                totals.put("reservationCount", rs.getLong("reservation_count"));
+                totals.put("guestCount", rs.getLong("guest_count"));
+            }
+        }
+        return totals;
+    }
+
+    public Map<String, Long> getDailyReservationCounts(String fromDay) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        return countsBy("SELECT day, SUM(reservation_count) FROM rollup_reservations_daily" +
+                where(fromDay, null, null, params) +
+                " GROUP BY day HAVING SUM(reservation_count) > 0 ORDER BY day", params);
+    }
+
+    public Map<String, Long> getReservationCountsByStatus() throws SQLException {
+        return countsBy("SELECT status, SUM(reservation_count) FROM rollup_reservations_daily " +
+                "GROUP BY status HAVING SUM(reservation_count) > 0 ORDER BY status");
+    }
+
+    public Map<Integer, Long> getReservationCountsByPartySize() throws SQLException {
+        String sql = "SELECT party_size, SUM(reservation_count) FROM rollup_reservations_daily " +
+                "GROUP BY party_size HAVING SUM(reservation_count) > 0 ORDER BY party_size";
+
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
+                PreparedStatement pstmt = conn.prepareStatement(sql);
+                ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                counts.put(rs.getInt(1), rs.getLong(2));
+            }
+        }
+        return counts;
+    }
+
+    // Lifetime quantity and revenue per menu item, highest revenue first
+    public List<Map<String, Object>> getItemTotals() throws SQLException {
+        String sql = "SELECT item_id, SUM(quantity) AS quantity, SUM(revenue) AS revenue " +
+                "FROM rollup_order_items_daily GROUP BY item_id HAVING SUM(quantity) > 0 " +
+                "ORDER BY revenue DESC";
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
+                PreparedStatement pstmt = conn.prepareStatement(sql);
+                ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("itemId", rs.getString("item_id"));
+                item.put("quantity", rs.getLong("quantity"));
+                item.put("revenue", round(rs.getDouble("revenue")));
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Discard the aggregates and recompute them from orders, order items and reservations.
+     */
+    public void rebuild() throws SQLException {
+        DatabaseConnection.write(context, conn -> {
+            RollupSchema.rebuildTables(conn);
+            return null;
+        });
+    }
+
+    private Map<String, Long> countsBy(String sql) throws SQLException {
+        return countsBy(sql, new ArrayList<>());
+    }
+
+    private Map<String, Long> countsBy(String sql, List<Object> params) throws SQLException {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
+                PreparedStatement pstmt = prepare(conn, sql, params);
+                ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                counts.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return counts;
+    }
+
+    private static String where(String fromDay, String toDay, String status, List<Object> params) {
+        StringBuilder where = new StringBuilder(" WHERE 1=1");
+        if (fromDay != null) {
+            where.append(" AND day >= ?");
+            params.add(fromDay);
+        }
+        if (toDay != null) {
+            where.append(" AND day <= ?");
+            params.add(toDay);
+        }
+        if (status != null) {
+            where.append(" AND status = ?");
+            params.add(status);
+        }
+        return where.toString();
+    }
+
+    private static PreparedStatement prepare(Connection conn, String sql, List<Object> params) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        for (int i = 0; i < params.size(); i++) {
+            pstmt.setObject(i + 1, params.get(i));
+        }
+        return pstmt;
+    }
+
+    // Deltas are applied by repeated addition/subtraction; keep the output at cents
+    private static double round(double amount) {
+        return Math.round(amount * 100.0) / 100.0;
+    }
+}
@@ -1,11 +1,16 @@
 package com.RBOS.dao;
 
-import com.RBOS.services.EmailService;
+import com.RBOS.services.EmailDispatcher;
 import com.RBOS.services.EmailTemplates;
+import com.RBOS.services.TableAvailabilityIndex;
 import com.RBOS.models.Reservation;
 import com.RBOS.models.PagedResult;
+import com.RBOS.models.User;
 import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.HistoryCursor;
+import com.RBOS.utils.IdGenerator;
 import jakarta.servlet.ServletContext;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -16,45 +21,77 @@ import java.time.format.DateTimeFormatter;
 
 public class ReservationDAO {
     private ServletContext context;
+    private EmailOutboxDAO emailOutboxDAO;
 
     public ReservationDAO(ServletContext context) {
         this.context = context;
+        this.emailOutboxDAO = new EmailOutboxDAO(context);
     }
 
+    private static final String ALL_RESERVATIONS_SQL =
+            "SELECT r.*, u.full_name AS user_full_name, u.email, u.phone, dt.name as table_name " +
+            "FROM reservations r " +
+            "LEFT JOIN users u ON r.user_id = u.user_id " +
+            "JOIN dining_tables dt ON r.table_id = dt.table_id " +
+            "ORDER BY r.start_utc DESC";
+
     public List<Reservation> getAllReservations() throws SQLException {
         List<Reservation> reservations = new ArrayList<>();
-        String sql = "SELECT r.*, u.full_name AS user_full_name, u.email, u.phone, dt.name as table_name " +
-                "FROM reservations r " +
-                "LEFT JOIN users u ON r.user_id = u.user_id " +
-                "JOIN dining_tables dt ON r.table_id = dt.table_id " +
-                "ORDER BY r.start_utc DESC";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
+                PreparedStatement pstmt = conn.prepareStatement(ALL_RESERVATIONS_SQL);
                 ResultSet rs = pstmt.executeQuery()) {
 
             while (rs.next()) {
-                Reservation reservation = new Reservation(
-                        rs.getString("reservation_id"),
-                        rs.getString("user_id"),
-                        rs.getString("table_id"),
-                        rs.getString("start_utc"),
-                        rs.getString("end_utc"),
-                        rs.getInt("party_size"),
-                        rs.getString("status"),
-                        rs.getString("notes"),
-                        rs.getString("created_utc"));
-                reservation.setGuestName(rs.getString("guest_name") != null ? rs.getString("guest_name")
-                        : rs.getString("user_full_name"));
-
-                // You could create User and DiningTable objects here if needed
-                reservations.add(reservation);
+                reservations.add(mapListRow(rs));
             }
         }
         return reservations;
     }
 
+    /**
+     * Stream every reservation as {@link #getAllReservations} lists them, one row at a time.
+     * Returns the number of rows.
+     */
+    public int streamAllReservations(RowHandler<? super Reservation> handler) throws SQLException, IOException {
+        int rows = 0;
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
+                PreparedStatement pstmt = conn.prepareStatement(ALL_RESERVATIONS_SQL);
+                ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                handler.accept(mapListRow(rs));
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private Reservation mapListRow(ResultSet rs) throws SQLException {
+        Reservation reservation = new Reservation(
+                rs.getString("reservation_id"),
+                rs.getString("user_id"),
+                rs.getString("table_id"),
+                rs.getString("start_utc"),
+                rs.getString("end_utc"),
+                rs.getInt("party_size"),
+                rs.getString("status"),
+                rs.getString("notes"),
+                rs.getString("created_utc"));
+        reservation.setGuestName(rs.getString("guest_name") != null ? rs.getString("guest_name")
+                : rs.getString("user_full_name"));
+
+        // You could create User and DiningTable objects here if needed
+        return reservation;
+    }
+
     public Reservation getReservationById(String reservationId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection(context)) {
+            return getReservationById(reservationId, conn);
+        }
+    }
+
+    // Overloaded method to accept connection
+    public Reservation getReservationById(String reservationId, Connection conn) throws SQLException {
         String sql = "SELECT r.*, u.full_name AS user_full_name, u.email, u.phone, dt.name as table_name, dt.capacity "
                 +
                 "FROM reservations r " +
@@ -62,8 +99,7 @@ public class ReservationDAO {
                 "JOIN dining_tables dt ON r.table_id = dt.table_id " +
                 "WHERE r.reservation_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, reservationId);
             ResultSet rs = pstmt.executeQuery();
@@ -96,7 +132,7 @@ public class ReservationDAO {
                 "WHERE r.user_id = ? " +
                 "ORDER BY r.start_utc DESC";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, userId);
@@ -127,23 +163,7 @@ public class ReservationDAO {
         List<String> params = new ArrayList<>();
         int total = 0;
 
-        StringBuilder where = new StringBuilder(" WHERE 1=1");
-        if (status != null && !status.isEmpty() && !"all".equalsIgnoreCase(status)) {
-            where.append(" AND r.status = ?");
-            params.add(status);
-        }
-        if (startUtc != null && !startUtc.isEmpty()) {
-            where.append(" AND r.start_utc >= ?");
-            params.add(startUtc);
-        }
-        if (endUtc != null && !endUtc.isEmpty()) {
-            where.append(" AND r.start_utc <= ?");
-            params.add(endUtc);
-        }
-        if (userId != null && !userId.isEmpty()) {
-            where.append(" AND r.user_id = ?");
-            params.add(userId);
-        }
+        StringBuilder where = historyWhere(status, startUtc, endUtc, userId, params);
 
         String countSql = "SELECT COUNT(*) FROM reservations r" + where;
         String dataSql = "SELECT r.*, dt.name as table_name, u.full_name AS user_full_name " +
@@ -153,7 +173,7 @@ public class ReservationDAO {
                 where +
                 " ORDER BY r.start_utc DESC LIMIT ? OFFSET ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context)) {
+        try (Connection conn = DatabaseConnection.getReadConnection(context)) {
             try (PreparedStatement countStmt = conn.prepareStatement(countSql)) {
                 for (int i = 0; i < params.size(); i++) {
                     countStmt.setString(i + 1, params.get(i));
@@ -173,19 +193,7 @@ public class ReservationDAO {
 
                 try (ResultSet dataRs = dataStmt.executeQuery()) {
                     while (dataRs.next()) {
-                        Reservation r = new Reservation(
-                                dataRs.getString("reservation_id"),
-                                dataRs.getString("user_id"),
-                                dataRs.getString("table_id"),
-                                dataRs.getString("start_utc"),
-                                dataRs.getString("end_utc"),
-                                dataRs.getInt("party_size"),
-                                dataRs.getString("status"),
-                                dataRs.getString("notes"),
-                                dataRs.getString("created_utc"));
-                        r.setGuestName(dataRs.getString("guest_name") != null ? dataRs.getString("guest_name")
-                                : dataRs.getString("user_full_name"));
-                        reservations.add(r);
+                        reservations.add(mapHistoryRow(dataRs));
                     }
                 }
             }
@@ -193,12 +201,110 @@ public class ReservationDAO {
         return new PagedResult<>(reservations, total);
     }
 
-    private String generateNumericId() {
-        long n = java.util.concurrent.ThreadLocalRandom.current().nextLong(1_000_000_000L, 10_000_000_000L);
-        return Long.toString(n);
+    /**
+     * Keyset variant of {@link #getReservationsWithFilters} on (start_utc, reservation_id);
+     * only the first page runs the COUNT, later pages report the total carried in the cursor.
+     */
+    public PagedResult<Reservation> getReservationsPage(String status, String startUtc, String endUtc,
+            String userId, HistoryCursor cursor, int pageSize) throws SQLException {
+        List<Reservation> reservations = new ArrayList<>();
+        List<String> params = new ArrayList<>();
+
+        StringBuilder where = historyWhere(status, startUtc, endUtc, userId, params);
+        String countSql = "SELECT COUNT(*) FROM reservations r" + where;
+        List<String> countParams = new ArrayList<>(params);
+        if (cursor != null) {
+            where.append(cursor.keysetClause("r.start_utc", "r.reservation_id"));
+            cursor.bindParams(params);
+        }
+        String dataSql = "SELECT r.*, dt.name as table_name, u.full_name AS user_full_name " +
+                "FROM reservations r " +
+                "JOIN dining_tables dt ON r.table_id = dt.table_id " +
+                "LEFT JOIN users u ON r.user_id = u.user_id " +
+                where +
+                HistoryCursor.orderBy(cursor, "r.start_utc", "r.reservation_id") + " LIMIT ?";
+
+        int total = 0;
+        try (Connection conn = DatabaseConnection.getReadConnection(context)) {
+            if (cursor != null) {
+                total = cursor.getTotal();
+            } else {
+                try (PreparedStatement countStmt = conn.prepareStatement(countSql)) {
+                    for (int i = 0; i < countParams.size(); i++) {
+                        countStmt.setString(i + 1, countParams.get(i));
+                    }
+                    try (ResultSet rs = countStmt.executeQuery()) {
+                        if (rs.next()) {
+                            total = rs.getInt(1);
+                        }
+                    }
+                }
+            }
+            try (PreparedStatement dataStmt = conn.prepareStatement(dataSql)) {
+                for (int i = 0; i < params.size(); i++) {
+                    dataStmt.setString(i + 1, params.get(i));
+                }
+                dataStmt.setInt(params.size() + 1, pageSize + 1);
+
+                try (ResultSet dataRs = dataStmt.executeQuery()) {
+                    while (dataRs.next()) {
+                        reservations.add(mapHistoryRow(dataRs));
+                    }
+                }
+            }
+        }
+        return HistoryCursor.toPage(reservations, cursor, pageSize, total,
+                Reservation::getStartUtc, Reservation::getReservationId);
+    }
+
+    private StringBuilder historyWhere(String status, String startUtc, String endUtc, String userId,
+            List<String> params) {
+        StringBuilder where = new StringBuilder(" WHERE 1=1");
+        if (status != null && !status.isEmpty() && !"all".equalsIgnoreCase(status)) {
+            where.append(" AND r.status = ?");
+            params.add(status);
+        }
+        if (startUtc != null && !startUtc.isEmpty()) {
+            where.append(" AND r.start_utc >= ?");
+            params.add(startUtc);
+        }
+        if (endUtc != null && !endUtc.isEmpty()) {
+            where.append(" AND r.start_utc <= ?");
+            params.add(endUtc);
+        }
+        if (userId != null && !userId.isEmpty()) {
+            where.append(" AND r.user_id = ?");
+            params.add(userId);
+        }
+        return where;
+    }
+
+    private Reservation mapHistoryRow(ResultSet rs) throws SQLException {
+        Reservation r = new Reservation(
+                rs.getString("reservation_id"),
+                rs.getString("user_id"),
+                rs.getString("table_id"),
+                rs.getString("start_utc"),
+                rs.getString("end_utc"),
+                rs.getInt("party_size"),
+                rs.getString("status"),
+                rs.getString("notes"),
+                rs.getString("created_utc"));
+        r.setGuestName(rs.getString("guest_name") != null ? rs.getString("guest_name")
+                : rs.getString("user_full_name"));
+        return r;
     }
 
     public boolean isTableAvailable(String tableId, String startUtc, String endUtc, String excludeReservationId) throws SQLException {
+        if (tableId != null && isIndexable(startUtc, endUtc)) {
+            return TableAvailabilityIndex.forContext(context).isAvailable(tableId, startUtc, endUtc, excludeReservationId);
+        }
+        return isTableAvailableInDatabase(tableId, startUtc, endUtc, excludeReservationId);
+    }
+
+    // Fallback for times the index cannot parse; compares the stored strings directly
+    private boolean isTableAvailableInDatabase(String tableId, String startUtc, String endUtc, String excludeReservationId)
+            throws SQLException {
         String sql = "SELECT COUNT(*) FROM reservations " +
                 "WHERE table_id = ? " +
                 "AND status IN ('pending','confirmed') " +
@@ -208,7 +314,7 @@ public class ReservationDAO {
             sql += " AND reservation_id <> ?";
         }
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, tableId);
             pstmt.setString(2, startUtc);
@@ -229,162 +335,218 @@ public class ReservationDAO {
     public String createReservation(Reservation reservation) throws SQLException {
         String reservationId = reservation.getReservationId() != null
                 ? reservation.getReservationId()
-                : generateNumericId();
+                : IdGenerator.newId();
+        String status = reservation.getStatus() != null ? reservation.getStatus() : "pending";
+
+        // The slot check and the insert run under the table's lock, so a concurrent booking cannot slip in between
+        if (reservation.getTableId() != null && isIndexable(reservation.getStartUtc(), reservation.getEndUtc())) {
+            boolean booked = TableAvailabilityIndex.forContext(context).reserve(reservationId,
+                    reservation.getTableId(), reservation.getStartUtc(), reservation.getEndUtc(), isActiveStatus(status),
+                    () -> insertReservation(reservation, reservationId, status));
+            return booked ? reservationId : null;
+        }
+
+        if (!isTableAvailableInDatabase(reservation.getTableId(), reservation.getStartUtc(), reservation.getEndUtc(), null)) {
+            return null;
+        }
+        return insertReservation(reservation, reservationId, status) ? reservationId : null;
+    }
+
+    private boolean insertReservation(Reservation reservation, String reservationId, String status) throws SQLException {
         String sql = "INSERT INTO reservations (reservation_id, user_id, guest_name, contact_email, contact_phone, table_id, start_utc, end_utc, party_size, status, notes) "
                 +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-        if (!isTableAvailable(reservation.getTableId(), reservation.getStartUtc(), reservation.getEndUtc(), null)) {
-            return null;
-        }
+        boolean inserted = DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, reservationId);
+                pstmt.setString(2, reservation.getUserId());
+                pstmt.setString(3, reservation.getGuestName());
+                pstmt.setString(4, reservation.getContactEmail());
+                pstmt.setString(5, reservation.getContactPhone());
+                pstmt.setString(6, reservation.getTableId());
+                pstmt.setString(7, reservation.getStartUtc());
+                pstmt.setString(8, reservation.getEndUtc());
+                pstmt.setInt(9, reservation.getPartySize());
+                pstmt.setString(10, status);
+                pstmt.setString(11, reservation.getNotes());
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                if (pstmt.executeUpdate() == 0) {
+                    return false;
+                }
 
-            pstmt.setString(1, reservationId);
-            pstmt.setString(2, reservation.getUserId());
-            pstmt.setString(3, reservation.getGuestName());
-            pstmt.setString(4, reservation.getContactEmail());
-            pstmt.setString(5, reservation.getContactPhone());
-            pstmt.setString(6, reservation.getTableId());
-            pstmt.setString(7, reservation.getStartUtc());
-            pstmt.setString(8, reservation.getEndUtc());
-            pstmt.setInt(9, reservation.getPartySize());
-            pstmt.setString(10, reservation.getStatus() != null ? reservation.getStatus() : "pending");
-            pstmt.setString(11, reservation.getNotes());
-
-            int affectedRows = pstmt.executeUpdate();
-
-            if (affectedRows > 0) {
-                // send reservation confirmation email asynchronously
+                // queue reservation confirmation email in the same transaction as the reservation
                 try {
-                    Reservation fullReservation = getReservationById(reservationId);
-                    if (fullReservation != null) {
-                        EmailService emailService = new EmailService();
-
-                        // Get email from user (you're logged in)
-                        String userEmail = getUserEmailById(reservation.getUserId());
-                        String targetEmail = (userEmail != null && !userEmail.isEmpty())
-                                ? userEmail
-                                : (reservation.getContactEmail() != null && !reservation.getContactEmail().isBlank()
-                                        ? reservation.getContactEmail()
-                                        : null);
-                        if (targetEmail != null && !targetEmail.isEmpty()) {
-                            String emailBody = EmailTemplates.getReservationConfirmationTemplate(
-                                    reservation.getGuestName() != null ? reservation.getGuestName() : "Valued Guest",
-                                    formatLocalDate(reservation.getStartUtc()),
-                                    formatLocalTime(reservation.getStartUtc()),
-                                    reservation.getPartySize(),
-                                    "Table " + reservation.getTableId(),
-                                    reservationId);
-
-                            emailService.sendEmailAsync(
-                                    targetEmail,
-                                    "Reservation Confirmed - " + reservationId,
-                                    emailBody);
-                        }
+                    // Get email from user (you're logged in)
+                    String userEmail = getUserEmailById(reservation.getUserId(), conn);
+                    String targetEmail = (userEmail != null && !userEmail.isEmpty())
+                            ? userEmail
+                            : (reservation.getContactEmail() != null && !reservation.getContactEmail().isBlank()
+                                    ? reservation.getContactEmail()
+                                    : null);
+                    if (targetEmail != null && !targetEmail.isEmpty()) {
+                        String emailBody = EmailTemplates.getReservationConfirmationTemplate(
+                                reservation.getGuestName() != null ? reservation.getGuestName() : "Valued Guest",
+                                formatLocalDate(reservation.getStartUtc()),
+                                formatLocalTime(reservation.getStartUtc()),
+                                reservation.getPartySize(),
+                                "Table " + reservation.getTableId(),
+                                reservationId);
+
+                        emailOutboxDAO.enqueue(conn,
+                                targetEmail,
+                                "Reservation Confirmed - " + reservationId,
+                                emailBody);
                     }
                 } catch (Exception e) {
-                    System.err.println("Failed to send reservation confirmation email: " + e.getMessage());
+                    System.err.println("Failed to queue reservation confirmation email: " + e.getMessage());
                     // Don't fail the reservation if email fails
                 }
 
-                return reservationId;
+                return true;
             }
+        });
+        if (inserted) {
+            EmailDispatcher.signal();
         }
-        return null;
+        return inserted;
     }
 
     public boolean updateReservation(Reservation reservation) throws SQLException {
         String sql = "UPDATE reservations SET user_id = ?, guest_name = ?, table_id = ?, start_utc = ?, end_utc = ?, " +
                 "party_size = ?, status = ?, notes = ? WHERE reservation_id = ?";
 
-        if (!isTableAvailable(reservation.getTableId(), reservation.getStartUtc(), reservation.getEndUtc(),
+        if (reservation.getTableId() != null && isIndexable(reservation.getStartUtc(), reservation.getEndUtc())) {
+            return TableAvailabilityIndex.forContext(context).reserve(reservation.getReservationId(),
+                    reservation.getTableId(), reservation.getStartUtc(), reservation.getEndUtc(),
+                    isActiveStatus(reservation.getStatus()), () -> writeReservation(sql, reservation));
+        }
+
+        if (!isTableAvailableInDatabase(reservation.getTableId(), reservation.getStartUtc(), reservation.getEndUtc(),
                 reservation.getReservationId())) {
             return false;
         }
+        return writeReservation(sql, reservation);
+    }
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    private boolean writeReservation(String sql, Reservation reservation) throws SQLException {
+        return DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, reservation.getUserId());
+                pstmt.setString(2, reservation.getGuestName());
+                pstmt.setString(3, reservation.getTableId());
+                pstmt.setString(4, reservation.getStartUtc());
+                pstmt.setString(5, reservation.getEndUtc());
+                pstmt.setInt(6, reservation.getPartySize());
+                pstmt.setString(7, reservation.getStatus());
+                pstmt.setString(8, reservation.getNotes());
+                pstmt.setString(9, reservation.getReservationId());
+
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+    }
 
-            pstmt.setString(1, reservation.getUserId());
-            pstmt.setString(2, reservation.getGuestName());
-            pstmt.setString(3, reservation.getTableId());
-            pstmt.setString(4, reservation.getStartUtc());
-            pstmt.setString(5, reservation.getEndUtc());
-            pstmt.setInt(6, reservation.getPartySize());
-            pstmt.setString(7, reservation.getStatus());
-            pstmt.setString(8, reservation.getNotes());
-            pstmt.setString(9, reservation.getReservationId());
-
-            return pstmt.executeUpdate() > 0;
+    public boolean updateReservationStatus(String reservationId, String status) throws SQLException {
+        Reservation current = getReservationById(reservationId);
+        if (current != null && isIndexable(current.getStartUtc(), current.getEndUtc())) {
+            // Reactivating a cancelled booking is checked like a new one
+            return TableAvailabilityIndex.forContext(context).reserve(reservationId, current.getTableId(),
+                    current.getStartUtc(), current.getEndUtc(), isActiveStatus(status),
+                    () -> writeReservationStatus(reservationId, status));
         }
+        return writeReservationStatus(reservationId, status);
     }
 
-    public boolean updateReservationStatus(String reservationId, String status) throws SQLException {
+    private boolean writeReservationStatus(String reservationId, String status) throws SQLException {
         String sql = "UPDATE reservations SET status = ? WHERE reservation_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, status);
-            pstmt.setString(2, reservationId);
-
-            boolean updated = pstmt.executeUpdate() > 0;
-
-            // NEW: send status update email
-            if (updated) {
-                try {
-                    Reservation reservation = getReservationById(reservationId);
-                    if (reservation != null) {
-                        String userEmail = getUserEmailById(reservation.getUserId());
-                        if (userEmail != null && !userEmail.isEmpty()) {
-                            EmailService emailService = new EmailService();
-                            String emailBody = EmailTemplates.getReservationUpdateTemplate(
-                                    reservation.getGuestName(),
-                                    formatLocalDate(reservation.getStartUtc()),
-                                    formatLocalTime(reservation.getStartUtc()),
-                                    status,
-                                    reservationId);
-                            emailService.sendEmailAsync(
-                                    userEmail,
-                                    "Reservation Status Update - " + reservationId,
-                                    emailBody);
+        boolean changed = DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, status);
+                pstmt.setString(2, reservationId);
+
+                boolean updated = pstmt.executeUpdate() > 0;
+
+                // queue status update email with the status change
+                if (updated) {
+                    try {
+                        Reservation reservation = getReservationById(reservationId, conn);
+                        if (reservation != null) {
+                            String userEmail = getUserEmailById(reservation.getUserId(), conn);
+                            if (userEmail != null && !userEmail.isEmpty()) {
+                                String emailBody = EmailTemplates.getReservationUpdateTemplate(
+                                        reservation.getGuestName(),
+                                        formatLocalDate(reservation.getStartUtc()),
+                                        formatLocalTime(reservation.getStartUtc()),
+                                        status,
+                                        reservationId);
+                                emailOutboxDAO.enqueue(conn,
+                                        userEmail,
+                                        "Reservation Status Update - " + reservationId,
+                                        emailBody);
+                            }
                         }
+                    } catch (Exception e) {
+                        System.err.println("Failed to queue status update email: " + e.getMessage());
                     }
-                } catch (Exception e) {
-                    System.err.println("Failed to send status update email: " + e.getMessage());
                 }
-            }
 
-            return updated;
+                return updated;
+            }
+        });
+        if (changed) {
+            EmailDispatcher.signal();
         }
+        return changed;
     }
 
-    private String getUserEmailById(String userId) throws SQLException {
-        String sql = "SELECT email FROM users WHERE user_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, userId);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getString("email");
-                }
-            }
-        }
-        return null;
+    private String getUserEmailById(String userId, Connection conn) throws SQLException {
+        User user = new UserDAO(context).getUserById(userId, conn);
+        return user != null ? user.getEmail() : null;
     }
 
     public boolean deleteReservation(String reservationId) throws SQLException {
         String sql = "DELETE FROM reservations WHERE reservation_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        return TableAvailabilityIndex.forContext(context).remove(reservationId,
+                () -> DatabaseConnection.write(context, conn -> {
+                    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                        pstmt.setString(1, reservationId);
+                        return pstmt.executeUpdate() > 0;
+                    }
+                }));
+    }
 
-            pstmt.setString(1, reservationId);
-            return pstmt.executeUpdate() > 0;
+    // Rows the availability index is built from: every booking that still holds its table
+    public List<Reservation> getActiveReservationWindows() throws SQLException {
+        List<Reservation> reservations = new ArrayList<>();
+        String sql = "SELECT reservation_id, table_id, start_utc, end_utc FROM reservations " +
+                "WHERE status IN ('pending','confirmed')";
+
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
+                PreparedStatement pstmt = conn.prepareStatement(sql);
+                ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                Reservation reservation = new Reservation();
+                reservation.setReservationId(rs.getString("reservation_id"));
+                reservation.setTableId(rs.getString("table_id"));
+                reservation.setStartUtc(rs.getString("start_utc"));
+                reservation.setEndUtc(rs.getString("end_utc"));
+                reservations.add(reservation);
+            }
         }
+        return reservations;
+    }
+
+    private static boolean isIndexable(String startUtc, String endUtc) {
+        return TableAvailabilityIndex.toEpochMillis(startUtc) != null
+                && TableAvailabilityIndex.toEpochMillis(endUtc) != null;
+    }
+
+    // Only pending and confirmed bookings hold a table; a missing status is treated as pending
+    private static boolean isActiveStatus(String status) {
+        return status == null || "pending".equals(status) || "confirmed".equals(status);
     }
 
     private String formatLocalDate(String isoInstant) {
@@ -0,0 +1,17 @@
+package com.RBOS.dao;
+
+import java.io.IOException;
+
+/**
+ * Receives rows one at a time from a DAO stream method, so a caller can write each row out
+ * without the DAO building a list first.
+ *
+ * Order streams hand rows over a batch at a time with no connection held. The other streams
+ * call the handler while their read connection is open, so the connection stays borrowed
+ * for as long as the client takes to read the response. Only use them for small tables:
+ * users, reservations and inventory.
+ */
+@FunctionalInterface
+public interface RowHandler<T> {
+    void accept(T row) throws IOException;
+}
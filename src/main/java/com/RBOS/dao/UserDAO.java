@@ -1,8 +1,11 @@
 package com.RBOS.dao;
 
 import com.RBOS.models.User;
+import com.RBOS.services.UserCache;
 import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.IdGenerator;
 import jakarta.servlet.ServletContext;
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -14,193 +17,210 @@ public class UserDAO {
         this.context = context;
     }
 
+    private static final String ALL_USERS_SQL = "SELECT user_id, role, full_name, email, phone, address, address2, city, state, postal_code, password_hash FROM users ORDER BY user_id";
+
     public List<User> getAllUsers() throws SQLException {
         List<User> users = new ArrayList<>();
-        String sql = "SELECT user_id, role, full_name, email, phone, address, address2, city, state, postal_code, password_hash FROM users ORDER BY user_id";
 
         try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql);
+                PreparedStatement pstmt = conn.prepareStatement(ALL_USERS_SQL);
                 ResultSet rs = pstmt.executeQuery()) {
 
             while (rs.next()) {
-                User u = new User(
-                        rs.getString("user_id"),
-                        rs.getString("role"),
-                        rs.getString("full_name"),
-                        rs.getString("email"),
-                        rs.getString("phone"));
-                u.setAddress(rs.getString("address"));
-                u.setAddress2(rs.getString("address2"));
-                u.setCity(rs.getString("city"));
-                u.setState(rs.getString("state"));
-                u.setPostalCode(rs.getString("postal_code"));
-                u.setPasswordHash(rs.getString("password_hash"));
-                users.add(u);
+                users.add(mapListRow(rs));
             }
         }
         return users;
     }
 
-    public User getUserById(String userId) throws SQLException {
-        String sql = "SELECT user_id, role, full_name, email, phone, address, address2, city, state, postal_code, password_hash FROM users WHERE user_id = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                User u = new User(
-                        rs.getString("user_id"),
-                        rs.getString("role"),
-                        rs.getString("full_name"),
-                        rs.getString("email"),
-                        rs.getString("phone"));
-                u.setAddress(rs.getString("address"));
-                u.setAddress2(rs.getString("address2"));
-                u.setCity(rs.getString("city"));
-                u.setState(rs.getString("state"));
-                u.setPostalCode(rs.getString("postal_code"));
-                u.setPasswordHash(rs.getString("password_hash"));
-                return u;
+    /**
+     * Stream every user as {@link #getAllUsers} lists them, one row at a time. Returns the
+     * number of rows.
+     */
+    public int streamAllUsers(RowHandler<? super User> handler) throws SQLException, IOException {
+        int rows = 0;
+        try (Connection conn = DatabaseConnection.getReadConnection(context);
+                PreparedStatement pstmt = conn.prepareStatement(ALL_USERS_SQL);
+                ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                handler.accept(mapListRow(rs));
+                rows++;
             }
         }
-        return null;
+        return rows;
+    }
+
+    private User mapListRow(ResultSet rs) throws SQLException {
+        User u = new User(
+                rs.getString("user_id"),
+                rs.getString("role"),
+                rs.getString("full_name"),
+                rs.getString("email"),
+                rs.getString("phone"));
+        u.setAddress(rs.getString("address"));
+        u.setAddress2(rs.getString("address2"));
+        u.setCity(rs.getString("city"));
+        u.setState(rs.getString("state"));
+        u.setPostalCode(rs.getString("postal_code"));
+        u.setPasswordHash(rs.getString("password_hash"));
+        return u;
+    }
+
+    public User getUserById(String userId) throws SQLException {
+        return UserCache.forContext(context).getById(userId, () -> {
+            try (Connection conn = DatabaseConnection.getConnection(context)) {
+                return loadUser(conn, "user_id", userId);
+            }
+        });
+    }
+
+    // For callers already inside a transaction; a cache miss reads on their connection
+    public User getUserById(String userId, Connection conn) throws SQLException {
+        return UserCache.forContext(context).getById(userId, () -> loadUser(conn, "user_id", userId));
     }
 
     public User getUserByEmail(String email) throws SQLException {
-        String sql = "SELECT user_id, role, full_name, email, phone, address, address2, city, state, postal_code, password_hash FROM users WHERE email = ?";
+        return UserCache.forContext(context).getByEmail(email, () -> {
+            try (Connection conn = DatabaseConnection.getConnection(context)) {
+                return loadUser(conn, "email", email);
+            }
+        });
+    }
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, email);
-            ResultSet rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                User u = new User(
-                        rs.getString("user_id"),
-                        rs.getString("role"),
-                        rs.getString("full_name"),
-                        rs.getString("email"),
-                        rs.getString("phone"));
-                u.setAddress(rs.getString("address"));
-                u.setAddress2(rs.getString("address2"));
-                u.setCity(rs.getString("city"));
-                u.setState(rs.getString("state"));
-                u.setPostalCode(rs.getString("postal_code"));
-                u.setPasswordHash(rs.getString("password_hash"));
-                return u;
+    private User loadUser(Connection conn, String column, String value) throws SQLException {
+        String sql = "SELECT user_id, role, full_name, email, phone, address, address2, city, state, postal_code, password_hash FROM users WHERE " + column + " = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, value);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    User u = new User(
+                            rs.getString("user_id"),
+                            rs.getString("role"),
+                            rs.getString("full_name"),
+                            rs.getString("email"),
+                            rs.getString("phone"));
+                    u.setAddress(rs.getString("address"));
+                    u.setAddress2(rs.getString("address2"));
+                    u.setCity(rs.getString("city"));
+                    u.setState(rs.getString("state"));
+                    u.setPostalCode(rs.getString("postal_code"));
+                    u.setPasswordHash(rs.getString("password_hash"));
+                    return u;
+                }
             }
         }
         return null;
     }
 
     public String createUser(User user) throws SQLException {
-        String userId = java.util.UUID.randomUUID().toString();
+        String userId = IdGenerator.newId();
         String sql = "INSERT INTO users (user_id, role, full_name, email, phone, address, address2, city, state, postal_code, password_hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-        String hash = user.getPasswordHash();
-        if ((hash == null || hash.isBlank()) && user.getPassword() != null && !user.getPassword().isBlank()) {
-            hash = hashPassword(user.getPassword());
-        }
+        String givenHash = user.getPasswordHash();
+        String hash = (givenHash == null || givenHash.isBlank()) && user.getPassword() != null && !user.getPassword().isBlank()
+                ? hashPassword(user.getPassword())
+                : givenHash;
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, userId);
-            pstmt.setString(2, user.getRole() != null ? user.getRole() : "customer");
-            pstmt.setString(3, user.getFullName());
-            pstmt.setString(4, user.getEmail());
-            pstmt.setString(5, user.getPhone());
-            pstmt.setString(6, user.getAddress());
-            pstmt.setString(7, user.getAddress2());
-            pstmt.setString(8, user.getCity());
-            pstmt.setString(9, user.getState());
-            pstmt.setString(10, user.getPostalCode());
-            if (hash == null || hash.isBlank()) {
-                pstmt.setNull(11, Types.VARCHAR);
-            } else {
-                pstmt.setString(11, hash);
-            }
-
-            int affectedRows = pstmt.executeUpdate();
+        boolean inserted = DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, userId);
+                pstmt.setString(2, user.getRole() != null ? user.getRole() : "customer");
+                pstmt.setString(3, user.getFullName());
+                pstmt.setString(4, user.getEmail());
+                pstmt.setString(5, user.getPhone());
+                pstmt.setString(6, user.getAddress());
+                pstmt.setString(7, user.getAddress2());
+                pstmt.setString(8, user.getCity());
+                pstmt.setString(9, user.getState());
+                pstmt.setString(10, user.getPostalCode());
+                if (hash == null || hash.isBlank()) {
+                    pstmt.setNull(11, Types.VARCHAR);
+                } else {
+                    pstmt.setString(11, hash);
+                }
 
-            if (affectedRows > 0) {
-                return userId;
-            }
-        }
-        return null;
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+        return inserted ? userId : null;
     }
 
     public boolean updateUser(User user) throws SQLException {
         String sql = "UPDATE users SET role = ?, full_name = ?, email = ?, phone = ?, address = ?, address2 = ?, city = ?, state = ?, postal_code = ? WHERE user_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, user.getRole());
-            pstmt.setString(2, user.getFullName());
-            pstmt.setString(3, user.getEmail());
-            pstmt.setString(4, user.getPhone());
-            pstmt.setString(5, user.getAddress());
-            pstmt.setString(6, user.getAddress2());
-            pstmt.setString(7, user.getCity());
-            pstmt.setString(8, user.getState());
-            pstmt.setString(9, user.getPostalCode());
-            pstmt.setString(10, user.getUserId());
-
-            return pstmt.executeUpdate() > 0;
-        }
+        boolean updated = DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, user.getRole());
+                pstmt.setString(2, user.getFullName());
+                pstmt.setString(3, user.getEmail());
+                pstmt.setString(4, user.getPhone());
+                pstmt.setString(5, user.getAddress());
+                pstmt.setString(6, user.getAddress2());
+                pstmt.setString(7, user.getCity());
+                pstmt.setString(8, user.getState());
+                pstmt.setString(9, user.getPostalCode());
+                pstmt.setString(10, user.getUserId());
+
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+        UserCache.userChanged(context, user.getUserId());
+        return updated;
     }
 
     public boolean updateProfile(String userId, String fullName, String email, String phone, String address, String address2, String city, String state, String postalCode) throws SQLException {
         String sql = "UPDATE users SET full_name = ?, email = ?, phone = ?, address = ?, address2 = ?, city = ?, state = ?, postal_code = ? WHERE user_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        boolean updated = DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, fullName);
+                pstmt.setString(2, email);
+                pstmt.setString(3, phone);
+                pstmt.setString(4, address);
+                pstmt.setString(5, address2);
+                pstmt.setString(6, city);
+                pstmt.setString(7, state);
+                pstmt.setString(8, postalCode);
+                pstmt.setString(9, userId);
 
-            pstmt.setString(1, fullName);
-            pstmt.setString(2, email);
-            pstmt.setString(3, phone);
-            pstmt.setString(4, address);
-            pstmt.setString(5, address2);
-            pstmt.setString(6, city);
-            pstmt.setString(7, state);
-            pstmt.setString(8, postalCode);
-            pstmt.setString(9, userId);
-
-            return pstmt.executeUpdate() > 0;
-        }
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+        UserCache.userChanged(context, userId);
+        return updated;
     }
 
     public boolean deleteUser(String userId) throws SQLException {
         String sql = "DELETE FROM users WHERE user_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, userId);
-            return pstmt.executeUpdate() > 0;
-        }
+        boolean deleted = DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, userId);
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+        UserCache.userChanged(context, userId);
+        return deleted;
     }
 
     public boolean setPassword(String userId, String rawPassword) throws SQLException {
         String hash = (rawPassword == null || rawPassword.isBlank()) ? null : hashPassword(rawPassword);
         String sql = "UPDATE users SET password_hash = ? WHERE user_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(context);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            if (hash == null) {
-                pstmt.setNull(1, Types.VARCHAR);
-            } else {
-                pstmt.setString(1, hash);
+        boolean updated = DatabaseConnection.write(context, conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                if (hash == null) {
+                    pstmt.setNull(1, Types.VARCHAR);
+                } else {
+                    pstmt.setString(1, hash);
+                }
+                pstmt.setString(2, userId);
+                return pstmt.executeUpdate() > 0;
             }
-            pstmt.setString(2, userId);
-            return pstmt.executeUpdate() > 0;
-        }
+        });
+        UserCache.userChanged(context, userId);
+        return updated;
     }
 
     public boolean updatePasswordWithValidation(String userId, String currentPassword, String newPassword)
@@ -0,0 +1,69 @@
+package com.RBOS.filters;
+
+import com.RBOS.utils.Metrics;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Records the latency and status code of every API request, keyed by method and route.
+ * Requests handed off to another thread are recorded when they complete.
+ */
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class MetricsFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse resp = (HttpServletResponse) response;
+
+        long start = System.nanoTime();
+        boolean threw = true;
+        try {
+            chain.doFilter(request, response);
+            threw = false;
+        } finally {
+            if (!threw && req.isAsyncStarted()) {
+                req.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(req, resp.getStatus(), start);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                int status = resp.getStatus();
+                if (threw && status < 400) {
+                    // the container turns an escaped exception into a 500
+                    status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+                }
+                record(req, status, start);
+            }
+        }
+    }
+
+    private static void record(HttpServletRequest req, int status, long start) {
+        Metrics.recordRequest(req.getMethod(), Metrics.routeOf(req.getServletPath(), req.getPathInfo()),
+                status, System.nanoTime() - start);
+    }
+}
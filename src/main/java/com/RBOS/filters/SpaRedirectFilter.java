@@ -14,7 +14,7 @@ import java.io.IOException;
  * Ensures client-side routes (e.g. /admin-login, /dashboard) get index.html instead of 404.
  * Skips API, WebSocket, and static asset requests.
  */
-@WebFilter("/*")
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
 public class SpaRedirectFilter implements Filter {
 
     @Override
@@ -0,0 +1,44 @@
+package com.RBOS.listeners;
+
+import com.RBOS.services.AuditLogWriter;
+import com.RBOS.services.CheckoutPipeline;
+import com.RBOS.services.InventoryLedger;
+import com.RBOS.servlets.ApiServlet;
+import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.IdGenerator;
+import com.RBOS.utils.Json;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+/**
+ * Seeds/verifies the database, builds the connection pool, picks up the node id used for new
+ * primary keys and warms up the JSON serializers once when the application starts, and closes
+ * the pool when it is undeployed.
+ */
+@WebListener
+public class DatabaseLifecycleListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        IdGenerator.configure(sce.getServletContext());
+        try {
+            DatabaseConnection.initialize(sce.getServletContext());
+        } catch (Exception e) {
+            System.err.println("[DB] Failed to initialize database at startup: " + e.getMessage());
+        }
+        Json.warmUp();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        // let handed-off requests and then checkout side effects finish first since they queue
+        // audit rows, then write back pending stock decrements and queued audit rows while the
+        // pool is still open
+        ApiServlet.shutdownAll();
+        CheckoutPipeline.shutdownAll();
+        InventoryLedger.shutdownAll();
+        AuditLogWriter.shutdownAll();
+        DatabaseConnection.shutdown();
+    }
+}
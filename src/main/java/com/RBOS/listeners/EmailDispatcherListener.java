@@ -0,0 +1,34 @@
+package com.RBOS.listeners;
+
+import com.RBOS.dao.EmailOutboxDAO;
+import com.RBOS.services.EmailConfig;
+import com.RBOS.services.EmailDispatcher;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+/**
+ * Starts the background email outbox dispatcher with the application and stops it on undeploy.
+ */
+@WebListener
+public class EmailDispatcherListener implements ServletContextListener {
+    private EmailDispatcher dispatcher;
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        dispatcher = new EmailDispatcher(
+                new EmailOutboxDAO(sce.getServletContext()),
+                new EmailConfig(),
+                EmailDispatcher.DEFAULT_BATCH_SIZE,
+                EmailDispatcher.DEFAULT_POLL_MILLIS);
+        EmailDispatcher.install(dispatcher);
+        dispatcher.start();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+}
@@ -9,6 +9,8 @@ public class HistoryResponse<T> {
     private int total;
     private int retentionMonths;
     private String retentionHorizon;
+    private String nextCursor;
+    private String prevCursor;
 
     public HistoryResponse() {
         // Default constructor for deserializers
@@ -70,4 +72,20 @@ public class HistoryResponse<T> {
     public void setRetentionHorizon(String retentionHorizon) {
         this.retentionHorizon = retentionHorizon;
     }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
+    public void setPrevCursor(String prevCursor) {
+        this.prevCursor = prevCursor;
+    }
 }
@@ -0,0 +1,40 @@
+package com.RBOS.models;
+
+public class IdempotencyRecord {
+    private String key;
+    private String requestHash;
+    private int statusCode;
+    private String responseBody;
+    private String orderId;
+    private String createdUtc;
+
+    public IdempotencyRecord() {}
+
+    public IdempotencyRecord(String key, String requestHash, int statusCode, String responseBody, String orderId,
+            String createdUtc) {
+        this.key = key;
+        this.requestHash = requestHash;
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+        this.orderId = orderId;
+        this.createdUtc = createdUtc;
+    }
+
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+
+    public String getRequestHash() { return requestHash; }
+    public void setRequestHash(String requestHash) { this.requestHash = requestHash; }
+
+    public int getStatusCode() { return statusCode; }
+    public void setStatusCode(int statusCode) { this.statusCode = statusCode; }
+
+    public String getResponseBody() { return responseBody; }
+    public void setResponseBody(String responseBody) { this.responseBody = responseBody; }
+
+    public String getOrderId() { return orderId; }
+    public void setOrderId(String orderId) { this.orderId = orderId; }
+
+    public String getCreatedUtc() { return createdUtc; }
+    public void setCreatedUtc(String createdUtc) { this.createdUtc = createdUtc; }
+}
@@ -0,0 +1,54 @@
+package com.RBOS.models;
+
+public class OutboxEmail {
+    private long outboxId;
+    private String recipient;
+    private String subject;
+    private String htmlBody;
+    private String status;
+    private int attempts;
+    private String nextAttemptUtc;
+    private String lastError;
+    private String createdUtc;
+    private String sentUtc;
+
+    public OutboxEmail() {}
+
+    public OutboxEmail(long outboxId, String recipient, String subject, String htmlBody, int attempts) {
+        this.outboxId = outboxId;
+        this.recipient = recipient;
+        this.subject = subject;
+        this.htmlBody = htmlBody;
+        this.attempts = attempts;
+    }
+
+    public long getOutboxId() { return outboxId; }
+    public void setOutboxId(long outboxId) { this.outboxId = outboxId; }
+
+    public String getRecipient() { return recipient; }
+    public void setRecipient(String recipient) { this.recipient = recipient; }
+
+    public String getSubject() { return subject; }
+    public void setSubject(String subject) { this.subject = subject; }
+
+    public String getHtmlBody() { return htmlBody; }
+    public void setHtmlBody(String htmlBody) { this.htmlBody = htmlBody; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public String getNextAttemptUtc() { return nextAttemptUtc; }
+    public void setNextAttemptUtc(String nextAttemptUtc) { this.nextAttemptUtc = nextAttemptUtc; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public String getCreatedUtc() { return createdUtc; }
+    public void setCreatedUtc(String createdUtc) { this.createdUtc = createdUtc; }
+
+    public String getSentUtc() { return sentUtc; }
+    public void setSentUtc(String sentUtc) { this.sentUtc = sentUtc; }
+}
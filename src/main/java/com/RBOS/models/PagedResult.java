@@ -5,6 +5,9 @@ import java.util.List;
 public class PagedResult<T> {
     private List<T> items;
     private int total;
+    private int page = 1;
+    private String nextCursor;
+    private String prevCursor;
 
     public PagedResult(List<T> items, int total) {
         this.items = items;
@@ -26,4 +29,28 @@ public class PagedResult<T> {
     public void setTotal(int total) {
         this.total = total;
     }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
+    public void setPrevCursor(String prevCursor) {
+        this.prevCursor = prevCursor;
+    }
 }
@@ -0,0 +1,356 @@
+package com.RBOS.services;
+
+import com.RBOS.dao.AuditLogDAO;
+import com.RBOS.models.AuditLog;
+import com.RBOS.utils.DatabaseConnection;
+import jakarta.servlet.ServletContext;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes audit rows off the request path.
+ *
+ * Rows go into a bounded queue that one background thread drains, writing everything waiting
+ * in a single transaction. How long the caller waits is set by RBOS_AUDIT_DURABILITY:
+ * <ul>
+ * <li>sync - the caller inserts its own row, as before</li>
+ * <li>group (default) - the caller waits until the batch holding its row commits, so
+ * concurrent callers share one commit</li>
+ * <li>async - the caller returns once the row is queued; rows still queued are lost if the
+ * process dies, and a batch that keeps failing is dropped with an error on stderr</li>
+ * </ul>
+ * When the queue is full the caller writes its row itself rather than dropping it.
+ */
+public class AuditLogWriter {
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long POLL_MILLIS = 1_000;
+    private static final long COMMIT_TIMEOUT_MS = 10_000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MS = 250;
+    // Primary SQLite result code for CHECK/NOT NULL/UNIQUE violations
+    private static final int SQLITE_CONSTRAINT = 19;
+
+    private static final Map<String, AuditLogWriter> writers = new ConcurrentHashMap<>();
+
+    public enum Durability {
+        SYNC, GROUP, ASYNC;
+
+        public static Durability parse(String value) {
+            if (value == null) {
+                return GROUP;
+            }
+            switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "sync":
+                    return SYNC;
+                case "async":
+                    return ASYNC;
+                case "group":
+                case "group-commit":
+                    return GROUP;
+                default:
+                    System.err.println("Ignoring invalid RBOS_AUDIT_DURABILITY=" + value + "; using group");
+                    return GROUP;
+            }
+        }
+    }
+
+    private final AuditLogDAO auditLogDAO;
+    private final Durability durability;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final ArrayBlockingQueue<Pending> queue;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong overflowWrites = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+    private volatile int lastBatchSize;
+
+    public AuditLogWriter(AuditLogDAO auditLogDAO, Durability durability, int queueCapacity, int batchSize) {
+        this.auditLogDAO = auditLogDAO;
+        this.durability = durability;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Writer for the database the context resolves to, started on first use.
+     */
+    public static AuditLogWriter forContext(ServletContext context) throws SQLException {
+        String dbPath = DatabaseConnection.getDatabasePath(context);
+        return writers.computeIfAbsent(dbPath, path -> {
+            AuditLogWriter writer = new AuditLogWriter(new AuditLogDAO(context),
+                    Durability.parse(DatabaseConnection.resolveSetting(context, "RBOS_AUDIT_DURABILITY")),
+                    (int) DatabaseConnection.resolveLongSetting(context, "RBOS_AUDIT_QUEUE_CAPACITY",
+                            DEFAULT_QUEUE_CAPACITY),
+                    (int) DatabaseConnection.resolveLongSetting(context, "RBOS_AUDIT_BATCH_SIZE",
+                            DEFAULT_BATCH_SIZE));
+            writer.start();
+            return writer;
+        });
+    }
+
+    /**
+     * Stop every writer after writing what is queued; called when the application is undeployed.
+     */
+    public static void shutdownAll() {
+        for (AuditLogWriter writer : writers.values()) {
+            writer.stop();
+        }
+        writers.clear();
+    }
+
+    public synchronized void start() {
+        if (running || durability == Durability.SYNC) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "rbos-audit-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stop the background thread, then write anything still queued on the calling thread.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+        drainInline();
+    }
+
+    public void write(AuditLog log) throws SQLException {
+        if (durability == Durability.SYNC || !running) {
+            writeDirect(log);
+            return;
+        }
+        Pending pending = new Pending(log, durability == Durability.GROUP ? new CompletableFuture<>() : null);
+        if (!queue.offer(pending)) {
+            overflowWrites.incrementAndGet();
+            writeDirect(log);
+            return;
+        }
+        enqueued.incrementAndGet();
+        if (pending.committed != null) {
+            await(pending.committed);
+        }
+    }
+
+    /**
+     * Return once every row queued before the call has been written (or dropped).
+     */
+    public void flush() throws SQLException {
+        if (!running) {
+            drainInline();
+            return;
+        }
+        Pending barrier = new Pending(null, new CompletableFuture<>());
+        try {
+            if (!queue.offer(barrier, COMMIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for the audit log queue");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while flushing the audit log", e);
+        }
+        await(barrier.committed);
+    }
+
+    public Map<String, Object> getStats() {
+        long batchCount = batches.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("durability", durability.name().toLowerCase(Locale.ROOT));
+        stats.put("running", running);
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("enqueued", enqueued.get());
+        stats.put("written", written.get());
+        stats.put("batches", batchCount);
+        stats.put("lastBatchSize", lastBatchSize);
+        stats.put("lastFlushMillis", toMillis(lastFlushNanos));
+        stats.put("avgFlushMillis", batchCount > 0 ? toMillis(flushNanos.get() / batchCount) : 0.0);
+        stats.put("maxFlushMillis", toMillis(maxFlushNanos));
+        stats.put("failedFlushes", failedFlushes.get());
+        stats.put("dropped", dropped.get());
+        stats.put("overflowWrites", overflowWrites.get());
+        return stats;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("Audit log writer error: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private synchronized void drainInline() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        List<AuditLog> logs = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            if (pending.log != null) {
+                logs.add(pending.log);
+            }
+        }
+
+        SQLException failure = logs.isEmpty() ? null : insertWithRetry(logs);
+        if (failure == null) {
+            for (Pending pending : batch) {
+                if (pending.committed != null) {
+                    pending.committed.complete(null);
+                }
+            }
+            return;
+        }
+
+        // One bad row must not fail the rows committed alongside it, so retry them one by one
+        System.err.println("Audit log batch of " + logs.size() + " row(s) failed, writing rows singly: "
+                + failure.getMessage());
+        for (Pending pending : batch) {
+            SQLException rowFailure = pending.log == null ? null
+                    : logs.size() == 1 ? failure : insertWithRetry(List.of(pending.log));
+            if (pending.committed != null) {
+                if (rowFailure != null) {
+                    pending.committed.completeExceptionally(rowFailure);
+                } else {
+                    pending.committed.complete(null);
+                }
+            } else if (rowFailure != null) {
+                dropped.incrementAndGet();
+                System.err.println("Dropped audit row " + pending.log.logId + " " + pending.log.entityType
+                        + "/" + pending.log.entityId + " " + pending.log.action + ": " + rowFailure.getMessage());
+            }
+        }
+    }
+
+    // Returns the last error, or null once the rows are committed; constraint failures are not retried
+    private SQLException insertWithRetry(List<AuditLog> logs) {
+        SQLException failure = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                long start = System.nanoTime();
+                auditLogDAO.insertBatch(logs);
+                recordFlush(logs.size(), System.nanoTime() - start);
+                return null;
+            } catch (SQLException e) {
+                failedFlushes.incrementAndGet();
+                failure = e;
+                if ((e.getErrorCode() & 0xff) == SQLITE_CONSTRAINT
+                        || attempt == MAX_ATTEMPTS || !sleepQuietly(RETRY_BACKOFF_MS * attempt)) {
+                    break;
+                }
+            }
+        }
+        return failure;
+    }
+
+    private void writeDirect(AuditLog log) throws SQLException {
+        long start = System.nanoTime();
+        auditLogDAO.insertBatch(List.of(log));
+        recordFlush(1, System.nanoTime() - start);
+    }
+
+    private void recordFlush(int rows, long nanos) {
+        written.addAndGet(rows);
+        batches.incrementAndGet();
+        flushNanos.addAndGet(nanos);
+        lastBatchSize = rows;
+        lastFlushNanos = nanos;
+        if (nanos > maxFlushNanos) {
+            maxFlushNanos = nanos;
+        }
+    }
+
+    private static void await(CompletableFuture<Void> committed) throws SQLException {
+        try {
+            committed.get(COMMIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Error logging audit action", e.getCause());
+        } catch (TimeoutException e) {
+            throw new SQLException("Timed out waiting for the audit log commit", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the audit log commit", e);
+        }
+    }
+
+    // Returns false when interrupted, so a stopping writer gives up retrying
+    private static boolean sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    // A queued row, or a flush barrier when log is null; committed is null for async rows
+    private static class Pending {
+        final AuditLog log;
+        final CompletableFuture<Void> committed;
+
+        Pending(AuditLog log, CompletableFuture<Void> committed) {
+            this.log = log;
+            this.committed = committed;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.RBOS.services;
+
+import com.RBOS.dao.AuditLogDAO;
+import com.RBOS.dao.MenuItemDAO;
+import com.RBOS.dao.OrderDAO;
+import com.RBOS.dao.UserDAO;
+import com.RBOS.models.MenuItem;
+import com.RBOS.models.Order;
+import com.RBOS.models.OrderItem;
+import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.Json;
+import com.RBOS.websocket.WebSocketConfig;
+import jakarta.servlet.ServletContext;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Places an order in a fixed number of statements however many lines it has.
+ *
+ * Stages run in order: validate the request, look up the user and every menu item with one
+ * query, price each line from the menu, reserve stock in the {@link InventoryLedger}, then
+ * insert the order, its lines (one batched statement) and its confirmation email in a single
+ * transaction. The audit row, admin email and WebSocket broadcast are handed to a background
+ * thread once the transaction commits, so none of them adds to checkout latency.
+ */
+public class CheckoutPipeline {
+    private static final double TAX_RATE = 0.08;
+    private static final int EVENT_QUEUE_CAPACITY = 1000;
+
+    private static ThreadPoolExecutor events;
+
+    private final ServletContext context;
+    private final OrderDAO orderDAO;
+    private final MenuItemDAO menuItemDAO;
+    private final UserDAO userDAO;
+    private final AuditLogDAO auditDAO;
+
+    public CheckoutPipeline(ServletContext context) {
+        this.context = context;
+        this.orderDAO = new OrderDAO(context);
+        this.menuItemDAO = new MenuItemDAO(context);
+        this.userDAO = new UserDAO(context);
+        this.auditDAO = new AuditLogDAO(context);
+    }
+
+    public enum Outcome {
+        PLACED,
+        INVALID,
+        UNAVAILABLE
+    }
+
+    public static class Result {
+        private final Outcome outcome;
+        private final Order order;
+        private final String message;
+        private final List<String> problems;
+
+        private Result(Outcome outcome, Order order, String message, List<String> problems) {
+            this.outcome = outcome;
+            this.order = order;
+            this.message = message;
+            this.problems = problems;
+        }
+
+        public Outcome getOutcome() { return outcome; }
+        public Order getOrder() { return order; }
+        public String getMessage() { return message; }
+        public List<String> getProblems() { return problems; }
+    }
+
+    /**
+     * Extra writes that must commit or roll back with the order, run after it is inserted.
+     */
+    @FunctionalInterface
+    public interface BeforeCommit {
+        void accept(Connection conn, Order order) throws SQLException;
+    }
+
+    public Result checkout(Order order, String actorId, String actorName) throws SQLException {
+        return checkout(order, actorId, actorName, null);
+    }
+
+    public Result checkout(Order order, String actorId, String actorName, BeforeCommit beforeCommit)
+            throws SQLException {
+        String invalid = validate(order);
+        if (invalid != null) {
+            return new Result(Outcome.INVALID, order, invalid, Collections.emptyList());
+        }
+
+        InventoryLedger.Reservation reservation = null;
+        try {
+            try (Connection conn = DatabaseConnection.getConnection(context)) {
+                String userId = order.getUserId();
+                if (userId != null && !userId.isBlank()) {
+                    // drop unknown users to avoid FK failures
+                    order.setUserId(userDAO.getUserById(userId, conn) != null ? userId : null);
+                } else {
+                    order.setUserId(null);
+                }
+
+                List<String> problems = price(order, conn);
+                if (!problems.isEmpty()) {
+                    return new Result(Outcome.UNAVAILABLE, order, "Inventory issues", problems);
+                }
+            }
+
+            Map<String, Integer> quantities = new HashMap<>();
+            for (OrderItem item : order.getOrderItems()) {
+                quantities.merge(item.getItemId(), item.getQty(), Integer::sum);
+            }
+            reservation = InventoryLedger.forContext(context).reserve(quantities);
+            if (!reservation.isSuccessful()) {
+                return new Result(Outcome.UNAVAILABLE, order, "Inventory issues", reservation.getProblems());
+            }
+
+            // The writes go to the single writer connection and commit with whatever else is queued
+            DatabaseConnection.write(context, conn -> {
+                if (orderDAO.createOrder(order, conn) == null) {
+                    throw new SQLException("Order insert affected no rows");
+                }
+                if (beforeCommit != null) {
+                    beforeCommit.accept(conn, order);
+                }
+                return null;
+            });
+            reservation.confirm();
+        } finally {
+            // no-op once confirmed; returns the stock if the order never committed
+            if (reservation != null) {
+                reservation.release();
+            }
+        }
+
+        afterCommit(order, actorId, actorName);
+        return new Result(Outcome.PLACED, order, null, Collections.emptyList());
+    }
+
+    // Drops empty lines and checks the fields a delivery needs; returns the first problem found
+    private String validate(Order order) {
+        if (order.getOrderItems() == null) {
+            order.setOrderItems(new ArrayList<>());
+        }
+        order.getOrderItems().removeIf(i -> i == null || i.getItemId() == null || i.getItemId().isBlank()
+                || i.getQty() == null || i.getQty() <= 0);
+        if (order.getOrderItems().isEmpty()) {
+            return "No order items provided";
+        }
+
+        if ("delivery".equals(order.getFulfillmentType())) {
+            if (isBlank(order.getDeliveryAddress())) {
+                return "Delivery address is required for delivery orders";
+            }
+            if (isBlank(order.getDeliveryCity())) {
+                return "Delivery city is required for delivery orders";
+            }
+            if (isBlank(order.getDeliveryState())) {
+                return "Delivery state is required for delivery orders";
+            }
+            if (isBlank(order.getDeliveryPostalCode())) {
+                return "Delivery postal code is required for delivery orders";
+            }
+        }
+        return null;
+    }
+
+    // Prices every line from the menu rather than trusting the client, then sets the totals
+    private List<String> price(Order order, Connection conn) throws SQLException {
+        List<String> itemIds = new ArrayList<>();
+        for (OrderItem item : order.getOrderItems()) {
+            itemIds.add(item.getItemId());
+        }
+        Map<String, MenuItem> menu = menuItemDAO.getMenuItemsByIds(itemIds, conn);
+
+        List<String> problems = new ArrayList<>();
+        double subtotal = 0.0;
+        for (OrderItem item : order.getOrderItems()) {
+            MenuItem menuItem = menu.get(item.getItemId());
+            if (menuItem == null || !Boolean.TRUE.equals(menuItem.getActive())) {
+                if (!problems.contains("Item not available: " + item.getItemId())) {
+                    problems.add("Item not available: " + item.getItemId());
+                }
+                continue;
+            }
+            item.setUnitPrice(menuItem.getPrice());
+            item.setLineTotal(menuItem.getPrice() * item.getQty());
+            subtotal += item.getLineTotal();
+        }
+
+        double tax = subtotal * TAX_RATE;
+        order.setSubtotal(subtotal);
+        order.setTax(tax);
+        order.setTotal(subtotal + tax);
+        return problems;
+    }
+
+    private void afterCommit(Order order, String actorId, String actorName) {
+        Runnable work = () -> {
+            EmailDispatcher.signal();
+            try {
+                auditDAO.log("order", order.getOrderId(), "create", actorId, actorName,
+                        null, "Order created: $" + order.getTotal());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            try {
+                new EmailService(context).sendAdminNotification(
+                        "New Order Received",
+                        String.format("Order #%s - Total: $%.2f", order.getOrderId(), order.getTotal()));
+                WebSocketConfig.notifyNewOrder(order.getOrderId(), Json.ORDER_WRITER.writeValueAsString(order));
+            } catch (Exception e) {
+                System.err.println("Failed to send order notifications: " + e.getMessage());
+            }
+        };
+        events().execute(work);
+    }
+
+    // A full queue runs the work on the request thread rather than dropping it
+    private static synchronized ThreadPoolExecutor events() {
+        if (events == null) {
+            events = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(EVENT_QUEUE_CAPACITY), r -> {
+                        Thread t = new Thread(r, "rbos-checkout-events");
+                        t.setDaemon(true);
+                        return t;
+                    }, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        return events;
+    }
+
+    /**
+     * Run the side effects still queued and stop the background thread; called when the
+     * application is undeployed.
+     */
+    public static void shutdownAll() {
+        ThreadPoolExecutor executor;
+        synchronized (CheckoutPipeline.class) {
+            executor = events;
+            events = null;
+        }
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                System.err.println("Checkout side effects still running at shutdown: " + executor.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,350 @@
+package com.RBOS.services;
+
+import com.RBOS.dao.EmailOutboxDAO;
+import com.RBOS.models.OutboxEmail;
+import jakarta.mail.*;
+import jakarta.mail.internet.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the email outbox in batches over one SMTP connection per batch.
+ *
+ * A single background thread polls for due emails (and is woken early by {@link #signal()}).
+ * Failed sends are retried with exponential backoff; permanently rejected addresses and
+ * emails that exhaust their attempts are dead-lettered. Only failures tied to a message or
+ * recipient count as attempts: when the server cannot be reached or the connection drops,
+ * the rest of the batch is deferred as a whole, backing off per consecutive outage, so an
+ * SMTP outage never dead-letters the outbox. Delivery is at-least-once: a crash between
+ * sending and recording the result resends that email.
+ */
+public class EmailDispatcher {
+    public static final int DEFAULT_BATCH_SIZE = 50;
+    public static final long DEFAULT_POLL_MILLIS = 5_000;
+    static final int MAX_ATTEMPTS = 6;
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(30);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+    private static final Duration SENT_RETENTION = Duration.ofDays(7);
+    private static final long PURGE_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+    private static volatile EmailDispatcher installed;
+
+    private final EmailOutboxDAO outbox;
+    private final EmailConfig config;
+    private final int batchSize;
+    private final long pollMillis;
+
+    private final Object wakeLock = new Object();
+    private boolean wakeRequested;
+    private volatile boolean running;
+    private Thread worker;
+    private long lastPurge;
+    private boolean warnedUnconfigured;
+    // Worker thread only; batches in a row that could not reach the server
+    private int consecutiveOutages;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong deferredBatches = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong sendNanos = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile double lastBatchPerSecond;
+
+    public EmailDispatcher(EmailOutboxDAO outbox, EmailConfig config, int batchSize, long pollMillis) {
+        this.outbox = outbox;
+        this.config = config;
+        this.batchSize = batchSize;
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * Make this the dispatcher that {@link #signal()} wakes.
+     */
+    public static void install(EmailDispatcher dispatcher) {
+        installed = dispatcher;
+    }
+
+    public static EmailDispatcher getInstalled() {
+        return installed;
+    }
+
+    // Called after new emails are committed so they go out without waiting for the next poll
+    public static void signal() {
+        EmailDispatcher dispatcher = installed;
+        if (dispatcher != null) {
+            dispatcher.wake();
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "rbos-email-dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            try {
+                worker.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+        if (installed == this) {
+            installed = null;
+        }
+    }
+
+    public void wake() {
+        synchronized (wakeLock) {
+            wakeRequested = true;
+            wakeLock.notifyAll();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                int processed;
+                do {
+                    processed = drainOnce();
+                } while (running && processed >= batchSize);
+                purgeIfDue();
+
+                synchronized (wakeLock) {
+                    if (!wakeRequested) {
+                        wakeLock.wait(pollMillis);
+                    }
+                    wakeRequested = false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("Email dispatcher error: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Send one batch of due emails. Returns how many emails were attempted.
+     */
+    public int drainOnce() throws Exception {
+        if (config.isAuth() && (config.getUsername() == null || config.getPassword() == null)) {
+            if (!warnedUnconfigured) {
+                System.err.println("Email credentials not configured. Outbox emails will wait until they are.");
+                warnedUnconfigured = true;
+            }
+            return 0;
+        }
+
+        List<OutboxEmail> due = outbox.getDueEmails(batchSize);
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        Session session = createSession();
+        List<Long> delivered = new ArrayList<>();
+        Transport transport = null;
+        try {
+            for (int i = 0; i < due.size(); i++) {
+                OutboxEmail email = due.get(i);
+                Message message;
+                try {
+                    message = buildMessage(session, email);
+                } catch (MessagingException e) {
+                    recordFailure(email, e);
+                    continue;
+                }
+                try {
+                    if (transport == null || !transport.isConnected()) {
+                        // a dropped connection still holds its socket until closed
+                        closeQuietly(transport);
+                        transport = null;
+                        transport = connect(session);
+                        consecutiveOutages = 0;
+                    }
+                    transport.sendMessage(message, message.getAllRecipients());
+                    delivered.add(email.getOutboxId());
+                } catch (SendFailedException e) {
+                    // the server answered and refused this message or its recipients
+                    recordFailure(email, e);
+                } catch (MessagingException e) {
+                    // could not connect or the connection broke: nothing is wrong with the emails
+                    deferBatch(due.subList(i, due.size()), e);
+                    break;
+                }
+            }
+        } finally {
+            closeQuietly(transport);
+            outbox.markSent(delivered);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        sent.addAndGet(delivered.size());
+        sendNanos.addAndGet(elapsed);
+        batches.incrementAndGet();
+        lastBatchSize = due.size();
+        lastBatchPerSecond = delivered.size() / Math.max(elapsed / 1e9, 1e-9);
+        if (!delivered.isEmpty()) {
+            System.out.println("Email dispatcher sent " + delivered.size() + " of " + due.size() + " emails in "
+                    + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+        }
+        return due.size();
+    }
+
+    private void recordFailure(OutboxEmail email, MessagingException e) throws Exception {
+        int attempts = email.getAttempts() + 1;
+        boolean permanent = isPermanent(e);
+        boolean dead = permanent || attempts >= MAX_ATTEMPTS;
+        Instant nextAttempt = Instant.now().plus(backoff(attempts));
+
+        outbox.markFailed(email.getOutboxId(), e.getMessage(), nextAttempt, dead);
+        failedAttempts.incrementAndGet();
+        if (dead) {
+            deadLettered.incrementAndGet();
+            System.err.println("Email " + email.getOutboxId() + " to " + email.getRecipient()
+                    + " dead-lettered after " + attempts + " attempt(s): " + e.getMessage());
+        } else {
+            System.err.println("Email " + email.getOutboxId() + " to " + email.getRecipient()
+                    + " failed (attempt " + attempts + "), retrying at " + nextAttempt + ": " + e.getMessage());
+        }
+    }
+
+    private void deferBatch(List<OutboxEmail> remaining, MessagingException e) throws Exception {
+        consecutiveOutages++;
+        Instant nextAttempt = Instant.now().plus(backoff(consecutiveOutages));
+        List<Long> ids = new ArrayList<>();
+        for (OutboxEmail email : remaining) {
+            ids.add(email.getOutboxId());
+        }
+        outbox.defer(ids, e.getMessage(), nextAttempt);
+        deferredBatches.incrementAndGet();
+        System.err.println("Email server unavailable (outage " + consecutiveOutages + "), deferring " + ids.size()
+                + " email(s) to " + nextAttempt + ": " + e.getMessage());
+    }
+
+    // A rejected or malformed address will not start working on retry
+    private static boolean isPermanent(MessagingException e) {
+        if (e instanceof AddressException) {
+            return true;
+        }
+        if (e instanceof SendFailedException) {
+            Address[] invalid = ((SendFailedException) e).getInvalidAddresses();
+            return invalid != null && invalid.length > 0;
+        }
+        return false;
+    }
+
+    static Duration backoff(int attempts) {
+        long factor = 1L << Math.min(attempts - 1, 20);
+        Duration delay = BASE_BACKOFF.multipliedBy(factor);
+        return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+    }
+
+    private void purgeIfDue() throws Exception {
+        long now = System.currentTimeMillis();
+        if (now - lastPurge < PURGE_INTERVAL_MS) {
+            return;
+        }
+        lastPurge = now;
+        int purged = outbox.purgeSentBefore(Instant.now().minus(SENT_RETENTION));
+        if (purged > 0) {
+            System.out.println("Email dispatcher purged " + purged + " sent emails from the outbox");
+        }
+    }
+
+    private Session createSession() {
+        Properties props = config.getProperties();
+        props.put("mail.smtp.connectiontimeout", "10000");
+        props.put("mail.smtp.timeout", "10000");
+        props.put("mail.smtp.writetimeout", "10000");
+        return Session.getInstance(props);
+    }
+
+    private Transport connect(Session session) throws MessagingException {
+        Transport transport = session.getTransport("smtp");
+        if (config.isAuth()) {
+            transport.connect(config.getHost(), config.getPort(), config.getUsername(), config.getPassword());
+        } else {
+            transport.connect();
+        }
+        connectionsOpened.incrementAndGet();
+        return transport;
+    }
+
+    private static void closeQuietly(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException ignored) {
+            }
+        }
+    }
+
+    private Message buildMessage(Session session, OutboxEmail email) throws MessagingException {
+        Message message = new MimeMessage(session);
+        String from = config.getUsername() != null ? config.getUsername() : "no-reply@localhost";
+
+        try {
+            message.setFrom(new InternetAddress(from, "Restaurant GEM"));
+        } catch (Exception e) {
+            // Fallback: use the constructor without personal name
+            message.setFrom(new InternetAddress(from));
+        }
+
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(email.getRecipient()));
+        message.setSubject(email.getSubject());
+
+        // Create HTML email
+        MimeBodyPart mimeBodyPart = new MimeBodyPart();
+        mimeBodyPart.setContent(email.getHtmlBody(), "text/html; charset=utf-8");
+
+        Multipart multipart = new MimeMultipart();
+        multipart.addBodyPart(mimeBodyPart);
+        message.setContent(multipart);
+        message.saveChanges();
+        return message;
+    }
+
+    public Map<String, Object> getStats() {
+        long sentTotal = sent.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running);
+        stats.put("batchSize", batchSize);
+        stats.put("sent", sentTotal);
+        stats.put("failedAttempts", failedAttempts.get());
+        stats.put("deadLettered", deadLettered.get());
+        stats.put("deferredBatches", deferredBatches.get());
+        stats.put("batches", batches.get());
+        stats.put("connectionsOpened", connectionsOpened.get());
+        stats.put("lastBatchSize", lastBatchSize);
+        stats.put("lastBatchPerSecond", lastBatchPerSecond);
+        stats.put("avgBatchMillis", batches.get() == 0 ? 0.0 : sendNanos.get() / 1e6 / batches.get());
+        try {
+            stats.put("outbox", outbox.countByStatus());
+        } catch (Exception e) {
+            stats.put("outbox", "unavailable: " + e.getMessage());
+        }
+        return stats;
+    }
+}
@@ -1,69 +1,30 @@
 package com.RBOS.services;
 
-import jakarta.mail.*;
-import jakarta.mail.internet.*;
+import com.RBOS.dao.EmailOutboxDAO;
 import jakarta.servlet.ServletContext;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
+/**
+ * Queues emails in the outbox; {@link EmailDispatcher} delivers them in the background.
+ */
 public class EmailService {
-    private static final ExecutorService emailExecutor = Executors.newFixedThreadPool(5);
-    private final EmailConfig config;
+    private final EmailOutboxDAO outbox;
     
     public EmailService() {
-        this.config = new EmailConfig();
+        this((ServletContext) null);
     }
     
-    public EmailService(EmailConfig config) {
-        this.config = config;
+    public EmailService(ServletContext context) {
+        this.outbox = new EmailOutboxDAO(context);
     }
     
     public void sendEmailAsync(String to, String subject, String htmlContent) {
-        emailExecutor.submit(() -> {
-            try {
-                sendEmail(to, subject, htmlContent);
-                System.out.println("Email sent successfully to: " + to);
-            } catch (Exception e) {
-                System.err.println("Failed to send email to " + to + ": " + e.getMessage());
-                e.printStackTrace();
-            }
-        });
-    }
-    
-    private void sendEmail(String to, String subject, String htmlContent) throws MessagingException {
-        if (config.getUsername() == null || config.getPassword() == null) {
-            System.err.println("Email credentials not configured. Skipping email to: " + to);
-            return;
-        }
-        
-        Session session = Session.getInstance(config.getProperties(), new Authenticator() {
-            @Override
-            protected PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication(config.getUsername(), config.getPassword());
-            }
-        });
-        
-        Message message = new MimeMessage(session);
-
         try {
-            message.setFrom(new InternetAddress(config.getUsername(), "Restaurant GEM"));
+            outbox.enqueue(to, subject, htmlContent);
+            EmailDispatcher.signal();
         } catch (Exception e) {
-            // Fallback: use the constructor without personal name
-            message.setFrom(new InternetAddress(config.getUsername()));
+            System.err.println("Failed to queue email to " + to + ": " + e.getMessage());
+            e.printStackTrace();
         }
-
-        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
-        message.setSubject(subject);
-        
-        // Create HTML email
-        MimeBodyPart mimeBodyPart = new MimeBodyPart();
-        mimeBodyPart.setContent(htmlContent, "text/html; charset=utf-8");
-        
-        Multipart multipart = new MimeMultipart();
-        multipart.addBodyPart(mimeBodyPart);
-        message.setContent(multipart);
-        
-        Transport.send(message);
     }
     
     // Template methods for different email types
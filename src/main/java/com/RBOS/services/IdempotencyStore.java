@@ -0,0 +1,239 @@
+package com.RBOS.services;
+
+import com.RBOS.dao.EmailOutboxDAO;
+import com.RBOS.dao.IdempotencyKeyDAO;
+import com.RBOS.models.IdempotencyRecord;
+import com.RBOS.utils.DatabaseConnection;
+import jakarta.servlet.ServletContext;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the response to each order submission sent with an Idempotency-Key header so a
+ * retry gets the original response instead of placing the order again.
+ *
+ * The key row is written in the same transaction as the order, so an order never commits
+ * without its key and a retry racing on another node fails on the primary key instead of
+ * creating a second order. Recent results are also held in a small LRU so retry storms are
+ * answered without reading the table. A key is bound to a hash of the caller and request
+ * body; reusing it for a different request is refused. Only placed orders are recorded, so a
+ * retry of a rejected submission (bad input, no stock) is simply evaluated again.
+ */
+public class IdempotencyStore {
+    public static final String HEADER = "Idempotency-Key";
+    public static final int MAX_KEY_LENGTH = 255;
+    public static final Duration RETENTION = Duration.ofHours(24);
+
+    private static final int CACHE_SIZE = 1000;
+    private static final long PURGE_INTERVAL_MS = 60 * 60 * 1000;
+
+    private static final Map<String, IdempotencyStore> stores = new ConcurrentHashMap<>();
+
+    private final IdempotencyKeyDAO dao;
+    // Guarded by this; access order so the least recently used result is dropped first
+    private final LinkedHashMap<String, IdempotencyRecord> recent = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile long lastPurgeMillis;
+
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong inProgress = new AtomicLong();
+    private final AtomicLong mismatched = new AtomicLong();
+
+    public enum Status {
+        NEW,
+        REPLAY,
+        IN_PROGRESS,
+        MISMATCH
+    }
+
+    public IdempotencyStore(IdempotencyKeyDAO dao) {
+        this.dao = dao;
+        this.lastPurgeMillis = System.currentTimeMillis();
+    }
+
+    public static IdempotencyStore forContext(ServletContext context) throws SQLException {
+        String dbPath = DatabaseConnection.getDatabasePath(context);
+        return stores.computeIfAbsent(dbPath, path -> new IdempotencyStore(new IdempotencyKeyDAO(context)));
+    }
+
+    /**
+     * SHA-256 of the caller and request body; the same key with a different fingerprint is a
+     * different request.
+     */
+    public static String fingerprint(String userId, String body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((userId != null ? userId : "").getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(body.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static boolean isValidKey(String key) {
+        return key != null && !key.isBlank() && key.length() <= MAX_KEY_LENGTH;
+    }
+
+    /**
+     * Look the key up. A NEW claim holds the key on this node until it is closed, so a
+     * concurrent retry sees IN_PROGRESS rather than running the checkout a second time.
+     */
+    public Claim claim(String key, String requestHash) throws SQLException {
+        IdempotencyRecord cached;
+        synchronized (this) {
+            cached = recent.get(key);
+        }
+        if (cached != null && !isExpired(cached)) {
+            return answer(key, requestHash, cached);
+        }
+
+        if (!inFlight.add(key)) {
+            inProgress.incrementAndGet();
+            return new Claim(Status.IN_PROGRESS, key, requestHash, null, false);
+        }
+        try {
+            IdempotencyRecord stored = find(key);
+            if (stored != null) {
+                inFlight.remove(key);
+                return answer(key, requestHash, stored);
+            }
+            purgeIfDue();
+        } catch (SQLException | RuntimeException e) {
+            inFlight.remove(key);
+            throw e;
+        }
+        executed.incrementAndGet();
+        return new Claim(Status.NEW, key, requestHash, null, true);
+    }
+
+    /**
+     * Stored result for a key, or null when there is none (or it has expired).
+     */
+    public IdempotencyRecord find(String key) throws SQLException {
+        IdempotencyRecord stored = dao.findByKey(key);
+        if (stored == null) {
+            return null;
+        }
+        if (isExpired(stored)) {
+            dao.purgeBefore(Instant.now().minus(RETENTION));
+            return null;
+        }
+        remember(stored);
+        return stored;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("cached", recent.size());
+        }
+        stats.put("inFlight", inFlight.size());
+        stats.put("executed", executed.get());
+        stats.put("replayed", replayed.get());
+        stats.put("inProgress", inProgress.get());
+        stats.put("mismatched", mismatched.get());
+        return stats;
+    }
+
+    private Claim answer(String key, String requestHash, IdempotencyRecord record) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            mismatched.incrementAndGet();
+            return new Claim(Status.MISMATCH, key, requestHash, null, false);
+        }
+        replayed.incrementAndGet();
+        return new Claim(Status.REPLAY, key, requestHash, record, false);
+    }
+
+    private synchronized void remember(IdempotencyRecord record) {
+        recent.put(record.getKey(), record);
+    }
+
+    private boolean isExpired(IdempotencyRecord record) {
+        String cutoff = EmailOutboxDAO.formatUtc(Instant.now().minus(RETENTION));
+        return record.getCreatedUtc().compareTo(cutoff) < 0;
+    }
+
+    private void purgeIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastPurgeMillis < PURGE_INTERVAL_MS) {
+            return;
+        }
+        lastPurgeMillis = now;
+        try {
+            int purged = dao.purgeBefore(Instant.now().minus(RETENTION));
+            if (purged > 0) {
+                System.out.println("Purged " + purged + " expired idempotency keys");
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to purge idempotency keys: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Outcome of looking up one key. Close it once the request is finished.
+     */
+    public class Claim implements AutoCloseable {
+        private final Status status;
+        private final String key;
+        private final String requestHash;
+        private IdempotencyRecord record;
+        private boolean held;
+
+        private Claim(Status status, String key, String requestHash, IdempotencyRecord record, boolean held) {
+            this.status = status;
+            this.key = key;
+            this.requestHash = requestHash;
+            this.record = record;
+            this.held = held;
+        }
+
+        public Status getStatus() { return status; }
+
+        // The stored response when the status is REPLAY
+        public IdempotencyRecord getRecord() { return record; }
+
+        /**
+         * Write the response inside the caller's transaction; it only counts once that commits.
+         */
+        public void record(Connection conn, int statusCode, String responseBody, String orderId) throws SQLException {
+            IdempotencyRecord pending = new IdempotencyRecord(key, requestHash, statusCode, responseBody, orderId,
+                    EmailOutboxDAO.formatUtc(Instant.now()));
+            dao.insert(conn, pending);
+            record = pending;
+        }
+
+        // Called after the transaction that wrote the record has committed
+        public void committed() {
+            if (record != null) {
+                remember(record);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (held) {
+                held = false;
+                inFlight.remove(key);
+            }
+        }
+    }
+}
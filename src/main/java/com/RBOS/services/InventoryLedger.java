@@ -0,0 +1,409 @@
+package com.RBOS.services;
+
+import com.RBOS.dao.InventoryDAO;
+import com.RBOS.models.Inventory;
+import com.RBOS.utils.DatabaseConnection;
+import jakarta.servlet.ServletContext;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory view of on-hand stock that checkout reserves against.
+ *
+ * Each menu item has its own lock; a reservation locks every item on the order (in item id
+ * order, so concurrent checkouts cannot deadlock), checks all lines, and takes the stock in
+ * one step, so two orders can never both get the last unit. Confirmed reservations are
+ * written back to the inventory table by a background flush that batches every pending
+ * decrement into one transaction. Direct edits to inventory rows must go through
+ * {@link #update(Collection, StockWrite)} so the in-memory view is reloaded.
+ */
+public class InventoryLedger {
+    private static final long FLUSH_INTERVAL_MS = 500;
+
+    private static final Map<String, InventoryLedger> ledgers = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService flusher;
+
+    private final InventoryDAO inventoryDAO;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile boolean loaded;
+
+    private final AtomicLong reservations = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong unitsFlushed = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong unitsUnmatched = new AtomicLong();
+    private volatile long lastFlushMillis;
+
+    public InventoryLedger(InventoryDAO inventoryDAO) {
+        this.inventoryDAO = inventoryDAO;
+    }
+
+    /**
+     * Ledger for the database the context resolves to, with write-behind flushing scheduled.
+     */
+    public static InventoryLedger forContext(ServletContext context) throws SQLException {
+        String dbPath = DatabaseConnection.getDatabasePath(context);
+        return ledgers.computeIfAbsent(dbPath, path -> {
+            startFlusher();
+            return new InventoryLedger(new InventoryDAO(context));
+        });
+    }
+
+    private static synchronized void startFlusher() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rbos-inventory-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(InventoryLedger::flushAll, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private static void flushAll() {
+        for (InventoryLedger ledger : ledgers.values()) {
+            try {
+                ledger.flush();
+            } catch (Exception e) {
+                System.err.println("Inventory flush failed, will retry: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Flush every ledger and stop the background flusher; called when the application is undeployed.
+     */
+    public static synchronized void shutdownAll() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+        flushAll();
+        ledgers.clear();
+    }
+
+    /**
+     * Reserve every line of an order, or nothing. Quantities are keyed by menu item id.
+     */
+    public Reservation reserve(Map<String, Integer> quantitiesByItemId) throws SQLException {
+        ensureLoaded();
+        TreeMap<String, Integer> lines = new TreeMap<>(quantitiesByItemId);
+        List<Entry> involved = new ArrayList<>(lines.size());
+        List<String> problems = new ArrayList<>();
+        for (String itemId : lines.keySet()) {
+            Entry entry = entryFor(itemId);
+            if (entry == null) {
+                problems.add("Item not available: " + itemId);
+            } else {
+                involved.add(entry);
+            }
+        }
+
+        List<Entry> locked = new ArrayList<>(involved.size());
+        try {
+            for (Entry entry : involved) {
+                entry.lock.lock();
+                locked.add(entry);
+            }
+
+            for (Entry entry : locked) {
+                int requested = lines.get(entry.itemId);
+                if (!entry.active) {
+                    problems.add("Item not available: " + entry.itemId);
+                } else if (entry.available() < requested) {
+                    problems.add("Insufficient stock for: " + entry.name +
+                            " (Available: " + Math.max(entry.available(), 0) + ", Requested: " + requested + ")");
+                }
+            }
+
+            if (!problems.isEmpty()) {
+                rejected.incrementAndGet();
+                return new Reservation(Collections.emptyMap(), problems);
+            }
+
+            Map<Entry, Integer> taken = new LinkedHashMap<>();
+            for (Entry entry : locked) {
+                int qty = lines.get(entry.itemId);
+                entry.reserved += qty;
+                taken.put(entry, qty);
+            }
+            reservations.incrementAndGet();
+            return new Reservation(taken, problems);
+        } finally {
+            for (Entry entry : locked) {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Units that can currently be reserved, or null when the item has no inventory row.
+     */
+    public Integer getAvailable(String itemId) throws SQLException {
+        ensureLoaded();
+        Entry entry = entryFor(itemId);
+        if (entry == null) {
+            return null;
+        }
+        entry.lock.lock();
+        try {
+            return entry.available();
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * Write confirmed reservations to the inventory table in one batch.
+     */
+    public void flush() throws SQLException {
+        flushLock.lock();
+        try {
+            Map<String, Integer> deltas = new TreeMap<>();
+            for (Entry entry : entries.values()) {
+                entry.lock.lock();
+                try {
+                    if (entry.pending != 0) {
+                        deltas.put(entry.itemId, entry.pending);
+                    }
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+            if (deltas.isEmpty()) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            List<String> unmatched;
+            try {
+                unmatched = inventoryDAO.applyStockDeltas(deltas);
+            } catch (SQLException e) {
+                flushFailures.incrementAndGet();
+                throw e;
+            }
+
+            for (String itemId : unmatched) {
+                // the row went away without passing through update(); the entry is stale
+                int lost = deltas.remove(itemId);
+                unitsUnmatched.addAndGet(lost);
+                System.err.println("Inventory flush matched no row for item " + itemId + " (" + lost
+                        + " unit(s)); reloading its entry");
+                reload(itemId);
+            }
+
+            for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+                Entry entry = entries.get(delta.getKey());
+                if (entry == null) {
+                    continue;
+                }
+                entry.lock.lock();
+                try {
+                    entry.onHand -= delta.getValue();
+                    entry.pending -= delta.getValue();
+                } finally {
+                    entry.lock.unlock();
+                }
+                unitsFlushed.addAndGet(delta.getValue());
+            }
+            flushes.incrementAndGet();
+            lastFlushMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Run a direct write to inventory rows (admin edits, counts, deletes) against a fully
+     * flushed table, then reload the affected items from the database.
+     */
+    public <T> T update(Collection<String> itemIds, StockWrite<T> write) throws SQLException {
+        flushLock.lock();
+        try {
+            flush();
+            T result = write.apply();
+            for (String itemId : itemIds) {
+                if (itemId != null) {
+                    reload(itemId);
+                }
+            }
+            return result;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long pendingUnits = 0;
+        long reservedUnits = 0;
+        for (Entry entry : entries.values()) {
+            entry.lock.lock();
+            try {
+                pendingUnits += entry.pending;
+                reservedUnits += entry.reserved;
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("items", entries.size());
+        stats.put("reservations", reservations.get());
+        stats.put("rejected", rejected.get());
+        stats.put("reservedUnits", reservedUnits);
+        stats.put("pendingUnits", pendingUnits);
+        stats.put("flushes", flushes.get());
+        stats.put("unitsFlushed", unitsFlushed.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("unitsUnmatched", unitsUnmatched.get());
+        stats.put("lastFlushMillis", lastFlushMillis);
+        return stats;
+    }
+
+    private void ensureLoaded() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            for (Inventory inventory : inventoryDAO.getStockLevelsByItemId().values()) {
+                entries.putIfAbsent(inventory.getItemId(), new Entry(inventory));
+            }
+            loaded = true;
+        }
+    }
+
+    // Rows added after the initial load are picked up on first use
+    private Entry entryFor(String itemId) throws SQLException {
+        Entry entry = entries.get(itemId);
+        if (entry != null || itemId == null) {
+            return entry;
+        }
+        Inventory inventory = inventoryDAO.getInventoryByItemId(itemId);
+        if (inventory == null) {
+            return null;
+        }
+        return entries.computeIfAbsent(itemId, id -> new Entry(inventory));
+    }
+
+    private void reload(String itemId) throws SQLException {
+        Inventory inventory = inventoryDAO.getInventoryByItemId(itemId);
+        if (inventory == null) {
+            entries.remove(itemId);
+            return;
+        }
+        Entry entry = entries.computeIfAbsent(itemId, id -> new Entry(inventory));
+        entry.lock.lock();
+        try {
+            entry.apply(inventory);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    public interface StockWrite<T> {
+        T apply() throws SQLException;
+    }
+
+    /**
+     * Stock held for one order. Confirm once the order commits; release if it does not.
+     */
+    public static class Reservation {
+        private final Map<Entry, Integer> taken;
+        private final List<String> problems;
+        private boolean settled;
+
+        private Reservation(Map<Entry, Integer> taken, List<String> problems) {
+            this.taken = taken;
+            this.problems = problems;
+        }
+
+        public boolean isSuccessful() {
+            return problems.isEmpty();
+        }
+
+        public List<String> getProblems() {
+            return problems;
+        }
+
+        // Hands the units to the write-behind flush
+        public synchronized void confirm() {
+            if (settled) {
+                return;
+            }
+            settled = true;
+            for (Map.Entry<Entry, Integer> line : taken.entrySet()) {
+                Entry entry = line.getKey();
+                entry.lock.lock();
+                try {
+                    entry.reserved -= line.getValue();
+                    entry.pending += line.getValue();
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+        }
+
+        public synchronized void release() {
+            if (settled) {
+                return;
+            }
+            settled = true;
+            for (Map.Entry<Entry, Integer> line : taken.entrySet()) {
+                Entry entry = line.getKey();
+                entry.lock.lock();
+                try {
+                    entry.reserved -= line.getValue();
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+        final String itemId;
+        final ReentrantLock lock = new ReentrantLock();
+        String name;
+        boolean active;
+        // last quantity known to be in the table
+        int onHand;
+        // confirmed but not yet flushed
+        int pending;
+        // held by checkouts that have not committed yet
+        int reserved;
+
+        Entry(Inventory inventory) {
+            this.itemId = inventory.getItemId();
+            apply(inventory);
+        }
+
+        void apply(Inventory inventory) {
+            this.name = inventory.getName();
+            this.active = inventory.getActive() == null || inventory.getActive();
+            this.onHand = inventory.getQtyOnHand() != null ? inventory.getQtyOnHand() : 0;
+        }
+
+        int available() {
+            return onHand - pending - reserved;
+        }
+    }
+}
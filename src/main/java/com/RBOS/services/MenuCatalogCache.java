@@ -0,0 +1,198 @@
+package com.RBOS.services;
+
+import com.RBOS.dao.MenuItemDAO;
+import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.Json;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pre-serialized menu lists, held as JSON and gzip byte arrays per view.
+ *
+ * The menu version is bumped by every {@link MenuItemDAO} write and the inventory version by
+ * every inventory write; a view is rebuilt from the database only when a version it depends
+ * on has moved, so repeat reads of the customer menu never touch the database.
+ */
+public class MenuCatalogCache {
+    public static final String VIEW_ALL = "all";
+    public static final String VIEW_ACTIVE = "active";
+    public static final String VIEW_WITH_INVENTORY = "with-inventory";
+
+    private static final Map<String, MenuCatalogCache> caches = new ConcurrentHashMap<>();
+
+    private final MenuItemDAO menuItemDAO;
+    private final ObjectMapper objectMapper = Json.mapper();
+    private final AtomicLong menuVersion = new AtomicLong(1);
+    private final AtomicLong inventoryVersion = new AtomicLong(1);
+    private final Map<String, View> views = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+
+    public MenuCatalogCache(MenuItemDAO menuItemDAO) {
+        this.menuItemDAO = menuItemDAO;
+    }
+
+    public static MenuCatalogCache forContext(ServletContext context) throws SQLException {
+        String dbPath = DatabaseConnection.getDatabasePath(context);
+        return caches.computeIfAbsent(dbPath, path -> new MenuCatalogCache(new MenuItemDAO(context)));
+    }
+
+    // Called after a menu_items write commits
+    public static void menuChanged(ServletContext context) {
+        MenuCatalogCache cache = existing(context);
+        if (cache != null) {
+            cache.menuVersion.incrementAndGet();
+        }
+    }
+
+    // Called after an inventory write commits; only the with-inventory view depends on it
+    public static void inventoryChanged(ServletContext context) {
+        MenuCatalogCache cache = existing(context);
+        if (cache != null) {
+            cache.inventoryVersion.incrementAndGet();
+        }
+    }
+
+    private static MenuCatalogCache existing(ServletContext context) {
+        try {
+            return caches.get(DatabaseConnection.getDatabasePath(context));
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    public View get(String name) throws SQLException, IOException {
+        View view = views.get(name);
+        if (view != null && isCurrent(view)) {
+            hits.incrementAndGet();
+            return view;
+        }
+
+        synchronized (this) {
+            view = views.get(name);
+            if (view != null && isCurrent(view)) {
+                hits.incrementAndGet();
+                return view;
+            }
+            // Read versions before loading so a write that lands mid-build forces another rebuild
+            long menu = menuVersion.get();
+            long inventory = inventoryVersion.get();
+            byte[] json = objectMapper.writeValueAsBytes(load(name));
+            view = new View(name, menu, inventory, json, gzip(json), etagFor(json));
+            views.put(name, view);
+            rebuilds.incrementAndGet();
+            return view;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("menuVersion", menuVersion.get());
+        stats.put("inventoryVersion", inventoryVersion.get());
+        stats.put("views", views.size());
+        stats.put("hits", hits.get());
+        stats.put("rebuilds", rebuilds.get());
+        return stats;
+    }
+
+    private boolean isCurrent(View view) {
+        if (view.menuVersion != menuVersion.get()) {
+            return false;
+        }
+        return !VIEW_WITH_INVENTORY.equals(view.name) || view.inventoryVersion == inventoryVersion.get();
+    }
+
+    private Object load(String name) throws SQLException {
+        switch (name) {
+            case VIEW_ALL:
+                return menuItemDAO.getAllMenuItems();
+            case VIEW_ACTIVE:
+                return menuItemDAO.getActiveMenuItems();
+            case VIEW_WITH_INVENTORY:
+                return menuItemDAO.getActiveMenuItemsWithInventory();
+            default:
+                throw new IllegalArgumentException("Unknown menu view: " + name);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, json.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        }
+        return out.toByteArray();
+    }
+
+    private static String etagFor(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            StringBuilder hex = new StringBuilder("\"");
+            for (int i = 0; i < 12; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * One serialized menu list. The gzip body has its own strong ETag since it is a different
+     * representation of the same content.
+     */
+    public static class View {
+        private final String name;
+        private final long menuVersion;
+        private final long inventoryVersion;
+        private final byte[] json;
+        private final byte[] gzip;
+        private final String etag;
+
+        private View(String name, long menuVersion, long inventoryVersion, byte[] json, byte[] gzip, String etag) {
+            this.name = name;
+            this.menuVersion = menuVersion;
+            this.inventoryVersion = inventoryVersion;
+            this.json = json;
+            this.gzip = gzip;
+            this.etag = etag;
+        }
+
+        public byte[] getJson() { return json; }
+        public byte[] getGzip() { return gzip; }
+        public String getEtag() { return etag; }
+
+        public String getGzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gz\"";
+        }
+
+        /**
+         * If-None-Match check; a client holding either representation's tag is up to date.
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag) || tag.equals(getGzipEtag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.RBOS.services;
+
+import com.RBOS.dao.DiningTableDAO;
+import com.RBOS.dao.ReservationDAO;
+import com.RBOS.models.DiningTable;
+import com.RBOS.models.Reservation;
+import com.RBOS.utils.DatabaseConnection;
+import jakarta.servlet.ServletContext;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of active (pending/confirmed) reservations per dining table.
+ *
+ * Each table keeps its bookings sorted by start time, so an overlap check only looks at the
+ * few bookings that start within one maximum booking length before the requested window.
+ * Reservation writes run through {@link #reserve} / {@link #sync} / {@link #remove}, which
+ * hold the table's lock across the check, the database write and the index update, so two
+ * requests can never both book the same slot.
+ */
+public class TableAvailabilityIndex {
+    private static final Map<String, TableAvailabilityIndex> indexes = new ConcurrentHashMap<>();
+
+    private final ReservationDAO reservationDAO;
+    private final DiningTableDAO diningTableDAO;
+
+    // Writers that change the set of tables take the write lock; bookings and queries share the read lock
+    private final ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+    private final Map<String, Schedule> schedules = new ConcurrentHashMap<>();
+    private final Map<String, Booking> bookingsById = new ConcurrentHashMap<>();
+    private volatile List<DiningTable> tablesByCapacity = new ArrayList<>();
+    private volatile boolean loaded;
+
+    public TableAvailabilityIndex(ReservationDAO reservationDAO, DiningTableDAO diningTableDAO) {
+        this.reservationDAO = reservationDAO;
+        this.diningTableDAO = diningTableDAO;
+    }
+
+    public static TableAvailabilityIndex forContext(ServletContext context) throws SQLException {
+        String dbPath = DatabaseConnection.getDatabasePath(context);
+        return indexes.computeIfAbsent(dbPath,
+                path -> new TableAvailabilityIndex(new ReservationDAO(context), new DiningTableDAO(context)));
+    }
+
+    // Called after a dining_tables write; deletes cascade to reservations, so everything is reloaded
+    public static void tablesChanged(ServletContext context) {
+        try {
+            TableAvailabilityIndex index = indexes.get(DatabaseConnection.getDatabasePath(context));
+            if (index != null) {
+                index.invalidate();
+            }
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * Parse a stored UTC timestamp; returns null when it is not in a recognised ISO form.
+     */
+    public static Long toEpochMillis(String utc) {
+        if (utc == null || utc.isBlank()) {
+            return null;
+        }
+        try {
+            return Instant.parse(utc).toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return OffsetDateTime.parse(utc).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+        }
+        try {
+            return LocalDateTime.parse(utc).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException ignored) {
+        }
+        return null;
+    }
+
+    public boolean isAvailable(String tableId, String startUtc, String endUtc, String excludeReservationId)
+            throws SQLException {
+        long start = requireTime(startUtc);
+        long end = requireTime(endUtc);
+        ensureLoaded();
+        structure.readLock().lock();
+        try {
+            Schedule schedule = schedules.get(tableId);
+            if (schedule == null) {
+                return true;
+            }
+            schedule.lock.lock();
+            try {
+                return !schedule.overlaps(start, end, excludeReservationId);
+            } finally {
+                schedule.lock.unlock();
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tables seating at least the party with no active booking in the window, smallest first.
+     */
+    public List<DiningTable> getAvailableTables(String startUtc, String endUtc, int partySize) throws SQLException {
+        long start = requireTime(startUtc);
+        long end = requireTime(endUtc);
+        ensureLoaded();
+        List<DiningTable> available = new ArrayList<>();
+        structure.readLock().lock();
+        try {
+            for (DiningTable table : tablesByCapacity) {
+                if (table.getCapacity() == null || table.getCapacity() < partySize) {
+                    continue;
+                }
+                Schedule schedule = schedules.get(table.getTableId());
+                boolean free;
+                if (schedule == null) {
+                    free = true;
+                } else {
+                    schedule.lock.lock();
+                    try {
+                        free = !schedule.overlaps(start, end, null);
+                    } finally {
+                        schedule.lock.unlock();
+                    }
+                }
+                if (free) {
+                    available.add(new DiningTable(table.getTableId(), table.getName(), table.getCapacity(),
+                            table.getBasePrice(), table.getPosX(), table.getPosY()));
+                }
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+        return available;
+    }
+
+    /**
+     * Check the slot and, if it is free, run the database write and record the booking, all
+     * under the table's lock. Returns false on a conflict or when the write reports no change.
+     * Inactive reservations are written without a check and drop out of the index.
+     */
+    public boolean reserve(String reservationId, String tableId, String startUtc, String endUtc, boolean active,
+            BookingWrite write) throws SQLException {
+        return apply(reservationId, tableId, startUtc, endUtc, active, true, write);
+    }
+
+    /**
+     * Run a write that must be mirrored without a conflict check (e.g. a status change).
+     */
+    public boolean sync(String reservationId, String tableId, String startUtc, String endUtc, boolean active,
+            BookingWrite write) throws SQLException {
+        return apply(reservationId, tableId, startUtc, endUtc, active, false, write);
+    }
+
+    public boolean remove(String reservationId, BookingWrite write) throws SQLException {
+        ensureLoaded();
+        structure.readLock().lock();
+        try {
+            Booking existing = bookingsById.get(reservationId);
+            Schedule schedule = existing != null ? schedules.get(existing.tableId) : null;
+            if (schedule != null) {
+                schedule.lock.lock();
+            }
+            try {
+                boolean removed = write.apply();
+                if (removed && schedule != null) {
+                    schedule.bookings.remove(existing);
+                    bookingsById.remove(reservationId);
+                }
+                return removed;
+            } finally {
+                if (schedule != null) {
+                    schedule.lock.unlock();
+                }
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loaded", loaded);
+        stats.put("tables", tablesByCapacity.size());
+        stats.put("activeBookings", bookingsById.size());
+        return stats;
+    }
+
+    private boolean apply(String reservationId, String tableId, String startUtc, String endUtc, boolean active,
+            boolean checkConflicts, BookingWrite write) throws SQLException {
+        Long start = toEpochMillis(startUtc);
+        Long end = toEpochMillis(endUtc);
+        if (active && (start == null || end == null || tableId == null)) {
+            throw new IllegalArgumentException("Reservation needs a table and ISO-8601 start/end times");
+        }
+        ensureLoaded();
+        structure.readLock().lock();
+        try {
+            Booking existing = bookingsById.get(reservationId);
+            List<Schedule> locked = lockSchedules(existing != null ? existing.tableId : null, tableId);
+            try {
+                if (active && checkConflicts && schedules.get(tableId).overlaps(start, end, reservationId)) {
+                    return false;
+                }
+                if (!write.apply()) {
+                    return false;
+                }
+                if (existing != null) {
+                    schedules.get(existing.tableId).bookings.remove(existing);
+                    bookingsById.remove(reservationId);
+                }
+                if (active) {
+                    Booking booking = new Booking(reservationId, tableId, start, end);
+                    schedules.get(tableId).add(booking);
+                    bookingsById.put(reservationId, booking);
+                }
+                return true;
+            } finally {
+                for (Schedule schedule : locked) {
+                    schedule.lock.unlock();
+                }
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    // Locks in table id order so two writes touching the same pair of tables cannot deadlock
+    private List<Schedule> lockSchedules(String first, String second) {
+        TreeSet<String> tableIds = new TreeSet<>();
+        if (first != null) {
+            tableIds.add(first);
+        }
+        if (second != null) {
+            tableIds.add(second);
+        }
+        List<Schedule> locked = new ArrayList<>(tableIds.size());
+        for (String id : tableIds) {
+            Schedule schedule = schedules.computeIfAbsent(id, k -> new Schedule());
+            schedule.lock.lock();
+            locked.add(schedule);
+        }
+        return locked;
+    }
+
+    private void invalidate() {
+        structure.writeLock().lock();
+        try {
+            loaded = false;
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        structure.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            List<DiningTable> tables = new ArrayList<>(diningTableDAO.getAllTables());
+            tables.sort(Comparator.comparing(t -> t.getCapacity() != null ? t.getCapacity() : 0));
+
+            schedules.clear();
+            bookingsById.clear();
+            int skipped = 0;
+            for (Reservation reservation : reservationDAO.getActiveReservationWindows()) {
+                Long start = toEpochMillis(reservation.getStartUtc());
+                Long end = toEpochMillis(reservation.getEndUtc());
+                if (start == null || end == null) {
+                    skipped++;
+                    continue;
+                }
+                Booking booking = new Booking(reservation.getReservationId(), reservation.getTableId(), start, end);
+                schedules.computeIfAbsent(booking.tableId, k -> new Schedule()).add(booking);
+                bookingsById.put(booking.reservationId, booking);
+            }
+            if (skipped > 0) {
+                System.err.println("Table availability index skipped " + skipped
+                        + " reservation(s) with unparseable times");
+            }
+            tablesByCapacity = tables;
+            loaded = true;
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    private static long requireTime(String utc) {
+        Long millis = toEpochMillis(utc);
+        if (millis == null) {
+            throw new IllegalArgumentException("Not an ISO-8601 timestamp: " + utc);
+        }
+        return millis;
+    }
+
+    @FunctionalInterface
+    public interface BookingWrite {
+        boolean apply() throws SQLException;
+    }
+
+    private static class Booking {
+        final String reservationId;
+        final String tableId;
+        final long start;
+        final long end;
+
+        Booking(String reservationId, String tableId, long start, long end) {
+            this.reservationId = reservationId;
+            this.tableId = tableId;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static class Schedule {
+        private static final Comparator<Booking> BY_START =
+                Comparator.<Booking>comparingLong(b -> b.start).thenComparing(b -> b.reservationId);
+
+        final ReentrantLock lock = new ReentrantLock();
+        final TreeSet<Booking> bookings = new TreeSet<>(BY_START);
+        // never shrinks, so the scan window stays conservative after removals
+        long maxDuration;
+
+        void add(Booking booking) {
+            bookings.add(booking);
+            maxDuration = Math.max(maxDuration, booking.end - booking.start);
+        }
+
+        // Same rule as the SQL check: overlapping unless one ends before (or as) the other starts
+        boolean overlaps(long start, long end, String excludeReservationId) {
+            Booking from = new Booking("", null, start - maxDuration, 0);
+            Booking to = new Booking("", null, end, 0);
+            for (Booking booking : bookings.subSet(from, true, to, false)) {
+                if (booking.end > start && !booking.reservationId.equals(excludeReservationId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.RBOS.services;
+
+import com.RBOS.dao.UserDAO;
+import com.RBOS.models.User;
+import com.RBOS.utils.DatabaseConnection;
+import jakarta.servlet.ServletContext;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Read-through cache of user rows by id and by email, bounded by entry count (least recently
+ * used goes first) and by age.
+ *
+ * Every {@link UserDAO} write to a user invalidates that user, so within one app node a cached
+ * row is never older than the last update. The TTL only bounds how long a change made
+ * elsewhere (another node, or a manual edit of the database) can go unseen. Callers get their
+ * own copy of the user, so changing it never changes the cached row.
+ */
+public class UserCache {
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_TTL_MS = 60_000;
+
+    private static final Map<String, UserCache> caches = new ConcurrentHashMap<>();
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    // Guarded by this; access order so the first entry is the least recently used
+    private final LinkedHashMap<String, Entry> byId = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, String> idByEmail = new HashMap<>();
+    // Bumped by every invalidation so a load that raced a write is not cached
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @FunctionalInterface
+    public interface Loader {
+        User load() throws SQLException;
+    }
+
+    public UserCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::currentTimeMillis);
+    }
+
+    public UserCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    public static UserCache forContext(ServletContext context) throws SQLException {
+        String dbPath = DatabaseConnection.getDatabasePath(context);
+        return caches.computeIfAbsent(dbPath, path -> new UserCache(
+                (int) DatabaseConnection.resolveLongSetting(context, "RBOS_USER_CACHE_SIZE", DEFAULT_MAX_ENTRIES),
+                DatabaseConnection.resolveLongSetting(context, "RBOS_USER_CACHE_TTL_MS", DEFAULT_TTL_MS)));
+    }
+
+    // Called after a users write commits
+    public static void userChanged(ServletContext context, String userId) {
+        try {
+            UserCache cache = caches.get(DatabaseConnection.getDatabasePath(context));
+            if (cache != null) {
+                cache.invalidate(userId);
+            }
+        } catch (SQLException ignored) {
+        }
+    }
+
+    public User getById(String userId, Loader loader) throws SQLException {
+        if (userId == null) {
+            return loader.load();
+        }
+        long seen;
+        synchronized (this) {
+            User cached = lookup(userId);
+            if (cached != null) {
+                return cached;
+            }
+            seen = generation;
+        }
+        return loadAndStore(loader, seen);
+    }
+
+    public User getByEmail(String email, Loader loader) throws SQLException {
+        if (email == null) {
+            return loader.load();
+        }
+        long seen;
+        synchronized (this) {
+            String userId = idByEmail.get(email);
+            User cached = userId != null ? lookup(userId) : null;
+            if (cached != null && email.equals(cached.getEmail())) {
+                return cached;
+            }
+            seen = generation;
+        }
+        return loadAndStore(loader, seen);
+    }
+
+    public synchronized void invalidate(String userId) {
+        generation++;
+        invalidations.incrementAndGet();
+        if (userId != null) {
+            remove(userId);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations.incrementAndGet();
+        byId.clear();
+        idByEmail.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("size", byId.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    // Caller holds the lock; counts a hit and returns a copy, or drops an expired entry
+    private User lookup(String userId) {
+        Entry entry = byId.get(userId);
+        if (entry == null) {
+            return null;
+        }
+        if (clock.getAsLong() - entry.loadedAt >= ttlMillis) {
+            remove(userId);
+            expirations.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return copy(entry.user);
+    }
+
+    private User loadAndStore(Loader loader, long seen) throws SQLException {
+        misses.incrementAndGet();
+        User user = loader.load();
+        if (user == null || user.getUserId() == null) {
+            return user;
+        }
+        synchronized (this) {
+            if (generation == seen) {
+                remove(user.getUserId());
+                byId.put(user.getUserId(), new Entry(copy(user), clock.getAsLong()));
+                if (user.getEmail() != null) {
+                    idByEmail.put(user.getEmail(), user.getUserId());
+                }
+                evictOverflow();
+            }
+        }
+        return user;
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> it = byId.entrySet().iterator();
+        while (byId.size() > maxEntries && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            unindexEmail(eldest.user);
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String userId) {
+        Entry entry = byId.remove(userId);
+        if (entry != null) {
+            unindexEmail(entry.user);
+        }
+    }
+
+    private void unindexEmail(User user) {
+        if (user.getEmail() != null) {
+            idByEmail.remove(user.getEmail(), user.getUserId());
+        }
+    }
+
+    private static User copy(User source) {
+        User user = new User(source.getUserId(), source.getRole(), source.getFullName(), source.getEmail(),
+                source.getPhone(), source.getPasswordHash());
+        user.setAddress(source.getAddress());
+        user.setAddress2(source.getAddress2());
+        user.setCity(source.getCity());
+        user.setState(source.getState());
+        user.setPostalCode(source.getPostalCode());
+        return user;
+    }
+
+    private static class Entry {
+        private final User user;
+        private final long loadedAt;
+
+        private Entry(User user, long loadedAt) {
+            this.user = user;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
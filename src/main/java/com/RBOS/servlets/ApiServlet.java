@@ -0,0 +1,266 @@
+package com.RBOS.servlets;
+
+import com.RBOS.dao.RowHandler;
+import com.RBOS.utils.DatabaseConnection;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base class for the /api servlets.
+ *
+ * Requests that change data (anything but GET, HEAD, OPTIONS and TRACE) first take one of
+ * RBOS_API_MAX_WRITERS permits, so a burst of submissions queues here in arrival order instead
+ * of each one holding a pooled connection while SQLite's busy handler retries the write lock.
+ *
+ * With RBOS_API_EXECUTION=async the request is also handed off the container thread to a
+ * shared executor: one virtual thread per request when the JVM has them (Java 21+), otherwise
+ * a fixed pool of RBOS_API_THREADS platform threads. Blocking JDBC work then parks that thread
+ * instead of one of the container's, and at most RBOS_API_MAX_IN_FLIGHT requests are accepted
+ * at once; the rest get 503 with Retry-After.
+ */
+public abstract class ApiServlet extends HttpServlet {
+    private static final long WRITE_PERMIT_TIMEOUT_MS = 10_000;
+    private static final int DEFAULT_MAX_WRITERS = 4;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+    private static final int DEFAULT_PLATFORM_THREADS = 64;
+
+    private static Execution execution;
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        Execution exec = execution(getServletContext());
+        if (exec.executor == null || request.getDispatcherType() != DispatcherType.REQUEST
+                || !request.isAsyncSupported()) {
+            serviceLimited(exec, request, response);
+            return;
+        }
+
+        if (!exec.inFlight.tryAcquire()) {
+            exec.rejected.incrementAndGet();
+            reject(response);
+            return;
+        }
+        AsyncContext async = request.startAsync();
+        // the handler always finishes the request itself, so the container should not time it out
+        async.setTimeout(0);
+        try {
+            exec.executor.execute(() -> {
+                try {
+                    serviceLimited(exec, request, response);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    if (!response.isCommitted()) {
+                        try {
+                            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                        } catch (IOException ignored) {
+                        }
+                    }
+                } finally {
+                    exec.inFlight.release();
+                    async.complete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            exec.inFlight.release();
+            exec.rejected.incrementAndGet();
+            reject(response);
+            async.complete();
+        }
+    }
+
+    private void serviceLimited(Execution exec, HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (exec.writers == null || !isWrite(request.getMethod())) {
+            super.service(request, response);
+            return;
+        }
+
+        boolean acquired;
+        exec.writersWaiting.incrementAndGet();
+        try {
+            acquired = exec.writers.tryAcquire(WRITE_PERMIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            exec.writersWaiting.decrementAndGet();
+        }
+        if (!acquired) {
+            exec.rejected.incrementAndGet();
+            reject(response);
+            return;
+        }
+        try {
+            super.service(request, response);
+        } finally {
+            exec.writers.release();
+        }
+    }
+
+    /**
+     * Rows a DAO stream method hands out one at a time, e.g. {@code orderDAO::streamAllOrders}.
+     */
+    @FunctionalInterface
+    protected interface RowSource {
+        void forEach(RowHandler<Object> handler) throws SQLException, IOException;
+    }
+
+    /**
+     * Write the rows as one JSON array straight to the response, so neither the list nor the
+     * body is ever held in memory whole. A failure before anything reaches the client resets
+     * the response and is rethrown for the caller's usual error handling; once bytes have gone
+     * out the status line is fixed, so the truncated array is all the client gets.
+     */
+    protected static void writeJsonArray(HttpServletResponse response, ObjectWriter rowWriter, RowSource rows)
+            throws SQLException, IOException {
+        // one flush at the end instead of one per row
+        ObjectWriter writer = rowWriter.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator json = writer.getFactory().createGenerator(response.getWriter());
+        try {
+            json.writeStartArray();
+            rows.forEach(row -> writer.writeValue(json, row));
+            json.writeEndArray();
+            json.close();
+        } catch (SQLException | IOException | RuntimeException e) {
+            if (!response.isCommitted()) {
+                String contentType = response.getContentType();
+                response.reset();
+                response.setContentType(contentType);
+                throw e;
+            }
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean isWrite(String method) {
+        return !("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method)
+                || "TRACE".equals(method));
+    }
+
+    private static void reject(HttpServletResponse response) throws IOException {
+        response.setHeader("Retry-After", "1");
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server busy, please retry");
+    }
+
+    private static synchronized Execution execution(ServletContext context) {
+        if (execution == null) {
+            execution = new Execution(context);
+        }
+        return execution;
+    }
+
+    public static synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        if (execution == null) {
+            stats.put("mode", "not started");
+            return stats;
+        }
+        Execution exec = execution;
+        stats.put("mode", exec.executor == null ? "container" : exec.virtual ? "async-virtual" : "async-platform");
+        stats.put("maxWriters", exec.maxWriters);
+        stats.put("activeWriters", exec.writers == null ? 0 : exec.maxWriters - exec.writers.availablePermits());
+        stats.put("writersWaiting", exec.writersWaiting.get());
+        if (exec.executor != null) {
+            stats.put("maxInFlight", exec.maxInFlight);
+            stats.put("inFlight", exec.maxInFlight - exec.inFlight.availablePermits());
+        }
+        stats.put("rejected", exec.rejected.get());
+        return stats;
+    }
+
+    /**
+     * Let queued requests finish and stop the executor; called when the application is undeployed.
+     */
+    public static void shutdownAll() {
+        Execution exec;
+        synchronized (ApiServlet.class) {
+            exec = execution;
+            execution = null;
+        }
+        if (exec == null || exec.executor == null) {
+            return;
+        }
+        exec.executor.shutdown();
+        try {
+            if (!exec.executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                System.err.println("API requests still running at shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Execution {
+        private final ExecutorService executor;
+        private final boolean virtual;
+        private final int maxWriters;
+        private final Semaphore writers;
+        private final int maxInFlight;
+        private final Semaphore inFlight;
+        private final AtomicInteger writersWaiting = new AtomicInteger();
+        private final AtomicLong rejected = new AtomicLong();
+
+        private Execution(ServletContext context) {
+            maxWriters = (int) DatabaseConnection.resolveLongSetting(context, "RBOS_API_MAX_WRITERS", DEFAULT_MAX_WRITERS);
+            // 0 turns the write limit off
+            writers = maxWriters > 0 ? new Semaphore(maxWriters, true) : null;
+            maxInFlight = (int) Math.max(1,
+                    DatabaseConnection.resolveLongSetting(context, "RBOS_API_MAX_IN_FLIGHT", DEFAULT_MAX_IN_FLIGHT));
+            inFlight = new Semaphore(maxInFlight);
+
+            if ("async".equalsIgnoreCase(DatabaseConnection.resolveSetting(context, "RBOS_API_EXECUTION"))) {
+                ExecutorService perTask = newVirtualThreadExecutor();
+                virtual = perTask != null;
+                executor = perTask != null ? perTask : newPlatformExecutor((int) Math.max(1,
+                        DatabaseConnection.resolveLongSetting(context, "RBOS_API_THREADS", DEFAULT_PLATFORM_THREADS)));
+                System.out.println("API requests run on " + (virtual ? "virtual threads" : "a platform thread pool"));
+            } else {
+                executor = null;
+                virtual = false;
+            }
+        }
+
+        // The build targets Java 17, so the Java 21 factory is looked up rather than called directly
+        private static ExecutorService newVirtualThreadExecutor() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        private static ExecutorService newPlatformExecutor(int threads) {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, "rbos-api-" + counter.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+}
@@ -1,118 +1,148 @@
 package com.RBOS.servlets;
 
 import com.RBOS.dao.AuditLogDAO;
-import com.RBOS.dao.UserDAO;
 import com.RBOS.models.AuditLog;
-import com.RBOS.models.User;
+import com.RBOS.utils.ContentEncoding;
+import com.RBOS.utils.HistoryValidation;
+import com.RBOS.utils.Json;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
-import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
-
-@WebServlet("/api/audit-log/export")
-public class AuditLogServlet extends HttpServlet {
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Audit log export for admins, streamed straight from the database cursor.
+ * GET /api/audit-log/export?entityType=&entityId=&start_utc=&end_utc=&format=csv|ndjson
+ *
+ * Rows are written as they are read, so the export never holds more than one fetch batch
+ * in memory. The body is gzipped when the client accepts it.
+ */
+@WebServlet(urlPatterns = "/api/audit-log/export", asyncSupported = true)
+public class AuditLogServlet extends ApiServlet {
+    private static final int WRITE_BUFFER_SIZE = 16 * 1024;
+
+    private final ObjectMapper objectMapper = Json.mapper();
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
 
-        // Check authentication and admin role
+        // Check authentication and admin role; the role is stored on the session at login
         HttpSession session = request.getSession(false);
         if (session == null || session.getAttribute("userId") == null) {
-            System.out.println("AuditLogServlet: No session or userId. Session: " + session);
-            response.setStatus(403);
-            response.setContentType("application/json");
-            response.getWriter().write("{\"error\":\"Not authenticated\"}");
+            writeError(response, 403, "Not authenticated");
+            return;
+        }
+        Object role = session.getAttribute("role");
+        if (role == null || !"admin".equalsIgnoreCase(role.toString())) {
+            writeError(response, 403, "Admin access required");
             return;
         }
 
-        String userId = session.getAttribute("userId").toString();
-        System.out.println("AuditLogServlet: UserId from session: " + userId);
+        String entityType = request.getParameter("entityType");
+        String entityId = request.getParameter("entityId");
+        String format = request.getParameter("format");
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        if (format != null && !format.isEmpty() && !ndjson && !"csv".equalsIgnoreCase(format)) {
+            writeError(response, 400, "format must be csv or ndjson");
+            return;
+        }
 
-        // Load user to check role
+        String startUtc;
+        String endUtc;
         try {
-            UserDAO userDAO = new UserDAO(getServletContext());
-            User user = userDAO.getUserById(userId);
-
-            System.out.println("AuditLogServlet: User loaded: " + (user != null ? user.getUserId() + " role=" + user.getRole() : "null"));
-
-            if (user == null || !"admin".equalsIgnoreCase(user.getRole())) {
-                response.setStatus(403);
-                response.setContentType("application/json");
-                response.getWriter().write("{\"error\":\"Admin access required\"}");
-                return;
-            }
-        } catch (Exception e) {
-            System.out.println("AuditLogServlet: Exception verifying user: " + e.getMessage());
-            e.printStackTrace();
-            response.setStatus(500);
-            response.setContentType("application/json");
-            response.getWriter().write("{\"error\":\"Failed to verify user: " + e.getMessage() + "\"}");
+            startUtc = HistoryValidation.formatInstant(
+                    HistoryValidation.parseIsoInstant(request.getParameter("start_utc"), "start_utc"));
+            endUtc = HistoryValidation.formatInstant(
+                    HistoryValidation.parseIsoInstant(request.getParameter("end_utc"), "end_utc"));
+        } catch (IllegalArgumentException e) {
+            writeError(response, 400, e.getMessage());
             return;
         }
 
-        // Get entity type filter (optional)
-        String entityType = request.getParameter("entityType");
+        String filename = entityType != null && !entityType.isEmpty()
+                ? String.format("audit_log_%s_%s", entityType, getCurrentTimestamp())
+                : String.format("audit_log_all_%s", getCurrentTimestamp());
+        boolean gzip = ContentEncoding.acceptsGzip(request.getHeader("Accept-Encoding"));
+
+        response.setContentType(ndjson ? "application/x-ndjson" : "text/csv");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition",
+                String.format("attachment; filename=\"%s.%s\"", filename, ndjson ? "ndjson" : "csv"));
+        response.setHeader("Vary", "Accept-Encoding");
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
 
         try {
             AuditLogDAO auditDAO = new AuditLogDAO(getServletContext());
-
-            List<AuditLog> logs;
-
-            if (entityType != null && !entityType.isEmpty()) {
-                logs = auditDAO.getLogsByEntityType(entityType);
-            } else {
-                logs = auditDAO.getAllLogs();
+            OutputStream out = response.getOutputStream();
+            if (gzip) {
+                out = new GZIPOutputStream(out, WRITE_BUFFER_SIZE);
             }
-
-            // Generate CSV
-            response.setContentType("text/csv");
-            response.setCharacterEncoding("UTF-8");
-
-            String filename = entityType != null && !entityType.isEmpty()
-                    ? String.format("audit_log_%s_%s.csv", entityType, getCurrentTimestamp())
-                    : String.format("audit_log_all_%s.csv", getCurrentTimestamp());
-
-            response.setHeader("Content-Disposition", String.format("attachment; filename=\"%s\"", filename));
-
-            PrintWriter writer = response.getWriter();
-
-            // Write CSV header
-            writer.println("Timestamp,Entity Type,Entity ID,Action,User ID,User Name,Old Value,New Value");
-
-            // Write data rows
-            for (AuditLog log : logs) {
-                writer.println(String.format("%s,%s,%s,%s,%s,%s,%s,%s",
-                        escapeCsv(log.createdUtc),
-                        escapeCsv(log.entityType),
-                        escapeCsv(log.entityId),
-                        escapeCsv(log.action),
-                        escapeCsv(log.userId),
-                        escapeCsv(log.userName),
-                        escapeCsv(log.oldValue),
-                        escapeCsv(log.newValue)
-                ));
+            // Closing the writer finishes the gzip trailer and flushes whatever is buffered
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+                    WRITE_BUFFER_SIZE)) {
+                if (ndjson) {
+                    auditDAO.streamLogs(entityType, entityId, startUtc, endUtc, log -> {
+                        writer.write(objectMapper.writeValueAsString(log));
+                        writer.write('\n');
+                    });
+                } else {
+                    writer.write("Timestamp,Entity Type,Entity ID,Action,User ID,User Name,Old Value,New Value\n");
+                    auditDAO.streamLogs(entityType, entityId, startUtc, endUtc, log -> writeCsvRow(writer, log));
+                }
             }
-
-            writer.flush();
-
         } catch (Exception e) {
-            response.setStatus(500);
-            response.setContentType("application/json");
-            String errorMsg = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
-            response.getWriter().write("{\"error\":\"" + errorMsg.replace("\"", "'") + "\"}");
             e.printStackTrace();
+            // Once rows have gone out the status line is fixed; the truncated body is all the client gets
+            if (!response.isCommitted()) {
+                response.reset();
+                String errorMsg = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+                writeError(response, 500, errorMsg);
+            }
         }
     }
 
+    private void writeCsvRow(Writer writer, AuditLog log) throws IOException {
+        writer.write(escapeCsv(log.createdUtc));
+        writer.write(',');
+        writer.write(escapeCsv(log.entityType));
+        writer.write(',');
+        writer.write(escapeCsv(log.entityId));
+        writer.write(',');
+        writer.write(escapeCsv(log.action));
+        writer.write(',');
+        writer.write(escapeCsv(log.userId));
+        writer.write(',');
+        writer.write(escapeCsv(log.userName));
+        writer.write(',');
+        writer.write(escapeCsv(log.oldValue));
+        writer.write(',');
+        writer.write(escapeCsv(log.newValue));
+        writer.write('\n');
+    }
+
+    private void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(objectMapper.writeValueAsString(Map.of("error", message)));
+    }
+
     /**
      * Escape CSV values to handle commas, quotes, and newlines
      */
@@ -121,7 +151,7 @@ public class AuditLogServlet extends HttpServlet {
             return "";
         }
         // If value contains comma, quote, or newline, wrap in quotes and escape existing quotes
-        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
             return "\"" + value.replace("\"", "\"\"") + "\"";
         }
         return value;
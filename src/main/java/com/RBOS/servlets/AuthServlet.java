@@ -4,7 +4,9 @@ import com.RBOS.services.EmailService;
 import com.RBOS.services.EmailTemplates;
 
 import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.Json;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.RBOS.dao.UserDAO;
 import com.RBOS.models.User;
@@ -29,9 +31,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-@WebServlet("/api/auth/*")
-public class AuthServlet extends HttpServlet {
+@WebServlet(urlPatterns = "/api/auth/*", asyncSupported = true)
+public class AuthServlet extends ApiServlet {
     private ObjectMapper mapper;
+    private ObjectReader lenientReader;
     private ServletContext servletContext;
 
     private static final boolean BYPASS_AUTH = false; // Set to false for production authentication
@@ -52,8 +55,9 @@ public class AuthServlet extends HttpServlet {
     }
 
     private void initialize(ServletConfig config) {
-        mapper = new ObjectMapper();
-        mapper.configure(com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper = Json.mapper();
+        // request bodies are read leniently here without loosening the shared mapper
+        lenientReader = mapper.reader().without(com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
         servletContext = config != null ? config.getServletContext() : null;
     }
 
@@ -95,7 +99,7 @@ public class AuthServlet extends HttpServlet {
 
             ProfileUpdateBody body;
             try {
-                body = mapper.readValue(req.getReader(), ProfileUpdateBody.class);
+                body = lenientReader.forType(ProfileUpdateBody.class).readValue(req.getReader());
             } catch (Exception e) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 mapper.writeValue(resp.getWriter(), new Msg("invalid_profile"));
@@ -158,7 +162,7 @@ public class AuthServlet extends HttpServlet {
 
             PasswordChangeBody body;
             try {
-                body = mapper.readValue(req.getReader(), PasswordChangeBody.class);
+                body = lenientReader.forType(PasswordChangeBody.class).readValue(req.getReader());
             } catch (Exception e) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 mapper.writeValue(resp.getWriter(), new Msg("invalid_password"));
@@ -215,7 +219,7 @@ public class AuthServlet extends HttpServlet {
             // Normal login
             LoginBody body;
             try {
-                body = mapper.readValue(req.getReader(), LoginBody.class);
+                body = lenientReader.forType(LoginBody.class).readValue(req.getReader());
             } catch (Exception e) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 mapper.writeValue(resp.getWriter(), new Msg("invalid"));
@@ -375,7 +379,7 @@ public class AuthServlet extends HttpServlet {
 
                     // NEW: send welcome email asynchronously
                     try {
-                        EmailService emailService = new EmailService();
+                        EmailService emailService = new EmailService(getServletContext());
                         String emailBody = EmailTemplates.getWelcomeTemplate(user.getFullName());
                         emailService.sendEmailAsync(
                                 user.getEmail(),
@@ -443,95 +447,76 @@ public class AuthServlet extends HttpServlet {
         OrderItemDAO orderItemDAO = new OrderItemDAO(getServletContext());
         InventoryDAO inventoryDAO = new InventoryDAO(getServletContext());
 
-        Connection conn = null;
         try {
-            conn = DatabaseConnection.getConnection(getServletContext());
-            conn.setAutoCommit(false);
-
-            Order anonymousCart = orderDAO.getCartByToken(cartToken, conn);
-            if (anonymousCart == null) {
-                conn.commit();
-                return null;
-            }
-            if (anonymousCart.getUserId() != null && !anonymousCart.getUserId().equals(userId)) {
-                conn.commit();
-                return null;
-            }
+            return DatabaseConnection.write(getServletContext(), conn -> {
+                Order anonymousCart = orderDAO.getCartByToken(cartToken, conn);
+                if (anonymousCart == null) {
+                    return null;
+                }
+                if (anonymousCart.getUserId() != null && !anonymousCart.getUserId().equals(userId)) {
+                    return null;
+                }
 
-            Order userCart = orderDAO.getCartByUserId(userId, conn);
+                Order userCart = orderDAO.getCartByUserId(userId, conn);
 
-            List<OrderItem> incomingAnonItems = anonymousCart.getOrderId() != null
-                    ? orderItemDAO.getOrderItemsByOrderId(anonymousCart.getOrderId())
-                    : new ArrayList<>();
-            List<OrderItem> existingItems = userCart != null
-                    ? orderItemDAO.getOrderItemsByOrderId(userCart.getOrderId())
-                    : new ArrayList<>();
+                List<OrderItem> incomingAnonItems = anonymousCart.getOrderId() != null
+                        ? orderItemDAO.getOrderItemsByOrderId(anonymousCart.getOrderId())
+                        : new ArrayList<>();
+                List<OrderItem> existingItems = userCart != null
+                        ? orderItemDAO.getOrderItemsByOrderId(userCart.getOrderId())
+                        : new ArrayList<>();
 
-            Map<String, Inventory> inventoryByItem = buildInventoryMap(incomingAnonItems, existingItems, inventoryDAO);
-            CartMergeService.MergeResult result = new CartMergeService().merge(toMergeItems(incomingAnonItems),
-                    existingItems, inventoryByItem);
+                Map<String, Inventory> inventoryByItem = buildInventoryMap(incomingAnonItems, existingItems, inventoryDAO);
+                CartMergeService.MergeResult result = new CartMergeService().merge(toMergeItems(incomingAnonItems),
+                        existingItems, inventoryByItem);
 
-            Order destination = userCart != null ? userCart : anonymousCart;
+                Order destination = userCart != null ? userCart : anonymousCart;
 
-            orderItemDAO.deleteOrderItemsByOrderId(destination.getOrderId(), conn);
+                orderItemDAO.deleteOrderItemsByOrderId(destination.getOrderId(), conn);
 
-            double subtotal = 0.0;
-            for (OrderItem item : result.getMergedItems()) {
-                item.setOrderId(destination.getOrderId());
-                subtotal += item.getLineTotal();
-                orderItemDAO.createOrderItem(item, conn);
-            }
-            double tax = subtotal * 0.08;
-            double total = subtotal + tax;
-            orderDAO.updateOrderTotals(destination.getOrderId(), subtotal, tax, total, conn);
-
-            String newToken = issueCartToken();
-            if (destination == userCart) {
-                orderDAO.updateCartToken(destination.getOrderId(), newToken, conn);
-                if (anonymousCart != null && !anonymousCart.getOrderId().equals(destination.getOrderId())) {
-                    orderDAO.deleteOrder(anonymousCart.getOrderId(), conn);
+                double lineTotals = 0.0;
+                for (OrderItem item : result.getMergedItems()) {
+                    item.setOrderId(destination.getOrderId());
+                    lineTotals += item.getLineTotal();
+                    orderItemDAO.createOrderItem(item, conn);
+                }
+                double subtotal = lineTotals;
+                double tax = subtotal * 0.08;
+                double total = subtotal + tax;
+                orderDAO.updateOrderTotals(destination.getOrderId(), subtotal, tax, total, conn);
+
+                String newToken = issueCartToken();
+                if (destination == userCart) {
+                    orderDAO.updateCartToken(destination.getOrderId(), newToken, conn);
+                    if (anonymousCart != null && !anonymousCart.getOrderId().equals(destination.getOrderId())) {
+                        orderDAO.deleteOrder(anonymousCart.getOrderId(), conn);
+                    }
+                } else {
+                    orderDAO.updateCartOwnership(destination.getOrderId(), userId, newToken, conn);
                 }
-            } else {
-                orderDAO.updateCartOwnership(destination.getOrderId(), userId, newToken, conn);
-            }
 
-            destination.setCartToken(newToken);
-            destination.setUserId(userId);
-            destination.setSubtotal(subtotal);
-            destination.setTax(tax);
-            destination.setTotal(total);
-            destination.setOrderItems(result.getMergedItems());
-
-            conn.commit();
-
-            CartAttachResult attachment = new CartAttachResult();
-            attachment.cartToken = newToken;
-            attachment.orderId = destination.getOrderId();
-            attachment.items = result.getMergedItems();
-            attachment.subtotal = subtotal;
-            attachment.tax = tax;
-            attachment.total = total;
-            attachment.conflicts = Map.of(
-                    "dropped", result.getDropped(),
-                    "clamped", result.getClamped(),
-                    "merged", result.getMergedQuantities());
-            return attachment;
+                destination.setCartToken(newToken);
+                destination.setUserId(userId);
+                destination.setSubtotal(subtotal);
+                destination.setTax(tax);
+                destination.setTotal(total);
+                destination.setOrderItems(result.getMergedItems());
+
+                CartAttachResult attachment = new CartAttachResult();
+                attachment.cartToken = newToken;
+                attachment.orderId = destination.getOrderId();
+                attachment.items = result.getMergedItems();
+                attachment.subtotal = subtotal;
+                attachment.tax = tax;
+                attachment.total = total;
+                attachment.conflicts = Map.of(
+                        "dropped", result.getDropped(),
+                        "clamped", result.getClamped(),
+                        "merged", result.getMergedQuantities());
+                return attachment;
+            });
         } catch (SQLException e) {
-            if (conn != null) {
-                try {
-                    conn.rollback();
-                } catch (SQLException ignored) {
-                }
-            }
             return null;
-        } finally {
-            if (conn != null) {
-                try {
-                    conn.setAutoCommit(true);
-                    conn.close();
-                } catch (SQLException ignored) {
-                }
-            }
         }
     }
 
@@ -1,5 +1,6 @@
 package com.RBOS.servlets;
 
+import com.RBOS.utils.Json;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -9,13 +10,12 @@ import java.util.HashMap;
 import java.util.Map;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
-import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
-@WebServlet("/api/booking-settings")
-public class BookingSettingsServlet extends HttpServlet {
-    private static final ObjectMapper mapper = new ObjectMapper();
+@WebServlet(urlPatterns = "/api/booking-settings", asyncSupported = true)
+public class BookingSettingsServlet extends ApiServlet {
+    private static final ObjectMapper mapper = Json.mapper();
     private static final BookingSettings DEFAULTS = new BookingSettings();
 
     private Path settingsPath() {
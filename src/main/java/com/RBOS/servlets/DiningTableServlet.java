@@ -3,6 +3,7 @@ package com.RBOS.servlets;
 import com.RBOS.dao.AuditLogDAO;
 import com.RBOS.dao.DiningTableDAO;
 import com.RBOS.models.DiningTable;
+import com.RBOS.utils.Json;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import jakarta.servlet.*;
@@ -12,15 +13,15 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
 
-@WebServlet("/api/tables/*")
-public class DiningTableServlet extends HttpServlet {
+@WebServlet(urlPatterns = "/api/tables/*", asyncSupported = true)
+public class DiningTableServlet extends ApiServlet {
     private DiningTableDAO diningTableDAO;
     private ObjectMapper objectMapper;
     private AuditLogDAO auditLogDAO;
     
     @Override
     public void init() throws ServletException {
-        objectMapper = new ObjectMapper();
+        objectMapper = Json.mapper();
         diningTableDAO = new DiningTableDAO(getServletContext());
         auditLogDAO = new AuditLogDAO(getServletContext());
     }
@@ -3,6 +3,9 @@ package com.RBOS.servlets;
 import com.RBOS.dao.AuditLogDAO;
 import com.RBOS.dao.InventoryDAO;
 import com.RBOS.models.Inventory;
+import com.RBOS.services.InventoryLedger;
+import com.RBOS.utils.IdGenerator;
+import com.RBOS.utils.Json;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import jakarta.servlet.*;
@@ -10,18 +13,19 @@ import jakarta.servlet.http.*;
 import jakarta.servlet.annotation.*;
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.List;
-import java.util.UUID;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
 
-@WebServlet("/api/inventory/*")
-public class InventoryServlet extends HttpServlet {
+@WebServlet(urlPatterns = "/api/inventory/*", asyncSupported = true)
+public class InventoryServlet extends ApiServlet {
     private InventoryDAO inventoryDAO;
     private ObjectMapper objectMapper;
     private AuditLogDAO auditLogDAO;
     
     @Override
     public void init() throws ServletException {
-        objectMapper = new ObjectMapper();
+        objectMapper = Json.mapper();
         inventoryDAO = new InventoryDAO(getServletContext());
         auditLogDAO = new AuditLogDAO(getServletContext());
     }
@@ -39,12 +43,10 @@ public class InventoryServlet extends HttpServlet {
             
             if (pathInfo == null || pathInfo.equals("/")) {
                 // Get all inventory
-                List<Inventory> inventory = inventoryDAO.getAllInventory();
-                response.getWriter().write(objectMapper.writeValueAsString(inventory));
+                writeJsonArray(response, Json.INVENTORY_WRITER, inventoryDAO::streamAllInventory);
             } else if ("/low-stock".equals(pathInfo)) {
                 // Get low stock items
-                List<Inventory> lowStock = inventoryDAO.getLowStockItems();
-                response.getWriter().write(objectMapper.writeValueAsString(lowStock));
+                writeJsonArray(response, Json.INVENTORY_WRITER, inventoryDAO::streamLowStockItems);
             } else {
                 // Support /{inventoryId} or /item/{itemId}
                 String[] splits = pathInfo.split("/");
@@ -52,7 +54,7 @@ public class InventoryServlet extends HttpServlet {
                     String inventoryId = splits[1];
                     Inventory inventory = inventoryDAO.getInventoryById(inventoryId);
                     if (inventory != null) {
-                        response.getWriter().write(objectMapper.writeValueAsString(inventory));
+                        response.getWriter().write(Json.INVENTORY_WRITER.writeValueAsString(inventory));
                     } else {
                         response.sendError(HttpServletResponse.SC_NOT_FOUND);
                     }
@@ -60,7 +62,7 @@ public class InventoryServlet extends HttpServlet {
                     String itemId = splits[2];
                     Inventory inventory = inventoryDAO.getInventoryByItemId(itemId);
                     if (inventory != null) {
-                        response.getWriter().write(objectMapper.writeValueAsString(inventory));
+                        response.getWriter().write(Json.INVENTORY_WRITER.writeValueAsString(inventory));
                     } else {
                         response.sendError(HttpServletResponse.SC_NOT_FOUND);
                     }
@@ -85,11 +87,12 @@ public class InventoryServlet extends HttpServlet {
         response.setCharacterEncoding("UTF-8");
 
         try {
-            Inventory inventory = objectMapper.readValue(request.getReader(), Inventory.class);
+            Inventory inventory = Json.INVENTORY_READER.readValue(request.getReader());
             if (inventory.getInventoryId() == null || inventory.getInventoryId().isBlank()) {
-                inventory.setInventoryId(UUID.randomUUID().toString());
+                inventory.setInventoryId(IdGenerator.newId());
             }
-            String newId = inventoryDAO.createInventory(inventory);
+            String newId = ledger().update(Collections.singleton(inventory.getItemId()),
+                    () -> inventoryDAO.createInventory(inventory));
             if (newId == null) {
                 response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Failed to create inventory");
                 return;
@@ -98,7 +101,7 @@ public class InventoryServlet extends HttpServlet {
             logChange("inventory", newId, "create", null, after != null ? after : inventory, request);
 
             response.setStatus(HttpServletResponse.SC_CREATED);
-            response.getWriter().write(objectMapper.writeValueAsString(after != null ? after : inventory));
+            response.getWriter().write(Json.INVENTORY_WRITER.writeValueAsString(after != null ? after : inventory));
         } catch (SQLException e) {
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             e.printStackTrace();
@@ -128,17 +131,19 @@ public class InventoryServlet extends HttpServlet {
             if (splits.length == 2 && !splits[1].isBlank()) {
                 String inventoryId = splits[1];
                 Inventory before = inventoryDAO.getInventoryById(inventoryId);
-                Inventory incoming = objectMapper.readValue(request.getReader(), Inventory.class);
+                Inventory incoming = Json.INVENTORY_READER.readValue(request.getReader());
                 incoming.setInventoryId(inventoryId);
                 if (incoming.getItemId() == null || incoming.getItemId().isBlank()) {
                     incoming.setItemId(inventoryId);
                 }
 
-                boolean success = inventoryDAO.updateInventory(incoming);
+                boolean success = ledger().update(
+                        Arrays.asList(before != null ? before.getItemId() : null, incoming.getItemId()),
+                        () -> inventoryDAO.updateInventory(incoming));
                 if (success) {
                     Inventory after = inventoryDAO.getInventoryById(inventoryId);
                     logChange("inventory", inventoryId, "update", before, after != null ? after : incoming, request);
-                    response.getWriter().write(objectMapper.writeValueAsString(after != null ? after : incoming));
+                    response.getWriter().write(Json.INVENTORY_WRITER.writeValueAsString(after != null ? after : incoming));
                 } else {
                     response.sendError(HttpServletResponse.SC_NOT_FOUND);
                 }
@@ -153,6 +158,9 @@ public class InventoryServlet extends HttpServlet {
 
             String itemId = splits[2];
             String action = splits[3];
+            InventoryLedger ledger = ledger();
+            // settle pending checkout decrements so the audit "before" is current
+            ledger.flush();
             Inventory before = inventoryDAO.getInventoryByItemId(itemId);
             
             if ("quantity".equals(action)) {
@@ -163,12 +171,13 @@ public class InventoryServlet extends HttpServlet {
                 }
                 
                 int quantity = Integer.parseInt(quantityStr);
-                boolean success = inventoryDAO.updateInventoryQuantity(itemId, quantity);
+                boolean success = ledger.update(Collections.singleton(itemId),
+                        () -> inventoryDAO.updateInventoryQuantity(itemId, quantity));
                 
                 if (success) {
                     Inventory updated = inventoryDAO.getInventoryByItemId(itemId);
                     logChange("inventory", itemId, "update_quantity", before, updated, request);
-                    response.getWriter().write(objectMapper.writeValueAsString(updated));
+                    response.getWriter().write(Json.INVENTORY_WRITER.writeValueAsString(updated));
                 } else {
                     response.sendError(HttpServletResponse.SC_NOT_FOUND);
                 }
@@ -180,12 +189,18 @@ public class InventoryServlet extends HttpServlet {
                 }
                 
                 int quantity = Integer.parseInt(quantityStr);
-                boolean success = inventoryDAO.decrementInventory(itemId, quantity);
+                // goes through the ledger so stock held by in-flight checkouts cannot be taken twice
+                InventoryLedger.Reservation taken = ledger.reserve(Map.of(itemId, quantity));
+                boolean success = taken.isSuccessful();
+                if (success) {
+                    taken.confirm();
+                    ledger.flush();
+                }
                 
                 if (success) {
                     Inventory updated = inventoryDAO.getInventoryByItemId(itemId);
                     logChange("inventory", itemId, "decrement", before, updated, request);
-                    response.getWriter().write(objectMapper.writeValueAsString(updated));
+                    response.getWriter().write(Json.INVENTORY_WRITER.writeValueAsString(updated));
                 } else {
                     response.sendError(HttpServletResponse.SC_CONFLICT, "Insufficient inventory");
                 }
@@ -212,7 +227,8 @@ public class InventoryServlet extends HttpServlet {
             }
             String inventoryId = pathInfo.split("/")[1];
             Inventory before = inventoryDAO.getInventoryById(inventoryId);
-            boolean success = inventoryDAO.deleteInventory(inventoryId);
+            boolean success = ledger().update(Collections.singleton(before != null ? before.getItemId() : null),
+                    () -> inventoryDAO.deleteInventory(inventoryId));
             if (success) {
                 logChange("inventory", inventoryId, "delete", before, null, request);
                 response.setStatus(HttpServletResponse.SC_NO_CONTENT);
@@ -225,10 +241,14 @@ public class InventoryServlet extends HttpServlet {
         }
     }
 
+    private InventoryLedger ledger() throws SQLException {
+        return InventoryLedger.forContext(getServletContext());
+    }
+
     private void logChange(String entityType, String entityId, String action, Inventory before, Inventory after, HttpServletRequest request) {
         try {
-            String oldJson = before != null ? objectMapper.writeValueAsString(before) : null;
-            String newJson = after != null ? objectMapper.writeValueAsString(after) : null;
+            String oldJson = before != null ? Json.INVENTORY_WRITER.writeValueAsString(before) : null;
+            String newJson = after != null ? Json.INVENTORY_WRITER.writeValueAsString(after) : null;
             HttpSession session = request.getSession(false);
             String userId = session != null && session.getAttribute("userId") != null
                     ? session.getAttribute("userId").toString() : "system";
@@ -12,7 +12,7 @@ public class MainServlet extends HttpServlet {
     @Override
     public void init() throws ServletException {
         try {
-            var conn = DatabaseConnection.getConnection(getServletContext());
+            DatabaseConnection.initialize(getServletContext());
             System.out.println("Application initialized successfully");
         } catch (Exception e) {
             throw new ServletException("Failed to initialize application", e);
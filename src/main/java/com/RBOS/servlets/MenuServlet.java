@@ -2,9 +2,13 @@ package com.RBOS.servlets;
 
 import com.RBOS.dao.MenuItemDAO;
 import com.RBOS.dao.InventoryDAO;
+import com.RBOS.models.Inventory;
 import com.RBOS.models.MenuItem;
-import com.RBOS.models.MenuItemWithInventory;
+import com.RBOS.services.InventoryLedger;
+import com.RBOS.services.MenuCatalogCache;
+import com.RBOS.utils.ContentEncoding;
 import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.Json;
 import com.RBOS.dao.AuditLogDAO;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -12,22 +16,21 @@ import jakarta.servlet.*;
 import jakarta.servlet.http.*;
 import jakarta.servlet.annotation.*;
 import java.io.IOException;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.List;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
-@WebServlet("/api/menu/*")
-public class MenuServlet extends HttpServlet {
+@WebServlet(urlPatterns = "/api/menu/*", asyncSupported = true)
+public class MenuServlet extends ApiServlet {
     private MenuItemDAO menuItemDAO;
     private ObjectMapper objectMapper;
     private AuditLogDAO auditLogDAO;
     
     @Override
     public void init() throws ServletException {
-        objectMapper = new ObjectMapper();
+        objectMapper = Json.mapper();
         menuItemDAO = new MenuItemDAO(getServletContext());
         auditLogDAO = new AuditLogDAO(getServletContext());
     }
@@ -45,23 +48,15 @@ public class MenuServlet extends HttpServlet {
             if (pathInfo == null || pathInfo.equals("/")) {
                 // Check if we want only active items
                 String activeOnly = request.getParameter("activeOnly");
-                List<MenuItem> menuItems;
-                
-                if ("true".equalsIgnoreCase(activeOnly)) {
-                    menuItems = menuItemDAO.getActiveMenuItems();
-                } else {
-                    menuItems = menuItemDAO.getAllMenuItems();
-                }
-                
-                response.getWriter().write(objectMapper.writeValueAsString(menuItems));
+                writeCatalog(request, response, "true".equalsIgnoreCase(activeOnly)
+                        ? MenuCatalogCache.VIEW_ACTIVE
+                        : MenuCatalogCache.VIEW_ALL);
             }   else if ("/with-inventory".equals(pathInfo)) {
                 // Get menu items with inventory information
-                List<MenuItemWithInventory> menuItems = menuItemDAO.getActiveMenuItemsWithInventory();
-                response.getWriter().write(objectMapper.writeValueAsString(menuItems));
+                writeCatalog(request, response, MenuCatalogCache.VIEW_WITH_INVENTORY);
             }   else if ("/active".equals(pathInfo)) {
                 // Get only active menu items
-                List<MenuItem> activeItems = menuItemDAO.getActiveMenuItems();
-                response.getWriter().write(objectMapper.writeValueAsString(activeItems));
+                writeCatalog(request, response, MenuCatalogCache.VIEW_ACTIVE);
             } else {
                 // Get menu item by ID
                 String[] splits = pathInfo.split("/");
@@ -74,7 +69,7 @@ public class MenuServlet extends HttpServlet {
                 MenuItem menuItem = menuItemDAO.getMenuItemById(itemId);
                 
                 if (menuItem != null) {
-                    response.getWriter().write(objectMapper.writeValueAsString(menuItem));
+                    response.getWriter().write(Json.MENU_ITEM_WRITER.writeValueAsString(menuItem));
                 } else {
                     response.sendError(HttpServletResponse.SC_NOT_FOUND);
                 }
@@ -87,6 +82,28 @@ public class MenuServlet extends HttpServlet {
         }
     }
     
+    // Serves a cached menu list, answering 304 when the client already has this version
+    private void writeCatalog(HttpServletRequest request, HttpServletResponse response, String viewName)
+            throws SQLException, IOException {
+        MenuCatalogCache.View view = MenuCatalogCache.forContext(getServletContext()).get(viewName);
+        boolean gzip = ContentEncoding.acceptsGzip(request.getHeader("Accept-Encoding"));
+
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("Vary", "Accept-Encoding");
+        response.setHeader("ETag", gzip ? view.getGzipEtag() : view.getEtag());
+        if (view.matches(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] body = gzip ? view.getGzip() : view.getJson();
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
@@ -101,7 +118,7 @@ public class MenuServlet extends HttpServlet {
             String userName = session != null ? (String) session.getAttribute("userName") : null;
 
             JsonNode root = objectMapper.readTree(request.getReader());
-            MenuItem menuItem = objectMapper.treeToValue(root, MenuItem.class);
+            MenuItem menuItem = Json.MENU_ITEM_READER.readValue(root);
             String itemId = menuItemDAO.createMenuItem(menuItem, userId, userName);
 
             if (itemId != null) {
@@ -110,7 +127,7 @@ public class MenuServlet extends HttpServlet {
                 linkInventory(root, itemId);
 
                 response.setStatus(HttpServletResponse.SC_CREATED);
-                response.getWriter().write(objectMapper.writeValueAsString(menuItem));
+                response.getWriter().write(Json.MENU_ITEM_WRITER.writeValueAsString(menuItem));
             } else {
                 response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             }
@@ -171,7 +188,7 @@ public class MenuServlet extends HttpServlet {
                     } catch (Exception e) {
                         System.err.println("Audit log skipped for menu image: " + e.getMessage());
                     }
-                    response.getWriter().write(objectMapper.writeValueAsString(updatedItem));
+                    response.getWriter().write(Json.MENU_ITEM_WRITER.writeValueAsString(updatedItem));
                 } else {
                     response.sendError(HttpServletResponse.SC_NOT_FOUND);
                 }
@@ -192,14 +209,14 @@ public class MenuServlet extends HttpServlet {
             String userName = session != null ? (String) session.getAttribute("userName") : null;
 
             JsonNode root = objectMapper.readTree(request.getReader());
-            MenuItem menuItem = objectMapper.treeToValue(root, MenuItem.class);
+            MenuItem menuItem = Json.MENU_ITEM_READER.readValue(root);
             menuItem.setItemId(itemId); // Ensure the ID matches the path
 
             boolean success = menuItemDAO.updateMenuItem(menuItem, userId, userName);
 
             if (success) {
                 linkInventory(root, itemId);
-                response.getWriter().write(objectMapper.writeValueAsString(menuItem));
+                response.getWriter().write(Json.MENU_ITEM_WRITER.writeValueAsString(menuItem));
             } else {
                 response.sendError(HttpServletResponse.SC_NOT_FOUND);
             }
@@ -246,14 +263,18 @@ public class MenuServlet extends HttpServlet {
     private boolean updateMenuItemImage(String itemId, String imageUrl) throws SQLException {
         String sql = "UPDATE menu_items SET image_url = ? WHERE item_id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(getServletContext());
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        boolean updated = DatabaseConnection.write(getServletContext(), conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, imageUrl);
+                pstmt.setString(2, itemId);
 
-            pstmt.setString(1, imageUrl);
-            pstmt.setString(2, itemId);
-
-            return pstmt.executeUpdate() > 0;
+                return pstmt.executeUpdate() > 0;
+            }
+        });
+        if (updated) {
+            MenuCatalogCache.menuChanged(getServletContext());
         }
+        return updated;
     }
 
     private void linkInventory(JsonNode root, String itemId) {
@@ -261,11 +282,19 @@ public class MenuServlet extends HttpServlet {
             String inventoryId = root.hasNonNull("inventoryId") ? root.get("inventoryId").asText() : null;
             String inventorySku = root.hasNonNull("inventorySku") ? root.get("inventorySku").asText() : null;
             InventoryDAO inventoryDAO = new InventoryDAO(getServletContext());
-            if (inventoryId != null && !inventoryId.isBlank()) {
-                inventoryDAO.linkInventoryById(inventoryId, itemId);
-            } else if (inventorySku != null && !inventorySku.isBlank()) {
-                inventoryDAO.linkInventoryBySku(inventorySku, itemId);
+            boolean byId = inventoryId != null && !inventoryId.isBlank();
+            if (!byId && (inventorySku == null || inventorySku.isBlank())) {
+                return;
+            }
+            Inventory linked = byId ? inventoryDAO.getInventoryById(inventoryId) : inventoryDAO.getInventoryBySku(inventorySku);
+            if (linked == null) {
+                return;
             }
+            // the stock moves from the old item to this one; the ledger must reload both
+            InventoryLedger.forContext(getServletContext()).update(Arrays.asList(linked.getItemId(), itemId),
+                    () -> byId
+                            ? inventoryDAO.linkInventoryById(inventoryId, itemId)
+                            : inventoryDAO.linkInventoryBySku(inventorySku, itemId));
         } catch (Exception e) {
             // swallow linking errors to avoid failing menu updates
             System.err.println("Inventory link skipped: " + e.getMessage());
@@ -0,0 +1,117 @@
+package com.RBOS.servlets;
+
+import com.RBOS.dao.EmailOutboxDAO;
+import com.RBOS.services.AuditLogWriter;
+import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.HistoryValidation;
+import com.RBOS.utils.Metrics;
+import com.RBOS.websocket.WebSocketConfig;
+
+import jakarta.servlet.annotation.*;
+import jakarta.servlet.http.*;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * Prometheus scrape endpoint.
+ * GET /api/metrics - request and statement latency histograms plus pool, write queue, WebSocket,
+ *                    email outbox and audit queue gauges, in the Prometheus text format
+ *
+ * A scraper authenticates with "Authorization: Bearer" and the RBOS_METRICS_TOKEN value.
+ * Without a token configured, only staff/admin sessions and local requests are served.
+ */
+@WebServlet(urlPatterns = "/api/metrics", asyncSupported = true)
+public class MetricsServlet extends ApiServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!isAllowed(request)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "Metrics access denied");
+            return;
+        }
+
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("UTF-8");
+        Writer out = response.getWriter();
+        Metrics.writePrometheus(out);
+        writeGauges(out);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeGauges(Writer out) throws IOException {
+        try {
+            Map<String, Object> pool = DatabaseConnection.getPoolStats(getServletContext());
+            Metrics.writeGauge(out, "rbos_db_pool_max", "Maximum pooled connections.", (Number) pool.get("maxSize"));
+            Metrics.writeGauge(out, "rbos_db_pool_open", "Physical connections open.", (Number) pool.get("open"));
+            Metrics.writeGauge(out, "rbos_db_pool_active", "Connections currently borrowed.", (Number) pool.get("active"));
+            Metrics.writeGauge(out, "rbos_db_pool_waiting", "Threads waiting for a connection.", (Number) pool.get("waiting"));
+            Map<String, Object> readers = (Map<String, Object>) pool.get("readers");
+            Metrics.writeGauge(out, "rbos_db_read_pool_active", "Read-only connections currently borrowed.",
+                    (Number) readers.get("active"));
+            Metrics.writeGauge(out, "rbos_db_read_pool_waiting", "Threads waiting for a read-only connection.",
+                    (Number) readers.get("waiting"));
+            Metrics.writeGauge(out, "rbos_db_write_queue_depth", "Writes waiting for the writer connection.",
+                    DatabaseConnection.getPool(getServletContext()).getWriteCoordinator().getQueueDepth());
+        } catch (Exception e) {
+            System.err.println("Metrics: pool stats unavailable: " + e.getMessage());
+        }
+
+        Map<String, Object> websocket = WebSocketConfig.getBroadcastStats();
+        Metrics.writeGauge(out, "rbos_websocket_sessions", "Open WebSocket sessions.", (Number) websocket.get("sessions"));
+        Metrics.writeGauge(out, "rbos_websocket_queue_depth", "Broadcast messages queued across sessions.",
+                (Number) websocket.get("queueDepth"));
+
+        Map<String, Object> requests = ApiServlet.getStats();
+        if (requests.containsKey("writersWaiting")) {
+            Metrics.writeGauge(out, "rbos_api_writers_active", "Write requests holding a write permit.",
+                    (Number) requests.get("activeWriters"));
+            Metrics.writeGauge(out, "rbos_api_writers_waiting", "Write requests waiting for a write permit.",
+                    (Number) requests.get("writersWaiting"));
+        }
+
+        try {
+            Map<String, Long> outbox = new EmailOutboxDAO(getServletContext()).countByStatus();
+            Metrics.writeGauge(out, "rbos_email_outbox_pending", "Emails waiting to be sent.", outbox.get("pending"));
+            Metrics.writeGauge(out, "rbos_email_outbox_dead", "Emails that ran out of retries.", outbox.get("dead"));
+        } catch (Exception e) {
+            System.err.println("Metrics: email outbox counts unavailable: " + e.getMessage());
+        }
+
+        try {
+            Map<String, Object> audit = AuditLogWriter.forContext(getServletContext()).getStats();
+            Metrics.writeGauge(out, "rbos_audit_queue_depth", "Audit rows waiting to be written.",
+                    (Number) audit.get("queueDepth"));
+        } catch (Exception e) {
+            System.err.println("Metrics: audit writer stats unavailable: " + e.getMessage());
+        }
+    }
+
+    private boolean isAllowed(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        Object role = session != null ? session.getAttribute("role") : null;
+        if (session != null && session.getAttribute("userId") != null
+                && HistoryValidation.isPrivilegedRole(role != null ? role.toString() : null)) {
+            return true;
+        }
+
+        String token = DatabaseConnection.resolveSetting(getServletContext(), "RBOS_METRICS_TOKEN");
+        if (token == null) {
+            return isLocal(request.getRemoteAddr());
+        }
+        String header = request.getHeader("Authorization");
+        return header != null && header.startsWith("Bearer ") && MessageDigest.isEqual(
+                header.substring(7).trim().getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean isLocal(String remoteAddr) {
+        try {
+            return remoteAddr != null && InetAddress.getByName(remoteAddr).isLoopbackAddress();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
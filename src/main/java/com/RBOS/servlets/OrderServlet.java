@@ -5,19 +5,25 @@ import com.RBOS.dao.OrderItemDAO;
 import com.RBOS.dao.MenuItemDAO;
 import com.RBOS.dao.InventoryDAO;
 import com.RBOS.dao.AuditLogDAO;
+import com.RBOS.models.IdempotencyRecord;
 import com.RBOS.models.Inventory;
 import com.RBOS.models.Order;
 import com.RBOS.models.OrderItem;
 import com.RBOS.services.CartMergeService;
-import com.RBOS.services.EmailService;
+import com.RBOS.services.CheckoutPipeline;
+import com.RBOS.services.IdempotencyStore;
 import com.RBOS.dao.UserDAO;
 import com.RBOS.models.User;
 import com.RBOS.utils.DatabaseConnection;
 import com.RBOS.models.HistoryResponse;
 import com.RBOS.models.PagedResult;
+import com.RBOS.utils.HistoryCursor;
 import com.RBOS.utils.HistoryValidation;
 import com.RBOS.websocket.WebSocketConfig;
+import com.RBOS.utils.IdGenerator;
+import com.RBOS.utils.Json;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import jakarta.servlet.*;
@@ -33,23 +39,27 @@ import java.util.Map;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
-@WebServlet("/api/orders/*")
-public class OrderServlet extends HttpServlet {
+@WebServlet(urlPatterns = "/api/orders/*", asyncSupported = true)
+public class OrderServlet extends ApiServlet {
     private static final int RETENTION_MONTHS = 13;
+    private static final int SC_UNPROCESSABLE_ENTITY = 422;
     private OrderDAO orderDAO;
     private OrderItemDAO orderItemDAO;
     private AuditLogDAO auditDAO;
     private UserDAO userDAO;
+    private CheckoutPipeline checkoutPipeline;
     private ObjectMapper objectMapper;
 
     @Override
     public void init() throws ServletException {
-        objectMapper = new ObjectMapper();
+        objectMapper = Json.mapper();
         orderDAO = new OrderDAO(getServletContext());
         orderItemDAO = new OrderItemDAO(getServletContext());
         auditDAO = new AuditLogDAO(getServletContext());
         userDAO = new UserDAO(getServletContext());
+        checkoutPipeline = new CheckoutPipeline(getServletContext());
     }
     
     @Override
@@ -80,24 +90,14 @@ public class OrderServlet extends HttpServlet {
                     return;
                 }
 
-                List<Order> orders;
-
                 if (scopedUserId != null) {
-                    orders = orderDAO.getOrdersByUser(scopedUserId);
-                    if (status != null && !status.isEmpty() && !"all".equalsIgnoreCase(status)) {
-                        orders = orders.stream()
-                                .filter(o -> status.equals(o.getStatus()))
-                                .toList();
-                    }
+                    writeJsonArray(response, Json.ORDER_WRITER,
+                            handler -> orderDAO.streamOrdersByUser(scopedUserId, status, handler));
+                } else if (status != null && !status.isEmpty()) {
+                    writeJsonArray(response, Json.ORDER_WRITER, handler -> orderDAO.streamOrdersByStatus(status, handler));
                 } else {
-                    if (status != null && !status.isEmpty()) {
-                        orders = orderDAO.getOrdersByStatus(status);
-                    } else {
-                        orders = orderDAO.getAllOrders();
-                    }
+                    writeJsonArray(response, Json.ORDER_WRITER, orderDAO::streamAllOrders);
                 }
-
-                response.getWriter().write(objectMapper.writeValueAsString(orders));
             } else if ("/history".equals(pathInfo)) {
                 handleHistory(request, response);
             } else if (pathInfo.startsWith("/user/")) {
@@ -119,8 +119,7 @@ public class OrderServlet extends HttpServlet {
                     }
                     return;
                 }
-                List<Order> userOrders = orderDAO.getOrdersByUser(userId);
-                response.getWriter().write(objectMapper.writeValueAsString(userOrders));
+                writeJsonArray(response, Json.ORDER_WRITER, handler -> orderDAO.streamOrdersByUser(userId, null, handler));
 
             } else if (pathInfo.startsWith("/status/")) {
                 // Get orders by status
@@ -144,15 +143,12 @@ public class OrderServlet extends HttpServlet {
                     return;
                 }
 
-                List<Order> statusOrders;
                 if (scopedUserId != null) {
-                    statusOrders = orderDAO.getOrdersByUser(scopedUserId).stream()
-                            .filter(o -> status.equalsIgnoreCase("all") || status.equals(o.getStatus()))
-                            .toList();
+                    writeJsonArray(response, Json.ORDER_WRITER,
+                            handler -> orderDAO.streamOrdersByUser(scopedUserId, status, handler));
                 } else {
-                    statusOrders = orderDAO.getOrdersByStatus(status);
+                    writeJsonArray(response, Json.ORDER_WRITER, handler -> orderDAO.streamOrdersByStatus(status, handler));
                 }
-                response.getWriter().write(objectMapper.writeValueAsString(statusOrders));
 
             } else if ("/cart".equals(pathInfo)) {
                 handleGetCart(request, response);
@@ -168,7 +164,7 @@ public class OrderServlet extends HttpServlet {
                 Order order = orderDAO.getOrderById(orderId);
                 
                 if (order != null) {
-                    response.getWriter().write(objectMapper.writeValueAsString(order));
+                    response.getWriter().write(Json.ORDER_WRITER.writeValueAsString(order));
                 } else {
                     response.sendError(HttpServletResponse.SC_NOT_FOUND);
                 }
@@ -188,158 +184,111 @@ public class OrderServlet extends HttpServlet {
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
 
-        Connection conn = null;
-        try {
-            conn = DatabaseConnection.getConnection(getServletContext());
-            conn.setAutoCommit(false);
+        String pathInfo = request.getPathInfo();
+        if ("/cart".equals(pathInfo)) {
+            try {
+                handleMergeCart(request, response);
+            } catch (Exception e) {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+                e.printStackTrace();
+            }
+            return;
+        }
 
-            String pathInfo = request.getPathInfo();
-            if ("/cart".equals(pathInfo)) {
-                handleMergeCart(request, response, conn);
+        try {
+            String idempotencyKey = request.getHeader(IdempotencyStore.HEADER);
+            if (idempotencyKey == null) {
+                placeOrder(Json.ORDER_READER.readValue(request.getReader()), request, response, null);
                 return;
             }
-
-            Order order = objectMapper.readValue(request.getReader(), Order.class);
-            InventoryDAO inventoryDAO = new InventoryDAO(getServletContext());
-            MenuItemDAO menuItemDAO = new MenuItemDAO(getServletContext());
-
-            // drop unknown users to avoid FK failures
-            order.setUserId(resolveExistingUserId(order.getUserId()));
-
-            // ensure menu items exist to satisfy FK constraints
-            if (order.getOrderItems() != null) {
-                order.getOrderItems().removeIf(i -> i == null || i.getItemId() == null || i.getItemId().isBlank() || i.getQty() == null || i.getQty() <= 0);
-                for (OrderItem item : order.getOrderItems()) {
-                    ensureMenuItemPresent(menuItemDAO, item.getItemId(), item.getMenuItem() != null ? item.getMenuItem().getName() : null,
-                            item.getUnitPrice() != null ? item.getUnitPrice() : 0.0);
-                }
-                if (order.getOrderItems().isEmpty()) {
-                    response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No order items provided");
-                    return;
-                }
+            if (!IdempotencyStore.isValidKey(idempotencyKey)) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        "Idempotency-Key must be 1 to " + IdempotencyStore.MAX_KEY_LENGTH + " characters");
+                return;
             }
 
-            // Validate delivery address for delivery orders
-            if ("delivery".equals(order.getFulfillmentType())) {
-                if (order.getDeliveryAddress() == null || order.getDeliveryAddress().isBlank()) {
-                    response.sendError(HttpServletResponse.SC_BAD_REQUEST,
-                        "Delivery address is required for delivery orders");
-                    return;
-                }
-                if (order.getDeliveryCity() == null || order.getDeliveryCity().isBlank()) {
-                    response.sendError(HttpServletResponse.SC_BAD_REQUEST,
-                        "Delivery city is required for delivery orders");
-                    return;
-                }
-                if (order.getDeliveryState() == null || order.getDeliveryState().isBlank()) {
-                    response.sendError(HttpServletResponse.SC_BAD_REQUEST,
-                        "Delivery state is required for delivery orders");
-                    return;
-                }
-                if (order.getDeliveryPostalCode() == null || order.getDeliveryPostalCode().isBlank()) {
-                    response.sendError(HttpServletResponse.SC_BAD_REQUEST,
-                        "Delivery postal code is required for delivery orders");
-                    return;
+            String body = request.getReader().lines().collect(Collectors.joining("\n"));
+            String requestHash = IdempotencyStore.fingerprint(getSessionUserId(request), body);
+            IdempotencyStore store = IdempotencyStore.forContext(getServletContext());
+            try (IdempotencyStore.Claim claim = store.claim(idempotencyKey, requestHash)) {
+                switch (claim.getStatus()) {
+                    case REPLAY:
+                        replay(response, claim.getRecord());
+                        break;
+                    case IN_PROGRESS:
+                        response.sendError(HttpServletResponse.SC_CONFLICT,
+                                "A request with this Idempotency-Key is still being processed");
+                        break;
+                    case MISMATCH:
+                        response.sendError(SC_UNPROCESSABLE_ENTITY,
+                                "Idempotency-Key was already used for a different request");
+                        break;
+                    default:
+                        try {
+                            placeOrder(Json.ORDER_READER.readValue(body), request, response, claim);
+                        } catch (SQLException e) {
+                            // another server committed the same key first; its order stands
+                            IdempotencyRecord winner = store.find(idempotencyKey);
+                            if (winner == null || !winner.getRequestHash().equals(requestHash)) {
+                                throw e;
+                            }
+                            replay(response, winner);
+                        }
                 }
             }
+        } catch (Exception e) {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+            e.printStackTrace();
+        }
+    }
 
-            // recalc totals from surviving items
-            double orderSubtotal = 0.0;
-            for (OrderItem item : order.getOrderItems()) {
-                double price = item.getUnitPrice() != null ? item.getUnitPrice() : 0.0;
-                item.setLineTotal(price * item.getQty());
-                orderSubtotal += item.getLineTotal();
-            }
-            double orderTax = orderSubtotal * 0.08;
-            double orderTotal = orderSubtotal + orderTax;
-            order.setSubtotal(orderSubtotal);
-            order.setTax(orderTax);
-            order.setTotal(orderTotal);
-
-            // Validate inventory
-            List<String> outOfStockItems = new ArrayList<>();
-
-            for (OrderItem item : order.getOrderItems()) {
-                Inventory inventory = inventoryDAO.getInventoryByItemId(item.getItemId());
-                
-                if (inventory == null || !inventory.getActive()) {
-                    outOfStockItems.add("Item not available: " + item.getItemId());
-                    continue;
-                }
-
-                if (inventory.getQtyOnHand() < item.getQty()) {
-                    outOfStockItems.add("Insufficient stock for: " + inventory.getName() + 
-                        " (Available: " + inventory.getQtyOnHand() + ", Requested: " + item.getQty() + ")");
-                    continue;
+    private void placeOrder(Order order, HttpServletRequest request, HttpServletResponse response,
+            IdempotencyStore.Claim claim) throws SQLException, IOException {
+        CheckoutPipeline.BeforeCommit recordKey = null;
+        if (claim != null) {
+            recordKey = (conn, placed) -> {
+                try {
+                    claim.record(conn, HttpServletResponse.SC_CREATED, Json.ORDER_WRITER.writeValueAsString(placed),
+                            placed.getOrderId());
+                } catch (JsonProcessingException e) {
+                    throw new SQLException("Could not serialize order " + placed.getOrderId(), e);
                 }
-            }
-
-            if (!outOfStockItems.isEmpty()) {
-                conn.rollback();
+            };
+        }
+        CheckoutPipeline.Result result = checkoutPipeline.checkout(order, getSessionUserId(request),
+                getSessionUserName(request), recordKey);
+
+        switch (result.getOutcome()) {
+            case INVALID:
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, result.getMessage());
+                break;
+            case UNAVAILABLE:
                 response.setStatus(HttpServletResponse.SC_CONFLICT);
 
                 Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("error", "Inventory issues");
-                errorResponse.put("details", outOfStockItems);
+                errorResponse.put("error", result.getMessage());
+                errorResponse.put("details", result.getProblems());
 
                 response.getWriter().write(objectMapper.writeValueAsString(errorResponse));
-                return;
-            }
-
-            // Create order
-            String orderId = orderDAO.createOrder(order, conn);
-            
-            if (orderId != null) {
-                order.setOrderId(orderId);
-                
-                // Update inventory
-                for (OrderItem item : order.getOrderItems()) {
-                    boolean success = inventoryDAO.decrementInventory(item.getItemId(), item.getQty(), conn);
-                    if (!success) {
-                        conn.rollback();
-                        response.sendError(HttpServletResponse.SC_CONFLICT,
-                                "Failed to update inventory for item: " + item.getItemId());
-                        return;
-                    }
-                }
-                
-                conn.commit();
-
-                // Log audit
-                try {
-                    String actorId = getSessionUserId(request);
-                    auditDAO.log("order", orderId, "create", actorId, getSessionUserName(request),
-                                null, "Order created: $" + order.getTotal());
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-
-                // Send notifications
-                sendOrderNotifications(order);
-
+                break;
+            default:
                 response.setStatus(HttpServletResponse.SC_CREATED);
-                response.getWriter().write(objectMapper.writeValueAsString(order));
-            } else {
-                conn.rollback();
-                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            }
-
-        } catch (Exception e) {
-            if (conn != null) {
-                try { conn.rollback(); } catch (SQLException ex) {}
-            }
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
-            e.printStackTrace();
-        } finally {
-            if (conn != null) {
-                try {
-                    conn.setAutoCommit(true);
-                    conn.close();
-                } catch (SQLException e) {}
-            }
+                if (claim != null) {
+                    claim.committed();
+                    // send exactly what a retry will be replayed
+                    response.getWriter().write(claim.getRecord().getResponseBody());
+                } else {
+                    response.getWriter().write(Json.ORDER_WRITER.writeValueAsString(result.getOrder()));
+                }
         }
     }
 
+    private void replay(HttpServletResponse response, IdempotencyRecord record) throws IOException {
+        response.setStatus(record.getStatusCode());
+        response.setHeader("Idempotent-Replayed", "true");
+        response.getWriter().write(record.getResponseBody());
+    }
+
     private void handleHistory(HttpServletRequest request, HttpServletResponse response) throws IOException, SQLException {
         String rawStatus = request.getParameter("status");
         String rawStart = request.getParameter("start_utc");
@@ -351,7 +300,9 @@ public class OrderServlet extends HttpServlet {
         String status;
         Instant startInstant;
         Instant endInstant;
+        HistoryCursor cursor;
         try {
+            cursor = HistoryValidation.parseCursor(request.getParameter("cursor"));
             status = HistoryValidation.normalizeStatus(rawStatus, HistoryValidation.ALLOWED_ORDER_STATUSES);
             startInstant = HistoryValidation.parseIsoInstant(rawStart, "start_utc");
             endInstant = HistoryValidation.parseIsoInstant(rawEnd, "end_utc");
@@ -394,16 +345,21 @@ public class OrderServlet extends HttpServlet {
             return;
         }
 
-        PagedResult<Order> paged = orderDAO.getOrdersWithFilters(status, startUtc, endUtc, scopedUserId, page, pageSize);
+        // Keyset paging from the first page or a cursor; an explicit deeper page number keeps the offset path
+        PagedResult<Order> paged = cursor != null || page == 1
+                ? orderDAO.getOrdersPage(status, startUtc, endUtc, scopedUserId, cursor, pageSize)
+                : orderDAO.getOrdersWithFilters(status, startUtc, endUtc, scopedUserId, page, pageSize);
         HistoryResponse<Order> history = new HistoryResponse<>(
                 paged.getItems(),
-                page,
+                cursor != null ? paged.getPage() : page,
                 pageSize,
                 paged.getTotal(),
                 RETENTION_MONTHS,
                 LocalDate.now().minusMonths(RETENTION_MONTHS).toString()
         );
-        response.getWriter().write(objectMapper.writeValueAsString(history));
+        history.setNextCursor(paged.getNextCursor());
+        history.setPrevCursor(paged.getPrevCursor());
+        response.getWriter().write(Json.ORDER_HISTORY_WRITER.writeValueAsString(history));
     }
 
     private String getSessionUserId(HttpServletRequest request) {
@@ -513,7 +469,7 @@ public class OrderServlet extends HttpServlet {
 
     private Inventory fallbackInventory(String itemId, String name) {
         Inventory inv = new Inventory();
-        inv.setInventoryId(UUID.randomUUID().toString());
+        inv.setInventoryId(IdGenerator.newId());
         inv.setItemId(itemId);
         inv.setName(name != null ? name : itemId);
         inv.setActive(true);
@@ -540,62 +496,24 @@ public class OrderServlet extends HttpServlet {
         response.addCookie(cookie);
     }
 
-    private void sendOrderNotifications(Order order) {
-        // NOTE: Customer email notifications are now sent directly in OrderDAO.createOrder()
-        // with appropriate templates for delivery vs carryout orders
-        try {
-            // Send admin notification
-            EmailService emailService = new EmailService();
-            emailService.sendAdminNotification(
-                    "New Order Received",
-                    String.format("Order #%s - Total: $%.2f", order.getOrderId(), order.getTotal())
-            );
-
-            // Send WebSocket notification for real-time updates
-            String orderJson = objectMapper.writeValueAsString(order);
-            WebSocketConfig.notifyNewOrder(orderJson);
-
-        } catch (Exception e) {
-            System.err.println("Failed to send order notifications: " + e.getMessage());
-        }
-    }
-
     private void handleGetCart(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String sessionUserId = getSessionUserId(request);
         String requestedToken = resolveCartToken(request);
 
-        try (Connection conn = DatabaseConnection.getConnection(getServletContext())) {
-            Order cart = null;
-            if (sessionUserId != null) {
-                cart = orderDAO.getCartByUserId(sessionUserId, conn);
+        try {
+            Order cart;
+            try (Connection conn = DatabaseConnection.getReadConnection(getServletContext())) {
+                cart = findCart(sessionUserId, requestedToken, conn);
             }
-
-            if (cart == null && requestedToken != null) {
-                cart = orderDAO.getCartByToken(requestedToken, conn);
-                if (cart != null && cart.getUserId() != null && !cart.getUserId().equals(sessionUserId)) {
-                    response.sendError(sessionUserId == null ? HttpServletResponse.SC_UNAUTHORIZED : HttpServletResponse.SC_FORBIDDEN,
-                            "Cart is bound to another user");
-                    return;
-                }
+            if (cart == null || cart.getCartToken() == null) {
+                // the lookup is repeated on the writer so two first visits cannot both create a cart
+                cart = DatabaseConnection.write(getServletContext(),
+                        conn -> openCart(sessionUserId, requestedToken, conn));
             }
-
-            if (cart == null) {
-                cart = new Order();
-                String newOrderId = UUID.randomUUID().toString();
-                cart.setOrderId(newOrderId);
-                cart.setUserId(resolveExistingUserId(sessionUserId));
-                cart.setStatus("cart");
-                cart.setSource("web");
-                cart.setSubtotal(0.0);
-                cart.setTax(0.0);
-                cart.setTotal(0.0);
-                cart.setCartToken(requestedToken != null ? requestedToken : issueCartToken());
-                String createdOrderId = orderDAO.createOrder(cart, conn);
-                cart.setOrderId(createdOrderId != null ? createdOrderId : newOrderId);
-            } else if (cart.getCartToken() == null) {
-                String refreshed = requestedToken != null ? requestedToken : issueCartToken();
-                orderDAO.updateCartToken(cart.getOrderId(), refreshed, conn);
-                cart.setCartToken(refreshed);
+            if (boundToAnotherUser(cart, sessionUserId)) {
+                response.sendError(sessionUserId == null ? HttpServletResponse.SC_UNAUTHORIZED : HttpServletResponse.SC_FORBIDDEN,
+                        "Cart is bound to another user");
+                return;
             }
 
             List<OrderItem> items = new ArrayList<>();
@@ -624,82 +542,84 @@ public class OrderServlet extends HttpServlet {
         }
     }
 
-    private void handleMergeCart(HttpServletRequest request, HttpServletResponse response, Connection conn) throws IOException {
+    // The session user's cart, or else the cart the token names
+    private Order findCart(String sessionUserId, String cartToken, Connection conn) throws SQLException {
+        Order cart = null;
+        if (sessionUserId != null) {
+            cart = orderDAO.getCartByUserId(sessionUserId, conn);
+        }
+        if (cart == null && cartToken != null) {
+            cart = orderDAO.getCartByToken(cartToken, conn);
+        }
+        return cart;
+    }
+
+    private static boolean boundToAnotherUser(Order cart, String sessionUserId) {
+        return cart != null && cart.getUserId() != null && !cart.getUserId().equals(sessionUserId);
+    }
+
+    // Write task: find the cart, creating it or giving it a token when needed. A cart bound to
+    // another user is returned untouched for the caller to reject.
+    private Order openCart(String sessionUserId, String requestedToken, Connection conn) throws SQLException {
+        Order cart = findCart(sessionUserId, requestedToken, conn);
+        if (boundToAnotherUser(cart, sessionUserId)) {
+            return cart;
+        }
+        if (cart == null) {
+            cart = new Order();
+            String newOrderId = IdGenerator.newId();
+            cart.setOrderId(newOrderId);
+            cart.setUserId(resolveExistingUserId(sessionUserId));
+            cart.setStatus("cart");
+            cart.setSource("web");
+            cart.setSubtotal(0.0);
+            cart.setTax(0.0);
+            cart.setTotal(0.0);
+            cart.setCartToken(requestedToken != null ? requestedToken : issueCartToken());
+            String createdOrderId = orderDAO.createOrder(cart, conn);
+            cart.setOrderId(createdOrderId != null ? createdOrderId : newOrderId);
+        } else if (cart.getCartToken() == null) {
+            String refreshed = requestedToken != null ? requestedToken : issueCartToken();
+            orderDAO.updateCartToken(cart.getOrderId(), refreshed, conn);
+            cart.setCartToken(refreshed);
+        }
+        return cart;
+    }
+
+    private void handleMergeCart(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String sessionUserId = getSessionUserId(request);
-        String requestedToken = resolveCartToken(request);
 
         try {
             CartMergePayload payload = objectMapper.readValue(request.getReader(), CartMergePayload.class);
             List<CartMergeService.MergeItem> incoming = payload != null && payload.items != null ? payload.items : new ArrayList<>();
             incoming.removeIf(i -> i == null || i.itemId == null || i.itemId.isBlank());
-            if (payload != null && payload.cartToken != null && (requestedToken == null || requestedToken.isBlank())) {
-                requestedToken = payload.cartToken;
+            String cartToken = resolveCartToken(request);
+            if (payload != null && payload.cartToken != null && (cartToken == null || cartToken.isBlank())) {
+                cartToken = payload.cartToken;
             }
+            String requestedToken = cartToken;
 
-            Order cart = null;
-            if (sessionUserId != null) {
-                cart = orderDAO.getCartByUserId(sessionUserId, conn);
-            }
-            if (cart == null && requestedToken != null) {
-                cart = orderDAO.getCartByToken(requestedToken, conn);
+            Order existingCart;
+            try (Connection conn = DatabaseConnection.getReadConnection(getServletContext())) {
+                existingCart = findCart(sessionUserId, requestedToken, conn);
             }
-
-            if (cart != null && cart.getUserId() != null && !cart.getUserId().equals(sessionUserId)) {
+            if (boundToAnotherUser(existingCart, sessionUserId)) {
                 response.sendError(sessionUserId == null ? HttpServletResponse.SC_UNAUTHORIZED : HttpServletResponse.SC_FORBIDDEN,
                         "Cart is bound to another user");
                 return;
             }
 
-            if (cart == null) {
-                cart = new Order();
-                String newOrderId = UUID.randomUUID().toString();
-                cart.setOrderId(newOrderId);
-                cart.setUserId(sessionUserId);
-                cart.setStatus("cart");
-                cart.setSource("web");
-                cart.setSubtotal(0.0);
-                cart.setTax(0.0);
-                cart.setTotal(0.0);
-                String initialToken = requestedToken != null ? requestedToken : issueCartToken();
-                cart.setCartToken(initialToken);
-                String createdOrderId = orderDAO.createOrder(cart, conn);
-                cart.setOrderId(createdOrderId != null ? createdOrderId : newOrderId);
-            }
-
-            String resolvedUser = resolveExistingUserId(sessionUserId);
-            if (resolvedUser != null && cart.getUserId() == null) {
-                cart.setUserId(resolvedUser);
-                // rotate token when binding to a user to avoid collisions
-                String uniqueToken = ensureCartTokenUnique(cart.getOrderId(), null, conn);
-                orderDAO.updateCartOwnership(cart.getOrderId(), resolvedUser, uniqueToken, conn);
-                cart.setCartToken(uniqueToken);
-            } else if (cart.getCartToken() == null || cart.getCartToken().isBlank()) {
-                String newToken = ensureCartTokenUnique(cart.getOrderId(), requestedToken, conn);
-                orderDAO.updateCartToken(cart.getOrderId(), newToken, conn);
-                cart.setCartToken(newToken);
-            } else {
-                // ensure existing token is not colliding with another cart
-                String newToken = ensureCartTokenUnique(cart.getOrderId(), cart.getCartToken(), conn);
-                if (!newToken.equals(cart.getCartToken())) {
-                    orderDAO.updateCartToken(cart.getOrderId(), newToken, conn);
-                    cart.setCartToken(newToken);
-                }
-            }
-            stampCartToken(response, request, cart.getCartToken());
-
-            // Drop existing items from merge math to avoid doubling quantities on refresh;
-            // we will replace server cart with the incoming payload.
-            List<OrderItem> existingItems = new ArrayList<>();
-
+            // Menu rows, inventory and the merge itself are settled before the write, so the
+            // writer only holds the cart's own statements
             Map<String, Inventory> inventoryByItem = new HashMap<>();
             InventoryDAO inventoryDAO = new InventoryDAO(getServletContext());
+            MenuItemDAO menuItemDAO = new MenuItemDAO(getServletContext());
+            Map<String, Boolean> menuItemPresent = new HashMap<>();
 
             for (CartMergeService.MergeItem item : incoming) {
-                if (item.itemId == null) {
-                    continue;
-                }
                 if (!inventoryByItem.containsKey(item.itemId)) {
-                    ensureMenuItemPresent(new MenuItemDAO(getServletContext()), item.itemId, item.name, item.unitPrice != null ? item.unitPrice : 0.0);
+                    menuItemPresent.put(item.itemId, ensureMenuItemPresent(menuItemDAO, item.itemId, item.name,
+                            item.unitPrice != null ? item.unitPrice : 0.0));
                     Inventory inv = inventoryDAO.getInventoryByItemId(item.itemId);
                     if (inv == null) {
                         inv = fallbackInventory(item.itemId, item.name);
@@ -707,22 +627,15 @@ public class OrderServlet extends HttpServlet {
                     inventoryByItem.put(item.itemId, inv);
                 }
             }
-            for (OrderItem item : existingItems) {
-                if (!inventoryByItem.containsKey(item.getItemId())) {
-                    Inventory inv = inventoryDAO.getInventoryByItemId(item.getItemId());
-                    if (inv == null) {
-                        inv = fallbackInventory(item.getItemId(), item.getMenuItem() != null ? item.getMenuItem().getName() : null);
-                    }
-                    inventoryByItem.put(item.getItemId(), inv);
-                }
-            }
 
-            CartMergeService.MergeResult result = new CartMergeService().merge(incoming, existingItems, inventoryByItem);
+            // Drop existing items from merge math to avoid doubling quantities on refresh;
+            // we will replace server cart with the incoming payload.
+            CartMergeService.MergeResult result = new CartMergeService().merge(incoming, new ArrayList<>(), inventoryByItem);
 
-            // Filter out menu items that no longer exist to avoid FK failures, and create missing menu rows
-            MenuItemDAO menuItemDAO = new MenuItemDAO(getServletContext());
+            // Filter out menu items that no longer exist to avoid FK failures
             List<OrderItem> persistedItems = new ArrayList<>();
             List<CartMergeService.Conflict> droppedConflicts = new ArrayList<>(result.getDropped());
+            double lineTotals = 0.0;
             for (OrderItem item : result.getMergedItems()) {
                 if (item.getItemId() == null || item.getItemId().isBlank()) {
                     droppedConflicts.add(new CartMergeService.Conflict(
@@ -733,9 +646,7 @@ public class OrderServlet extends HttpServlet {
                             0));
                     continue;
                 }
-                if (!ensureMenuItemPresent(menuItemDAO, item.getItemId(),
-                        item.getMenuItem() != null ? item.getMenuItem().getName() : null,
-                        item.getUnitPrice() != null ? item.getUnitPrice() : 0.0)) {
+                if (!menuItemPresent.getOrDefault(item.getItemId(), false)) {
                     droppedConflicts.add(new CartMergeService.Conflict(
                             item.getItemId(),
                             item.getMenuItem() != null ? item.getMenuItem().getName() : item.getItemId(),
@@ -745,20 +656,66 @@ public class OrderServlet extends HttpServlet {
                     continue;
                 }
                 persistedItems.add(item);
+                lineTotals += item.getLineTotal();
             }
+            double subtotal = lineTotals;
+            double tax = subtotal * 0.08;
+            double total = subtotal + tax;
+            String resolvedUser = resolveExistingUserId(sessionUserId);
+
+            Order cart = DatabaseConnection.write(getServletContext(), conn -> {
+                Order current = findCart(sessionUserId, requestedToken, conn);
+                if (boundToAnotherUser(current, sessionUserId)) {
+                    return null;
+                }
+                if (current == null) {
+                    current = new Order();
+                    String newOrderId = IdGenerator.newId();
+                    current.setOrderId(newOrderId);
+                    current.setUserId(sessionUserId);
+                    current.setStatus("cart");
+                    current.setSource("web");
+                    current.setSubtotal(0.0);
+                    current.setTax(0.0);
+                    current.setTotal(0.0);
+                    current.setCartToken(requestedToken != null ? requestedToken : issueCartToken());
+                    String createdOrderId = orderDAO.createOrder(current, conn);
+                    current.setOrderId(createdOrderId != null ? createdOrderId : newOrderId);
+                }
 
-            orderItemDAO.deleteOrderItemsByOrderId(cart.getOrderId(), conn);
+                if (resolvedUser != null && current.getUserId() == null) {
+                    current.setUserId(resolvedUser);
+                    // rotate token when binding to a user to avoid collisions
+                    String uniqueToken = ensureCartTokenUnique(current.getOrderId(), null, conn);
+                    orderDAO.updateCartOwnership(current.getOrderId(), resolvedUser, uniqueToken, conn);
+                    current.setCartToken(uniqueToken);
+                } else if (current.getCartToken() == null || current.getCartToken().isBlank()) {
+                    String newToken = ensureCartTokenUnique(current.getOrderId(), requestedToken, conn);
+                    orderDAO.updateCartToken(current.getOrderId(), newToken, conn);
+                    current.setCartToken(newToken);
+                } else {
+                    // ensure existing token is not colliding with another cart
+                    String newToken = ensureCartTokenUnique(current.getOrderId(), current.getCartToken(), conn);
+                    if (!newToken.equals(current.getCartToken())) {
+                        orderDAO.updateCartToken(current.getOrderId(), newToken, conn);
+                        current.setCartToken(newToken);
+                    }
+                }
 
-            double subtotal = 0.0;
-            for (OrderItem item : persistedItems) {
-                item.setOrderId(cart.getOrderId());
-                subtotal += item.getLineTotal();
-                orderItemDAO.createOrderItem(item, conn);
+                orderItemDAO.deleteOrderItemsByOrderId(current.getOrderId(), conn);
+                for (OrderItem item : persistedItems) {
+                    item.setOrderId(current.getOrderId());
+                }
+                orderItemDAO.createOrderItems(persistedItems, conn);
+                orderDAO.updateOrderTotals(current.getOrderId(), subtotal, tax, total, conn);
+                return current;
+            });
+            if (cart == null) {
+                // bound to another user between the check above and the write
+                response.sendError(sessionUserId == null ? HttpServletResponse.SC_UNAUTHORIZED : HttpServletResponse.SC_FORBIDDEN,
+                        "Cart is bound to another user");
+                return;
             }
-            double tax = subtotal * 0.08;
-            double total = subtotal + tax;
-            orderDAO.updateOrderTotals(cart.getOrderId(), subtotal, tax, total, conn);
-            conn.commit();
 
             cart.setSubtotal(subtotal);
             cart.setTax(tax);
@@ -785,7 +742,6 @@ public class OrderServlet extends HttpServlet {
             response.getWriter().write(objectMapper.writeValueAsString(responseBody));
 
         } catch (SQLException e) {
-            try { if (conn != null) conn.rollback(); } catch (SQLException ignored) {}
             if (e.getMessage() != null && e.getMessage().toLowerCase().contains("busy")) {
                 response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Database is busy, please retry");
             } else {
@@ -835,55 +791,25 @@ public class OrderServlet extends HttpServlet {
                         e.printStackTrace();
                     }
 
-                    // Send status update email
-                    try {
-                        EmailService emailService = new EmailService();
-                        Order order = orderDAO.getOrderById(orderId);
-
-                        if (order != null && order.getUserId() != null) {
-                            UserDAO userDAO = new UserDAO(getServletContext());
-                            User user = userDAO.getUserById(order.getUserId());
-
-                            if (user != null && user.getEmail() != null) {
-                                String updateMessage = "Your order status has been updated to: " + newStatus;
-                                if ("ready".equals(newStatus)) {
-                                    updateMessage = "Your order is ready!";
-                                } else if ("cancelled".equals(newStatus)) {
-                                    updateMessage = "Your order has been cancelled. Please contact us if this is an error.";
-                                }
-
-                                emailService.sendOrderStatusUpdate(
-                                        user.getEmail(),
-                                        user.getFullName(),
-                                        String.valueOf(orderId),
-                                        newStatus,
-                                        updateMessage
-                                );
-                            }
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Failed to send order status email: " + e.getMessage());
-                    }
-
                     Order updatedOrder = orderDAO.getOrderById(orderId);
 
                     // Notify via WebSocket
-                    String orderJson = objectMapper.writeValueAsString(updatedOrder);
-                    WebSocketConfig.notifyOrderUpdate(orderJson);
+                    String orderJson = Json.ORDER_WRITER.writeValueAsString(updatedOrder);
+                    WebSocketConfig.notifyOrderUpdate(orderId, orderJson);
 
-                    response.getWriter().write(objectMapper.writeValueAsString(updatedOrder));
+                    response.getWriter().write(Json.ORDER_WRITER.writeValueAsString(updatedOrder));
                 } else {
                     response.sendError(HttpServletResponse.SC_NOT_FOUND);
                 }
             } else {
                 // Update entire order
-                Order order = objectMapper.readValue(request.getReader(), Order.class);
+                Order order = Json.ORDER_READER.readValue(request.getReader());
                 order.setOrderId(orderId); // Ensure the ID matches the path
                 
                 boolean success = orderDAO.updateOrder(order);
                 
                 if (success) {
-                    response.getWriter().write(objectMapper.writeValueAsString(order));
+                    response.getWriter().write(Json.ORDER_WRITER.writeValueAsString(order));
                 } else {
                     response.sendError(HttpServletResponse.SC_NOT_FOUND);
                 }
@@ -2,7 +2,7 @@ package com.RBOS.servlets;
 
 import com.RBOS.dao.*;
 import com.RBOS.models.*;
-import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.Json;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -12,24 +12,25 @@ import jakarta.servlet.http.*;
 import jakarta.servlet.annotation.*;
 import java.io.IOException;
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.Date;
 
-@WebServlet("/api/reports/*")
-public class ReportServlet extends HttpServlet {
+@WebServlet(urlPatterns = "/api/reports/*", asyncSupported = true)
+public class ReportServlet extends ApiServlet {
     private ReservationDAO reservationDAO;
-    private OrderDAO orderDAO;
+    private ReportRollupDAO reportRollupDAO;
     private UserDAO userDAO;
     private MenuItemDAO menuItemDAO;
     private ObjectMapper objectMapper;
     
     @Override
     public void init() throws ServletException {
-        objectMapper = new ObjectMapper();
+        objectMapper = Json.mapper();
         ServletContext context = getServletContext();
         reservationDAO = new ReservationDAO(context);
-        orderDAO = new OrderDAO(context);
+        reportRollupDAO = new ReportRollupDAO(context);
         userDAO = new UserDAO(context);
         menuItemDAO = new MenuItemDAO(context);
     }
@@ -80,28 +81,18 @@ public class ReportServlet extends HttpServlet {
     private void getDashboardMetrics(HttpServletResponse response) throws SQLException, IOException {
         ObjectNode metrics = objectMapper.createObjectNode();
         
-        // Today's date
-        String today = new java.sql.Date(System.currentTimeMillis()).toString();
+        // Today's date (rollup buckets are UTC days)
+        String today = LocalDate.now(ZoneOffset.UTC).toString();
         
         // Reservation metrics
-        List<Reservation> reservations = reservationDAO.getAllReservations();
-        long todayReservations = reservations.stream()
-            .filter(r -> r.getStartUtc().startsWith(today))
-            .count();
-        long pendingReservations = reservations.stream()
-            .filter(r -> "pending".equals(r.getStatus()))
-            .count();
+        Map<String, Object> todayReservations = reportRollupDAO.getReservationTotals(today, today, null);
+        Map<String, Object> pendingReservations = reportRollupDAO.getReservationTotals(null, null, "pending");
+        Map<String, Object> allReservations = reportRollupDAO.getReservationTotals(null, null, null);
         
         // Order metrics
-        List<Order> orders = orderDAO.getAllOrders();
-        double todayRevenue = orders.stream()
-            .filter(o -> o.getCreatedUtc() != null && o.getCreatedUtc().startsWith(today))
-            .filter(o -> "paid".equals(o.getStatus()))
-            .mapToDouble(Order::getTotal)
-            .sum();
-        long todayOrders = orders.stream()
-            .filter(o -> o.getCreatedUtc() != null && o.getCreatedUtc().startsWith(today))
-            .count();
+        Map<String, Object> todayPaid = reportRollupDAO.getOrderTotals(today, today, "paid");
+        Map<String, Object> todayOrders = reportRollupDAO.getOrderTotals(today, today, null);
+        Map<String, Object> allOrders = reportRollupDAO.getOrderTotals(null, null, null);
         
         // Customer metrics
         List<User> users = userDAO.getAllUsers();
@@ -109,13 +100,13 @@ public class ReportServlet extends HttpServlet {
             .filter(u -> "customer".equals(u.getRole()))
             .count();
         
-        metrics.put("todayReservations", todayReservations);
-        metrics.put("pendingReservations", pendingReservations);
-        metrics.put("todayRevenue", todayRevenue);
-        metrics.put("todayOrders", todayOrders);
+        metrics.put("todayReservations", (Long) todayReservations.get("reservationCount"));
+        metrics.put("pendingReservations", (Long) pendingReservations.get("reservationCount"));
+        metrics.put("todayRevenue", (Double) todayPaid.get("revenue"));
+        metrics.put("todayOrders", (Long) todayOrders.get("orderCount"));
         metrics.put("totalCustomers", totalCustomers);
-        metrics.put("totalReservations", reservations.size());
-        metrics.put("totalOrders", orders.size());
+        metrics.put("totalReservations", (Long) allReservations.get("reservationCount"));
+        metrics.put("totalOrders", (Long) allOrders.get("orderCount"));
         
         response.getWriter().write(objectMapper.writeValueAsString(metrics));
     }
@@ -130,60 +121,18 @@ public class ReportServlet extends HttpServlet {
         ArrayNode statusData = objectMapper.createArrayNode();
         ArrayNode partySizeData = objectMapper.createArrayNode();
         
-        List<Reservation> reservations = reservationDAO.getAllReservations();
-        
-        // Filter by period
-        Calendar cal = Calendar.getInstance();
-        switch (period) {
-            case "week":
-                cal.add(Calendar.DAY_OF_YEAR, -7);
-                break;
-            case "month":
-                cal.add(Calendar.MONTH, -1);
-                break;
-            case "quarter":
-                cal.add(Calendar.MONTH, -3);
-                break;
-            default:
-                cal.add(Calendar.DAY_OF_YEAR, -7);
-        }
-        
-        Date startDate = cal.getTime();
-        List<Reservation> filteredReservations = reservations.stream()
-            .filter(r -> {
-                try {
-                    Date resDate = new java.util.Date(r.getStartUtc());
-                    return resDate.after(startDate);
-                } catch (Exception e) {
-                    return false;
-                }
-            })
-            .collect(Collectors.toList());
+        String startDay = periodStartDay(period);
         
         // Timeline data (reservations per day)
-        Map<String, Long> dailyCounts = filteredReservations.stream()
-            .collect(Collectors.groupingBy(
-                r -> r.getStartUtc().substring(0, 10),
-                Collectors.counting()
-            ));
-        
-        dailyCounts.entrySet().stream()
-            .sorted(Map.Entry.comparingByKey())
-            .forEach(entry -> {
-                ObjectNode dayData = objectMapper.createObjectNode();
-                dayData.put("date", entry.getKey());
-                dayData.put("count", entry.getValue());
-                timelineData.add(dayData);
-            });
+        reportRollupDAO.getDailyReservationCounts(startDay).forEach((day, count) -> {
+            ObjectNode dayData = objectMapper.createObjectNode();
+            dayData.put("date", day);
+            dayData.put("count", count);
+            timelineData.add(dayData);
+        });
         
         // Status distribution
-        Map<String, Long> statusCounts = reservations.stream()
-            .collect(Collectors.groupingBy(
-                Reservation::getStatus,
-                Collectors.counting()
-            ));
-        
-        statusCounts.forEach((status, count) -> {
+        reportRollupDAO.getReservationCountsByStatus().forEach((status, count) -> {
             ObjectNode statusNode = objectMapper.createObjectNode();
             statusNode.put("status", status);
             statusNode.put("count", count);
@@ -191,29 +140,22 @@ public class ReportServlet extends HttpServlet {
         });
         
         // Party size distribution
-        Map<Integer, Long> partySizeCounts = reservations.stream()
-            .collect(Collectors.groupingBy(
-                Reservation::getPartySize,
-                Collectors.counting()
-            ));
+        reportRollupDAO.getReservationCountsByPartySize().forEach((partySize, count) -> {
+            ObjectNode sizeNode = objectMapper.createObjectNode();
+            sizeNode.put("partySize", partySize);
+            sizeNode.put("count", count);
+            partySizeData.add(sizeNode);
+        });
         
-        partySizeCounts.entrySet().stream()
-            .sorted(Map.Entry.comparingByKey())
-            .forEach(entry -> {
-                ObjectNode sizeNode = objectMapper.createObjectNode();
-                sizeNode.put("partySize", entry.getKey());
-                sizeNode.put("count", entry.getValue());
-                partySizeData.add(sizeNode);
-            });
+        Map<String, Object> totals = reportRollupDAO.getReservationTotals(startDay, null, null);
+        long reservationCount = (Long) totals.get("reservationCount");
+        long guestCount = (Long) totals.get("guestCount");
         
         analytics.set("timeline", timelineData);
         analytics.set("statusDistribution", statusData);
         analytics.set("partySizeDistribution", partySizeData);
-        analytics.put("totalReservations", filteredReservations.size());
-        analytics.put("avgPartySize", filteredReservations.stream()
-            .mapToInt(Reservation::getPartySize)
-            .average()
-            .orElse(0.0));
+        analytics.put("totalReservations", reservationCount);
+        analytics.put("avgPartySize", reservationCount == 0 ? 0.0 : (double) guestCount / reservationCount);
         
         response.getWriter().write(objectMapper.writeValueAsString(analytics));
     }
@@ -228,102 +170,57 @@ public class ReportServlet extends HttpServlet {
         ArrayNode orderCountData = objectMapper.createArrayNode();
         ArrayNode sourceData = objectMapper.createArrayNode();
         
-        List<Order> orders = orderDAO.getAllOrders();
+        // Paid orders within the period, per day
+        List<Map<String, Object>> dailyTotals = reportRollupDAO.getDailyOrderTotals(periodStartDay(period), "paid");
         
-        // Filter paid orders and by period
-        Calendar cal = Calendar.getInstance();
-        switch (period) {
-            case "week":
-                cal.add(Calendar.DAY_OF_YEAR, -7);
-                break;
-            case "month":
-                cal.add(Calendar.MONTH, -1);
-                break;
-            case "quarter":
-                cal.add(Calendar.MONTH, -3);
-                break;
-            default:
-                cal.add(Calendar.DAY_OF_YEAR, -7);
+        double totalRevenue = 0.0;
+        long totalOrders = 0;
+        for (Map<String, Object> day : dailyTotals) {
+            ObjectNode revenueNode = objectMapper.createObjectNode();
+            revenueNode.put("date", (String) day.get("date"));
+            revenueNode.put("revenue", (Double) day.get("revenue"));
+            revenueData.add(revenueNode);
+            
+            ObjectNode countNode = objectMapper.createObjectNode();
+            countNode.put("date", (String) day.get("date"));
+            countNode.put("count", (Long) day.get("count"));
+            orderCountData.add(countNode);
+            
+            totalRevenue += (Double) day.get("revenue");
+            totalOrders += (Long) day.get("count");
         }
         
-        Date startDate = cal.getTime();
-        List<Order> filteredOrders = orders.stream()
-            .filter(o -> "paid".equals(o.getStatus()))
-            .filter(o -> {
-                try {
-                    if (o.getCreatedUtc() == null) return false;
-                    Date orderDate = new java.util.Date(o.getCreatedUtc());
-                    return orderDate.after(startDate);
-                } catch (Exception e) {
-                    return false;
-                }
-            })
-            .collect(Collectors.toList());
-        
-        // Revenue by day
-        Map<String, Double> dailyRevenue = filteredOrders.stream()
-            .collect(Collectors.groupingBy(
-                o -> o.getCreatedUtc().substring(0, 10),
-                Collectors.summingDouble(Order::getTotal)
-            ));
-        
-        dailyRevenue.entrySet().stream()
-            .sorted(Map.Entry.comparingByKey())
-            .forEach(entry -> {
-                ObjectNode dayData = objectMapper.createObjectNode();
-                dayData.put("date", entry.getKey());
-                dayData.put("revenue", entry.getValue());
-                revenueData.add(dayData);
-            });
-        
-        // Order count by day
-        Map<String, Long> dailyOrders = filteredOrders.stream()
-            .collect(Collectors.groupingBy(
-                o -> o.getCreatedUtc().substring(0, 10),
-                Collectors.counting()
-            ));
-        
-        dailyOrders.entrySet().stream()
-            .sorted(Map.Entry.comparingByKey())
-            .forEach(entry -> {
-                ObjectNode dayData = objectMapper.createObjectNode();
-                dayData.put("date", entry.getKey());
-                dayData.put("count", entry.getValue());
-                orderCountData.add(dayData);
-            });
-        
         // Orders by source
-        Map<String, Long> sourceCounts = orders.stream()
-            .collect(Collectors.groupingBy(
-                Order::getSource,
-                Collectors.counting()
-            ));
-        
-        sourceCounts.forEach((source, count) -> {
+        reportRollupDAO.getOrderCountsBySource().forEach((source, count) -> {
             ObjectNode sourceNode = objectMapper.createObjectNode();
             sourceNode.put("source", source);
             sourceNode.put("count", count);
             sourceData.add(sourceNode);
         });
         
-        double totalRevenue = filteredOrders.stream()
-            .mapToDouble(Order::getTotal)
-            .sum();
-        double avgOrderValue = filteredOrders.stream()
-            .mapToDouble(Order::getTotal)
-            .average()
-            .orElse(0.0);
-        
         analytics.set("revenueTimeline", revenueData);
         analytics.set("orderCountTimeline", orderCountData);
         analytics.set("sourceDistribution", sourceData);
         analytics.put("totalRevenue", totalRevenue);
-        analytics.put("totalOrders", filteredOrders.size());
-        analytics.put("avgOrderValue", avgOrderValue);
+        analytics.put("totalOrders", totalOrders);
+        analytics.put("avgOrderValue", totalOrders == 0 ? 0.0 : totalRevenue / totalOrders);
         
         response.getWriter().write(objectMapper.writeValueAsString(analytics));
     }
     
+    private String periodStartDay(String period) {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        switch (period) {
+            case "month":
+                return today.minusMonths(1).toString();
+            case "quarter":
+                return today.minusMonths(3).toString();
+            case "week":
+            default:
+                return today.minusDays(7).toString();
+        }
+    }
+    
     private void getCustomerAnalytics(HttpServletResponse response) throws SQLException, IOException {
         ObjectNode analytics = objectMapper.createObjectNode();
         ArrayNode customerData = objectMapper.createArrayNode();
@@ -331,7 +228,6 @@ public class ReportServlet extends HttpServlet {
         
         List<User> users = userDAO.getAllUsers();
         List<Reservation> reservations = reservationDAO.getAllReservations();
-        List<Order> orders = orderDAO.getAllOrders();
         
         // Customer role distribution
         Map<String, Long> roleCounts = users.stream()
@@ -383,59 +279,36 @@ public class ReportServlet extends HttpServlet {
         ArrayNode topItems = objectMapper.createArrayNode();
         ArrayNode categoryPerformance = objectMapper.createArrayNode();
         
-        List<Order> orders = orderDAO.getAllOrders();
+        List<Map<String, Object>> itemTotals = reportRollupDAO.getItemTotals();
         List<MenuItem> menuItems = menuItemDAO.getAllMenuItems();
-        
-        // Get all order items
-        Map<String, Double> itemRevenue = new HashMap<>();
-        Map<String, Long> itemQuantity = new HashMap<>();
-        
-        for (Order order : orders) {
-            if (order.getOrderItems() != null) {
-                for (OrderItem item : order.getOrderItems()) {
-                    itemRevenue.merge(item.getItemId(), item.getLineTotal(), Double::sum);
-                    itemQuantity.merge(item.getItemId(), (long) item.getQty(), Long::sum);
-                }
-            }
+        Map<String, MenuItem> menuById = new HashMap<>();
+        for (MenuItem menuItem : menuItems) {
+            menuById.put(menuItem.getItemId(), menuItem);
         }
         
-        // Top performing items by revenue
-        itemRevenue.entrySet().stream()
-            .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+        // Top performing items by revenue (item totals arrive sorted by revenue)
+        itemTotals.stream()
+            .filter(entry -> menuById.containsKey((String) entry.get("itemId")))
             .limit(10)
             .forEach(entry -> {
+                MenuItem menuItem = menuById.get((String) entry.get("itemId"));
                 ObjectNode itemNode = objectMapper.createObjectNode();
-                MenuItem menuItem = menuItems.stream()
-                    .filter(m -> m.getItemId().equals(entry.getKey()))
-                    .findFirst()
-                    .orElse(null);
-                
-                if (menuItem != null) {
-                    itemNode.put("itemId", menuItem.getItemId());
-                    itemNode.put("name", menuItem.getName());
-                    itemNode.put("revenue", entry.getValue());
-                    itemNode.put("quantity", itemQuantity.getOrDefault(entry.getKey(), 0L));
-                    itemNode.put("price", menuItem.getPrice());
-                    topItems.add(itemNode);
-                }
+                itemNode.put("itemId", menuItem.getItemId());
+                itemNode.put("name", menuItem.getName());
+                itemNode.put("revenue", (Double) entry.get("revenue"));
+                itemNode.put("quantity", (Long) entry.get("quantity"));
+                itemNode.put("price", menuItem.getPrice());
+                topItems.add(itemNode);
             });
         
         // Category performance
         Map<String, Double> categoryRevenue = new HashMap<>();
-        for (Order order : orders) {
-            if (order.getOrderItems() != null) {
-                for (OrderItem item : order.getOrderItems()) {
-                    MenuItem menuItem = menuItems.stream()
-                        .filter(m -> m.getItemId().equals(item.getItemId()))
-                        .findFirst()
-                        .orElse(null);
-                    
-                    if (menuItem != null) {
-                        // Simple category detection based on name (in real app, menu items should have categories)
-                        String category = determineCategory(menuItem.getName());
-                        categoryRevenue.merge(category, item.getLineTotal(), Double::sum);
-                    }
-                }
+        for (Map<String, Object> entry : itemTotals) {
+            MenuItem menuItem = menuById.get((String) entry.get("itemId"));
+            if (menuItem != null) {
+                // Simple category detection based on name (in real app, menu items should have categories)
+                String category = determineCategory(menuItem.getName());
+                categoryRevenue.merge(category, (Double) entry.get("revenue"), Double::sum);
             }
         }
         
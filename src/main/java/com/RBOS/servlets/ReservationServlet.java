@@ -10,8 +10,11 @@ import com.RBOS.dao.UserDAO;
 import com.RBOS.models.User;
 import com.RBOS.models.DiningTable;
 import com.RBOS.models.HistoryResponse;
+import com.RBOS.utils.HistoryCursor;
 import com.RBOS.utils.HistoryValidation;
 import com.RBOS.websocket.WebSocketConfig;
+import com.RBOS.utils.IdGenerator;
+import com.RBOS.utils.Json;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -28,8 +31,8 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 
-@WebServlet("/api/reservations/*")
-public class ReservationServlet extends HttpServlet {
+@WebServlet(urlPatterns = "/api/reservations/*", asyncSupported = true)
+public class ReservationServlet extends ApiServlet {
     private static final int RETENTION_MONTHS = 13;
     private ReservationDAO reservationDAO;
     private DiningTableDAO diningTableDAO;
@@ -39,7 +42,7 @@ public class ReservationServlet extends HttpServlet {
 
     @Override
     public void init() throws ServletException {
-        objectMapper = new ObjectMapper();
+        objectMapper = Json.mapper();
         reservationDAO = new ReservationDAO(getServletContext());
         diningTableDAO = new DiningTableDAO(getServletContext());
         auditDAO = new AuditLogDAO(getServletContext());
@@ -58,8 +61,7 @@ public class ReservationServlet extends HttpServlet {
 
             if (pathInfo == null || pathInfo.equals("/")) {
                 // Get all reservations
-                List<Reservation> reservations = reservationDAO.getAllReservations();
-                response.getWriter().write(objectMapper.writeValueAsString(reservations));
+                writeJsonArray(response, Json.RESERVATION_WRITER, reservationDAO::streamAllReservations);
             } else if ("/history".equals(pathInfo)) {
                 handleHistory(request, response);
             } else if (pathInfo.startsWith("/available-tables")) {
@@ -90,7 +92,7 @@ public class ReservationServlet extends HttpServlet {
                 Reservation reservation = reservationDAO.getReservationById(reservationId);
 
                 if (reservation != null) {
-                    response.getWriter().write(objectMapper.writeValueAsString(reservation));
+                    response.getWriter().write(Json.RESERVATION_WRITER.writeValueAsString(reservation));
                 } else {
                     response.sendError(HttpServletResponse.SC_NOT_FOUND);
                 }
@@ -111,7 +113,7 @@ public class ReservationServlet extends HttpServlet {
         response.setCharacterEncoding("UTF-8");
 
         try {
-            Reservation reservation = objectMapper.readValue(request.getReader(), Reservation.class);
+            Reservation reservation = Json.RESERVATION_READER.readValue(request.getReader());
             if (reservation.getUserId() != null && reservation.getUserId().isBlank()) {
                 reservation.setUserId(null); // normalize empty user ids to null to avoid FK issues
             }
@@ -144,7 +146,7 @@ public class ReservationServlet extends HttpServlet {
                 reservation.setGuestName("Guest");
             }
             if (reservation.getReservationId() == null || reservation.getReservationId().isBlank()) {
-                reservation.setReservationId(java.util.UUID.randomUUID().toString());
+                reservation.setReservationId(IdGenerator.newId());
             }
             String reservationId = reservationDAO.createReservation(reservation);
 
@@ -153,7 +155,7 @@ public class ReservationServlet extends HttpServlet {
 
                 // Send confirmation email
                 try {
-                    EmailService emailService = new EmailService();
+                    EmailService emailService = new EmailService(getServletContext());
 
                     // Get user details for email
                     UserDAO userDAO = new UserDAO(getServletContext());
@@ -199,13 +201,14 @@ public class ReservationServlet extends HttpServlet {
                 }
 
                 // Notify via WebSocket
-                String reservationJson = objectMapper.writeValueAsString(reservation);
-                WebSocketConfig.notifyNewReservation(reservationJson);
+                String reservationJson = Json.RESERVATION_WRITER.writeValueAsString(reservation);
+                WebSocketConfig.notifyNewReservation(reservation.getReservationId(), reservation.getTableId(), reservationJson);
 
                 response.setStatus(HttpServletResponse.SC_CREATED);
-                response.getWriter().write(objectMapper.writeValueAsString(reservation));
+                response.getWriter().write(Json.RESERVATION_WRITER.writeValueAsString(reservation));
             } else {
-                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                // another booking took the slot between the check above and the insert
+                response.sendError(HttpServletResponse.SC_CONFLICT, "Table is already booked for that time range");
             }
         } catch (SQLException e) {
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
@@ -227,7 +230,9 @@ public class ReservationServlet extends HttpServlet {
         String status;
         Instant startInstant;
         Instant endInstant;
+        HistoryCursor cursor;
         try {
+            cursor = HistoryValidation.parseCursor(request.getParameter("cursor"));
             status = HistoryValidation.normalizeStatus(rawStatus, HistoryValidation.ALLOWED_RESERVATION_STATUSES);
             startInstant = HistoryValidation.parseIsoInstant(rawStart, "start_utc");
             endInstant = HistoryValidation.parseIsoInstant(rawEnd, "end_utc");
@@ -279,17 +284,22 @@ public class ReservationServlet extends HttpServlet {
             return;
         }
 
-        PagedResult<Reservation> paged = reservationDAO.getReservationsWithFilters(status, startUtc, endUtc, scopedUserId, page, pageSize);
+        // Keyset paging from the first page or a cursor; an explicit deeper page number keeps the offset path
+        PagedResult<Reservation> paged = cursor != null || page == 1
+                ? reservationDAO.getReservationsPage(status, startUtc, endUtc, scopedUserId, cursor, pageSize)
+                : reservationDAO.getReservationsWithFilters(status, startUtc, endUtc, scopedUserId, page, pageSize);
 
         HistoryResponse<Reservation> history = new HistoryResponse<>(
                 paged.getItems(),
-                page,
+                cursor != null ? paged.getPage() : page,
                 pageSize,
                 paged.getTotal(),
                 RETENTION_MONTHS,
                 LocalDate.now().minusMonths(RETENTION_MONTHS).toString()
         );
-        response.getWriter().write(objectMapper.writeValueAsString(history));
+        history.setNextCursor(paged.getNextCursor());
+        history.setPrevCursor(paged.getPrevCursor());
+        response.getWriter().write(Json.RESERVATION_HISTORY_WRITER.writeValueAsString(history));
     }
 
     private String getSessionUserId(HttpServletRequest request) {
@@ -353,14 +363,14 @@ public class ReservationServlet extends HttpServlet {
                         return;
                     }
 
-                    String reservationJson = objectMapper.writeValueAsString(existing);
-                    WebSocketConfig.notifyReservationUpdate(reservationJson);
+                    String reservationJson = Json.RESERVATION_WRITER.writeValueAsString(existing);
+                    WebSocketConfig.notifyReservationUpdate(existing.getReservationId(), existing.getTableId(), reservationJson);
                     response.getWriter().write(reservationJson);
                     return;
                 }
             }
 
-            Reservation reservation = objectMapper.readValue(request.getReader(), Reservation.class);
+            Reservation reservation = Json.RESERVATION_READER.readValue(request.getReader());
             if (reservation.getUserId() != null && reservation.getUserId().isBlank()) {
                 reservation.setUserId(null); // normalize empty user ids to null to avoid FK issues
             }
@@ -388,10 +398,10 @@ public class ReservationServlet extends HttpServlet {
             boolean success = reservationDAO.updateReservation(reservation);
 
             if (success) {
-                String reservationJson = objectMapper.writeValueAsString(reservation);
-                WebSocketConfig.notifyReservationUpdate(reservationJson);
+                String reservationJson = Json.RESERVATION_WRITER.writeValueAsString(reservation);
+                WebSocketConfig.notifyReservationUpdate(reservation.getReservationId(), reservation.getTableId(), reservationJson);
 
-                response.getWriter().write(objectMapper.writeValueAsString(reservation));
+                response.getWriter().write(Json.RESERVATION_WRITER.writeValueAsString(reservation));
             } else {
                 response.sendError(HttpServletResponse.SC_NOT_FOUND);
             }
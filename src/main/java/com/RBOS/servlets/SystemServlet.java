@@ -0,0 +1,176 @@
+package com.RBOS.servlets;
+
+import com.RBOS.dao.ReportRollupDAO;
+import com.RBOS.services.AuditLogWriter;
+import com.RBOS.services.EmailDispatcher;
+import com.RBOS.services.IdempotencyStore;
+import com.RBOS.services.InventoryLedger;
+import com.RBOS.services.MenuCatalogCache;
+import com.RBOS.services.TableAvailabilityIndex;
+import com.RBOS.services.UserCache;
+import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.HistoryValidation;
+import com.RBOS.utils.Json;
+import com.RBOS.utils.SchemaMigrator;
+import com.RBOS.utils.SlowQueryLog;
+import com.RBOS.websocket.WebSocketConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.*;
+import jakarta.servlet.http.*;
+import jakarta.servlet.annotation.*;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Operational diagnostics for staff/admin users.
+ * GET  /api/system/pool             - connection pool statistics
+ * GET  /api/system/writes           - writer queue depth, group commit sizes and commit latency
+ * GET  /api/system/websocket        - broadcast queue depth and drop counts
+ * GET  /api/system/inventory        - inventory ledger reservations and write-behind backlog
+ * GET  /api/system/menu             - menu catalog cache versions and hit counts
+ * GET  /api/system/email            - email outbox dispatcher throughput and outbox counts
+ * GET  /api/system/tables           - table availability index size
+ * GET  /api/system/audit            - audit writer queue depth and flush latency
+ * GET  /api/system/schema           - applied and pending schema migrations
+ * GET  /api/system/users            - user cache size and hit rate
+ * GET  /api/system/idempotency      - order submissions replayed from Idempotency-Key results
+ * GET  /api/system/slow-queries     - recent slow statements with parameters and query plans
+ * GET  /api/system/requests         - API execution mode, write permits in use and rejections
+ * POST /api/system/rollups/rebuild  - recompute report rollups from base tables
+ * POST /api/system/slow-queries/clear - empty the slow query log
+ */
+@WebServlet(urlPatterns = "/api/system/*", asyncSupported = true)
+public class SystemServlet extends ApiServlet {
+    private ObjectMapper objectMapper;
+    private ReportRollupDAO reportRollupDAO;
+
+    @Override
+    public void init() throws ServletException {
+        objectMapper = Json.mapper();
+        reportRollupDAO = new ReportRollupDAO(getServletContext());
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        if (!requirePrivileged(request, response)) {
+            return;
+        }
+
+        try {
+            String pathInfo = request.getPathInfo();
+            if ("/pool".equals(pathInfo)) {
+                response.getWriter().write(objectMapper.writeValueAsString(
+                        DatabaseConnection.getPoolStats(getServletContext())));
+            } else if ("/writes".equals(pathInfo)) {
+                response.getWriter().write(objectMapper.writeValueAsString(
+                        DatabaseConnection.getPool(getServletContext()).getWriteCoordinator().getStats()));
+            } else if ("/websocket".equals(pathInfo)) {
+                response.getWriter().write(objectMapper.writeValueAsString(WebSocketConfig.getBroadcastStats()));
+            } else if ("/inventory".equals(pathInfo)) {
+                response.getWriter().write(objectMapper.writeValueAsString(
+                        InventoryLedger.forContext(getServletContext()).getStats()));
+            } else if ("/menu".equals(pathInfo)) {
+                response.getWriter().write(objectMapper.writeValueAsString(
+                        MenuCatalogCache.forContext(getServletContext()).getStats()));
+            } else if ("/tables".equals(pathInfo)) {
+                response.getWriter().write(objectMapper.writeValueAsString(
+                        TableAvailabilityIndex.forContext(getServletContext()).getStats()));
+            } else if ("/audit".equals(pathInfo)) {
+                response.getWriter().write(objectMapper.writeValueAsString(
+                        AuditLogWriter.forContext(getServletContext()).getStats()));
+            } else if ("/users".equals(pathInfo)) {
+                response.getWriter().write(objectMapper.writeValueAsString(
+                        UserCache.forContext(getServletContext()).getStats()));
+            } else if ("/idempotency".equals(pathInfo)) {
+                response.getWriter().write(objectMapper.writeValueAsString(
+                        IdempotencyStore.forContext(getServletContext()).getStats()));
+            } else if ("/requests".equals(pathInfo)) {
+                response.getWriter().write(objectMapper.writeValueAsString(ApiServlet.getStats()));
+            } else if ("/slow-queries".equals(pathInfo)) {
+                SlowQueryLog slowQueries = DatabaseConnection.getSlowQueryLog(getServletContext());
+                if (slowQueries == null) {
+                    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Slow query log is turned off");
+                    return;
+                }
+                response.getWriter().write(objectMapper.writeValueAsString(slowQueries.getStats()));
+            } else if ("/schema".equals(pathInfo)) {
+                try (Connection conn = DatabaseConnection.getConnection(getServletContext())) {
+                    Map<String, Object> report = new LinkedHashMap<>();
+                    report.put("currentVersion", SchemaMigrator.currentVersion(conn));
+                    report.put("latestVersion", SchemaMigrator.latestVersion());
+                    report.putAll(SchemaMigrator.describe(SchemaMigrator.run(conn, SchemaMigrator.Mode.REPORT)));
+                    response.getWriter().write(objectMapper.writeValueAsString(report));
+                }
+            } else if ("/email".equals(pathInfo)) {
+                EmailDispatcher dispatcher = EmailDispatcher.getInstalled();
+                if (dispatcher == null) {
+                    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Email dispatcher not running");
+                    return;
+                }
+                response.getWriter().write(objectMapper.writeValueAsString(dispatcher.getStats()));
+            } else {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+        } catch (SQLException e) {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        if (!requirePrivileged(request, response)) {
+            return;
+        }
+
+        try {
+            String pathInfo = request.getPathInfo();
+            if ("/rollups/rebuild".equals(pathInfo)) {
+                long start = System.currentTimeMillis();
+                reportRollupDAO.rebuild();
+                response.getWriter().write(objectMapper.writeValueAsString(
+                        Map.of("rebuilt", true, "elapsedMillis", System.currentTimeMillis() - start)));
+            } else if ("/slow-queries/clear".equals(pathInfo)) {
+                SlowQueryLog slowQueries = DatabaseConnection.getSlowQueryLog(getServletContext());
+                if (slowQueries != null) {
+                    slowQueries.clear();
+                }
+                response.getWriter().write(objectMapper.writeValueAsString(Map.of("cleared", slowQueries != null)));
+            } else {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+        } catch (SQLException e) {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            e.printStackTrace();
+        }
+    }
+
+    private boolean requirePrivileged(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        HttpSession session = request.getSession(false);
+        Object userId = session != null ? session.getAttribute("userId") : null;
+        Object role = session != null ? session.getAttribute("role") : null;
+        if (userId == null) {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Authentication required");
+            return false;
+        }
+        if (!HistoryValidation.isPrivilegedRole(role != null ? role.toString() : null)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "Staff or admin access required");
+            return false;
+        }
+        return true;
+    }
+}
@@ -3,6 +3,7 @@ package com.RBOS.servlets;
 import com.RBOS.dao.UserDAO;
 import com.RBOS.dao.AuditLogDAO;
 import com.RBOS.models.User;
+import com.RBOS.utils.Json;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import jakarta.servlet.*;
@@ -10,17 +11,16 @@ import jakarta.servlet.http.*;
 import jakarta.servlet.annotation.*;
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.List;
 
-@WebServlet("/api/users/*")
-public class UserServlet extends HttpServlet {
+@WebServlet(urlPatterns = "/api/users/*", asyncSupported = true)
+public class UserServlet extends ApiServlet {
     private UserDAO userDAO;
     private AuditLogDAO auditDAO;
     private ObjectMapper objectMapper;
     
     @Override
     public void init() throws ServletException {
-        objectMapper = new ObjectMapper();
+        objectMapper = Json.mapper();
         userDAO = new UserDAO(getServletContext());
         auditDAO = new AuditLogDAO(getServletContext());
     }
@@ -37,8 +37,7 @@ public class UserServlet extends HttpServlet {
             
             if (pathInfo == null || pathInfo.equals("/")) {
                 // Get all users
-                List<User> users = userDAO.getAllUsers();
-                response.getWriter().write(objectMapper.writeValueAsString(users));
+                writeJsonArray(response, Json.USER_WRITER, userDAO::streamAllUsers);
             } else if (pathInfo.startsWith("/email/")) {
                 // Get user by email
                 String[] splits = pathInfo.split("/");
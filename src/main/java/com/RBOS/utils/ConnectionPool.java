@@ -0,0 +1,697 @@
+package com.RBOS.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of SQLite connections for a single database file.
+ *
+ * Physical connections are opened lazily, configured with the connection PRAGMAs once,
+ * and handed out wrapped in a proxy whose close() returns them to the pool. Idle
+ * connections are re-validated after sitting unused, and connections held longer than
+ * the leak threshold are reported together with the stack that borrowed them. Recording that
+ * stack costs a Throwable per borrow, so a threshold of 0 turns leak detection off entirely.
+ *
+ * A pool made with {@link #readOnly} hands out query_only connections for GET traffic. In WAL
+ * mode these read from their own snapshot and never wait on the writer, so they get a larger
+ * page cache, memory-mapped reads and a per-connection cache of prepared statements instead of
+ * the write PRAGMAs. A read-only pool has no write coordinator.
+ */
+public class ConnectionPool {
+    private static final String VALIDATION_QUERY = "SELECT 1";
+    // Shared by every pool for leak detection; created on first use, stopped by shutdownHousekeeper()
+    private static ScheduledExecutorService housekeeper;
+
+    private final String dbPath;
+    private final String jdbcUrl;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final long validationIntervalMillis;
+    private final boolean readOnly;
+    private final long cacheSizeKb;
+    private final long mmapSizeBytes;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledFuture<?> leakTask;
+    private volatile boolean closed;
+    private volatile SlowQueryLog slowQueries;
+    private final WriteCoordinator writer;
+
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final AtomicLong statementsCreated = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    public ConnectionPool(String dbPath, int maxSize, long acquireTimeoutMillis,
+                          long leakThresholdMillis, long validationIntervalMillis) {
+        this(dbPath, maxSize, acquireTimeoutMillis, leakThresholdMillis, validationIntervalMillis,
+                false, 0, 0, 0);
+    }
+
+    /**
+     * Pool of query_only connections. cacheSizeKb and mmapSizeBytes set each connection's page
+     * cache and memory map (0 keeps SQLite's default); statementCacheSize is how many prepared
+     * statements each connection keeps for reuse (0 turns the cache off).
+     */
+    public static ConnectionPool readOnly(String dbPath, int maxSize, long acquireTimeoutMillis,
+                                          long leakThresholdMillis, long validationIntervalMillis,
+                                          long cacheSizeKb, long mmapSizeBytes, int statementCacheSize) {
+        return new ConnectionPool(dbPath, maxSize, acquireTimeoutMillis, leakThresholdMillis,
+                validationIntervalMillis, true, cacheSizeKb, mmapSizeBytes, statementCacheSize);
+    }
+
+    private ConnectionPool(String dbPath, int maxSize, long acquireTimeoutMillis,
+                           long leakThresholdMillis, long validationIntervalMillis, boolean readOnly,
+                           long cacheSizeKb, long mmapSizeBytes, int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.dbPath = dbPath;
+        this.jdbcUrl = "jdbc:sqlite:" + dbPath;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.readOnly = readOnly;
+        this.cacheSizeKb = cacheSizeKb;
+        this.mmapSizeBytes = mmapSizeBytes;
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        this.permits = new Semaphore(maxSize, true);
+        this.writer = readOnly ? null : new WriteCoordinator(this);
+
+        if (leakThresholdMillis > 0) {
+            long period = Math.max(1000L, leakThresholdMillis / 2);
+            this.leakTask = housekeeper().scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.leakTask = null;
+        }
+    }
+
+    private static synchronized ScheduledExecutorService housekeeper() {
+        if (housekeeper == null) {
+            housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "rbos-db-pool-housekeeper");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return housekeeper;
+    }
+
+    /**
+     * Stop the leak detection thread shared by all pools, so an undeployed webapp does not
+     * leave it running. Pools created afterwards start a new one.
+     */
+    public static synchronized void shutdownHousekeeper() {
+        if (housekeeper != null) {
+            housekeeper.shutdownNow();
+            housekeeper = null;
+        }
+    }
+
+    public String getDatabasePath() {
+        return dbPath;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Log statements slower than the log's threshold, with their parameters and query plan.
+     * Pass null to stop logging; statements already handed out keep the log they started with.
+     */
+    public void setSlowQueryLog(SlowQueryLog slowQueries) {
+        this.slowQueries = slowQueries;
+    }
+
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueries;
+    }
+
+    /**
+     * The single writer for this database; see {@link WriteCoordinator}. Null for a read-only pool.
+     */
+    public WriteCoordinator getWriteCoordinator() {
+        return writer;
+    }
+
+    /**
+     * Borrow a connection, waiting up to the acquire timeout for one to become free.
+     * The caller must close() the returned connection to hand it back.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool for " + dbPath + " is closed");
+        }
+
+        long start = System.nanoTime();
+        boolean acquired;
+        waiting.incrementAndGet();
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        if (!acquired) {
+            timeouts.incrementAndGet();
+            throw new SQLException("Timed out after " + acquireTimeoutMillis + "ms waiting for a database connection ("
+                    + borrowed.size() + " of " + maxSize + " in use)");
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = open();
+            }
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowSite = leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+            borrows.incrementAndGet();
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - pooled.lastReturnedAt < validationIntervalMillis || validate(pooled)) {
+                return pooled;
+            }
+            validationFailures.incrementAndGet();
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private boolean validate(PooledConnection pooled) {
+        try (Statement stmt = pooled.physical.createStatement()) {
+            stmt.execute(VALIDATION_QUERY);
+            return true;
+        } catch (SQLException e) {
+            System.out.println("[DB] Discarding pooled connection that failed validation: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection conn = openPhysical();
+        openCount.incrementAndGet();
+        created.incrementAndGet();
+        return new PooledConnection(conn);
+    }
+
+    // A configured connection outside the pool's accounting; the write coordinator owns one
+    Connection openPhysical() throws SQLException {
+        Connection conn = DriverManager.getConnection(jdbcUrl);
+        try (Statement stmt = conn.createStatement()) {
+            if (readOnly) {
+                // WAL is a property of the file; setting it here covers a reader opened before any writer
+                stmt.execute("PRAGMA journal_mode = WAL");
+                stmt.execute("PRAGMA busy_timeout = 5000");
+                if (cacheSizeKb > 0) {
+                    stmt.execute("PRAGMA cache_size = -" + cacheSizeKb);
+                }
+                if (mmapSizeBytes > 0) {
+                    stmt.execute("PRAGMA mmap_size = " + mmapSizeBytes);
+                }
+                stmt.execute("PRAGMA query_only = ON");
+                return conn;
+            }
+            stmt.execute("PRAGMA foreign_keys = ON");
+            stmt.execute("PRAGMA journal_mode = WAL");
+            stmt.execute("PRAGMA synchronous = NORMAL");
+            stmt.execute("PRAGMA busy_timeout = 5000");
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    private void destroy(PooledConnection pooled) {
+        pooled.clearStatementCache();
+        try {
+            pooled.physical.close();
+        } catch (SQLException ignored) {
+        }
+        openCount.decrementAndGet();
+        destroyed.incrementAndGet();
+    }
+
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        pooled.borrowSite = null;
+
+        boolean reusable = !closed;
+        try {
+            if (pooled.physical.isClosed()) {
+                reusable = false;
+            } else if (!pooled.physical.getAutoCommit()) {
+                // never hand an open transaction to the next borrower
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        if (reusable) {
+            pooled.lastReturnedAt = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } else {
+            destroy(pooled);
+        }
+        permits.release();
+    }
+
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : borrowed) {
+            if (!pooled.leakReported && now - pooled.borrowedAt > leakThresholdMillis) {
+                pooled.leakReported = true;
+                leaksDetected.incrementAndGet();
+                System.err.println("[DB] Possible connection leak: connection held for " + (now - pooled.borrowedAt)
+                        + "ms (threshold " + leakThresholdMillis + "ms) on " + dbPath);
+                Throwable site = pooled.borrowSite;
+                if (site != null) {
+                    site.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Close idle connections and stop handing out new ones. Borrowed connections are
+     * closed as they are returned.
+     */
+    public void close() {
+        closed = true;
+        if (writer != null) {
+            writer.close();
+        }
+        if (leakTask != null) {
+            leakTask.cancel(false);
+        }
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long borrowTotal = borrows.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("databasePath", dbPath);
+        stats.put("readOnly", readOnly);
+        stats.put("maxSize", maxSize);
+        stats.put("open", openCount.get());
+        stats.put("active", borrowed.size());
+        stats.put("idle", idle.size());
+        stats.put("waiting", waiting.get());
+        stats.put("created", created.get());
+        stats.put("destroyed", destroyed.get());
+        stats.put("borrows", borrowTotal);
+        stats.put("timeouts", timeouts.get());
+        stats.put("validationFailures", validationFailures.get());
+        stats.put("leaksDetected", leaksDetected.get());
+        stats.put("statements", statementsCreated.get());
+        if (statementCacheSize > 0) {
+            stats.put("statementCacheHits", statementCacheHits.get());
+            stats.put("statementCacheMisses", statementCacheMisses.get());
+        }
+        stats.put("avgWaitMillis", borrowTotal == 0 ? 0.0 : totalWaitNanos.get() / 1_000_000.0 / borrowTotal);
+        stats.put("maxWaitMillis", maxWaitNanos.get() / 1_000_000.0);
+        stats.put("closed", closed);
+        return stats;
+    }
+
+    private final class PooledConnection {
+        private final Connection physical;
+        private volatile long borrowedAt;
+        private volatile long lastReturnedAt = System.currentTimeMillis();
+        private volatile Throwable borrowSite;
+        private volatile boolean leakReported;
+        // Idle prepared statements by SQL, least recently used first; only the borrower touches it
+        private final LinkedHashMap<String, PreparedStatement> statementCache;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = statementCacheSize > 0 ? new LinkedHashMap<>(16, 0.75f, true) : null;
+        }
+
+        // A statement checked out of the cache is removed from it, so the same SQL prepared twice
+        // on one borrow gets two statements
+        private PreparedStatement prepareCached(String sql) throws SQLException {
+            PreparedStatement stmt = statementCache.remove(sql);
+            if (stmt != null) {
+                statementCacheHits.incrementAndGet();
+            } else {
+                statementCacheMisses.incrementAndGet();
+                stmt = physical.prepareStatement(sql);
+            }
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] {PreparedStatement.class},
+                    new CachedStatement(this, sql, stmt));
+        }
+
+        private void giveBack(String sql, PreparedStatement stmt) {
+            boolean keep = !closed;
+            try {
+                keep = keep && !physical.isClosed() && !statementCache.containsKey(sql);
+                if (keep) {
+                    stmt.clearParameters();
+                }
+            } catch (SQLException e) {
+                keep = false;
+            }
+            if (!keep) {
+                closeQuietly(stmt);
+                return;
+            }
+            statementCache.put(sql, stmt);
+            if (statementCache.size() > statementCacheSize) {
+                Iterator<PreparedStatement> eldest = statementCache.values().iterator();
+                closeQuietly(eldest.next());
+                eldest.remove();
+            }
+        }
+
+        private void clearStatementCache() {
+            if (statementCache != null) {
+                statementCache.values().forEach(ConnectionPool::closeQuietly);
+                statementCache.clear();
+            }
+        }
+
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] {Connection.class},
+                    new Handle(this));
+        }
+    }
+
+    /**
+     * Per-borrow view of a pooled connection. Closing it twice is harmless, and any use
+     * after close fails instead of touching a connection someone else now owns.
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final List<Statement> statements = new ArrayList<>();
+        private boolean released;
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    closeHandle();
+                    return null;
+                case "isClosed":
+                    return released || pooled.physical.isClosed();
+                case "isValid":
+                    return !released && pooled.physical.isValid(args != null ? (Integer) args[0] : 0);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + dbPath + (released ? ", released]" : "]");
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            if (released) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            if (pooled.statementCache != null && "prepareStatement".equals(name) && args.length == 1) {
+                PreparedStatement cached = pooled.prepareCached((String) args[0]);
+                statementsCreated.incrementAndGet();
+                statements.add(cached);
+                return timed(method, args, cached, proxy, pooled.physical, slowQueries);
+            }
+
+            Object result;
+            try {
+                result = method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement) {
+                statementsCreated.incrementAndGet();
+                statements.add((Statement) result);
+                return timed(method, args, (Statement) result, proxy, pooled.physical, slowQueries);
+            }
+            return result;
+        }
+
+        private void closeHandle() {
+            if (released) {
+                return;
+            }
+            released = true;
+            for (Statement stmt : statements) {
+                try {
+                    stmt.close();
+                } catch (SQLException ignored) {
+                }
+            }
+            statements.clear();
+            release(pooled);
+        }
+    }
+
+    /**
+     * A cached prepared statement as one borrower sees it. close() resets the statement and puts
+     * it back in its connection's cache; the open result set is closed first so the statement
+     * does not hold a read snapshot while it sits idle.
+     */
+    private static final class CachedStatement implements InvocationHandler {
+        private final PooledConnection owner;
+        private final String sql;
+        private final PreparedStatement target;
+        private ResultSet results;
+        private boolean returned;
+
+        private CachedStatement(PooledConnection owner, String sql, PreparedStatement target) {
+            this.owner = owner;
+            this.sql = sql;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        if (results != null) {
+                            closeQuietly(results);
+                            results = null;
+                        }
+                        owner.giveBack(sql, target);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || target.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Statement has already been closed");
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof ResultSet) {
+                results = (ResultSet) result;
+            }
+            return result;
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    // Wraps a statement just returned by createStatement/prepareStatement/prepareCall
+    static Object timed(Method method, Object[] args, Statement statement, Object connection,
+                        Connection physical, SlowQueryLog slowQueries) {
+        String sql = method.getName().startsWith("prepare") && args != null && args[0] instanceof String
+                ? (String) args[0]
+                : null;
+        return Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] {method.getReturnType()},
+                new TimedStatement(statement, sql, connection, physical, slowQueries));
+    }
+
+    /**
+     * Times every execute call into {@link Metrics}, keyed by the prepared SQL or the SQL passed
+     * to execute. Only execution is timed; reading the rows of a result set is not. When a slow
+     * query log is installed, bound parameters are remembered so a slow execution can be logged
+     * with them.
+     */
+    private static final class TimedStatement implements InvocationHandler {
+        private final Statement target;
+        private final String preparedSql;
+        private final Object connection;
+        private final Connection physical;
+        private final SlowQueryLog slowQueries;
+        private final List<Object> params;
+
+        private TimedStatement(Statement target, String preparedSql, Object connection,
+                               Connection physical, SlowQueryLog slowQueries) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+            this.connection = connection;
+            this.physical = physical;
+            this.slowQueries = slowQueries;
+            this.params = slowQueries != null && preparedSql != null ? new ArrayList<>() : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (!name.startsWith("execute")) {
+                if (params != null) {
+                    remember(name, args);
+                }
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+
+            boolean sqlArgument = args != null && args.length > 0 && args[0] instanceof String;
+            String sql = sqlArgument ? (String) args[0] : preparedSql;
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = method.invoke(target, args);
+                failed = false;
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                Metrics.recordStatement(sql != null ? sql : "batch", elapsed, failed);
+                if (slowQueries != null && sql != null && slowQueries.isSlow(elapsed)) {
+                    slowQueries.record(sql, sqlArgument ? null : params, elapsed, failed, physical);
+                }
+            }
+        }
+
+        // setString(1, x), setNull(2, Types.X) and friends; parameters are 1-based
+        private void remember(String name, Object[] args) {
+            if ("clearParameters".equals(name)) {
+                params.clear();
+                return;
+            }
+            if (!name.startsWith("set") || args == null || args.length < 2 || !(args[0] instanceof Integer)) {
+                return;
+            }
+            int index = (Integer) args[0] - 1;
+            if (index < 0) {
+                return;
+            }
+            while (params.size() <= index) {
+                params.add(null);
+            }
+            params.set(index, "setNull".equals(name) ? null : args[1]);
+        }
+    }
+}
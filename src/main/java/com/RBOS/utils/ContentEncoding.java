@@ -0,0 +1,20 @@
+package com.RBOS.utils;
+
+/**
+ * Accept-Encoding negotiation shared by the endpoints that can send gzip bodies.
+ */
+public class ContentEncoding {
+
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+                return !(parts.length > 1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?"));
+            }
+        }
+        return false;
+    }
+}
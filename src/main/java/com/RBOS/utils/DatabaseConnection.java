@@ -7,18 +7,37 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.sql.DatabaseMetaData;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import jakarta.servlet.ServletContext;
 
 public class DatabaseConnection {
+    private static final int DEFAULT_POOL_SIZE = 10;
+    private static final long DEFAULT_ACQUIRE_TIMEOUT_MS = 10_000L;
+    // Leak detection captures a stack trace on every borrow, so it is opt-in via RBOS_DB_LEAK_THRESHOLD_MS
+    private static final long DEFAULT_LEAK_THRESHOLD_MS = 0L;
+    private static final long DEFAULT_VALIDATION_INTERVAL_MS = 30_000L;
+    private static final long DEFAULT_SLOW_QUERY_MS = 100L;
+    private static final int DEFAULT_SLOW_QUERY_LOG_SIZE = 200;
+    private static final int DEFAULT_READ_POOL_SIZE = 8;
+    private static final long DEFAULT_READ_CACHE_KB = 8192L;
+    private static final long DEFAULT_READ_MMAP_MB = 64L;
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    private static final Map<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+    // Read-only pools, keyed like pools and created alongside them
+    private static final Map<String, ConnectionPool> readPools = new ConcurrentHashMap<>();
 
     private static String resolveDatabasePath(ServletContext context) {
         String path = System.getProperty("RBOS_DB");
@@ -29,21 +48,42 @@ public class DatabaseConnection {
         if (isBlank(path)) {
             path = Paths.get(System.getProperty("user.home"), ".rbos", "restaurant.db").toString();
         }
-        Path p = Paths.get(path).toAbsolutePath().normalize();
-        try {
-            Path parent = p.getParent();
-            if (parent != null)
-                Files.createDirectories(parent);
-        } catch (Exception ignored) {
-        }
-        return p.toString();
+        return Paths.get(path).toAbsolutePath().normalize().toString();
     }
 
     private static boolean isBlank(String s) {
         return s == null || s.trim().isEmpty();
     }
 
-    private static List<String> parseStatements(InputStream schemaStream) throws Exception {
+    /**
+     * Setting from a system property, environment variable or context init parameter, in that order.
+     */
+    public static String resolveSetting(ServletContext context, String name) {
+        String value = System.getProperty(name);
+        if (isBlank(value))
+            value = System.getenv(name);
+        if (isBlank(value) && context != null)
+            value = context.getInitParameter(name);
+        return isBlank(value) ? null : value.trim();
+    }
+
+    public static long resolveLongSetting(ServletContext context, String name, long defaultValue) {
+        String value = resolveSetting(context, name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.out.println("[DB] Ignoring invalid " + name + "=" + value + "; using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Split a SQL script into statements on ';', dropping '--' comments. A CREATE TRIGGER is
+     * kept whole up to its closing END.
+     */
+    static List<String> parseStatements(InputStream schemaStream) throws Exception {
         List<String> statements = new ArrayList<>();
         StringBuilder cleaned = new StringBuilder();
 
@@ -64,9 +104,18 @@ public class DatabaseConnection {
             }
         }
 
+        StringBuilder trigger = null;
         for (String raw : cleaned.toString().split(";")) {
             String stmt = raw.trim();
-            if (!stmt.isEmpty()) {
+            if (trigger != null) {
+                trigger.append(";\n").append(stmt);
+                if (stmt.toUpperCase().endsWith("END")) {
+                    statements.add(trigger.toString());
+                    trigger = null;
+                }
+            } else if (stmt.toUpperCase().startsWith("CREATE TRIGGER")) {
+                trigger = new StringBuilder(stmt);
+            } else if (!stmt.isEmpty()) {
                 statements.add(stmt);
             }
         }
@@ -107,8 +156,13 @@ public class DatabaseConnection {
 
     private static void seedIfMissing(String absolutePath) {
         Path target = Paths.get(absolutePath);
-        if (Files.exists(target))
+        try {
+            // An empty file (e.g. one just created to point RBOS_DB at) has no schema to keep
+            if (Files.exists(target) && Files.size(target) > 0)
+                return;
+        } catch (Exception ignored) {
             return;
+        }
 
         if (seedFromSchema(target))
             return;
@@ -117,197 +171,182 @@ public class DatabaseConnection {
                 .getClassLoader()
                 .getResourceAsStream("backend/restaurant.db")) {
             if (in != null) {
-                Files.copy(in, target);
+                Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
                 System.out.println("[DB] Seed copied to: " + target);
             } else {
                 System.out.println("[DB] No seed DB found on classpath; creating empty at: " + target);
-                Files.createFile(target);
+                if (!Files.exists(target))
+                    Files.createFile(target);
             }
         } catch (Exception e) {
             System.out.println("[DB] Failed to copy seed: " + e.getMessage());
         }
     }
 
-    public static String getDatabasePath(ServletContext context) {
-        String external = resolveDatabasePath(context);
-        seedIfMissing(external);
-        ensureSchema(external);
-        return external;
+    public static String getDatabasePath(ServletContext context) throws SQLException {
+        return getPool(context).getDatabasePath();
     }
 
     public static Connection getConnection(ServletContext context) throws SQLException {
-        try {
-            Class.forName("org.sqlite.JDBC");
-            String dbPath = getDatabasePath(context);
-            String dbUrl = "jdbc:sqlite:" + dbPath;
-
-            Connection conn = DriverManager.getConnection(dbUrl);
-            try (Statement stmt = conn.createStatement()) {
-                stmt.execute("PRAGMA foreign_keys = ON");
-                stmt.execute("PRAGMA journal_mode = WAL");
-                stmt.execute("PRAGMA synchronous = NORMAL");
-                stmt.execute("PRAGMA busy_timeout = 5000");
-            }
-            System.out.println("Database path: " + dbPath);
-            return conn;
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("SQLite JDBC driver not found", e);
-        }
+        return getPool(context).borrow();
     }
 
-    private static void ensureSchema(String dbPath) {
-        Path target = Paths.get(dbPath);
-        try {
-            Class.forName("org.sqlite.JDBC");
-        } catch (ClassNotFoundException e) {
-            System.out.println("[DB] SQLite driver unavailable; skipping schema verification: " + e.getMessage());
-            return;
+    /**
+     * A query_only connection for reads that do not need to see the caller's own uncommitted
+     * writes. Readers work from a WAL snapshot, so they never wait on the writer.
+     */
+    public static Connection getReadConnection(ServletContext context) throws SQLException {
+        return getReadPool(context).borrow();
+    }
+
+    public static ConnectionPool getReadPool(ServletContext context) throws SQLException {
+        ConnectionPool pool = getPool(context);
+        ConnectionPool readers = readPools.get(pool.getDatabasePath());
+        if (readers == null || readers.isClosed()) {
+            throw new SQLException("Read pool for " + pool.getDatabasePath() + " is closed");
         }
+        return readers;
+    }
 
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + target.toString())) {
-            boolean migrated = false;
+    /**
+     * Pool for the database the context resolves to. The first request for a path seeds the
+     * file and runs pending schema migrations once; every later call is a map lookup.
+     */
+    public static ConnectionPool getPool(ServletContext context) throws SQLException {
+        String dbPath = resolveDatabasePath(context);
+        ConnectionPool pool = pools.get(dbPath);
+        if (pool != null && !pool.isClosed())
+            return pool;
 
-            if (!columnExists(conn, "orders", "cart_token")) {
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("ALTER TABLE orders ADD COLUMN cart_token TEXT UNIQUE");
-                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_orders_by_cart_token ON orders(cart_token)");
-                    migrated = true;
-                    System.out.println("[DB] Added missing orders.cart_token column");
-                }
-            }
+        synchronized (pools) {
+            pool = pools.get(dbPath);
+            if (pool != null && !pool.isClosed())
+                return pool;
 
-            if (!columnExists(conn, "orders", "created_utc")) {
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("ALTER TABLE orders ADD COLUMN created_utc TEXT DEFAULT (strftime('%Y-%m-%dT%H:%M:%fZ','now'))");
-                    migrated = true;
-                    System.out.println("[DB] Added missing orders.created_utc column");
-                }
+            try {
+                Class.forName("org.sqlite.JDBC");
+            } catch (ClassNotFoundException e) {
+                throw new SQLException("SQLite JDBC driver not found", e);
             }
 
-            if (!columnExists(conn, "menu_items", "image_url")) {
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("ALTER TABLE menu_items ADD COLUMN image_url TEXT");
-                    stmt.execute("ALTER TABLE menu_items ADD COLUMN dietary_tags TEXT");
-                    stmt.execute("ALTER TABLE menu_items ADD COLUMN active INTEGER NOT NULL DEFAULT 1");
-                    migrated = true;
-                    System.out.println("[DB] Added missing menu_items presentation columns");
-                }
-            }
+            prepareDatabase(context, dbPath);
+            retireOrphanedPools();
 
-            if (!columnExists(conn, "reservations", "guest_name")) {
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("ALTER TABLE reservations ADD COLUMN guest_name TEXT");
-                    migrated = true;
-                    System.out.println("[DB] Added missing reservations.guest_name column");
-                }
-            }
-
-            if (!columnExists(conn, "reservations", "contact_email")) {
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("ALTER TABLE reservations ADD COLUMN contact_email TEXT");
-                    migrated = true;
-                    System.out.println("[DB] Added missing reservations.contact_email column");
-                }
-            }
-
-            if (!columnExists(conn, "reservations", "contact_phone")) {
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("ALTER TABLE reservations ADD COLUMN contact_phone TEXT");
-                    migrated = true;
-                    System.out.println("[DB] Added missing reservations.contact_phone column");
-                }
-            }
-
-            // Ensure users table has contact/address columns used by auth servlet
-            if (!columnExists(conn, "users", "phone")) {
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("ALTER TABLE users ADD COLUMN phone TEXT");
-                    migrated = true;
-                    System.out.println("[DB] Added missing users.phone column");
-                }
-            }
-            if (!columnExists(conn, "users", "address")) {
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("ALTER TABLE users ADD COLUMN address TEXT");
-                    migrated = true;
-                    System.out.println("[DB] Added missing users.address column");
-                }
-            }
-            if (!columnExists(conn, "users", "address2")) {
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("ALTER TABLE users ADD COLUMN address2 TEXT");
-                    migrated = true;
-                    System.out.println("[DB] Added missing users.address2 column");
-                }
-            }
-            if (!columnExists(conn, "users", "city")) {
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("ALTER TABLE users ADD COLUMN city TEXT");
-                    migrated = true;
-                    System.out.println("[DB] Added missing users.city column");
-                }
-            }
-            if (!columnExists(conn, "users", "state")) {
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("ALTER TABLE users ADD COLUMN state TEXT");
-                    migrated = true;
-                    System.out.println("[DB] Added missing users.state column");
-                }
-            }
-            if (!columnExists(conn, "users", "postal_code")) {
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("ALTER TABLE users ADD COLUMN postal_code TEXT");
-                    migrated = true;
-                    System.out.println("[DB] Added missing users.postal_code column");
-                }
-            }
-
-            if (!columnExists(conn, "orders", "customer_email")) {
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("ALTER TABLE orders ADD COLUMN customer_email TEXT");
-                    migrated = true;
-                    System.out.println("[DB] Added missing orders.customer_email column");
-                }
-            }
-
-            if (!migrated) {
-                return;
+            pool = new ConnectionPool(
+                    dbPath,
+                    (int) resolveLongSetting(context, "RBOS_DB_POOL_SIZE", DEFAULT_POOL_SIZE),
+                    resolveLongSetting(context, "RBOS_DB_POOL_TIMEOUT_MS", DEFAULT_ACQUIRE_TIMEOUT_MS),
+                    resolveLongSetting(context, "RBOS_DB_LEAK_THRESHOLD_MS", DEFAULT_LEAK_THRESHOLD_MS),
+                    DEFAULT_VALIDATION_INTERVAL_MS);
+            // a negative threshold turns the slow query log off
+            long slowQueryMillis = resolveLongSetting(context, "RBOS_SLOW_QUERY_MS", DEFAULT_SLOW_QUERY_MS);
+            if (slowQueryMillis >= 0) {
+                pool.setSlowQueryLog(new SlowQueryLog(slowQueryMillis,
+                        (int) resolveLongSetting(context, "RBOS_SLOW_QUERY_LOG_SIZE", DEFAULT_SLOW_QUERY_LOG_SIZE)));
             }
-        } catch (Exception e) {
-            System.out.println("[DB] Schema verification failed (" + e.getMessage() + "). Rebuilding from schema.sql");
-            backupAndRebuild(target);
+            ConnectionPool readers = ConnectionPool.readOnly(
+                    dbPath,
+                    (int) resolveLongSetting(context, "RBOS_DB_READ_POOL_SIZE", DEFAULT_READ_POOL_SIZE),
+                    resolveLongSetting(context, "RBOS_DB_POOL_TIMEOUT_MS", DEFAULT_ACQUIRE_TIMEOUT_MS),
+                    resolveLongSetting(context, "RBOS_DB_LEAK_THRESHOLD_MS", DEFAULT_LEAK_THRESHOLD_MS),
+                    DEFAULT_VALIDATION_INTERVAL_MS,
+                    resolveLongSetting(context, "RBOS_DB_READ_CACHE_KB", DEFAULT_READ_CACHE_KB),
+                    resolveLongSetting(context, "RBOS_DB_READ_MMAP_MB", DEFAULT_READ_MMAP_MB) * 1024 * 1024,
+                    (int) resolveLongSetting(context, "RBOS_DB_STATEMENT_CACHE", DEFAULT_STATEMENT_CACHE_SIZE));
+            readers.setSlowQueryLog(pool.getSlowQueryLog());
+            readPools.put(dbPath, readers);
+            pools.put(dbPath, pool);
+            System.out.println("Database path: " + dbPath + " (pool size " + pool.getMaxSize()
+                    + ", read pool size " + readers.getMaxSize() + ")");
+            return pool;
         }
     }
 
-    private static boolean columnExists(Connection conn, String table, String column) {
-        try {
-            DatabaseMetaData meta = conn.getMetaData();
-            try (var rs = meta.getColumns(null, null, table, column)) {
-                return rs.next();
-            }
-        } catch (Exception e) {
-            return false;
+    /**
+     * Eagerly seed, migrate and pool the database at application startup.
+     */
+    public static void initialize(ServletContext context) throws SQLException {
+        getPool(context);
+    }
+
+    /**
+     * Close every pool; called when the application is undeployed.
+     */
+    public static void shutdown() {
+        synchronized (pools) {
+            pools.values().forEach(ConnectionPool::close);
+            pools.clear();
+            readPools.values().forEach(ConnectionPool::close);
+            readPools.clear();
         }
+        ConnectionPool.shutdownHousekeeper();
+    }
+
+    public static Map<String, Object> getPoolStats(ServletContext context) throws SQLException {
+        Map<String, Object> stats = new LinkedHashMap<>(getPool(context).getStats());
+        stats.put("readers", getReadPool(context).getStats());
+        return stats;
+    }
+
+    /**
+     * Run a write on this database's single writer connection and return once it has
+     * committed. See {@link WriteCoordinator} for what the task may and may not do.
+     */
+    public static <T> T write(ServletContext context, WriteCoordinator.WriteTask<T> task) throws SQLException {
+        return getPool(context).getWriteCoordinator().execute(task);
+    }
+
+    /**
+     * Queue a write on this database's writer connection without waiting for it. The future
+     * completes once the write has committed; see {@link WriteCoordinator#submit}.
+     */
+    public static <T> CompletableFuture<T> submitWrite(ServletContext context, WriteCoordinator.WriteTask<T> task)
+            throws SQLException {
+        return getPool(context).getWriteCoordinator().submit(task);
+    }
+
+    /**
+     * The slow query log for this context's database, or null when it is turned off.
+     */
+    public static SlowQueryLog getSlowQueryLog(ServletContext context) throws SQLException {
+        return getPool(context).getSlowQueryLog();
     }
 
-    private static void backupAndRebuild(Path target) {
+    private static void prepareDatabase(ServletContext context, String dbPath) throws SQLException {
         try {
-            if (Files.exists(target)) {
-                Path backup = target.resolveSibling(target.getFileName().toString() + ".bak-" + System.currentTimeMillis());
-                Files.copy(target, backup);
-                Files.delete(target);
-                System.out.println("[DB] Existing DB backed up to: " + backup);
-            }
-        } catch (Exception ex) {
-            System.out.println("[DB] Failed to backup existing DB: " + ex.getMessage());
+            Path parent = Paths.get(dbPath).getParent();
+            if (parent != null)
+                Files.createDirectories(parent);
+        } catch (Exception ignored) {
         }
+        seedIfMissing(dbPath);
+        migrate(context, dbPath);
+    }
 
-        if (!seedFromSchema(target)) {
-            System.out.println("[DB] Rebuild failed; the database will be created empty.");
-            try {
-                Files.createFile(target);
-            } catch (Exception ignored) {
+    // A failed migration stops the pool from opening; the data is left exactly as it was
+    private static void migrate(ServletContext context, String dbPath) throws SQLException {
+        SchemaMigrator.Mode mode = SchemaMigrator.Mode.parse(resolveSetting(context, "RBOS_DB_MIGRATIONS"));
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath)) {
+            List<SchemaMigrator.Migration> migrations = SchemaMigrator.run(conn, mode);
+            if (mode != SchemaMigrator.Mode.APPLY) {
+                System.out.println("[DB] Migrations (" + mode.name().toLowerCase() + " only): "
+                        + SchemaMigrator.describe(migrations));
             }
         }
     }
+
+    // Pools whose database file has been removed (e.g. a re-pointed RBOS_DB) would only hold dead handles.
+    private static void retireOrphanedPools() {
+        retireOrphaned(pools);
+        retireOrphaned(readPools);
+    }
+
+    private static void retireOrphaned(Map<String, ConnectionPool> pools) {
+        pools.entrySet().removeIf(entry -> {
+            if (Files.exists(Paths.get(entry.getKey())))
+                return false;
+            entry.getValue().close();
+            return true;
+        });
+    }
 }
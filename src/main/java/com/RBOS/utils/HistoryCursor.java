@@ -0,0 +1,126 @@
+package com.RBOS.utils;
+
+import com.RBOS.models.PagedResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Opaque position in a history listing sorted newest first on (timestamp, id).
+ *
+ * A cursor names the row a page continues from and the direction to read in, so the next
+ * page is a bounded index range scan instead of an OFFSET that walks every earlier row. It
+ * also carries the page number and the total counted on the first page, which later pages
+ * report without counting again.
+ */
+public final class HistoryCursor {
+    private static final String FORWARD = "n";
+    private static final String BACKWARD = "p";
+
+    private final boolean forward;
+    private final int page;
+    private final int total;
+    private final String sortKey;
+    private final String id;
+
+    private HistoryCursor(boolean forward, int page, int total, String sortKey, String id) {
+        this.forward = forward;
+        this.page = page;
+        this.total = total;
+        this.sortKey = sortKey;
+        this.id = id;
+    }
+
+    public static HistoryCursor decode(String raw) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(raw), StandardCharsets.UTF_8);
+            String[] parts = decoded.split("\n", 5);
+            if (parts.length != 5 || !(FORWARD.equals(parts[0]) || BACKWARD.equals(parts[0]))) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            int page = Integer.parseInt(parts[1]);
+            int total = Integer.parseInt(parts[2]);
+            if (page < 1) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new HistoryCursor(FORWARD.equals(parts[0]), page, total, parts[3], parts[4]);
+        } catch (IllegalArgumentException e) {
+            // also covers bad base64 and NumberFormatException
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    public String encode() {
+        String raw = String.join("\n", forward ? FORWARD : BACKWARD, Integer.toString(page),
+                Integer.toString(total), sortKey, id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Condition selecting the rows after (or, going back, before) the cursor row; pair with
+     * {@link #orderBy} and bind {@link #bindParams} in the same position. A row-value
+     * comparison lets SQLite seek the (timestamp, id) index to the cursor; the equivalent
+     * OR of two conditions is planned as a multi-index OR plus a sort.
+     */
+    public String keysetClause(String sortColumn, String idColumn) {
+        String op = forward ? "<" : ">";
+        return " AND (" + sortColumn + ", " + idColumn + ") " + op + " (?, ?)";
+    }
+
+    public void bindParams(List<String> params) {
+        params.add(sortKey);
+        params.add(id);
+    }
+
+    /**
+     * Sort for the scan; reading backwards runs ascending and the page is flipped afterwards.
+     */
+    public static String orderBy(HistoryCursor cursor, String sortColumn, String idColumn) {
+        String direction = cursor == null || cursor.forward ? "DESC" : "ASC";
+        return " ORDER BY " + sortColumn + " " + direction + ", " + idColumn + " " + direction;
+    }
+
+    /**
+     * Build a page from rows fetched with LIMIT pageSize + 1; the extra row only signals that
+     * another page exists in the scan direction.
+     */
+    public static <T> PagedResult<T> toPage(List<T> rows, HistoryCursor cursor, int pageSize, int total,
+            Function<T, String> sortKey, Function<T, String> id) {
+        boolean forward = cursor == null || cursor.forward;
+        boolean more = rows.size() > pageSize;
+        List<T> items = new ArrayList<>(more ? rows.subList(0, pageSize) : rows);
+        if (!forward) {
+            Collections.reverse(items);
+        }
+
+        int page = cursor == null ? 1 : cursor.forward ? cursor.page + 1 : cursor.page - 1;
+        PagedResult<T> result = new PagedResult<>(items, total);
+        result.setPage(page);
+        if (items.isEmpty()) {
+            return result;
+        }
+
+        T first = items.get(0);
+        T last = items.get(items.size() - 1);
+        boolean hasNext = forward ? more : true;
+        boolean hasPrev = forward ? cursor != null : more;
+        if (hasNext) {
+            result.setNextCursor(new HistoryCursor(true, page, total, sortKey.apply(last), id.apply(last)).encode());
+        }
+        if (hasPrev && page > 1) {
+            result.setPrevCursor(new HistoryCursor(false, page, total, sortKey.apply(first), id.apply(first)).encode());
+        }
+        return result;
+    }
+}
@@ -27,6 +27,13 @@ public class HistoryValidation {
         return Math.min(requested, MAX_PAGE_SIZE);
     }
 
+    public static HistoryCursor parseCursor(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return HistoryCursor.decode(value.trim());
+    }
+
     public static boolean isPrivilegedRole(String role) {
         if (role == null) {
             return false;
@@ -0,0 +1,141 @@
+package com.RBOS.utils;
+
+import jakarta.servlet.ServletContext;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Time-ordered primary keys for rows the application creates.
+ *
+ * An id is 20 Crockford base32 characters: 13 for a Snowflake-style 64-bit prefix (42 bits of
+ * milliseconds since 2024-01-01, a 10-bit node id and a 12-bit per-millisecond sequence)
+ * followed by 7 for 35 random bits. The prefix never repeats or goes backwards on a node,
+ * and two nodes with different RBOS_NODE_ID values can never produce the same prefix, so
+ * new rows land at the right-hand end of the primary key index instead of all over it.
+ * The random tail keeps ids from being guessable from one another, since order and
+ * reservation ids are looked up directly by id.
+ */
+public final class IdGenerator {
+    public static final long EPOCH_MILLIS = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+    public static final int MAX_NODE_ID = 1023;
+    public static final int LENGTH = 20;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int RANDOM_BITS = 35;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private static volatile IdGenerator shared;
+
+    private final long node;
+    private final LongSupplier clock;
+    private final SecureRandom random = new SecureRandom();
+    // (millis since epoch << SEQUENCE_BITS) | sequence of the last id handed out
+    private final AtomicLong last = new AtomicLong(-1);
+
+    public IdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    public IdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.node = nodeId;
+        this.clock = clock;
+    }
+
+    /**
+     * Set up the shared generator from RBOS_NODE_ID (system property, environment or context
+     * init parameter). Every app node writing to the same database needs its own value.
+     */
+    public static void configure(ServletContext context) {
+        shared = new IdGenerator(resolveNodeId(context));
+    }
+
+    public static String newId() {
+        IdGenerator generator = shared;
+        if (generator == null) {
+            synchronized (IdGenerator.class) {
+                if (shared == null) {
+                    shared = new IdGenerator(resolveNodeId(null));
+                }
+                generator = shared;
+            }
+        }
+        return generator.next();
+    }
+
+    public String next() {
+        char[] id = new char[LENGTH];
+        encode(nextPrefix(), id, 0, 13);
+        encode(random.nextLong() & ((1L << RANDOM_BITS) - 1), id, 13, 7);
+        return new String(id);
+    }
+
+    /**
+     * Creation time encoded in an id from this class, or -1 when the value is not one.
+     */
+    public static long timestampOf(String id) {
+        if (id == null || id.length() != LENGTH) {
+            return -1;
+        }
+        long prefix = 0;
+        for (int i = 0; i < 13; i++) {
+            int digit = indexOf(id.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            prefix = (prefix << 5) | digit;
+        }
+        return (prefix >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    // Never reuses or goes below the last value: a clock step back keeps counting from the
+    // last millisecond, and a full sequence borrows the next millisecond instead of waiting
+    long nextPrefix() {
+        long now = Math.max(0, clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long previous;
+        long candidate;
+        do {
+            previous = last.get();
+            candidate = Math.max(previous + 1, now);
+        } while (!last.compareAndSet(previous, candidate));
+        long millis = candidate >>> SEQUENCE_BITS;
+        return (millis << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | (candidate & SEQUENCE_MASK);
+    }
+
+    private static void encode(long value, char[] out, int offset, int chars) {
+        for (int i = offset + chars - 1; i >= offset; i--) {
+            out[i] = ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+    }
+
+    private static int indexOf(char c) {
+        for (int i = 0; i < ALPHABET.length; i++) {
+            if (ALPHABET[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int resolveNodeId(ServletContext context) {
+        String value = DatabaseConnection.resolveSetting(context, "RBOS_NODE_ID");
+        if (value == null) {
+            return 0;
+        }
+        try {
+            int nodeId = Integer.parseInt(value);
+            if (nodeId >= 0 && nodeId <= MAX_NODE_ID) {
+                return nodeId;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        System.err.println("Ignoring invalid RBOS_NODE_ID=" + value + "; using 0");
+        return 0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.RBOS.utils;
+
+import com.RBOS.models.HistoryResponse;
+import com.RBOS.models.Inventory;
+import com.RBOS.models.MenuItem;
+import com.RBOS.models.Order;
+import com.RBOS.models.OrderItem;
+import com.RBOS.models.Reservation;
+import com.RBOS.models.User;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.util.List;
+
+/**
+ * The one Jackson mapper the application serializes with, plus readers and writers bound to
+ * the types the API sends most.
+ *
+ * Jackson builds a serializer per class the first time it meets it and caches it on the
+ * mapper, so a mapper per servlet or per message repeats that introspection. A writer bound
+ * to its root type also skips the per-call serializer lookup. {@link #warmUp()} builds all
+ * of them at startup instead of on the first request that needs them.
+ *
+ * Typed writers use the declared type's serializer, so they are only given exactly that class:
+ * a {@code MenuItemWithInventory} goes through {@link #mapper()} to keep its extra fields.
+ */
+public final class Json {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            // callers write whole values or flush once at the end; no flush per array element
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    public static final ObjectWriter ORDER_WRITER = MAPPER.writerFor(Order.class);
+    public static final ObjectReader ORDER_READER = MAPPER.readerFor(Order.class);
+    public static final ObjectWriter RESERVATION_WRITER = MAPPER.writerFor(Reservation.class);
+    public static final ObjectReader RESERVATION_READER = MAPPER.readerFor(Reservation.class);
+    public static final ObjectWriter MENU_ITEM_WRITER = MAPPER.writerFor(MenuItem.class);
+    public static final ObjectReader MENU_ITEM_READER = MAPPER.readerFor(MenuItem.class);
+    public static final ObjectWriter INVENTORY_WRITER = MAPPER.writerFor(Inventory.class);
+    public static final ObjectReader INVENTORY_READER = MAPPER.readerFor(Inventory.class);
+    public static final ObjectWriter USER_WRITER = MAPPER.writerFor(User.class);
+    public static final ObjectWriter ORDER_HISTORY_WRITER =
+            MAPPER.writerFor(new TypeReference<HistoryResponse<Order>>() { });
+    public static final ObjectWriter RESERVATION_HISTORY_WRITER =
+            MAPPER.writerFor(new TypeReference<HistoryResponse<Reservation>>() { });
+
+    private Json() {
+    }
+
+    public static ObjectMapper mapper() {
+        return MAPPER;
+    }
+
+    /**
+     * Serialize and parse an empty instance of each hot type so their serializers and
+     * deserializers exist before the first request. Failures are logged, never thrown: a cold
+     * cache only costs the first caller some time.
+     */
+    public static void warmUp() {
+        long started = System.nanoTime();
+        Order order = new Order();
+        order.setOrderItems(List.of(new OrderItem()));
+        Reservation reservation = new Reservation();
+        try {
+            ORDER_READER.readValue(ORDER_WRITER.writeValueAsString(order));
+            RESERVATION_READER.readValue(RESERVATION_WRITER.writeValueAsString(reservation));
+            MENU_ITEM_READER.readValue(MENU_ITEM_WRITER.writeValueAsString(new MenuItem()));
+            INVENTORY_READER.readValue(INVENTORY_WRITER.writeValueAsString(new Inventory()));
+            USER_WRITER.writeValueAsString(new User());
+            ORDER_HISTORY_WRITER.writeValueAsString(new HistoryResponse<>(List.of(order), 1, 1, 1, 0, null));
+            RESERVATION_HISTORY_WRITER.writeValueAsString(
+                    new HistoryResponse<>(List.of(reservation), 1, 1, 1, 0, null));
+            System.out.println("[JSON] Serializers warmed up in "
+                    + (System.nanoTime() - started) / 1_000_000 + " ms");
+        } catch (Exception e) {
+            System.err.println("[JSON] Warm-up failed: " + e.getMessage());
+        }
+    }
+}
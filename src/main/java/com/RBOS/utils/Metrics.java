@@ -0,0 +1,202 @@
+package com.RBOS.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Process-wide request and statement metrics, written out in the Prometheus text format.
+ *
+ * Requests are keyed by method and route, where any path segment containing a digit is
+ * replaced by {id}; statements are keyed by SQL shape, with literals and IN lists collapsed.
+ * Both key spaces are capped so unusual traffic cannot grow the registry without bound;
+ * anything past the cap is counted under "other".
+ */
+public final class Metrics {
+    static final int MAX_SERIES = 500;
+    static final String OTHER = "other";
+
+    private static final int MAX_SQL_LENGTH = 240;
+    private static final int MAX_SHAPE_CACHE = 2000;
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w?])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Map<String, Series> requests = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> responses = new ConcurrentHashMap<>();
+    private static final Map<String, Series> statements = new ConcurrentHashMap<>();
+    // raw SQL -> shape; DAO SQL is a small fixed set of strings, so this saves the regexes
+    private static final Map<String, String> shapes = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static void recordRequest(String method, String route, int status, long nanos) {
+        String key = method + " " + route;
+        Series series = seriesFor(requests, key);
+        series.histogram.record(nanos);
+        String statusKey = (series.key.equals(OTHER) ? OTHER : key) + " " + status;
+        LongAdder counter = responses.get(statusKey);
+        if (counter == null) {
+            counter = responses.size() < MAX_SERIES * 4
+                    ? responses.computeIfAbsent(statusKey, k -> new LongAdder())
+                    : responses.computeIfAbsent(OTHER + " " + status, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    public static void recordStatement(String sql, long nanos, boolean failed) {
+        Series series = seriesFor(statements, shapeOf(sql));
+        series.histogram.record(nanos);
+        if (failed) {
+            series.errors.increment();
+        }
+    }
+
+    /**
+     * Route label for a request path, e.g. /api/orders/01J9.../status becomes
+     * /api/orders/{id}/status.
+     */
+    public static String routeOf(String servletPath, String pathInfo) {
+        StringBuilder route = new StringBuilder(servletPath != null ? servletPath : "");
+        if (pathInfo != null) {
+            for (String segment : pathInfo.split("/")) {
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                route.append('/').append(containsDigit(segment) ? "{id}" : segment);
+            }
+        }
+        return route.length() == 0 ? "/" : route.toString();
+    }
+
+    static String shapeOf(String sql) {
+        if (sql == null) {
+            return "unknown";
+        }
+        String shape = shapes.get(sql);
+        if (shape != null) {
+            return shape;
+        }
+        shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("IN (?)");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        if (shape.length() > MAX_SQL_LENGTH) {
+            shape = shape.substring(0, MAX_SQL_LENGTH) + "...";
+        }
+        if (shapes.size() < MAX_SHAPE_CACHE) {
+            shapes.put(sql, shape);
+        }
+        return shape;
+    }
+
+    /**
+     * Append the request and statement families. Gauges are written by the caller.
+     */
+    public static void writePrometheus(Writer out) throws IOException {
+        out.write("# HELP rbos_http_request_duration_seconds Time spent handling /api requests.\n");
+        out.write("# TYPE rbos_http_request_duration_seconds histogram\n");
+        for (Map.Entry<String, Series> entry : new TreeMap<>(requests).entrySet()) {
+            String[] parts = splitRequestKey(entry.getKey());
+            writeHistogram(out, "rbos_http_request_duration_seconds",
+                    "method=\"" + escape(parts[0]) + "\",route=\"" + escape(parts[1]) + "\"",
+                    entry.getValue().histogram);
+        }
+
+        out.write("# HELP rbos_http_responses_total Responses by route and status code.\n");
+        out.write("# TYPE rbos_http_responses_total counter\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(responses).entrySet()) {
+            String key = entry.getKey();
+            int lastSpace = key.lastIndexOf(' ');
+            String[] parts = splitRequestKey(key.substring(0, lastSpace));
+            out.write("rbos_http_responses_total{method=\"" + escape(parts[0]) + "\",route=\"" + escape(parts[1])
+                    + "\",status=\"" + key.substring(lastSpace + 1) + "\"} " + entry.getValue().sum() + "\n");
+        }
+
+        out.write("# HELP rbos_db_statement_duration_seconds Time spent executing SQL, by statement shape.\n");
+        out.write("# TYPE rbos_db_statement_duration_seconds histogram\n");
+        for (Map.Entry<String, Series> entry : new TreeMap<>(statements).entrySet()) {
+            writeHistogram(out, "rbos_db_statement_duration_seconds", "sql=\"" + escape(entry.getKey()) + "\"",
+                    entry.getValue().histogram);
+        }
+
+        out.write("# HELP rbos_db_statement_errors_total Statements that threw, by statement shape.\n");
+        out.write("# TYPE rbos_db_statement_errors_total counter\n");
+        for (Map.Entry<String, Series> entry : new TreeMap<>(statements).entrySet()) {
+            long errors = entry.getValue().errors.sum();
+            if (errors > 0) {
+                out.write("rbos_db_statement_errors_total{sql=\"" + escape(entry.getKey()) + "\"} " + errors + "\n");
+            }
+        }
+    }
+
+    public static void writeGauge(Writer out, String name, String help, Number value) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " gauge\n");
+        out.write(name + " " + value + "\n");
+    }
+
+    // For tests
+    static void reset() {
+        requests.clear();
+        responses.clear();
+        statements.clear();
+        shapes.clear();
+    }
+
+    private static Series seriesFor(Map<String, Series> family, String key) {
+        Series series = family.get(key);
+        if (series != null) {
+            return series;
+        }
+        if (family.size() >= MAX_SERIES) {
+            return family.computeIfAbsent(OTHER, Series::new);
+        }
+        return family.computeIfAbsent(key, Series::new);
+    }
+
+    private static void writeHistogram(Writer out, String name, String labels, LatencyHistogram histogram)
+            throws IOException {
+        long[] cumulative = histogram.cumulativeCounts();
+        for (int i = 0; i < LatencyHistogram.BOUNDS.length; i++) {
+            out.write(name + "_bucket{" + labels + ",le=\"" + LatencyHistogram.BOUNDS[i] + "\"} " + cumulative[i] + "\n");
+        }
+        out.write(name + "_bucket{" + labels + ",le=\"+Inf\"} " + cumulative[cumulative.length - 1] + "\n");
+        out.write(name + "_sum{" + labels + "} " + histogram.getSumSeconds() + "\n");
+        out.write(name + "_count{" + labels + "} " + histogram.getCount() + "\n");
+    }
+
+    private static String[] splitRequestKey(String key) {
+        int space = key.indexOf(' ');
+        return space < 0 ? new String[] {OTHER, OTHER} : new String[] {key.substring(0, space), key.substring(space + 1)};
+    }
+
+    private static boolean containsDigit(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (Character.isDigit(segment.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class Series {
+        private final String key;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        private Series(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.RBOS.utils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Daily report aggregates kept current by SQLite triggers.
+ *
+ * rollup_orders_daily        (day, status, source)     -> order_count, revenue
+ * rollup_order_items_daily   (day, status, item_id)    -> quantity, revenue
+ * rollup_reservations_daily  (day, status, party_size) -> reservation_count
+ *
+ * Order and order item rows are bucketed by the order's created_utc day, reservations by
+ * their start_utc day. Every insert/update/delete on the base tables applies a +1/-1 delta
+ * inside the same transaction, so reports never need to scan history. Buckets can drop to
+ * zero and are left in place; readers filter them out.
+ *
+ * The tables and triggers are created by migration V004__report_rollups.sql; this class only
+ * recomputes their contents.
+ */
+public final class RollupSchema {
+    private RollupSchema() {
+    }
+
+    /**
+     * Recompute every rollup from the base tables in one transaction.
+     */
+    public static void rebuild(Connection conn) throws SQLException {
+        boolean restoreAutoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            rebuild(stmt);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(restoreAutoCommit);
+        }
+    }
+
+    /**
+     * Recompute every rollup inside the caller's transaction, as a task on the write coordinator.
+     */
+    public static void rebuildTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            rebuild(stmt);
+        }
+    }
+
+    private static void rebuild(Statement stmt) throws SQLException {
+        stmt.execute("DELETE FROM rollup_orders_daily");
+        stmt.execute("DELETE FROM rollup_order_items_daily");
+        stmt.execute("DELETE FROM rollup_reservations_daily");
+        stmt.execute("INSERT INTO rollup_orders_daily (day, status, source, order_count, revenue) " +
+            "SELECT " + day("created_utc") + ", status, COALESCE(source, ''), COUNT(*), SUM(total) " +
+            "FROM orders GROUP BY 1, 2, 3");
+        stmt.execute("INSERT INTO rollup_order_items_daily (day, status, item_id, quantity, revenue) " +
+            "SELECT " + day("o.created_utc") + ", o.status, oi.item_id, SUM(oi.qty), SUM(oi.line_total) " +
+            "FROM order_items oi JOIN orders o ON o.order_id = oi.order_id GROUP BY 1, 2, 3");
+        stmt.execute("INSERT INTO rollup_reservations_daily (day, status, party_size, reservation_count) " +
+            "SELECT " + day("start_utc") + ", status, party_size, COUNT(*) " +
+            "FROM reservations GROUP BY 1, 2, 3");
+    }
+
+    private static String day(String column) {
+        return "COALESCE(substr(" + column + ", 1, 10), '')";
+    }
+
+    /**
+     * Rebuild the rollups of an existing database from the command line, after its migrations
+     * have run: java -cp ... com.RBOS.utils.RollupSchema path/to/restaurant.db
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: RollupSchema <path-to-sqlite-db>");
+            System.exit(2);
+        }
+        Class.forName("org.sqlite.JDBC");
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + args[0])) {
+            rebuild(conn);
+        }
+        System.out.println("[DB] Report rollups rebuilt for " + args[0]);
+    }
+}
@@ -0,0 +1,374 @@
+package com.RBOS.utils;
+
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Numbered schema migrations tracked in a schema_version table.
+ *
+ * Scripts live in backend/migrations as V&lt;number&gt;__&lt;description&gt;.sql and are listed
+ * in {@link #MIGRATIONS} in order. Each pending script runs in its own BEGIN EXCLUSIVE
+ * transaction together with its schema_version row, so a second process starting at the
+ * same time waits and then finds the work done, and a failing script leaves nothing behind.
+ * A failure is reported to the caller; the database is never rebuilt.
+ *
+ * An ALTER TABLE ... ADD COLUMN for a column that already exists is skipped, since
+ * databases from before versioning can carry any mix of the early columns.
+ *
+ * Command line: java -cp ... com.RBOS.utils.SchemaMigrator [--report | --dry-run] path/to/restaurant.db
+ */
+public final class SchemaMigrator {
+    static final String[] MIGRATIONS = {
+            "V001__legacy_columns.sql",
+            "V002__history_and_audit_indexes.sql",
+            "V003__idempotency_keys.sql",
+            "V004__report_rollups.sql",
+    };
+
+    private static final String MIGRATIONS_DIR = "backend/migrations/";
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final Pattern ADD_COLUMN =
+            Pattern.compile("(?is)^ALTER\\s+TABLE\\s+\\S+\\s+ADD\\s+(?:COLUMN\\s+)?\\S+.*");
+    private static final long BUSY_TIMEOUT_MS = 30_000;
+
+    private SchemaMigrator() {
+    }
+
+    public enum Mode {
+        APPLY, REPORT, DRY_RUN;
+
+        public static Mode parse(String value) {
+            if (value == null) {
+                return APPLY;
+            }
+            switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "report":
+                    return REPORT;
+                case "dry-run":
+                case "dry_run":
+                    return DRY_RUN;
+                case "apply":
+                    return APPLY;
+                default:
+                    System.out.println("[DB] Ignoring invalid RBOS_DB_MIGRATIONS=" + value + "; using apply");
+                    return APPLY;
+            }
+        }
+    }
+
+    /**
+     * One migration script and what the database says about it.
+     */
+    public static final class Migration {
+        final int version;
+        final String name;
+        final String checksum;
+        final List<String> statements;
+        String appliedUtc;
+        String appliedChecksum;
+
+        Migration(int version, String name, String checksum, List<String> statements) {
+            this.version = version;
+            this.name = name;
+            this.checksum = checksum;
+            this.statements = statements;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isApplied() {
+            return appliedUtc != null;
+        }
+
+        public String getAppliedUtc() {
+            return appliedUtc;
+        }
+
+        /**
+         * True when the script on the classpath differs from the one that was applied.
+         */
+        public boolean isModifiedSinceApplied() {
+            return appliedChecksum != null && !appliedChecksum.equals(checksum);
+        }
+    }
+
+    /**
+     * Run the migrations the mode calls for and return the state of every migration.
+     * REPORT changes nothing; DRY_RUN runs pending scripts and rolls them back.
+     */
+    public static List<Migration> run(Connection conn, Mode mode) throws SQLException {
+        List<Migration> migrations = load();
+        if (mode != Mode.REPORT) {
+            // Wait out another process holding the migration lock instead of failing with SQLITE_BUSY
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+            }
+            createVersionTable(conn);
+        }
+        readApplied(conn, migrations);
+
+        List<Migration> pending = new ArrayList<>();
+        for (Migration migration : migrations) {
+            if (migration.isModifiedSinceApplied()) {
+                System.out.println("[DB] Migration V" + migration.version + " " + migration.name
+                        + " has changed since it was applied; the change will not be re-run");
+            }
+            if (!migration.isApplied()) {
+                pending.add(migration);
+            }
+        }
+
+        if (mode == Mode.DRY_RUN) {
+            dryRun(conn, pending);
+        } else if (mode == Mode.APPLY) {
+            for (Migration migration : pending) {
+                apply(conn, migration);
+            }
+        }
+        return migrations;
+    }
+
+    /**
+     * Highest applied version, or 0 when the database has never been migrated.
+     */
+    public static int currentVersion(Connection conn) throws SQLException {
+        if (!hasVersionTable(conn)) {
+            return 0;
+        }
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    public static int latestVersion() {
+        Matcher matcher = FILE_NAME.matcher(MIGRATIONS[MIGRATIONS.length - 1]);
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    public static Map<String, Object> describe(List<Migration> migrations) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        List<String> applied = new ArrayList<>();
+        List<String> pending = new ArrayList<>();
+        for (Migration migration : migrations) {
+            String label = "V" + migration.version + " " + migration.name;
+            if (migration.isApplied()) {
+                applied.add(label + " (" + migration.appliedUtc + ")");
+            } else {
+                pending.add(label);
+            }
+        }
+        report.put("applied", applied);
+        report.put("pending", pending);
+        return report;
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        long start = System.currentTimeMillis();
+        boolean applied = inExclusiveTransaction(conn, stmt -> {
+            // Another process may have applied it while this one waited for the lock
+            if (isRecorded(conn, migration.version)) {
+                return false;
+            }
+            for (String sql : migration.statements) {
+                execute(stmt, sql, migration);
+            }
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO schema_version (version, name, checksum, execution_ms) VALUES (?, ?, ?, ?)")) {
+                insert.setInt(1, migration.version);
+                insert.setString(2, migration.name);
+                insert.setString(3, migration.checksum);
+                insert.setLong(4, System.currentTimeMillis() - start);
+                insert.executeUpdate();
+            }
+            return true;
+        });
+        if (applied) {
+            System.out.println("[DB] Applied migration V" + migration.version + " " + migration.name
+                    + " in " + (System.currentTimeMillis() - start) + " ms");
+        }
+        readApplied(conn, List.of(migration));
+    }
+
+    // Runs every pending script in one transaction, so later scripts see earlier ones, then rolls back
+    private static void dryRun(Connection conn, List<Migration> pending) throws SQLException {
+        if (pending.isEmpty()) {
+            System.out.println("[DB] Dry run: schema is up to date");
+            return;
+        }
+        inExclusiveTransaction(conn, stmt -> {
+            for (Migration migration : pending) {
+                for (String sql : migration.statements) {
+                    execute(stmt, sql, migration);
+                }
+                System.out.println("[DB] Dry run: V" + migration.version + " " + migration.name + " applies cleanly ("
+                        + migration.statements.size() + " statements)");
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Run work inside BEGIN EXCLUSIVE; it is committed when the work returns true and rolled
+     * back when it returns false or throws.
+     */
+    private static boolean inExclusiveTransaction(Connection conn, TransactionWork work) throws SQLException {
+        boolean restoreAutoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(true);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("BEGIN EXCLUSIVE");
+            boolean commit = false;
+            try {
+                commit = work.run(stmt);
+            } finally {
+                stmt.execute(commit ? "COMMIT" : "ROLLBACK");
+            }
+            return commit;
+        } finally {
+            conn.setAutoCommit(restoreAutoCommit);
+        }
+    }
+
+    private static void execute(Statement stmt, String sql, Migration migration) throws SQLException {
+        try {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            String message = e.getMessage() != null ? e.getMessage().toLowerCase(Locale.ROOT) : "";
+            if (ADD_COLUMN.matcher(sql).matches() && message.contains("duplicate column name")) {
+                return;
+            }
+            throw new SQLException("Migration V" + migration.version + " " + migration.name
+                    + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static void createVersionTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INTEGER PRIMARY KEY, " +
+                    "name TEXT NOT NULL, " +
+                    "checksum TEXT NOT NULL, " +
+                    "applied_utc TEXT NOT NULL DEFAULT (strftime('%Y-%m-%dT%H:%M:%fZ','now')), " +
+                    "execution_ms INTEGER)");
+        }
+    }
+
+    private static boolean hasVersionTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(
+                        "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'schema_version'")) {
+            return rs.next();
+        }
+    }
+
+    private static boolean isRecorded(Connection conn, int version) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM schema_version WHERE version = ?")) {
+            pstmt.setInt(1, version);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static void readApplied(Connection conn, List<Migration> migrations) throws SQLException {
+        if (!hasVersionTable(conn)) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT version, checksum, applied_utc FROM schema_version")) {
+            while (rs.next()) {
+                for (Migration migration : migrations) {
+                    if (migration.version == rs.getInt("version")) {
+                        migration.appliedChecksum = rs.getString("checksum");
+                        migration.appliedUtc = rs.getString("applied_utc");
+                    }
+                }
+            }
+        }
+    }
+
+    static List<Migration> load() throws SQLException {
+        List<Migration> migrations = new ArrayList<>();
+        int previous = 0;
+        for (String file : MIGRATIONS) {
+            Matcher matcher = FILE_NAME.matcher(file);
+            if (!matcher.matches()) {
+                throw new SQLException("Migration file name must look like V001__description.sql: " + file);
+            }
+            int version = Integer.parseInt(matcher.group(1));
+            if (version != previous + 1) {
+                throw new SQLException("Migration versions must be consecutive; expected V" + (previous + 1)
+                        + " but found " + file);
+            }
+            previous = version;
+
+            try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(MIGRATIONS_DIR + file)) {
+                if (in == null) {
+                    throw new SQLException("Migration script not found on the classpath: " + file);
+                }
+                byte[] script = in.readAllBytes();
+                String checksum = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(script));
+                List<String> statements = DatabaseConnection.parseStatements(
+                        new java.io.ByteArrayInputStream(script));
+                migrations.add(new Migration(version, matcher.group(2), checksum, statements));
+            } catch (SQLException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SQLException("Could not read migration " + file + ": " + e.getMessage(), e);
+            }
+        }
+        return migrations;
+    }
+
+    @FunctionalInterface
+    private interface TransactionWork {
+        boolean run(Statement stmt) throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Mode mode = Mode.APPLY;
+        String path = null;
+        for (String arg : args) {
+            if ("--report".equals(arg)) {
+                mode = Mode.REPORT;
+            } else if ("--dry-run".equals(arg)) {
+                mode = Mode.DRY_RUN;
+            } else {
+                path = arg;
+            }
+        }
+        if (path == null) {
+            System.err.println("Usage: SchemaMigrator [--report | --dry-run] <path-to-sqlite-db>");
+            System.exit(2);
+        }
+        Class.forName("org.sqlite.JDBC");
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + path)) {
+            List<Migration> migrations = run(conn, mode);
+            for (Migration migration : migrations) {
+                System.out.printf("V%03d %-32s %s%s%n", migration.version, migration.name,
+                        migration.isApplied() ? "applied " + migration.appliedUtc : "pending",
+                        migration.isModifiedSinceApplied() ? " (script changed since)" : "");
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.RBOS.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring buffer of the most recent statements that ran longer than a threshold, each with its
+ * bound parameters and the SQLite query plan.
+ *
+ * The plan comes from EXPLAIN QUERY PLAN run on the connection that executed the statement,
+ * so it is captured while that connection is still owned by the caller. Plans are remembered
+ * per statement shape, so a query that is slow on every call is only explained once; a plan
+ * that changes after a new index is picked up once the shape falls out of the plan cache.
+ */
+public class SlowQueryLog {
+    private static final int MAX_PLANS = 500;
+    private static final int MAX_PARAM_LENGTH = 100;
+
+    private final long thresholdNanos;
+    private final int capacity;
+    // Guarded by this; newest entry last
+    private final ArrayDeque<Map<String, Object>> entries;
+    // Guarded by this; statement shape -> plan lines
+    private final LinkedHashMap<String, List<String>> plans = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+            return size() > MAX_PLANS;
+        }
+    };
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong fullScans = new AtomicLong();
+
+    /**
+     * @param thresholdMillis statements taking at least this long are logged; 0 logs all of them
+     * @param capacity        how many entries to keep before the oldest is dropped
+     */
+    public SlowQueryLog(long thresholdMillis, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Slow query log needs room for at least one entry");
+        }
+        this.thresholdNanos = Math.max(0, thresholdMillis) * 1_000_000L;
+        this.capacity = capacity;
+        this.entries = new ArrayDeque<>(capacity);
+    }
+
+    public boolean isSlow(long nanos) {
+        return nanos >= thresholdNanos;
+    }
+
+    /**
+     * Add one statement to the ring; nothing is printed, the ring and its counters are read
+     * through the system and metrics endpoints. The connection must be the physical connection
+     * that ran it, and the caller must still own it.
+     */
+    public void record(String sql, List<Object> params, long nanos, boolean failed, Connection conn) {
+        String shape = Metrics.shapeOf(sql);
+        boolean sensitive = isSensitive(sql);
+        List<String> plan = planFor(sql, shape, sensitive ? null : params, conn);
+        boolean fullScan = isFullScan(plan);
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("at", Instant.now().toString());
+        entry.put("elapsedMillis", nanos / 1_000_000.0);
+        entry.put("sql", shape);
+        entry.put("params", sensitive ? List.of("[redacted]") : render(params));
+        entry.put("failed", failed);
+        entry.put("fullScan", fullScan);
+        entry.put("plan", plan);
+        entry.put("thread", Thread.currentThread().getName());
+
+        recorded.incrementAndGet();
+        if (fullScan) {
+            fullScans.incrementAndGet();
+        }
+        synchronized (this) {
+            if (entries.size() == capacity) {
+                entries.removeFirst();
+            }
+            entries.addLast(entry);
+        }
+    }
+
+    /**
+     * Logged statements, newest first.
+     */
+    public synchronized List<Map<String, Object>> getEntries() {
+        List<Map<String, Object>> newestFirst = new ArrayList<>(entries);
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        plans.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("thresholdMillis", thresholdNanos / 1_000_000L);
+        stats.put("capacity", capacity);
+        stats.put("recorded", recorded.get());
+        stats.put("fullScans", fullScans.get());
+        stats.put("entries", getEntries());
+        return stats;
+    }
+
+    private List<String> planFor(String sql, String shape, List<Object> params, Connection conn) {
+        if (sql == null || !isExplainable(sql)) {
+            return Collections.emptyList();
+        }
+        synchronized (this) {
+            List<String> cached = plans.get(shape);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        List<String> plan;
+        try {
+            plan = explain(sql, params, conn);
+        } catch (SQLException e) {
+            return List.of("plan unavailable: " + e.getMessage());
+        }
+        synchronized (this) {
+            plans.put(shape, plan);
+        }
+        return plan;
+    }
+
+    // One line per plan node, indented under its parent the way the sqlite3 shell shows it
+    private static List<String> explain(String sql, List<Object> params, Connection conn) throws SQLException {
+        List<String> lines = new ArrayList<>();
+        Map<Integer, Integer> depths = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            if (params != null) {
+                for (int i = 0; i < params.size(); i++) {
+                    pstmt.setObject(i + 1, params.get(i));
+                }
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int depth = depths.getOrDefault(rs.getInt("parent"), -1) + 1;
+                    depths.put(rs.getInt("id"), depth);
+                    lines.add("  ".repeat(depth) + rs.getString("detail"));
+                }
+            }
+        }
+        return lines;
+    }
+
+    // A SCAN without an index walks every row of the table
+    static boolean isFullScan(List<String> plan) {
+        for (String line : plan) {
+            String detail = line.trim();
+            if (detail.startsWith("SCAN ") && !detail.contains(" USING ") && !detail.equals("SCAN CONSTANT ROW")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isExplainable(String sql) {
+        String head = sql.stripLeading().toUpperCase(Locale.ROOT);
+        return head.startsWith("SELECT") || head.startsWith("WITH") || head.startsWith("INSERT")
+                || head.startsWith("UPDATE") || head.startsWith("DELETE") || head.startsWith("REPLACE");
+    }
+
+    // Password hashes and reset tokens stay out of the log
+    private static boolean isSensitive(String sql) {
+        if (sql == null) {
+            return false;
+        }
+        String lower = sql.toLowerCase(Locale.ROOT);
+        return lower.contains("password") || lower.contains("token");
+    }
+
+    private static List<String> render(List<Object> params) {
+        if (params == null) {
+            return Collections.emptyList();
+        }
+        List<String> rendered = new ArrayList<>(params.size());
+        for (Object param : params) {
+            String value = String.valueOf(param);
+            rendered.add(value.length() > MAX_PARAM_LENGTH ? value.substring(0, MAX_PARAM_LENGTH) + "..." : value);
+        }
+        return rendered;
+    }
+}
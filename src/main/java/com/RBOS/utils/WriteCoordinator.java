@@ -0,0 +1,444 @@
+package com.RBOS.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs writes for one database on a single dedicated connection and commits the writes that
+ * queued up together as one transaction.
+ *
+ * SQLite allows one writer at a time, so writes spread over pooled connections mostly wait on
+ * the file lock inside busy_timeout. Instead, callers hand a {@link WriteTask} to the writer
+ * thread and wait for its result ({@link #execute}) or get a future for it ({@link #submit}). The
+ * thread takes every task that is queued (up to
+ * {@link #MAX_GROUP}), opens one BEGIN IMMEDIATE transaction, runs each task inside its own
+ * savepoint and commits once, so one WAL sync covers the whole group. A task that throws is
+ * rolled back to its savepoint and fails on its own while the rest of the group commits. Results
+ * are only handed back after the commit, so a caller never acts on a write that could still be
+ * rolled back.
+ *
+ * Tasks must not manage the transaction: commit, rollback and setAutoCommit on the connection
+ * they are given throw. A task that calls another routed write runs it inline, in the same
+ * transaction. Callers must not hold an open write transaction on a pooled connection while
+ * they wait, or the writer waits on them.
+ */
+public class WriteCoordinator {
+    static final int MAX_GROUP = 64;
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final long SUBMIT_TIMEOUT_MS = 10_000;
+    private static final long IDLE_STOP_MS = 30_000;
+    private static final long SHUTDOWN_WAIT_MS = 10_000;
+    private static final String SAVEPOINT = "rbos_write";
+
+    @FunctionalInterface
+    public interface WriteTask<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    private final ConnectionPool pool;
+    private final BlockingQueue<Pending<?>> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Pending<Void> stop = new Pending<>(null);
+
+    // Guarded by this
+    private Thread worker;
+    private volatile Thread writerThread;
+    private volatile boolean closed;
+
+    // Writer thread only
+    private Connection physical;
+    private Connection guarded;
+
+    private final AtomicLong tasks = new AtomicLong();
+    private final AtomicLong groups = new AtomicLong();
+    private final AtomicLong failedTasks = new AtomicLong();
+    private final AtomicLong failedGroups = new AtomicLong();
+    private final AtomicLong queuedNanos = new AtomicLong();
+    private final AtomicLong commitNanos = new AtomicLong();
+    private volatile int largestGroup;
+
+    WriteCoordinator(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Run the task on the writer connection and wait until its transaction has committed.
+     * SQLExceptions thrown by the task (or by the commit) are rethrown with their error code.
+     */
+    public <T> T execute(WriteTask<T> task) throws SQLException {
+        if (Thread.currentThread() == writerThread) {
+            return task.run(guarded);
+        }
+
+        Pending<T> pending = new Pending<>(task);
+        enqueue(pending);
+        return pending.await();
+    }
+
+    /**
+     * Queue the task without waiting for it. The future completes once the task's transaction
+     * has committed, or exceptionally with the task's or the commit's exception; a write that
+     * cannot be queued fails the future the same way. Callbacks run on the common pool, never on
+     * the writer thread. Queueing still blocks while the write queue is full.
+     */
+    public <T> CompletableFuture<T> submit(WriteTask<T> task) {
+        if (Thread.currentThread() == writerThread) {
+            try {
+                return CompletableFuture.completedFuture(task.run(guarded));
+            } catch (SQLException | RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        Pending<T> pending = new Pending<>(task);
+        try {
+            enqueue(pending);
+        } catch (SQLException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // hand completion off the writer thread so callbacks cannot stall or write into the next group
+        return pending.future.whenCompleteAsync((result, error) -> {
+        });
+    }
+
+    private void enqueue(Pending<?> pending) throws SQLException {
+        if (closed) {
+            throw new SQLException("Write coordinator for " + pool.getDatabasePath() + " is closed");
+        }
+        try {
+            if (!queue.offer(pending, SUBMIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Write queue for " + pool.getDatabasePath() + " is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while queueing a write", e);
+        }
+        synchronized (this) {
+            // close() may have run since the check above; never start a worker after it, and
+            // take back the task unless a worker already picked it up
+            if (!closed) {
+                ensureWorker();
+            } else if (queue.remove(pending)) {
+                throw new SQLException("Write coordinator for " + pool.getDatabasePath() + " is closed");
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public Map<String, Object> getStats() {
+        long groupCount = groups.get();
+        long taskCount = tasks.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", writerThread != null);
+        stats.put("queueDepth", queue.size());
+        stats.put("tasks", taskCount);
+        stats.put("groups", groupCount);
+        stats.put("averageGroupSize", groupCount == 0 ? 0.0 : (double) taskCount / groupCount);
+        stats.put("largestGroup", largestGroup);
+        stats.put("failedTasks", failedTasks.get());
+        stats.put("failedGroups", failedGroups.get());
+        stats.put("averageQueuedMillis", taskCount == 0 ? 0.0 : queuedNanos.get() / 1e6 / taskCount);
+        stats.put("averageCommitMillis", groupCount == 0 ? 0.0 : commitNanos.get() / 1e6 / groupCount);
+        return stats;
+    }
+
+    /**
+     * Run the writes already queued, then stop. Later calls to {@link #execute} and
+     * {@link #submit} fail.
+     */
+    public void close() {
+        Thread running;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            running = worker;
+        }
+        if (running == null) {
+            return;
+        }
+        try {
+            queue.put(stop);
+            running.join(SHUTDOWN_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (running.isAlive()) {
+            System.err.println("[DB] Writer for " + pool.getDatabasePath() + " still busy at shutdown");
+        }
+    }
+
+    // Called with the lock held
+    private void ensureWorker() {
+        if (worker == null) {
+            worker = new Thread(this::run, "rbos-db-writer");
+            worker.setDaemon(true);
+            writerThread = worker;
+            worker.start();
+        }
+    }
+
+    private void run() {
+        List<Pending<?>> group = new ArrayList<>(MAX_GROUP);
+        try {
+            while (true) {
+                Pending<?> first = queue.poll(IDLE_STOP_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    // nothing to do for a while: release the connection and let the thread go
+                    synchronized (this) {
+                        if (queue.isEmpty()) {
+                            exit(false);
+                            return;
+                        }
+                    }
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, MAX_GROUP - 1);
+                boolean stopping = group.remove(stop);
+                if (!group.isEmpty()) {
+                    runGroup(group);
+                }
+                group.clear();
+                if (stopping) {
+                    synchronized (this) {
+                        exit(true);
+                    }
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                exit(true);
+            }
+        }
+    }
+
+    // Called with the lock held. An idle exit leaves anything queued since for the next worker,
+    // which the submitter starts after queueing.
+    private void exit(boolean failQueued) {
+        worker = null;
+        writerThread = null;
+        closeConnection();
+        if (!failQueued) {
+            return;
+        }
+        SQLException refused = new SQLException("Write coordinator for " + pool.getDatabasePath() + " is closed");
+        Pending<?> left;
+        while ((left = queue.poll()) != null) {
+            if (left != stop) {
+                left.fail(refused);
+            }
+        }
+    }
+
+    private void runGroup(List<Pending<?>> group) {
+        long start = System.nanoTime();
+        for (Pending<?> pending : group) {
+            queuedNanos.addAndGet(start - pending.queuedAt);
+        }
+        Connection conn;
+        try {
+            conn = connection();
+            execute(conn, "BEGIN IMMEDIATE");
+        } catch (SQLException e) {
+            failGroup(group, e);
+            closeConnection();
+            return;
+        }
+
+        for (Pending<?> pending : group) {
+            try {
+                execute(conn, "SAVEPOINT " + SAVEPOINT);
+                pending.runOn(guarded);
+                execute(conn, "RELEASE " + SAVEPOINT);
+            } catch (Throwable t) {
+                pending.error = t;
+                try {
+                    execute(conn, "ROLLBACK TO " + SAVEPOINT);
+                    execute(conn, "RELEASE " + SAVEPOINT);
+                } catch (SQLException e) {
+                    rollback(conn);
+                    failGroup(group, e);
+                    return;
+                }
+            }
+        }
+
+        long commitStart = System.nanoTime();
+        try {
+            execute(conn, "COMMIT");
+        } catch (SQLException e) {
+            rollback(conn);
+            failGroup(group, e);
+            return;
+        }
+        commitNanos.addAndGet(System.nanoTime() - commitStart);
+
+        groups.incrementAndGet();
+        tasks.addAndGet(group.size());
+        largestGroup = Math.max(largestGroup, group.size());
+        for (Pending<?> pending : group) {
+            if (pending.error != null) {
+                failedTasks.incrementAndGet();
+            }
+            pending.complete();
+        }
+    }
+
+    private void failGroup(List<Pending<?>> group, SQLException cause) {
+        System.err.println("[DB] Write group of " + group.size() + " failed: " + cause.getMessage());
+        failedGroups.incrementAndGet();
+        groups.incrementAndGet();
+        tasks.addAndGet(group.size());
+        failedTasks.addAndGet(group.size());
+        for (Pending<?> pending : group) {
+            // a task's own failure explains more than the group's
+            pending.fail(pending.error != null ? pending.error : cause);
+        }
+    }
+
+    private void rollback(Connection conn) {
+        try {
+            execute(conn, "ROLLBACK");
+        } catch (SQLException e) {
+            // the transaction is already gone; start over on a fresh connection
+            closeConnection();
+        }
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        if (physical == null || physical.isClosed()) {
+            physical = pool.openPhysical();
+            guarded = guard(physical);
+        }
+        return physical;
+    }
+
+    private void closeConnection() {
+        if (physical != null) {
+            try {
+                physical.close();
+            } catch (SQLException ignored) {
+            }
+        }
+        physical = null;
+        guarded = null;
+    }
+
+    // What tasks see: statements are timed like pooled ones, and the transaction is off limits
+    private Connection guard(Connection target) {
+        return (Connection) Proxy.newProxyInstance(
+                WriteCoordinator.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "commit":
+                        case "rollback":
+                        case "setAutoCommit":
+                        case "setSavepoint":
+                        case "releaseSavepoint":
+                            throw new SQLException("The writer connection's transaction is managed by WriteCoordinator");
+                        case "close":
+                            return null;
+                        case "getAutoCommit":
+                            return false;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "WriterConnection[" + pool.getDatabasePath() + "]";
+                        default:
+                            break;
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Statement) {
+                        return ConnectionPool.timed(method, args, (Statement) result, proxy, target,
+                                pool.getSlowQueryLog());
+                    }
+                    return result;
+                });
+    }
+
+    private static final class Pending<T> {
+        private final WriteTask<T> task;
+        private final long queuedAt = System.nanoTime();
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private Throwable error;
+
+        private Pending(WriteTask<T> task) {
+            this.task = task;
+        }
+
+        private void runOn(Connection conn) throws SQLException {
+            result = task.run(conn);
+        }
+
+        private void complete() {
+            if (error == null) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(error);
+            }
+        }
+
+        private void fail(Throwable cause) {
+            error = cause;
+            future.completeExceptionally(cause);
+        }
+
+        private T await() throws SQLException {
+            // the write may still commit, so keep waiting for the outcome; join() ignores
+            // interrupts and restores the flag once it returns
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                // error holds the cause
+            }
+            if (error == null) {
+                return result;
+            }
+            if (error instanceof SQLException) {
+                SQLException e = (SQLException) error;
+                // rethrown here so the trace shows the caller as well as the writer thread
+                throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw new SQLException(error);
+        }
+    }
+}
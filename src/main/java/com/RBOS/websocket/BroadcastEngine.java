@@ -0,0 +1,229 @@
+package com.RBOS.websocket;
+
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fan-out of pre-serialized messages to WebSocket sessions without blocking the caller.
+ *
+ * Every session gets a bounded outbox drained through getAsyncRemote() with at most one
+ * message in flight, so a slow client only ever delays itself. Messages that carry a
+ * coalesce key replace an older, still-queued message with the same key (e.g. repeated
+ * TABLE_MOVED events for one table), and a full outbox drops its oldest message.
+ */
+public class BroadcastEngine {
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    private static final long SEND_TIMEOUT_MS = 10_000;
+
+    private final int queueCapacity;
+    private final Map<Session, Outbox> outboxes = new ConcurrentHashMap<>();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public BroadcastEngine(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1");
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Queue a message for every open session. Returns immediately.
+     *
+     * @param coalesceKey identifies messages that supersede each other, or null
+     */
+    public void broadcast(Iterable<Session> sessions, String text, String coalesceKey) {
+        for (Session session : sessions) {
+            send(session, text, coalesceKey);
+        }
+    }
+
+    public void send(Session session, String text, String coalesceKey) {
+        if (!session.isOpen()) {
+            unregister(session);
+            return;
+        }
+        Outbox outbox = outboxes.computeIfAbsent(session, Outbox::new);
+        outbox.offer(text, coalesceKey);
+        outbox.pump();
+    }
+
+    public void unregister(Session session) {
+        Outbox outbox = outboxes.remove(session);
+        if (outbox != null) {
+            outbox.discard();
+        }
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Outbox outbox : outboxes.values()) {
+            depth += outbox.depth();
+        }
+        return depth;
+    }
+
+    public Map<String, Object> getStats() {
+        int depth = 0;
+        int maxDepth = 0;
+        Map<String, Integer> perSession = new LinkedHashMap<>();
+        for (Outbox outbox : outboxes.values()) {
+            int d = outbox.depth();
+            depth += d;
+            maxDepth = Math.max(maxDepth, d);
+            perSession.put(outbox.session.getId(), d);
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", outboxes.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("queueDepth", depth);
+        stats.put("maxSessionQueueDepth", maxDepth);
+        stats.put("enqueued", enqueued.get());
+        stats.put("sent", sent.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("dropped", dropped.get());
+        stats.put("failed", failed.get());
+        stats.put("sessionQueueDepths", perSession);
+        return stats;
+    }
+
+    private static final class Message {
+        private final String coalesceKey;
+        private String text;
+
+        private Message(String text, String coalesceKey) {
+            this.text = text;
+            this.coalesceKey = coalesceKey;
+        }
+    }
+
+    private final class Outbox {
+        private final Session session;
+        private final ArrayDeque<Message> queue = new ArrayDeque<>();
+        private final Map<String, Message> pendingByKey = new HashMap<>();
+        private boolean inFlight;
+        private boolean discarded;
+        private volatile Thread sendingThread;
+
+        private Outbox(Session session) {
+            this.session = session;
+            try {
+                session.getAsyncRemote().setSendTimeout(SEND_TIMEOUT_MS);
+            } catch (Exception ignored) {
+            }
+        }
+
+        private synchronized int depth() {
+            return queue.size();
+        }
+
+        private synchronized void offer(String text, String coalesceKey) {
+            if (discarded) {
+                return;
+            }
+            enqueued.incrementAndGet();
+            if (coalesceKey != null) {
+                Message pending = pendingByKey.get(coalesceKey);
+                if (pending != null) {
+                    // newer state replaces the queued one but keeps its place in line
+                    pending.text = text;
+                    coalesced.incrementAndGet();
+                    return;
+                }
+            }
+            if (queue.size() >= queueCapacity) {
+                Message oldest = queue.pollFirst();
+                if (oldest.coalesceKey != null) {
+                    pendingByKey.remove(oldest.coalesceKey);
+                }
+                dropped.incrementAndGet();
+            }
+            Message message = new Message(text, coalesceKey);
+            queue.addLast(message);
+            if (coalesceKey != null) {
+                pendingByKey.put(coalesceKey, message);
+            }
+        }
+
+        private synchronized Message next() {
+            if (inFlight || discarded) {
+                return null;
+            }
+            Message message = queue.pollFirst();
+            if (message == null) {
+                return null;
+            }
+            if (message.coalesceKey != null) {
+                pendingByKey.remove(message.coalesceKey);
+            }
+            inFlight = true;
+            return message;
+        }
+
+        private synchronized void completed() {
+            inFlight = false;
+        }
+
+        private synchronized void discard() {
+            discarded = true;
+            dropped.addAndGet(queue.size());
+            queue.clear();
+            pendingByKey.clear();
+        }
+
+        /**
+         * Start the next send if none is in flight. Completions that arrive on the sending
+         * thread (the send finished inline) are continued by this loop instead of recursing.
+         */
+        private void pump() {
+            Message message;
+            while ((message = next()) != null) {
+                sendingThread = Thread.currentThread();
+                try {
+                    session.getAsyncRemote().sendText(message.text, this::onResult);
+                } catch (Exception e) {
+                    completed();
+                    failed.incrementAndGet();
+                    System.err.println("Failed to send message to session " + session.getId() + ": " + e.getMessage());
+                    if (!session.isOpen()) {
+                        unregister(session);
+                        return;
+                    }
+                } finally {
+                    sendingThread = null;
+                }
+            }
+        }
+
+        private void onResult(SendResult result) {
+            completed();
+            if (result == null || result.isOK()) {
+                sent.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+                Throwable error = result.getException();
+                System.err.println("Failed to send message to session " + session.getId() + ": "
+                        + (error != null ? error.getMessage() : "unknown error"));
+                if (!session.isOpen()) {
+                    unregister(session);
+                    return;
+                }
+            }
+            if (Thread.currentThread() != sendingThread) {
+                pump();
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.RBOS.websocket;
+
+import jakarta.websocket.Session;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Topic-to-session index for realtime events.
+ *
+ * A session either subscribes to a whole topic ("orders") or to entity filters within it
+ * ("orders" + "order:42", "reservations" + "table:3"). Sessions that have never sent a
+ * subscribe message receive every event, which keeps older clients working. Resolving
+ * recipients only touches the subscriber sets involved, never the full connection list.
+ */
+public class SubscriptionRegistry {
+    public static final String TOPIC_ORDERS = "orders";
+    public static final String TOPIC_RESERVATIONS = "reservations";
+    public static final String TOPIC_TABLES = "tables";
+    public static final String TOPIC_SYSTEM = "system";
+    public static final Set<String> TOPICS = Set.of(TOPIC_ORDERS, TOPIC_RESERVATIONS, TOPIC_TABLES, TOPIC_SYSTEM);
+
+    private final Set<Session> unsubscribed = ConcurrentHashMap.newKeySet();
+    // "topic" or "topic|filter" -> sessions
+    private final Map<String, Set<Session>> index = new ConcurrentHashMap<>();
+    // session -> its index keys, for cleanup
+    private final Map<Session, Set<String>> keysBySession = new ConcurrentHashMap<>();
+
+    public void register(Session session) {
+        unsubscribed.add(session);
+    }
+
+    public synchronized void remove(Session session) {
+        unsubscribed.remove(session);
+        Set<String> keys = keysBySession.remove(session);
+        if (keys != null) {
+            for (String key : keys) {
+                removeFromIndex(key, session);
+            }
+        }
+    }
+
+    /**
+     * @param filter entity filter such as "order:42", or null for the whole topic
+     */
+    public synchronized void subscribe(Session session, String topic, String filter) {
+        requireTopic(topic);
+        unsubscribed.remove(session);
+        String key = key(topic, filter);
+        index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(session);
+        keysBySession.computeIfAbsent(session, s -> new HashSet<>()).add(key);
+    }
+
+    /**
+     * Without a filter, drops the topic subscription and every filter within the topic.
+     */
+    public synchronized void unsubscribe(Session session, String topic, String filter) {
+        requireTopic(topic);
+        Set<String> keys = keysBySession.get(session);
+        if (keys == null) {
+            return;
+        }
+        String exact = key(topic, filter);
+        String prefix = topic + "|";
+        keys.removeIf(key -> {
+            boolean match = key.equals(exact) || (filter == null && key.startsWith(prefix));
+            if (match) {
+                removeFromIndex(key, session);
+            }
+            return match;
+        });
+    }
+
+    public Set<String> getSubscriptions(Session session) {
+        Set<String> keys = keysBySession.get(session);
+        if (keys == null) {
+            return Collections.emptySet();
+        }
+        synchronized (this) {
+            return new LinkedHashSet<>(keys);
+        }
+    }
+
+    /**
+     * Sessions that should receive an event on the topic concerning the given entities.
+     */
+    public Set<Session> recipients(String topic, Collection<String> entityKeys) {
+        Set<Session> recipients = new LinkedHashSet<>(unsubscribed);
+        addAll(recipients, index.get(topic));
+        if (entityKeys != null) {
+            for (String entityKey : entityKeys) {
+                addAll(recipients, index.get(key(topic, entityKey)));
+            }
+        }
+        return recipients;
+    }
+
+    public int getSubscriberCount(String topic) {
+        Set<Session> sessions = index.get(topic);
+        return sessions != null ? sessions.size() : 0;
+    }
+
+    private void removeFromIndex(String key, Session session) {
+        Set<Session> sessions = index.get(key);
+        if (sessions != null) {
+            sessions.remove(session);
+            if (sessions.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static void addAll(Set<Session> target, Set<Session> source) {
+        if (source != null) {
+            target.addAll(source);
+        }
+    }
+
+    private static String key(String topic, String filter) {
+        return filter == null || filter.isBlank() ? topic : topic + "|" + filter.trim();
+    }
+
+    private static void requireTopic(String topic) {
+        if (topic == null || !TOPICS.contains(topic)) {
+            throw new IllegalArgumentException("Unknown topic: " + topic);
+        }
+    }
+}
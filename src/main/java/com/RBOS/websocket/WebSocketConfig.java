@@ -5,7 +5,16 @@ import jakarta.websocket.server.*;
 import jakarta.servlet.http.HttpSession;
 import jakarta.servlet.ServletContext;
 
+import com.RBOS.utils.Json;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -15,10 +24,14 @@ import java.util.concurrent.ConcurrentHashMap;
 )
 public class WebSocketConfig {
     private static final Set<Session> sessions = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static final BroadcastEngine broadcaster = new BroadcastEngine(BroadcastEngine.DEFAULT_QUEUE_CAPACITY);
+    private static final SubscriptionRegistry subscriptions = new SubscriptionRegistry();
+    private static final ObjectMapper mapper = Json.mapper();
     
     @OnOpen
     public void onOpen(Session session, EndpointConfig config) {
         sessions.add(session);
+        subscriptions.register(session);
         System.out.println("WebSocket connected: " + session.getId() + " | Total connections: " + sessions.size());
         broadcastToAdmins("CONNECTION_ESTABLISHED", "New admin connected: " + session.getId());
     }
@@ -26,6 +39,8 @@ public class WebSocketConfig {
     @OnClose
     public void onClose(Session session) {
         sessions.remove(session);
+        subscriptions.remove(session);
+        broadcaster.unregister(session);
         System.out.println("WebSocket disconnected: " + session.getId() + " | Remaining connections: " + sessions.size());
     }
     
@@ -35,83 +50,143 @@ public class WebSocketConfig {
         throwable.printStackTrace();
     }
     
+    /**
+     * Subscription protocol:
+     *   {"action":"subscribe","topic":"orders"}                        every order event
+     *   {"action":"subscribe","topic":"orders","filter":"order:42"}    one order
+     *   {"action":"subscribe","topic":"tables","filters":["table:1","table:2"]}
+     *   {"action":"unsubscribe","topic":"orders"}                      topic and its filters
+     * Topics: orders, reservations, tables, system. Reservation events can be filtered by
+     * "reservation:<id>" or "table:<id>". Replies with SUBSCRIPTIONS or ERROR.
+     */
     @OnMessage
     public void onMessage(String message, Session session) {
-        System.out.println("Received message from client " + session.getId() + ": " + message);
-        // Echo back for testing
+        Map<String, Object> reply = new HashMap<>();
         try {
-            session.getBasicRemote().sendText("Echo: " + message);
+            JsonNode request = mapper.readTree(message);
+            String action = request.path("action").asText("");
+            String topic = request.path("topic").asText(null);
+            List<String> filters = new ArrayList<>();
+            if (request.hasNonNull("filter")) {
+                filters.add(request.get("filter").asText());
+            }
+            request.path("filters").forEach(node -> filters.add(node.asText()));
+            if (filters.isEmpty()) {
+                filters.add(null);
+            }
+
+            switch (action) {
+                case "subscribe":
+                    for (String filter : filters) {
+                        subscriptions.subscribe(session, topic, filter);
+                    }
+                    break;
+                case "unsubscribe":
+                    for (String filter : filters) {
+                        subscriptions.unsubscribe(session, topic, filter);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown action: " + action);
+            }
+            reply.put("type", "SUBSCRIPTIONS");
+            reply.put("subscriptions", subscriptions.getSubscriptions(session));
         } catch (Exception e) {
-            e.printStackTrace();
+            reply.put("type", "ERROR");
+            reply.put("message", e instanceof IllegalArgumentException ? e.getMessage() : "Malformed message");
+        }
+        reply.put("timestamp", System.currentTimeMillis());
+        try {
+            broadcaster.send(session, mapper.writeValueAsString(reply), null);
+        } catch (Exception e) {
+            System.err.println("Failed to reply to session " + session.getId() + ": " + e.getMessage());
         }
     }
     
     public static void broadcastToAdmins(String type, String message) {
+        broadcastToAdmins(type, message, Collections.emptyList());
+    }
+    
+    private static void broadcastToAdmins(String type, String message, List<String> entityKeys) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("type", type);
+        payload.put("message", message);
+        payload.put("timestamp", System.currentTimeMillis());
+        broadcast(topicFor(type), entityKeys, payload, null);
+    }
+    
+    // Serialize once, then hand off to the subscribers' queues; never blocks on a client
+    private static void broadcast(String topic, List<String> entityKeys, Map<String, Object> payload, String coalesceKey) {
         try {
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            java.util.Map<String, Object> payload = new java.util.HashMap<>();
-            payload.put("type", type);
-            payload.put("message", message);
-            payload.put("timestamp", System.currentTimeMillis());
+            payload.put("topic", topic);
             String jsonMessage = mapper.writeValueAsString(payload);
-
-            System.out.println("Broadcasting to " + sessions.size() + " clients: " + jsonMessage);
-
-            sessions.forEach(session -> {
-                if (session.isOpen()) {
-                    try {
-                        session.getBasicRemote().sendText(jsonMessage);
-                    } catch (Exception e) {
-                        System.err.println("Failed to send message to session " + session.getId() + ": " + e.getMessage());
-                    }
-                }
-            });
+            Set<Session> recipients = subscriptions.recipients(topic, entityKeys);
+            System.out.println("Broadcasting to " + recipients.size() + " clients: " + jsonMessage);
+            broadcaster.broadcast(recipients, jsonMessage, coalesceKey);
         } catch (Exception e) {
             System.err.println("Failed to broadcast WebSocket message: " + e.getMessage());
         }
     }
     
-    public static void notifyNewReservation(String reservationData) {
-        broadcastToAdmins("NEW_RESERVATION", reservationData);
+    private static String topicFor(String type) {
+        switch (type) {
+            case "NEW_ORDER":
+            case "ORDER_UPDATED":
+                return SubscriptionRegistry.TOPIC_ORDERS;
+            case "NEW_RESERVATION":
+            case "RESERVATION_UPDATED":
+                return SubscriptionRegistry.TOPIC_RESERVATIONS;
+            case "TABLE_MOVED":
+                return SubscriptionRegistry.TOPIC_TABLES;
+            default:
+                return SubscriptionRegistry.TOPIC_SYSTEM;
+        }
+    }
+    
+    public static Map<String, Object> getBroadcastStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(broadcaster.getStats());
+        Map<String, Integer> topicSubscribers = new LinkedHashMap<>();
+        for (String topic : SubscriptionRegistry.TOPICS) {
+            topicSubscribers.put(topic, subscriptions.getSubscriberCount(topic));
+        }
+        stats.put("topicSubscribers", topicSubscribers);
+        return stats;
     }
     
-    public static void notifyReservationUpdate(String reservationData) {
-        broadcastToAdmins("RESERVATION_UPDATED", reservationData);
+    public static void notifyNewReservation(String reservationId, String tableId, String reservationData) {
+        broadcastToAdmins("NEW_RESERVATION", reservationData, reservationKeys(reservationId, tableId));
     }
     
-    public static void notifyNewOrder(String orderData) {
-        broadcastToAdmins("NEW_ORDER", orderData);
+    public static void notifyReservationUpdate(String reservationId, String tableId, String reservationData) {
+        broadcastToAdmins("RESERVATION_UPDATED", reservationData, reservationKeys(reservationId, tableId));
     }
     
-    public static void notifyOrderUpdate(String orderData) {
-        broadcastToAdmins("ORDER_UPDATED", orderData);
+    public static void notifyNewOrder(String orderId, String orderData) {
+        broadcastToAdmins("NEW_ORDER", orderData, List.of("order:" + orderId));
+    }
+    
+    public static void notifyOrderUpdate(String orderId, String orderData) {
+        broadcastToAdmins("ORDER_UPDATED", orderData, List.of("order:" + orderId));
     }
     
     public static void notifyTableMoved(String tableId, int x, int y) {
-        try {
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            java.util.Map<String, Object> payload = new java.util.HashMap<>();
-            payload.put("type", "TABLE_MOVED");
-            payload.put("tableId", tableId);
-            payload.put("x", x);
-            payload.put("y", y);
-            payload.put("timestamp", System.currentTimeMillis());
-            String jsonMessage = mapper.writeValueAsString(payload);
-
-            System.out.println("Broadcasting to " + sessions.size() + " clients: " + jsonMessage);
-
-            sessions.forEach(session -> {
-                if (session.isOpen()) {
-                    try {
-                        session.getBasicRemote().sendText(jsonMessage);
-                    } catch (Exception e) {
-                        System.err.println("Failed to send message to session " + session.getId() + ": " + e.getMessage());
-                    }
-                }
-            });
-        } catch (Exception e) {
-            System.err.println("Failed to broadcast WebSocket message: " + e.getMessage());
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("type", "TABLE_MOVED");
+        payload.put("tableId", tableId);
+        payload.put("x", x);
+        payload.put("y", y);
+        payload.put("timestamp", System.currentTimeMillis());
+        // only the latest position of a table matters to a client that is behind
+        broadcast(SubscriptionRegistry.TOPIC_TABLES, List.of("table:" + tableId), payload, "TABLE_MOVED:" + tableId);
+    }
+    
+    private static List<String> reservationKeys(String reservationId, String tableId) {
+        List<String> keys = new ArrayList<>();
+        keys.add("reservation:" + reservationId);
+        if (tableId != null) {
+            keys.add("table:" + tableId);
         }
+        return keys;
     }
     
     // WebSocket Configurator
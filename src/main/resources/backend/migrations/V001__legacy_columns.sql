@@ -0,0 +1,62 @@
+-- Columns and tables added after the first release, previously probed for on startup.
+-- Older databases can have any subset of them, so an ADD COLUMN for a column that already
+-- exists is skipped by the migrator rather than failing the migration.
+
+ALTER TABLE orders ADD COLUMN cart_token TEXT;
+CREATE INDEX IF NOT EXISTS idx_orders_by_cart_token ON orders(cart_token);
+
+-- ADD COLUMN cannot take a non-constant default, so backfill and fill new rows by trigger
+ALTER TABLE orders ADD COLUMN created_utc TEXT;
+UPDATE orders SET created_utc = strftime('%Y-%m-%dT%H:%M:%fZ','now') WHERE created_utc IS NULL;
+CREATE TRIGGER IF NOT EXISTS orders_default_created_utc AFTER INSERT ON orders
+WHEN NEW.created_utc IS NULL
+BEGIN
+  UPDATE orders SET created_utc = strftime('%Y-%m-%dT%H:%M:%fZ','now') WHERE rowid = NEW.rowid;
+END;
+
+ALTER TABLE orders ADD COLUMN customer_email TEXT;
+
+ALTER TABLE menu_items ADD COLUMN image_url TEXT;
+ALTER TABLE menu_items ADD COLUMN dietary_tags TEXT;
+ALTER TABLE menu_items ADD COLUMN active INTEGER NOT NULL DEFAULT 1;
+
+ALTER TABLE reservations ADD COLUMN guest_name TEXT;
+ALTER TABLE reservations ADD COLUMN contact_email TEXT;
+ALTER TABLE reservations ADD COLUMN contact_phone TEXT;
+
+-- contact/address columns used by the auth servlet
+ALTER TABLE users ADD COLUMN phone TEXT;
+ALTER TABLE users ADD COLUMN address TEXT;
+ALTER TABLE users ADD COLUMN address2 TEXT;
+ALTER TABLE users ADD COLUMN city TEXT;
+ALTER TABLE users ADD COLUMN state TEXT;
+ALTER TABLE users ADD COLUMN postal_code TEXT;
+
+CREATE TABLE IF NOT EXISTS audit_log (
+  log_id         TEXT PRIMARY KEY,
+  user_id        TEXT NOT NULL,
+  user_name      TEXT NOT NULL,
+  entity_type    TEXT NOT NULL CHECK (entity_type IN ('menu_item','inventory','user','order','reservation','table')),
+  entity_id      TEXT NOT NULL,
+  action         TEXT NOT NULL CHECK (action IN ('create','update','delete','toggle_active','toggle_out_of_stock')),
+  old_values     TEXT,
+  new_values     TEXT,
+  created_utc    TEXT NOT NULL DEFAULT (strftime('%Y-%m-%dT%H:%M:%fZ','now')),
+  FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE
+);
+CREATE INDEX IF NOT EXISTS idx_audit_log_entity ON audit_log(entity_type, entity_id, created_utc);
+CREATE INDEX IF NOT EXISTS idx_audit_log_user ON audit_log(user_id, created_utc);
+
+CREATE TABLE IF NOT EXISTS email_outbox (
+  outbox_id        INTEGER PRIMARY KEY AUTOINCREMENT,
+  recipient        TEXT NOT NULL,
+  subject          TEXT NOT NULL,
+  html_body        TEXT NOT NULL,
+  status           TEXT NOT NULL CHECK (status IN ('pending','sent','dead')) DEFAULT 'pending',
+  attempts         INTEGER NOT NULL DEFAULT 0,
+  next_attempt_utc TEXT NOT NULL DEFAULT (strftime('%Y-%m-%dT%H:%M:%fZ','now')),
+  last_error       TEXT,
+  created_utc      TEXT NOT NULL DEFAULT (strftime('%Y-%m-%dT%H:%M:%fZ','now')),
+  sent_utc         TEXT
+);
+CREATE INDEX IF NOT EXISTS idx_email_outbox_due ON email_outbox(status, next_attempt_utc);
@@ -0,0 +1,6 @@
+-- Keyset paging for order/reservation history and the streaming audit export
+CREATE INDEX IF NOT EXISTS idx_orders_by_created_id ON orders(created_utc, order_id);
+CREATE INDEX IF NOT EXISTS idx_orders_by_user_created_id ON orders(user_id, created_utc, order_id);
+CREATE INDEX IF NOT EXISTS idx_res_by_start_id ON reservations(start_utc, reservation_id);
+CREATE INDEX IF NOT EXISTS idx_res_by_user_start_id ON reservations(user_id, start_utc, reservation_id);
+CREATE INDEX IF NOT EXISTS idx_audit_log_created ON audit_log(created_utc);
@@ -0,0 +1,10 @@
+-- Results of order submissions, replayed when a client retries with the same Idempotency-Key
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+  idem_key      TEXT PRIMARY KEY,
+  request_hash  TEXT NOT NULL,
+  status_code   INTEGER NOT NULL,
+  response_body TEXT NOT NULL,
+  order_id      TEXT,
+  created_utc   TEXT NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created ON idempotency_keys(created_utc);
@@ -0,0 +1,174 @@
+-- Daily report aggregates, kept current by triggers (see RollupSchema):
+--   rollup_orders_daily        (day, status, source)     -> order_count, revenue
+--   rollup_order_items_daily   (day, status, item_id)    -> quantity, revenue
+--   rollup_reservations_daily  (day, status, party_size) -> reservation_count
+-- Order and order item rows are bucketed by the order's created_utc day, reservations by
+-- their start_utc day. Databases that got these tables from the old startup installer keep
+-- their data; the triggers are replaced and every bucket is recomputed below.
+
+CREATE TABLE IF NOT EXISTS rollup_orders_daily (
+  day         TEXT NOT NULL,
+  status      TEXT NOT NULL,
+  source      TEXT NOT NULL,
+  order_count INTEGER NOT NULL DEFAULT 0,
+  revenue     REAL NOT NULL DEFAULT 0,
+  PRIMARY KEY (day, status, source)
+);
+
+CREATE TABLE IF NOT EXISTS rollup_order_items_daily (
+  day      TEXT NOT NULL,
+  status   TEXT NOT NULL,
+  item_id  TEXT NOT NULL,
+  quantity INTEGER NOT NULL DEFAULT 0,
+  revenue  REAL NOT NULL DEFAULT 0,
+  PRIMARY KEY (day, status, item_id)
+);
+
+CREATE TABLE IF NOT EXISTS rollup_reservations_daily (
+  day               TEXT NOT NULL,
+  status            TEXT NOT NULL,
+  party_size        INTEGER NOT NULL,
+  reservation_count INTEGER NOT NULL DEFAULT 0,
+  PRIMARY KEY (day, status, party_size)
+);
+
+DROP TRIGGER IF EXISTS rollup_orders_ai;
+DROP TRIGGER IF EXISTS rollup_orders_au;
+DROP TRIGGER IF EXISTS rollup_orders_au_items;
+DROP TRIGGER IF EXISTS rollup_orders_bd;
+DROP TRIGGER IF EXISTS rollup_orders_ad;
+DROP TRIGGER IF EXISTS rollup_order_items_ai;
+DROP TRIGGER IF EXISTS rollup_order_items_au;
+DROP TRIGGER IF EXISTS rollup_order_items_ad;
+DROP TRIGGER IF EXISTS rollup_reservations_ai;
+DROP TRIGGER IF EXISTS rollup_reservations_au;
+DROP TRIGGER IF EXISTS rollup_reservations_ad;
+
+CREATE TRIGGER rollup_orders_ai AFTER INSERT ON orders
+BEGIN
+  INSERT INTO rollup_orders_daily (day, status, source, order_count, revenue)
+  VALUES (COALESCE(substr(NEW.created_utc, 1, 10), ''), NEW.status, COALESCE(NEW.source, ''), 1, NEW.total)
+  ON CONFLICT (day, status, source) DO UPDATE SET
+    order_count = order_count + excluded.order_count, revenue = revenue + excluded.revenue;
+END;
+
+CREATE TRIGGER rollup_orders_au AFTER UPDATE OF status, source, total, created_utc ON orders
+BEGIN
+  INSERT INTO rollup_orders_daily (day, status, source, order_count, revenue)
+  VALUES (COALESCE(substr(OLD.created_utc, 1, 10), ''), OLD.status, COALESCE(OLD.source, ''), -1, -1 * OLD.total)
+  ON CONFLICT (day, status, source) DO UPDATE SET
+    order_count = order_count + excluded.order_count, revenue = revenue + excluded.revenue;
+  INSERT INTO rollup_orders_daily (day, status, source, order_count, revenue)
+  VALUES (COALESCE(substr(NEW.created_utc, 1, 10), ''), NEW.status, COALESCE(NEW.source, ''), 1, NEW.total)
+  ON CONFLICT (day, status, source) DO UPDATE SET
+    order_count = order_count + excluded.order_count, revenue = revenue + excluded.revenue;
+END;
+
+-- An order changing status or day moves all of its items to the new bucket
+CREATE TRIGGER rollup_orders_au_items AFTER UPDATE OF status, created_utc ON orders
+WHEN OLD.status IS NOT NEW.status
+  OR COALESCE(substr(OLD.created_utc, 1, 10), '') IS NOT COALESCE(substr(NEW.created_utc, 1, 10), '')
+BEGIN
+  INSERT INTO rollup_order_items_daily (day, status, item_id, quantity, revenue)
+  SELECT COALESCE(substr(OLD.created_utc, 1, 10), ''), OLD.status, oi.item_id, -1 * SUM(oi.qty), -1 * SUM(oi.line_total)
+  FROM order_items oi WHERE oi.order_id = OLD.order_id GROUP BY oi.item_id
+  ON CONFLICT (day, status, item_id) DO UPDATE SET
+    quantity = quantity + excluded.quantity, revenue = revenue + excluded.revenue;
+  INSERT INTO rollup_order_items_daily (day, status, item_id, quantity, revenue)
+  SELECT COALESCE(substr(NEW.created_utc, 1, 10), ''), NEW.status, oi.item_id, SUM(oi.qty), SUM(oi.line_total)
+  FROM order_items oi WHERE oi.order_id = NEW.order_id GROUP BY oi.item_id
+  ON CONFLICT (day, status, item_id) DO UPDATE SET
+    quantity = quantity + excluded.quantity, revenue = revenue + excluded.revenue;
+END;
+
+-- Remove items while the parent row still exists so their delete trigger can find its bucket;
+-- the ON DELETE CASCADE that would otherwise run afterwards then has nothing left to do.
+CREATE TRIGGER rollup_orders_bd BEFORE DELETE ON orders
+BEGIN
+  DELETE FROM order_items WHERE order_id = OLD.order_id;
+END;
+
+CREATE TRIGGER rollup_orders_ad AFTER DELETE ON orders
+BEGIN
+  INSERT INTO rollup_orders_daily (day, status, source, order_count, revenue)
+  VALUES (COALESCE(substr(OLD.created_utc, 1, 10), ''), OLD.status, COALESCE(OLD.source, ''), -1, -1 * OLD.total)
+  ON CONFLICT (day, status, source) DO UPDATE SET
+    order_count = order_count + excluded.order_count, revenue = revenue + excluded.revenue;
+END;
+
+CREATE TRIGGER rollup_order_items_ai AFTER INSERT ON order_items
+BEGIN
+  INSERT INTO rollup_order_items_daily (day, status, item_id, quantity, revenue)
+  SELECT COALESCE(substr(o.created_utc, 1, 10), ''), o.status, NEW.item_id, NEW.qty, NEW.line_total
+  FROM orders o WHERE o.order_id = NEW.order_id
+  ON CONFLICT (day, status, item_id) DO UPDATE SET
+    quantity = quantity + excluded.quantity, revenue = revenue + excluded.revenue;
+END;
+
+CREATE TRIGGER rollup_order_items_au AFTER UPDATE OF order_id, item_id, qty, line_total ON order_items
+BEGIN
+  INSERT INTO rollup_order_items_daily (day, status, item_id, quantity, revenue)
+  SELECT COALESCE(substr(o.created_utc, 1, 10), ''), o.status, OLD.item_id, -1 * OLD.qty, -1 * OLD.line_total
+  FROM orders o WHERE o.order_id = OLD.order_id
+  ON CONFLICT (day, status, item_id) DO UPDATE SET
+    quantity = quantity + excluded.quantity, revenue = revenue + excluded.revenue;
+  INSERT INTO rollup_order_items_daily (day, status, item_id, quantity, revenue)
+  SELECT COALESCE(substr(o.created_utc, 1, 10), ''), o.status, NEW.item_id, NEW.qty, NEW.line_total
+  FROM orders o WHERE o.order_id = NEW.order_id
+  ON CONFLICT (day, status, item_id) DO UPDATE SET
+    quantity = quantity + excluded.quantity, revenue = revenue + excluded.revenue;
+END;
+
+CREATE TRIGGER rollup_order_items_ad AFTER DELETE ON order_items
+BEGIN
+  INSERT INTO rollup_order_items_daily (day, status, item_id, quantity, revenue)
+  SELECT COALESCE(substr(o.created_utc, 1, 10), ''), o.status, OLD.item_id, -1 * OLD.qty, -1 * OLD.line_total
+  FROM orders o WHERE o.order_id = OLD.order_id
+  ON CONFLICT (day, status, item_id) DO UPDATE SET
+    quantity = quantity + excluded.quantity, revenue = revenue + excluded.revenue;
+END;
+
+CREATE TRIGGER rollup_reservations_ai AFTER INSERT ON reservations
+BEGIN
+  INSERT INTO rollup_reservations_daily (day, status, party_size, reservation_count)
+  VALUES (COALESCE(substr(NEW.start_utc, 1, 10), ''), NEW.status, NEW.party_size, 1)
+  ON CONFLICT (day, status, party_size) DO UPDATE SET
+    reservation_count = reservation_count + excluded.reservation_count;
+END;
+
+CREATE TRIGGER rollup_reservations_au AFTER UPDATE OF status, party_size, start_utc ON reservations
+BEGIN
+  INSERT INTO rollup_reservations_daily (day, status, party_size, reservation_count)
+  VALUES (COALESCE(substr(OLD.start_utc, 1, 10), ''), OLD.status, OLD.party_size, -1)
+  ON CONFLICT (day, status, party_size) DO UPDATE SET
+    reservation_count = reservation_count + excluded.reservation_count;
+  INSERT INTO rollup_reservations_daily (day, status, party_size, reservation_count)
+  VALUES (COALESCE(substr(NEW.start_utc, 1, 10), ''), NEW.status, NEW.party_size, 1)
+  ON CONFLICT (day, status, party_size) DO UPDATE SET
+    reservation_count = reservation_count + excluded.reservation_count;
+END;
+
+CREATE TRIGGER rollup_reservations_ad AFTER DELETE ON reservations
+BEGIN
+  INSERT INTO rollup_reservations_daily (day, status, party_size, reservation_count)
+  VALUES (COALESCE(substr(OLD.start_utc, 1, 10), ''), OLD.status, OLD.party_size, -1)
+  ON CONFLICT (day, status, party_size) DO UPDATE SET
+    reservation_count = reservation_count + excluded.reservation_count;
+END;
+
+-- Backfill from the base tables; same queries as RollupSchema.rebuildTables
+DELETE FROM rollup_orders_daily;
+DELETE FROM rollup_order_items_daily;
+DELETE FROM rollup_reservations_daily;
+
+INSERT INTO rollup_orders_daily (day, status, source, order_count, revenue)
+SELECT COALESCE(substr(created_utc, 1, 10), ''), status, COALESCE(source, ''), COUNT(*), SUM(total)
+FROM orders GROUP BY 1, 2, 3;
+
+INSERT INTO rollup_order_items_daily (day, status, item_id, quantity, revenue)
+SELECT COALESCE(substr(o.created_utc, 1, 10), ''), o.status, oi.item_id, SUM(oi.qty), SUM(oi.line_total)
+FROM order_items oi JOIN orders o ON o.order_id = oi.order_id GROUP BY 1, 2, 3;
+
+INSERT INTO rollup_reservations_daily (day, status, party_size, reservation_count)
+SELECT COALESCE(substr(start_utc, 1, 10), ''), status, party_size, COUNT(*)
+FROM reservations GROUP BY 1, 2, 3;
@@ -59,6 +59,9 @@ CREATE TABLE reservations (
 
 CREATE INDEX idx_res_by_table_time ON reservations(table_id, start_utc, end_utc);
 CREATE INDEX idx_res_by_user       ON reservations(user_id, start_utc);
+-- keyset paging for reservation history: (start_utc, reservation_id) newest first
+CREATE INDEX idx_res_by_start_id   ON reservations(start_utc, reservation_id);
+CREATE INDEX idx_res_by_user_start_id ON reservations(user_id, start_utc, reservation_id);
 
 -- menu items
 CREATE TABLE menu_items (
@@ -128,6 +131,9 @@ CREATE TABLE orders (
 
 CREATE INDEX idx_orders_by_user ON orders(user_id, created_utc);
 CREATE INDEX idx_orders_by_cart_token ON orders(cart_token);
+-- keyset paging for order history: (created_utc, order_id) newest first
+CREATE INDEX idx_orders_by_created_id ON orders(created_utc, order_id);
+CREATE INDEX idx_orders_by_user_created_id ON orders(user_id, created_utc, order_id);
 
 -- order items
 CREATE TABLE order_items (
@@ -160,6 +166,35 @@ CREATE TABLE audit_log (
 
 CREATE INDEX idx_audit_log_entity ON audit_log(entity_type, entity_id, created_utc);
 CREATE INDEX idx_audit_log_user ON audit_log(user_id, created_utc);
+CREATE INDEX idx_audit_log_created ON audit_log(created_utc);
+
+-- email outbox (written in the same transaction as the change it reports)
+CREATE TABLE email_outbox (
+  outbox_id        INTEGER PRIMARY KEY AUTOINCREMENT,
+  recipient        TEXT NOT NULL,
+  subject          TEXT NOT NULL,
+  html_body        TEXT NOT NULL,
+  status           TEXT NOT NULL CHECK (status IN ('pending','sent','dead')) DEFAULT 'pending',
+  attempts         INTEGER NOT NULL DEFAULT 0,
+  next_attempt_utc TEXT NOT NULL DEFAULT (strftime('%Y-%m-%dT%H:%M:%fZ','now')),
+  last_error       TEXT,
+  created_utc      TEXT NOT NULL DEFAULT (strftime('%Y-%m-%dT%H:%M:%fZ','now')),
+  sent_utc         TEXT
+);
+
+CREATE INDEX idx_email_outbox_due ON email_outbox(status, next_attempt_utc);
+
+-- results of order submissions, replayed when a client retries with the same Idempotency-Key
+CREATE TABLE idempotency_keys (
+  idem_key      TEXT PRIMARY KEY,
+  request_hash  TEXT NOT NULL,
+  status_code   INTEGER NOT NULL,
+  response_body TEXT NOT NULL,
+  order_id      TEXT,
+  created_utc   TEXT NOT NULL
+);
+
+CREATE INDEX idx_idempotency_keys_created ON idempotency_keys(created_utc);
 
 -- ===== seed data ============================================================
 BEGIN TRANSACTION;
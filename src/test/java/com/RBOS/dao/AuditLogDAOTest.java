@@ -9,6 +9,7 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
@@ -58,4 +59,35 @@ public class AuditLogDAOTest {
             assertEquals("create", rs.getString("action"));
         }
     }
+
+    @Test
+    public void streamLogsAppliesFiltersNewestFirst() throws Exception {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + System.getProperty("RBOS_DB"));
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO audit_log (log_id, user_id, user_name, entity_type, entity_id, action, created_utc) "
+                    + "VALUES ('a', '1', 'Admin', 'order', 'o-1', 'create', '2025-01-01T10:00:00.000Z')");
+            stmt.execute("INSERT INTO audit_log (log_id, user_id, user_name, entity_type, entity_id, action, created_utc) "
+                    + "VALUES ('b', '1', 'Admin', 'order', 'o-1', 'update', '2025-01-02T10:00:00.000Z')");
+            stmt.execute("INSERT INTO audit_log (log_id, user_id, user_name, entity_type, entity_id, action, created_utc) "
+                    + "VALUES ('c', '2', 'Staff', 'order', 'o-2', 'create', '2025-01-03T10:00:00.000Z')");
+            stmt.execute("INSERT INTO audit_log (log_id, user_id, user_name, entity_type, entity_id, action, created_utc) "
+                    + "VALUES ('d', '1', 'Admin', 'menu_item', 'm-1', 'delete', '2025-01-04T10:00:00.000Z')");
+        }
+        AuditLogDAO dao = new AuditLogDAO(null);
+
+        List<AuditLog> orders = new ArrayList<>();
+        assertEquals(3, dao.streamLogs("order", null, null, null, orders::add));
+        assertEquals("c", orders.get(0).logId);
+        assertEquals("a", orders.get(2).logId);
+        assertEquals("order", orders.get(0).entityType);
+        assertEquals("o-2", orders.get(0).entityId);
+        assertEquals("Staff", orders.get(0).userName);
+
+        List<AuditLog> ranged = new ArrayList<>();
+        dao.streamLogs("order", "o-1", "2025-01-02T00:00:00Z", "2025-01-03T00:00:00Z", ranged::add);
+        assertEquals(1, ranged.size());
+        assertEquals("update", ranged.get(0).action);
+
+        assertEquals(4, dao.streamLogs(null, null, null, null, log -> { }));
+    }
 }
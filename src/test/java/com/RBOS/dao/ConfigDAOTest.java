@@ -22,7 +22,7 @@ public class ConfigDAOTest {
         Path db = tempDir.newFile("config.db").toPath();
         System.setProperty("RBOS_DB", db.toString());
 
-        // Trigger normal schema creation so ensureSchema doesn't wipe our custom table
+        // Seed and migrate the database first, then add our custom table
         try (Connection conn = DatabaseConnection.getConnection(null)) {
             conn.close();
         }
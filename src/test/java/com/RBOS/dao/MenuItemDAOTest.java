@@ -25,7 +25,7 @@ public class MenuItemDAOTest {
         Path db = tempDir.newFile("menu.db").toPath();
         System.setProperty("RBOS_DB", db.toString());
 
-        // Seed schema (via ensureSchema) then clear rows for clean assertions
+        // Seed and migrate the schema, then clear rows for clean assertions
         try (Connection conn = DatabaseConnection.getConnection(null);
                 Statement stmt = conn.createStatement()) {
             stmt.execute("DELETE FROM order_items");
@@ -5,12 +5,19 @@ import static org.junit.Assert.*;
 import com.RBOS.models.Order;
 import com.RBOS.models.OrderItem;
 import com.RBOS.models.PagedResult;
+import com.RBOS.utils.ConnectionPool;
 import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.HistoryCursor;
+import com.RBOS.utils.HistoryValidation;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -82,6 +89,134 @@ public class OrderDAOFiltersTest {
         assertEquals("order-1", pageTwo.getItems().get(0).getOrderId());
     }
 
+    @Test
+    public void listQueriesLoadItemsInBulkWithoutPerOrderQueries() throws Exception {
+        long before = statementCount();
+        List<Order> orders = orderDAO.getAllOrders();
+        long statements = statementCount() - before;
+
+        assertEquals(3, orders.size());
+        // one query for the orders and one for all of their items
+        assertEquals(2, statements);
+
+        assertEquals("order-3", orders.get(0).getOrderId());
+        assertNotNull(orders.get(0).getOrderItems());
+        assertTrue(orders.get(0).getOrderItems().isEmpty());
+        assertEquals("menu-2", orders.get(1).getOrderItems().get(0).getItemId());
+        assertEquals("menu-1", orders.get(2).getOrderItems().get(0).getItemId());
+
+        List<Order> ranged = orderDAO.getOrdersByDateRange("2024-01-02", "2024-01-03");
+        assertEquals(2, ranged.size());
+        assertEquals("Menu Two", ranged.get(1).getOrderItems().get(0).getMenuItem().getName());
+    }
+
+    @Test
+    public void streamedOrdersMatchTheListedOnes() throws Exception {
+        List<Order> listed = orderDAO.getAllOrders();
+        List<Order> streamed = new ArrayList<>();
+        long before = statementCount();
+        int rows = orderDAO.streamAllOrders(streamed::add);
+
+        assertEquals(3, rows);
+        // one query for the orders and one for the items of the only batch
+        assertEquals(2, statementCount() - before);
+        assertEquals(listed.size(), streamed.size());
+        for (int i = 0; i < listed.size(); i++) {
+            assertEquals(listed.get(i).getOrderId(), streamed.get(i).getOrderId());
+            assertEquals(listed.get(i).getOrderItems().size(), streamed.get(i).getOrderItems().size());
+        }
+
+        List<Order> placed = new ArrayList<>();
+        orderDAO.streamOrdersByUser("user-1", "placed", placed::add);
+        assertEquals(1, placed.size());
+        assertEquals("order-1", placed.get(0).getOrderId());
+    }
+
+    @Test
+    public void streamingReadsInBatchesAndReleasesTheConnectionBeforeEachHandoff() throws Exception {
+        // more than one batch, all on one timestamp, so only the id carries the keyset across batches
+        int extra = 1000;
+        try (Connection conn = DatabaseConnection.getConnection(null);
+                PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO orders (order_id, status, created_utc) VALUES (?, 'paid', '2024-01-05T00:00:00Z')")) {
+            for (int i = 0; i < extra; i++) {
+                ps.setString(1, String.format("bulk-%04d", i));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        ConnectionPool readers = DatabaseConnection.getReadPool(null);
+        List<String> ids = new ArrayList<>();
+        int rows = orderDAO.streamAllOrders(order -> {
+            assertEquals(0, readers.getStats().get("active"));
+            ids.add(order.getOrderId());
+        });
+
+        assertEquals(extra + 3, rows);
+        assertEquals(extra + 3, new HashSet<>(ids).size());
+        assertEquals("bulk-0999", ids.get(0));
+        assertEquals("bulk-0000", ids.get(extra - 1));
+        assertEquals(List.of("order-3", "order-2", "order-1"), ids.subList(extra, extra + 3));
+    }
+
+    @Test
+    public void cursorPagingWalksForwardAndBackAndSeeksTheIndex() throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection(null); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE INDEX idx_orders_by_created_id ON orders(created_utc, order_id)");
+            // same timestamp as order-2, so only the id decides which page each lands on
+            stmt.execute("INSERT INTO orders (order_id, status, created_utc) VALUES ('order-2b', 'paid', '2024-01-02T10:00:00Z')");
+        }
+
+        PagedResult<Order> first = orderDAO.getOrdersPage("all", null, null, null, null, 2);
+        assertEquals(4, first.getTotal());
+        assertEquals("order-3", first.getItems().get(0).getOrderId());
+        assertEquals("order-2b", first.getItems().get(1).getOrderId());
+        assertNull(first.getPrevCursor());
+
+        HistoryCursor next = HistoryValidation.parseCursor(first.getNextCursor());
+        PagedResult<Order> second = orderDAO.getOrdersPage("all", null, null, null, next, 2);
+        assertEquals(4, second.getTotal());
+        assertEquals(2, second.getPage());
+        assertEquals("order-2", second.getItems().get(0).getOrderId());
+        assertEquals("order-1", second.getItems().get(1).getOrderId());
+        assertEquals("menu-1", second.getItems().get(1).getOrderItems().get(0).getItemId());
+        assertNull(second.getNextCursor());
+
+        PagedResult<Order> back = orderDAO.getOrdersPage("all", null, null, null,
+                HistoryValidation.parseCursor(second.getPrevCursor()), 2);
+        assertEquals(1, back.getPage());
+        assertEquals("order-3", back.getItems().get(0).getOrderId());
+        assertEquals("order-2b", back.getItems().get(1).getOrderId());
+
+        // the keyset predicate must seek the index; an OR of conditions falls back to a sort
+        String sql = "EXPLAIN QUERY PLAN SELECT o.* FROM orders o WHERE 1=1"
+                + next.keysetClause("o.created_utc", "o.order_id")
+                + HistoryCursor.orderBy(next, "o.created_utc", "o.order_id") + " LIMIT 3";
+        StringBuilder plan = new StringBuilder();
+        try (Connection conn = DatabaseConnection.getConnection(null);
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, "2024-01-02T10:00:00Z");
+            ps.setString(2, "order-2b");
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString("detail")).append('\n');
+                }
+            }
+        }
+        assertTrue(plan.toString(), plan.toString().contains("SEARCH o USING INDEX idx_orders_by_created_id"));
+        assertFalse(plan.toString(), plan.toString().contains("MULTI-INDEX OR"));
+        assertFalse(plan.toString(), plan.toString().contains("TEMP B-TREE"));
+    }
+
+    // Statements prepared on the read-write and read-only pools together
+    @SuppressWarnings("unchecked")
+    private long statementCount() throws Exception {
+        Map<String, Object> stats = DatabaseConnection.getPoolStats(null);
+        Map<String, Object> readers = (Map<String, Object>) stats.get("readers");
+        return (Long) stats.get("statements") + (Long) readers.get("statements");
+    }
+
     private void createTables(Connection conn) throws Exception {
         try (Statement stmt = conn.createStatement()) {
             stmt.execute("DROP TABLE IF EXISTS order_items");
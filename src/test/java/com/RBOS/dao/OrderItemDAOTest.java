@@ -7,8 +7,11 @@ import com.RBOS.utils.DatabaseConnection;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -50,4 +53,61 @@ public class OrderItemDAOTest {
         assertEquals("Burger", loaded.getMenuItem().getName());
         assertEquals(2, loaded.getQty().intValue());
     }
+
+    @Test
+    public void batchInsertAssignsIdsToEveryLine() throws Exception {
+        OrderItemDAO dao = new OrderItemDAO(null);
+        List<OrderItem> lines = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            lines.add(new OrderItem(null, "o1", "m1", i, 9.5, i * 9.5, null));
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection(null)) {
+            dao.createOrderItems(lines, conn);
+        }
+
+        assertTrue(lines.stream().allMatch(line -> line.getOrderItemId() != null));
+        List<OrderItem> items = dao.getOrderItemsByOrderId("o1");
+        assertEquals(3, items.size());
+        assertEquals(6, items.stream().mapToInt(OrderItem::getQty).sum());
+    }
+
+    @Test
+    public void bulkLoadGroupsItemsByOrderAcrossChunks() throws Exception {
+        int orderCount = OrderItemDAO.IN_CLAUSE_CHUNK_SIZE * 2 + 7;
+        List<String> orderIds = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection(null)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement order = conn.prepareStatement("INSERT INTO orders (order_id) VALUES (?)");
+                 PreparedStatement item = conn.prepareStatement(
+                         "INSERT INTO order_items (order_id, item_id, qty, unit_price, line_total) VALUES (?, 'm1', ?, 9.5, ?)")) {
+                for (int i = 0; i < orderCount; i++) {
+                    String orderId = "bulk-" + i;
+                    orderIds.add(orderId);
+                    order.setString(1, orderId);
+                    order.addBatch();
+                    // every third order is left without items
+                    for (int q = 1; i % 3 != 0 && q <= 2; q++) {
+                        item.setString(1, orderId);
+                        item.setInt(2, q);
+                        item.setDouble(3, q * 9.5);
+                        item.addBatch();
+                    }
+                }
+                order.executeBatch();
+                item.executeBatch();
+            }
+            conn.commit();
+        }
+
+        Map<String, List<OrderItem>> byOrder = new OrderItemDAO(null).getOrderItemsByOrderIds(orderIds);
+
+        assertFalse(byOrder.containsKey("bulk-0"));
+        assertEquals(orderCount - (orderCount + 2) / 3, byOrder.size());
+        List<OrderItem> last = byOrder.get("bulk-" + (orderCount - 1));
+        assertEquals(2, last.size());
+        assertEquals(1, last.get(0).getQty().intValue());
+        assertEquals(2, last.get(1).getQty().intValue());
+        assertEquals("Burger", last.get(1).getMenuItem().getName());
+    }
 }
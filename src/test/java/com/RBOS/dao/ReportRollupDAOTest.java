@@ -0,0 +1,129 @@
+package com.RBOS.dao;
+
+import static org.junit.Assert.*;
+
+import com.RBOS.utils.DatabaseConnection;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReportRollupDAOTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private ReportRollupDAO rollupDAO;
+
+    @Before
+    public void setupDb() throws Exception {
+        // an empty file is rebuilt from schema.sql, seed orders and reservations included
+        Path db = tempDir.newFile("rollups.db").toPath();
+        System.setProperty("RBOS_DB", db.toString());
+        rollupDAO = new ReportRollupDAO(null);
+    }
+
+    @Test
+    public void seedDataIsBackfilledWhenRollupsAreCreated() throws Exception {
+        assertRollupsMatchBaseTables();
+        assertTrue((Long) rollupDAO.getOrderTotals(null, null, null).get("orderCount") > 0);
+        assertTrue((Long) rollupDAO.getReservationTotals(null, null, null).get("reservationCount") > 0);
+    }
+
+    @Test
+    public void writesKeepRollupsInStepWithBaseTables() throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection(null); Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO orders (order_id, source, status, total, created_utc) " +
+                    "VALUES ('r1', 'phone', 'placed', 40.0, '2030-05-01T12:00:00Z')");
+            stmt.execute("INSERT INTO orders (order_id, source, status, total, created_utc) " +
+                    "VALUES ('r2', 'web', 'paid', 10.0, '2030-05-02T12:00:00Z')");
+            stmt.execute("INSERT INTO order_items (order_item_id, order_id, item_id, qty, unit_price, line_total) " +
+                    "VALUES ('ri1', 'r1', '1', 2, 12.5, 25.0), ('ri2', 'r1', '3', 1, 8.75, 8.75), " +
+                    "('ri3', 'r2', '1', 1, 12.5, 12.5)");
+
+            // status and day changes move the order and all of its items
+            stmt.execute("UPDATE orders SET status = 'paid', total = 35.0 WHERE order_id = 'r1'");
+            stmt.execute("UPDATE orders SET created_utc = '2030-05-03T09:00:00Z' WHERE order_id = 'r1'");
+            stmt.execute("UPDATE order_items SET qty = 3, line_total = 37.5 WHERE order_item_id = 'ri1'");
+            stmt.execute("DELETE FROM order_items WHERE order_item_id = 'ri2'");
+            // cascading delete removes the items' contribution as well
+            stmt.execute("DELETE FROM orders WHERE order_id = 'r2'");
+
+            stmt.execute("INSERT INTO reservations (reservation_id, table_id, start_utc, end_utc, party_size, status) " +
+                    "VALUES ('rr1', '1', '2030-05-01T18:00:00Z', '2030-05-01T20:00:00Z', 2, 'pending'), " +
+                    "('rr2', '3', '2030-05-01T19:00:00Z', '2030-05-01T21:00:00Z', 4, 'pending')");
+            stmt.execute("UPDATE reservations SET status = 'confirmed', party_size = 3 WHERE reservation_id = 'rr1'");
+            stmt.execute("DELETE FROM reservations WHERE reservation_id = 'rr2'");
+        }
+
+        assertRollupsMatchBaseTables();
+
+        Map<String, Object> may3 = rollupDAO.getOrderTotals("2030-05-03", "2030-05-03", "paid");
+        assertEquals(1L, may3.get("orderCount"));
+        assertEquals(35.0, (Double) may3.get("revenue"), 0.001);
+        assertEquals(0L, rollupDAO.getOrderTotals("2030-05-01", "2030-05-02", null).get("orderCount"));
+
+        List<Map<String, Object>> daily = rollupDAO.getDailyOrderTotals("2030-01-01", "paid");
+        assertEquals(1, daily.size());
+        assertEquals("2030-05-03", daily.get(0).get("date"));
+
+        Map<String, Object> reservations = rollupDAO.getReservationTotals("2030-05-01", "2030-05-01", null);
+        assertEquals(1L, reservations.get("reservationCount"));
+        assertEquals(3L, reservations.get("guestCount"));
+        assertEquals(Long.valueOf(1), rollupDAO.getDailyReservationCounts("2030-05-01").get("2030-05-01"));
+    }
+
+    @Test
+    public void rebuildRecomputesFromBaseTables() throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection(null); Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM rollup_orders_daily");
+            stmt.execute("UPDATE rollup_reservations_daily SET reservation_count = 99");
+        }
+
+        rollupDAO.rebuild();
+
+        assertRollupsMatchBaseTables();
+    }
+
+    private void assertRollupsMatchBaseTables() throws Exception {
+        assertEquals(
+                rows("SELECT substr(created_utc, 1, 10), status, source, COUNT(*), ROUND(SUM(total), 2) " +
+                        "FROM orders GROUP BY 1, 2, 3 ORDER BY 1, 2, 3"),
+                rows("SELECT day, status, source, order_count, ROUND(revenue, 2) FROM rollup_orders_daily " +
+                        "WHERE order_count <> 0 ORDER BY 1, 2, 3"));
+        assertEquals(
+                rows("SELECT substr(o.created_utc, 1, 10), o.status, oi.item_id, SUM(oi.qty), ROUND(SUM(oi.line_total), 2) " +
+                        "FROM order_items oi JOIN orders o ON o.order_id = oi.order_id GROUP BY 1, 2, 3 ORDER BY 1, 2, 3"),
+                rows("SELECT day, status, item_id, quantity, ROUND(revenue, 2) FROM rollup_order_items_daily " +
+                        "WHERE quantity <> 0 ORDER BY 1, 2, 3"));
+        assertEquals(
+                rows("SELECT substr(start_utc, 1, 10), status, party_size, COUNT(*) " +
+                        "FROM reservations GROUP BY 1, 2, 3 ORDER BY 1, 2, 3"),
+                rows("SELECT day, status, party_size, reservation_count FROM rollup_reservations_daily " +
+                        "WHERE reservation_count <> 0 ORDER BY 1, 2, 3"));
+    }
+
+    private List<String> rows(String sql) throws Exception {
+        List<String> rows = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection(null);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 1; i <= columns; i++) {
+                    row.append(rs.getString(i)).append('|');
+                }
+                rows.add(row.toString());
+            }
+        }
+        return rows;
+    }
+}
@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 import com.RBOS.models.PagedResult;
 import com.RBOS.models.Reservation;
 import com.RBOS.utils.DatabaseConnection;
+import com.RBOS.utils.HistoryValidation;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -71,14 +72,44 @@ public class ReservationDAOFiltersTest {
         assertEquals("res-1", pageTwo.getItems().get(0).getReservationId());
     }
 
+    @Test
+    public void cursorPagingWalksForwardAndBackWithoutRecounting() throws Exception {
+        PagedResult<Reservation> first = reservationDAO.getReservationsPage("all", null, null, null, null, 2);
+        assertEquals(3, first.getTotal());
+        assertEquals(1, first.getPage());
+        assertEquals("res-3", first.getItems().get(0).getReservationId());
+        assertEquals("res-2", first.getItems().get(1).getReservationId());
+        assertNull(first.getPrevCursor());
+        assertNotNull(first.getNextCursor());
+
+        // rows added after the first page do not shift later pages, and the total is carried over
+        try (Connection conn = DatabaseConnection.getConnection(null); Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO reservations (reservation_id, table_id, start_utc, end_utc, party_size, status) "
+                    + "VALUES ('res-new', 'table-1', '2030-01-01T18:00:00Z', '2030-01-01T20:00:00Z', 2, 'pending')");
+        }
+        PagedResult<Reservation> second = reservationDAO.getReservationsPage("all", null, null, null,
+                HistoryValidation.parseCursor(first.getNextCursor()), 2);
+        assertEquals(3, second.getTotal());
+        assertEquals(2, second.getPage());
+        assertEquals(1, second.getItems().size());
+        assertEquals("res-1", second.getItems().get(0).getReservationId());
+        assertNull(second.getNextCursor());
+
+        PagedResult<Reservation> back = reservationDAO.getReservationsPage("all", null, null, null,
+                HistoryValidation.parseCursor(second.getPrevCursor()), 2);
+        assertEquals(1, back.getPage());
+        assertEquals("res-3", back.getItems().get(0).getReservationId());
+        assertEquals("res-2", back.getItems().get(1).getReservationId());
+    }
+
     private void createTables(Connection conn) throws Exception {
         try (Statement stmt = conn.createStatement()) {
             stmt.execute("DROP TABLE IF EXISTS reservations");
             stmt.execute("DROP TABLE IF EXISTS dining_tables");
             stmt.execute("DROP TABLE IF EXISTS users");
             stmt.execute("CREATE TABLE users (user_id TEXT PRIMARY KEY, role TEXT, full_name TEXT, email TEXT, phone TEXT, password_hash TEXT)");
-            stmt.execute("CREATE TABLE dining_tables (table_id TEXT PRIMARY KEY, name TEXT, capacity INTEGER)");
-            stmt.execute("CREATE TABLE reservations (reservation_id TEXT PRIMARY KEY, user_id TEXT, guest_name TEXT, table_id TEXT, start_utc TEXT, end_utc TEXT, party_size INTEGER, status TEXT, notes TEXT, created_utc TEXT, FOREIGN KEY (user_id) REFERENCES users(user_id), FOREIGN KEY (table_id) REFERENCES dining_tables(table_id))");
+            stmt.execute("CREATE TABLE dining_tables (table_id TEXT PRIMARY KEY, name TEXT, capacity INTEGER, base_price REAL, pos_x REAL, pos_y REAL)");
+            stmt.execute("CREATE TABLE reservations (reservation_id TEXT PRIMARY KEY, user_id TEXT, guest_name TEXT, contact_email TEXT, contact_phone TEXT, table_id TEXT, start_utc TEXT, end_utc TEXT, party_size INTEGER, status TEXT, notes TEXT, created_utc TEXT, FOREIGN KEY (user_id) REFERENCES users(user_id), FOREIGN KEY (table_id) REFERENCES dining_tables(table_id))");
         }
     }
 
@@ -112,4 +112,27 @@ public class UserDAOTest {
         User reloaded = dao.getUserById(userId);
         assertTrue(UserDAO.passwordMatches("NewPass99", reloaded.getPasswordHash()));
     }
+
+    @Test
+    public void writesInvalidateCachedLookups() throws Exception {
+        UserDAO dao = new UserDAO(null);
+        User user = new User();
+        user.setFullName("Cached User");
+        user.setEmail("cached@example.com");
+        String userId = dao.createUser(user);
+
+        assertEquals("Cached User", dao.getUserById(userId).getFullName());
+        assertEquals(userId, dao.getUserByEmail("cached@example.com").getUserId());
+
+        dao.updateProfile(userId, "Renamed User", "renamed@example.com", null, null, null, null, null, null);
+        assertEquals("Renamed User", dao.getUserById(userId).getFullName());
+        assertNull(dao.getUserByEmail("cached@example.com"));
+        assertEquals(userId, dao.getUserByEmail("renamed@example.com").getUserId());
+
+        dao.setPassword(userId, "newPass123");
+        assertTrue(UserDAO.passwordMatches("newPass123", dao.getUserById(userId).getPasswordHash()));
+
+        dao.deleteUser(userId);
+        assertNull(dao.getUserById(userId));
+    }
 }
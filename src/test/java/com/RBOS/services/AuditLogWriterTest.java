@@ -0,0 +1,177 @@
+package com.RBOS.services;
+
+import static org.junit.Assert.*;
+
+import com.RBOS.dao.AuditLogDAO;
+import com.RBOS.models.AuditLog;
+import com.RBOS.utils.DatabaseConnection;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AuditLogWriterTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void rowsQueuedDuringACommitGoOutAsOneBatch() throws Exception {
+        RecordingDAO dao = new RecordingDAO();
+        AuditLogWriter writer = new AuditLogWriter(dao, AuditLogWriter.Durability.ASYNC, 100, 50);
+        writer.start();
+
+        writer.write(log("first"));
+        assertTrue(dao.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 9; i++) {
+            writer.write(log("queued-" + i));
+        }
+        assertEquals(9, writer.getStats().get("queueDepth"));
+
+        dao.release.countDown();
+        writer.flush();
+
+        assertEquals(List.of(1, 9), dao.batchSizes);
+        assertEquals(10L, writer.getStats().get("written"));
+        writer.stop();
+    }
+
+    @Test
+    public void fullQueueFallsBackToWritingInline() throws Exception {
+        RecordingDAO dao = new RecordingDAO();
+        AuditLogWriter writer = new AuditLogWriter(dao, AuditLogWriter.Durability.ASYNC, 2, 50);
+        writer.start();
+
+        writer.write(log("first"));
+        assertTrue(dao.entered.await(5, TimeUnit.SECONDS));
+        writer.write(log("a"));
+        writer.write(log("b"));
+        writer.write(log("overflow"));
+
+        Map<String, Object> stats = writer.getStats();
+        assertEquals(1L, stats.get("overflowWrites"));
+        assertEquals(2, stats.get("queueDepth"));
+
+        dao.release.countDown();
+        writer.stop();
+        assertEquals(4L, writer.getStats().get("written"));
+        assertEquals(0, writer.getStats().get("queueDepth"));
+    }
+
+    @Test
+    public void groupCommitReturnsOnlyOnceTheRowIsStored() throws Exception {
+        System.setProperty("RBOS_DB", tempDir.newFile("audit-writer.db").toPath().toString());
+        AuditLogWriter writer = new AuditLogWriter(new AuditLogDAO(null), AuditLogWriter.Durability.GROUP, 100, 50);
+        writer.start();
+        try {
+            List<Thread> threads = new ArrayList<>();
+            List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 10; i++) {
+                            writer.write(log("t" + thread + "-" + i));
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertTrue(errors.toString(), errors.isEmpty());
+            // every caller has returned, so every row must already be committed
+            try (Connection conn = DatabaseConnection.getConnection(null); Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM audit_log WHERE entity_type = 'order'")) {
+                assertEquals(80, rs.getInt(1));
+            }
+            assertEquals(80L, writer.getStats().get("written"));
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void aBadRowOnlyFailsItsOwnCaller() throws Exception {
+        System.setProperty("RBOS_DB", tempDir.newFile("audit-poison.db").toPath().toString());
+        RecordingDAO blocker = new RecordingDAO();
+        AuditLogDAO real = new AuditLogDAO(null);
+        AuditLogDAO dao = new AuditLogDAO(null) {
+            @Override
+            public void insertBatch(List<AuditLog> logs) throws SQLException {
+                blocker.insertBatch(logs);
+                real.insertBatch(logs);
+            }
+        };
+        AuditLogWriter writer = new AuditLogWriter(dao, AuditLogWriter.Durability.ASYNC, 100, 50);
+        writer.start();
+        try {
+            writer.write(log("first"));
+            assertTrue(blocker.entered.await(5, TimeUnit.SECONDS));
+            writer.write(log("good-1"));
+            writer.write(new AuditLog("bad", "not-an-entity", "1", "create", "1", "Admin", null, null,
+                    "2025-01-01T00:00:00.000Z"));
+            writer.write(log("good-2"));
+            blocker.release.countDown();
+            writer.flush();
+
+            assertEquals(1L, writer.getStats().get("dropped"));
+            try (Connection conn = DatabaseConnection.getConnection(null); Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM audit_log WHERE entity_type = 'order'")) {
+                assertEquals(3, rs.getInt(1));
+            }
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void durabilityParsesKnownModes() {
+        assertEquals(AuditLogWriter.Durability.SYNC, AuditLogWriter.Durability.parse("sync"));
+        assertEquals(AuditLogWriter.Durability.ASYNC, AuditLogWriter.Durability.parse(" ASYNC "));
+        assertEquals(AuditLogWriter.Durability.GROUP, AuditLogWriter.Durability.parse("group-commit"));
+        assertEquals(AuditLogWriter.Durability.GROUP, AuditLogWriter.Durability.parse(null));
+        assertEquals(AuditLogWriter.Durability.GROUP, AuditLogWriter.Durability.parse("fsync"));
+    }
+
+    private static AuditLog log(String id) {
+        return new AuditLog(id, "order", "1", "create", "1", "Admin", null, null, "2025-01-01T00:00:00.000Z");
+    }
+
+    // Blocks the first batch until released, so later writes pile up behind it
+    private static class RecordingDAO extends AuditLogDAO {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+        RecordingDAO() {
+            super(null);
+        }
+
+        @Override
+        public void insertBatch(List<AuditLog> logs) throws SQLException {
+            if (entered.getCount() > 0) {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            batchSizes.add(logs.size());
+        }
+    }
+}
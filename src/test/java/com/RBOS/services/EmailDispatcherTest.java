@@ -0,0 +1,214 @@
+package com.RBOS.services;
+
+import static org.junit.Assert.*;
+
+import com.RBOS.dao.EmailOutboxDAO;
+import com.RBOS.models.OutboxEmail;
+import com.RBOS.utils.DatabaseConnection;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EmailDispatcherTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private EmailOutboxDAO outbox;
+    private FakeSmtpServer smtp;
+
+    @Before
+    public void setup() throws Exception {
+        Path db = tempDir.newFile("outbox.db").toPath();
+        System.setProperty("RBOS_DB", db.toString());
+        outbox = new EmailOutboxDAO(null);
+        smtp = new FakeSmtpServer();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        smtp.close();
+    }
+
+    @Test
+    public void batchIsSentOverOneConnection() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            outbox.enqueue("guest" + i + "@example.com", "Hello " + i, "<p>hi</p>");
+        }
+
+        EmailDispatcher dispatcher = dispatcher(smtp.getPort());
+        assertEquals(5, dispatcher.drainOnce());
+
+        assertEquals(1, smtp.connections.get());
+        assertEquals(5, smtp.recipients.size());
+        assertEquals(5L, (long) outbox.countByStatus().get("sent"));
+        assertEquals(0, dispatcher.drainOnce());
+        assertEquals(1L, dispatcher.getStats().get("connectionsOpened"));
+    }
+
+    @Test
+    public void rejectedRecipientIsDeadLetteredWithoutBlockingTheBatch() throws Exception {
+        long good = outbox.enqueue("guest@example.com", "Hi", "<p>hi</p>");
+        long bad = outbox.enqueue("bounce@example.com", "Hi", "<p>hi</p>");
+
+        dispatcher(smtp.getPort()).drainOnce();
+
+        assertEquals("sent", outbox.getEmailById(good).getStatus());
+        OutboxEmail rejected = outbox.getEmailById(bad);
+        assertEquals("dead", rejected.getStatus());
+        assertEquals(1, rejected.getAttempts());
+        assertNotNull(rejected.getLastError());
+    }
+
+    @Test
+    public void unreachableServerDefersTheBatchWithoutChargingAttempts() throws Exception {
+        int closedPort = smtp.getPort();
+        smtp.close();
+        long first = outbox.enqueue("guest1@example.com", "Hi", "<p>hi</p>");
+        long second = outbox.enqueue("guest2@example.com", "Hi", "<p>hi</p>");
+        EmailDispatcher dispatcher = dispatcher(closedPort);
+
+        assertEquals(2, dispatcher.drainOnce());
+        // one failed connect defers the whole batch instead of one per email
+        assertEquals(1L, dispatcher.getStats().get("deferredBatches"));
+        assertEquals(0L, dispatcher.getStats().get("failedAttempts"));
+        OutboxEmail deferred = outbox.getEmailById(first);
+        assertEquals("pending", deferred.getStatus());
+        assertEquals(0, deferred.getAttempts());
+        assertNotNull(deferred.getLastError());
+        // backed off, so not due again yet
+        assertEquals(0, dispatcher.drainOnce());
+
+        // an outage longer than every retry still dead-letters nothing
+        for (int outage = 2; outage <= EmailDispatcher.MAX_ATTEMPTS + 2; outage++) {
+            makeDue();
+            dispatcher.drainOnce();
+        }
+        for (long id : new long[] {first, second}) {
+            OutboxEmail email = outbox.getEmailById(id);
+            assertEquals("pending", email.getStatus());
+            assertEquals(0, email.getAttempts());
+        }
+        assertEquals(0L, dispatcher.getStats().get("deadLettered"));
+    }
+
+    @Test
+    public void enqueuedEmailRollsBackWithItsTransaction() throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection(null)) {
+            conn.setAutoCommit(false);
+            outbox.enqueue(conn, "guest@example.com", "Hi", "<p>hi</p>");
+            conn.rollback();
+            conn.setAutoCommit(true);
+        }
+        assertEquals(0L, (long) outbox.countByStatus().get("pending"));
+    }
+
+    @Test
+    public void backoffDoublesUpToTheCap() {
+        assertEquals(30, EmailDispatcher.backoff(1).getSeconds());
+        assertEquals(60, EmailDispatcher.backoff(2).getSeconds());
+        assertEquals(3600, EmailDispatcher.backoff(12).getSeconds());
+    }
+
+    private EmailDispatcher dispatcher(int port) {
+        EmailConfig config = new EmailConfig();
+        config.setHost("127.0.0.1");
+        config.setPort(port);
+        config.setAuth(false);
+        config.setStarttls(false);
+        config.setUsername("kitchen@example.com");
+        return new EmailDispatcher(outbox, config, EmailDispatcher.DEFAULT_BATCH_SIZE, 1_000);
+    }
+
+    private void makeDue() throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection(null); Statement stmt = conn.createStatement()) {
+            stmt.execute("UPDATE email_outbox SET next_attempt_utc = '2000-01-01T00:00:00.000Z'");
+        }
+    }
+
+    // Minimal SMTP stand-in: accepts everything except recipients starting with "bounce"
+    private static class FakeSmtpServer implements AutoCloseable {
+        final ServerSocket server;
+        final AtomicInteger connections = new AtomicInteger();
+        final List<String> recipients = new CopyOnWriteArrayList<>();
+
+        FakeSmtpServer() throws Exception {
+            server = new ServerSocket(0);
+            Thread acceptor = new Thread(this::acceptLoop, "fake-smtp");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int getPort() {
+            return server.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            while (!server.isClosed()) {
+                try (Socket socket = server.accept()) {
+                    connections.incrementAndGet();
+                    handle(socket);
+                } catch (Exception e) {
+                    // closed
+                }
+            }
+        }
+
+        private void handle(Socket socket) throws Exception {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            reply(out, "220 fake ESMTP");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase();
+                if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                    reply(out, "250 fake");
+                } else if (command.startsWith("RCPT TO:")) {
+                    if (command.contains("<BOUNCE")) {
+                        reply(out, "550 No such user");
+                    } else {
+                        recipients.add(line.substring(8).trim());
+                        reply(out, "250 OK");
+                    }
+                } else if (command.startsWith("DATA")) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        // discard body
+                    }
+                    reply(out, "250 Queued");
+                } else if (command.startsWith("QUIT")) {
+                    reply(out, "221 Bye");
+                    return;
+                } else {
+                    // MAIL FROM, RSET, NOOP
+                    reply(out, "250 OK");
+                }
+            }
+        }
+
+        private void reply(PrintWriter out, String line) {
+            out.print(line + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws Exception {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.RBOS.services;
+
+import static org.junit.Assert.*;
+
+import com.RBOS.dao.IdempotencyKeyDAO;
+import com.RBOS.models.IdempotencyRecord;
+import com.RBOS.utils.DatabaseConnection;
+import java.sql.Connection;
+import java.sql.Statement;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IdempotencyStoreTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private IdempotencyStore store;
+
+    @Before
+    public void setup() throws Exception {
+        System.setProperty("RBOS_DB", tempDir.newFile("idempotency.db").toPath().toString());
+        store = new IdempotencyStore(new IdempotencyKeyDAO(null));
+    }
+
+    @Test
+    public void concurrentRetryIsToldTheFirstIsStillRunning() throws Exception {
+        String hash = IdempotencyStore.fingerprint("u1", "{}");
+        try (IdempotencyStore.Claim first = store.claim("k1", hash)) {
+            assertEquals(IdempotencyStore.Status.NEW, first.getStatus());
+            try (IdempotencyStore.Claim second = store.claim("k1", hash)) {
+                assertEquals(IdempotencyStore.Status.IN_PROGRESS, second.getStatus());
+            }
+        }
+        // nothing was recorded, so the key can be tried again
+        try (IdempotencyStore.Claim again = store.claim("k1", hash)) {
+            assertEquals(IdempotencyStore.Status.NEW, again.getStatus());
+        }
+    }
+
+    @Test
+    public void committedResultIsReplayedOnlyForTheSameRequest() throws Exception {
+        String hash = IdempotencyStore.fingerprint("u1", "{\"qty\":1}");
+        try (IdempotencyStore.Claim claim = store.claim("k2", hash);
+             Connection conn = DatabaseConnection.getConnection(null)) {
+            claim.record(conn, 201, "{\"orderId\":\"o1\"}", "o1");
+            claim.committed();
+        }
+
+        try (IdempotencyStore.Claim retry = store.claim("k2", hash)) {
+            assertEquals(IdempotencyStore.Status.REPLAY, retry.getStatus());
+            assertEquals("{\"orderId\":\"o1\"}", retry.getRecord().getResponseBody());
+        }
+        try (IdempotencyStore.Claim otherUser = store.claim("k2", IdempotencyStore.fingerprint("u2", "{\"qty\":1}"))) {
+            assertEquals(IdempotencyStore.Status.MISMATCH, otherUser.getStatus());
+        }
+        assertEquals(1L, store.getStats().get("replayed"));
+        assertEquals(1L, store.getStats().get("mismatched"));
+    }
+
+    @Test
+    public void recordWrittenByAnotherServerIsFoundInTheTable() throws Exception {
+        String hash = IdempotencyStore.fingerprint(null, "{}");
+        try (Connection conn = DatabaseConnection.getConnection(null)) {
+            new IdempotencyKeyDAO(null).insert(conn, new IdempotencyRecord("k3", hash, 201, "{}", "o3",
+                    "2999-01-01T00:00:00.000Z"));
+        }
+
+        try (IdempotencyStore.Claim claim = store.claim("k3", hash)) {
+            assertEquals(IdempotencyStore.Status.REPLAY, claim.getStatus());
+            assertEquals("o3", claim.getRecord().getOrderId());
+        }
+    }
+
+    @Test
+    public void expiredKeysAreForgotten() throws Exception {
+        String hash = IdempotencyStore.fingerprint(null, "{}");
+        try (Connection conn = DatabaseConnection.getConnection(null)) {
+            new IdempotencyKeyDAO(null).insert(conn, new IdempotencyRecord("k4", hash, 201, "{}", "o4",
+                    "2000-01-01T00:00:00.000Z"));
+        }
+
+        try (IdempotencyStore.Claim claim = store.claim("k4", hash)) {
+            assertEquals(IdempotencyStore.Status.NEW, claim.getStatus());
+        }
+        try (Connection conn = DatabaseConnection.getConnection(null); Statement stmt = conn.createStatement()) {
+            assertEquals(0, stmt.executeQuery("SELECT COUNT(*) FROM idempotency_keys").getInt(1));
+        }
+    }
+}
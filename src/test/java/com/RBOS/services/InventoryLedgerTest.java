@@ -0,0 +1,168 @@
+package com.RBOS.services;
+
+import static org.junit.Assert.*;
+
+import com.RBOS.dao.InventoryDAO;
+import com.RBOS.models.Inventory;
+import com.RBOS.models.Unit;
+import com.RBOS.utils.DatabaseConnection;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InventoryLedgerTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private InventoryDAO inventoryDAO;
+    private InventoryLedger ledger;
+
+    @Before
+    public void setup() throws Exception {
+        Path db = tempDir.newFile("ledger.db").toPath();
+        System.setProperty("RBOS_DB", db.toString());
+        try (Connection conn = DatabaseConnection.getConnection(null); Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM inventory");
+        }
+        inventoryDAO = new InventoryDAO(null);
+        inventoryDAO.createInventory(inventory("burger", 10));
+        inventoryDAO.createInventory(inventory("fries", 1));
+        ledger = new InventoryLedger(inventoryDAO);
+    }
+
+    @Test
+    public void reservationIsAllOrNothing() throws Exception {
+        InventoryLedger.Reservation failed = ledger.reserve(Map.of("burger", 2, "fries", 2));
+
+        assertFalse(failed.isSuccessful());
+        assertEquals(1, failed.getProblems().size());
+        assertTrue(failed.getProblems().get(0).contains("Insufficient stock for: fries"));
+        assertEquals(Integer.valueOf(10), ledger.getAvailable("burger"));
+
+        assertFalse(ledger.reserve(Map.of("unknown", 1)).isSuccessful());
+    }
+
+    @Test
+    public void concurrentCheckoutsNeverOversell() throws Exception {
+        int buyers = 25;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < buyers; i++) {
+            Callable<Boolean> buy = () -> {
+                start.await();
+                InventoryLedger.Reservation reservation = ledger.reserve(Map.of("burger", 1));
+                if (reservation.isSuccessful()) {
+                    reservation.confirm();
+                }
+                return reservation.isSuccessful();
+            };
+            results.add(pool.submit(buy));
+        }
+        start.countDown();
+
+        int sold = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) {
+                sold++;
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(10, sold);
+        assertEquals(Integer.valueOf(0), ledger.getAvailable("burger"));
+        // write-behind: the table only changes on flush
+        assertEquals(Integer.valueOf(10), inventoryDAO.getInventoryByItemId("burger").getQtyOnHand());
+        ledger.flush();
+        assertEquals(Integer.valueOf(0), inventoryDAO.getInventoryByItemId("burger").getQtyOnHand());
+    }
+
+    @Test
+    public void releasedReservationsReturnStock() throws Exception {
+        InventoryLedger.Reservation reservation = ledger.reserve(Map.of("fries", 1));
+        assertEquals(Integer.valueOf(0), ledger.getAvailable("fries"));
+
+        reservation.release();
+        // confirming after release must not take the stock again
+        reservation.confirm();
+        assertEquals(Integer.valueOf(1), ledger.getAvailable("fries"));
+    }
+
+    @Test
+    public void directUpdatesFlushPendingStockAndReload() throws Exception {
+        ledger.reserve(Map.of("burger", 3)).confirm();
+
+        ledger.update(Collections.singleton("burger"), () -> {
+            // the pending decrement is already in the table when the write runs
+            assertEquals(Integer.valueOf(7), inventoryDAO.getInventoryByItemId("burger").getQtyOnHand());
+            return inventoryDAO.updateInventoryQuantity("burger", 20);
+        });
+
+        assertEquals(Integer.valueOf(20), ledger.getAvailable("burger"));
+        assertEquals(3L, ledger.getStats().get("unitsFlushed"));
+    }
+
+    @Test
+    public void relinkThroughUpdateMovesTheStockToTheNewItem() throws Exception {
+        ledger.reserve(Map.of("burger", 3)).confirm();
+
+        ledger.update(Arrays.asList("burger", "fries"), () -> {
+            try (Connection conn = DatabaseConnection.getConnection(null); Statement stmt = conn.createStatement()) {
+                stmt.execute("DELETE FROM inventory WHERE item_id = 'fries'");
+            }
+            return inventoryDAO.linkInventoryById("inv-burger", "fries");
+        });
+
+        assertNull(ledger.getAvailable("burger"));
+        assertEquals(Integer.valueOf(7), ledger.getAvailable("fries"));
+        assertFalse(ledger.reserve(Map.of("burger", 1)).isSuccessful());
+    }
+
+    @Test
+    public void flushThatMatchesNoRowReloadsTheEntry() throws Exception {
+        ledger.reserve(Map.of("burger", 3)).confirm();
+        // unlinked behind the ledger's back
+        try (Connection conn = DatabaseConnection.getConnection(null); Statement stmt = conn.createStatement()) {
+            stmt.execute("UPDATE inventory SET item_id = NULL WHERE item_id = 'burger'");
+        }
+
+        ledger.flush();
+
+        assertNull(ledger.getAvailable("burger"));
+        assertEquals(3L, ledger.getStats().get("unitsUnmatched"));
+        assertEquals(0L, ledger.getStats().get("unitsFlushed"));
+        assertEquals(0L, ledger.getStats().get("pendingUnits"));
+    }
+
+    private Inventory inventory(String itemId, int qty) {
+        Inventory inv = new Inventory();
+        inv.setInventoryId("inv-" + itemId);
+        inv.setItemId(itemId);
+        inv.setName(itemId);
+        inv.setSku(itemId.toUpperCase());
+        inv.setCategory("Dry");
+        inv.setUnit(Unit.each);
+        inv.setPackSize(1);
+        inv.setQtyOnHand(qty);
+        inv.setParLevel(0);
+        inv.setReorderPoint(0);
+        inv.setCost(1.0);
+        inv.setActive(true);
+        return inv;
+    }
+}
@@ -0,0 +1,139 @@
+package com.RBOS.services;
+
+import static org.junit.Assert.*;
+
+import com.RBOS.dao.DiningTableDAO;
+import com.RBOS.dao.ReservationDAO;
+import com.RBOS.models.DiningTable;
+import com.RBOS.models.Reservation;
+import com.RBOS.utils.DatabaseConnection;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TableAvailabilityIndexTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private DiningTableDAO tableDAO;
+    private ReservationDAO reservationDAO;
+    private String twoTop;
+    private String sixTop;
+
+    @Before
+    public void setup() throws Exception {
+        Path db = tempDir.newFile("availability.db").toPath();
+        System.setProperty("RBOS_DB", db.toString());
+        try (Connection conn = DatabaseConnection.getConnection(null); Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM reservations");
+            stmt.execute("DELETE FROM dining_tables");
+        }
+        tableDAO = new DiningTableDAO(null);
+        reservationDAO = new ReservationDAO(null);
+        twoTop = tableDAO.createTable(new DiningTable(null, "Two Top", 2));
+        sixTop = tableDAO.createTable(new DiningTable(null, "Six Top", 6));
+    }
+
+    @Test
+    public void overlappingWindowsConflictButBackToBackDoesNot() throws Exception {
+        assertNotNull(reservationDAO.createReservation(reservation(sixTop, "10:00", "11:00")));
+
+        assertFalse(reservationDAO.isTableAvailable(sixTop, at("10:30"), at("11:30"), null));
+        assertFalse(reservationDAO.isTableAvailable(sixTop, at("09:00"), at("12:00"), null));
+        assertTrue(reservationDAO.isTableAvailable(sixTop, at("11:00"), at("12:00"), null));
+        assertTrue(reservationDAO.isTableAvailable(sixTop, at("09:00"), at("10:00"), null));
+        assertTrue(reservationDAO.isTableAvailable(twoTop, at("10:00"), at("11:00"), null));
+        assertNull(reservationDAO.createReservation(reservation(sixTop, "10:59", "11:30")));
+    }
+
+    @Test
+    public void concurrentBookingsOfTheSameSlotOnlyOneWins() throws Exception {
+        int guests = 12;
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < guests; i++) {
+            Callable<String> book = () -> {
+                start.await();
+                return reservationDAO.createReservation(reservation(twoTop, "19:00", "20:30"));
+            };
+            results.add(pool.submit(book));
+        }
+        start.countDown();
+
+        int booked = 0;
+        for (Future<String> result : results) {
+            if (result.get() != null) {
+                booked++;
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(1, booked);
+        try (Connection conn = DatabaseConnection.getConnection(null); Statement stmt = conn.createStatement();
+                var rs = stmt.executeQuery("SELECT COUNT(*) FROM reservations")) {
+            assertEquals(1, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void cancellingFreesTheSlotAndReactivatingIsChecked() throws Exception {
+        String first = reservationDAO.createReservation(reservation(sixTop, "18:00", "19:00"));
+        assertTrue(reservationDAO.updateReservationStatus(first, "cancelled"));
+        assertTrue(reservationDAO.isTableAvailable(sixTop, at("18:00"), at("19:00"), null));
+
+        assertNotNull(reservationDAO.createReservation(reservation(sixTop, "18:30", "19:30")));
+        // the cancelled booking cannot come back over the new one
+        assertFalse(reservationDAO.updateReservationStatus(first, "confirmed"));
+        assertEquals("cancelled", reservationDAO.getReservationById(first).getStatus());
+    }
+
+    @Test
+    public void availableTablesAreServedFromTheIndex() throws Exception {
+        reservationDAO.createReservation(reservation(sixTop, "12:00", "13:00"));
+        tableDAO.getAvailableTables(at("12:00"), at("13:00"), 2);
+
+        long statements = statementCount();
+        List<DiningTable> free = tableDAO.getAvailableTables(at("12:15"), at("12:45"), 2);
+        assertEquals(statements, statementCount());
+        assertEquals(1, free.size());
+        assertEquals(twoTop, free.get(0).getTableId());
+
+        // a capacity change reloads the index
+        DiningTable small = tableDAO.getTableById(twoTop);
+        small.setCapacity(1);
+        tableDAO.updateTable(small);
+        assertTrue(tableDAO.getAvailableTables(at("12:15"), at("12:45"), 2).isEmpty());
+    }
+
+    private Reservation reservation(String tableId, String start, String end) {
+        Reservation reservation = new Reservation();
+        reservation.setTableId(tableId);
+        reservation.setStartUtc(at(start));
+        reservation.setEndUtc(at(end));
+        reservation.setPartySize(2);
+        reservation.setStatus("confirmed");
+        reservation.setGuestName("Guest");
+        return reservation;
+    }
+
+    private String at(String time) {
+        return "2025-03-01T" + time + ":00Z";
+    }
+
+    private long statementCount() throws Exception {
+        return ((Number) DatabaseConnection.getPoolStats(null).get("statements")).longValue();
+    }
+}
@@ -0,0 +1,95 @@
+package com.RBOS.services;
+
+import static org.junit.Assert.*;
+
+import com.RBOS.models.User;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class UserCacheTest {
+
+    @Test
+    public void repeatLookupsByIdOrEmailHitTheCache() throws Exception {
+        UserCache cache = new UserCache(10, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+        UserCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            return user("u1", "a@example.com");
+        };
+
+        assertEquals("u1", cache.getById("u1", loader).getUserId());
+        assertEquals("u1", cache.getById("u1", loader).getUserId());
+        assertEquals("u1", cache.getByEmail("a@example.com", loader).getUserId());
+
+        assertEquals(1, loads.get());
+        assertEquals(2L, cache.getStats().get("hits"));
+        assertEquals(1L, cache.getStats().get("misses"));
+    }
+
+    @Test
+    public void callersCannotChangeTheCachedRow() throws Exception {
+        UserCache cache = new UserCache(10, 60_000);
+        cache.getById("u1", () -> user("u1", "a@example.com")).setFullName("changed by caller");
+        cache.getById("u1", () -> null).setPasswordHash(null);
+
+        User cached = cache.getById("u1", () -> null);
+        assertEquals("Test User", cached.getFullName());
+        assertEquals("hash", cached.getPasswordHash());
+    }
+
+    @Test
+    public void entriesExpireAfterTheTtl() throws Exception {
+        AtomicLong clock = new AtomicLong(1_000);
+        UserCache cache = new UserCache(10, 500, clock::get);
+        AtomicInteger loads = new AtomicInteger();
+        UserCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            return user("u1", "a@example.com");
+        };
+
+        cache.getById("u1", loader);
+        clock.addAndGet(499);
+        cache.getById("u1", loader);
+        clock.addAndGet(1);
+        cache.getById("u1", loader);
+
+        assertEquals(2, loads.get());
+        assertEquals(1L, cache.getStats().get("expirations"));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvictedWithItsEmail() throws Exception {
+        UserCache cache = new UserCache(2, 60_000);
+        cache.getById("u1", () -> user("u1", "one@example.com"));
+        cache.getById("u2", () -> user("u2", "two@example.com"));
+        cache.getById("u1", () -> null);
+        cache.getById("u3", () -> user("u3", "three@example.com"));
+
+        assertEquals(2, cache.getStats().get("size"));
+        assertEquals(1L, cache.getStats().get("evictions"));
+        assertNotNull(cache.getById("u1", () -> null));
+        assertNull(cache.getByEmail("two@example.com", () -> null));
+    }
+
+    @Test
+    public void invalidationDropsTheUserAndDiscardsARacingLoad() throws Exception {
+        UserCache cache = new UserCache(10, 60_000);
+        cache.getById("u1", () -> user("u1", "old@example.com"));
+        cache.invalidate("u1");
+        assertNull(cache.getByEmail("old@example.com", () -> null));
+
+        // a write lands while the row is being read, so the value read may be stale
+        User loaded = cache.getById("u1", () -> {
+            User stale = user("u1", "old@example.com");
+            cache.invalidate("u1");
+            return stale;
+        });
+        assertEquals("old@example.com", loaded.getEmail());
+        assertEquals("new@example.com", cache.getById("u1", () -> user("u1", "new@example.com")).getEmail());
+    }
+
+    private static User user(String id, String email) {
+        return new User(id, "customer", "Test User", email, "555-0100", "hash");
+    }
+}
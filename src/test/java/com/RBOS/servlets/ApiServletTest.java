@@ -0,0 +1,271 @@
+package com.RBOS.servlets;
+
+import static org.junit.Assert.*;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import com.RBOS.utils.Json;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.After;
+import org.junit.Test;
+
+public class ApiServletTest {
+
+    @After
+    public void tearDown() {
+        ApiServlet.shutdownAll();
+        System.clearProperty("RBOS_API_MAX_WRITERS");
+        System.clearProperty("RBOS_API_EXECUTION");
+        System.clearProperty("RBOS_API_MAX_IN_FLIGHT");
+    }
+
+    @Test
+    public void writesQueueBehindTheWriteLimitWhileReadsPass() throws Exception {
+        System.setProperty("RBOS_API_MAX_WRITERS", "1");
+        BlockingServlet servlet = new BlockingServlet();
+        servlet.init(buildServletConfig());
+
+        Thread first = new Thread(() -> call(servlet, "POST", null));
+        Thread second = new Thread(() -> call(servlet, "POST", null));
+        first.start();
+        assertTrue(servlet.entered.await(5, TimeUnit.SECONDS));
+        second.start();
+        waitFor(() -> Integer.valueOf(1).equals(ApiServlet.getStats().get("writersWaiting")));
+
+        // reads never wait for a write permit
+        Map<String, Object> read = call(servlet, "GET", null);
+        assertEquals(HttpServletResponse.SC_OK, read.get("status"));
+
+        servlet.release.countDown();
+        first.join(5_000);
+        second.join(5_000);
+        assertEquals(2, servlet.posts.get());
+        assertEquals(1, servlet.maxConcurrentPosts.get());
+    }
+
+    @Test
+    public void asyncModeRunsRequestsOffTheContainerThread() throws Exception {
+        System.setProperty("RBOS_API_EXECUTION", "async");
+        BlockingServlet servlet = new BlockingServlet();
+        servlet.init(buildServletConfig());
+        servlet.release.countDown();
+
+        CountDownLatch completed = new CountDownLatch(1);
+        call(servlet, "GET", completed);
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertNotNull(servlet.getThread);
+        assertNotSame(Thread.currentThread(), servlet.getThread);
+        assertTrue(ApiServlet.getStats().get("mode").toString().startsWith("async"));
+    }
+
+    @Test
+    public void requestsPastTheInFlightLimitAreTurnedAway() throws Exception {
+        System.setProperty("RBOS_API_EXECUTION", "async");
+        System.setProperty("RBOS_API_MAX_IN_FLIGHT", "1");
+        BlockingServlet servlet = new BlockingServlet();
+        servlet.init(buildServletConfig());
+
+        CountDownLatch firstDone = new CountDownLatch(1);
+        call(servlet, "POST", firstDone);
+        assertTrue(servlet.entered.await(5, TimeUnit.SECONDS));
+
+        Map<String, Object> second = call(servlet, "POST", new CountDownLatch(1));
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, second.get("status"));
+        assertEquals("1", second.get("Retry-After"));
+
+        servlet.release.countDown();
+        assertTrue(firstDone.await(5, TimeUnit.SECONDS));
+        assertEquals(1L, ApiServlet.getStats().get("rejected"));
+    }
+
+    @Test
+    public void rowsAreWrittenAsOneJsonArrayAndEarlyFailuresResetTheResponse() throws Exception {
+        StringWriter body = new StringWriter();
+        Map<String, Object> state = new ConcurrentHashMap<>();
+        HttpServletResponse response = bufferedResponse(body, state);
+
+        ApiServlet.writeJsonArray(response, Json.mapper().writer(), handler -> {
+            for (String row : List.of("a", "b", "c")) {
+                handler.accept(Map.of("id", row));
+            }
+        });
+        assertEquals("[{\"id\":\"a\"},{\"id\":\"b\"},{\"id\":\"c\"}]",
+                body.toString());
+
+        body.getBuffer().setLength(0);
+        try {
+            ApiServlet.writeJsonArray(response, Json.mapper().writer(), handler -> {
+                handler.accept(Map.of("id", "a"));
+                throw new SQLException("disk I/O error");
+            });
+            fail("a failure before the response is committed should reach the caller");
+        } catch (SQLException expected) {
+        }
+        assertEquals(Boolean.TRUE, state.get("reset"));
+        assertEquals("application/json", state.get("contentType"));
+    }
+
+    private static class BlockingServlet extends ApiServlet {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger posts = new AtomicInteger();
+        private final AtomicInteger activePosts = new AtomicInteger();
+        private final AtomicInteger maxConcurrentPosts = new AtomicInteger();
+        private volatile Thread getThread;
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+            getThread = Thread.currentThread();
+        }
+
+        @Override
+        protected void doPost(HttpServletRequest request, HttpServletResponse response) {
+            int active = activePosts.incrementAndGet();
+            maxConcurrentPosts.accumulateAndGet(active, Math::max);
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            posts.incrementAndGet();
+            activePosts.decrementAndGet();
+        }
+    }
+
+    // Runs one request; a non-null latch makes the request async-capable and is counted down on complete()
+    private static Map<String, Object> call(ApiServlet servlet, String method, CountDownLatch completed) {
+        Map<String, Object> state = new ConcurrentHashMap<>();
+        state.put("status", HttpServletResponse.SC_OK);
+
+        AsyncContext async = (AsyncContext) Proxy.newProxyInstance(
+                AsyncContext.class.getClassLoader(),
+                new Class[] {AsyncContext.class},
+                (proxy, m, args) -> {
+                    if ("complete".equals(m.getName())) {
+                        completed.countDown();
+                    }
+                    return null;
+                });
+        HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+                HttpServletRequest.class.getClassLoader(),
+                new Class[] {HttpServletRequest.class},
+                (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getMethod": return method;
+                        case "getDispatcherType": return DispatcherType.REQUEST;
+                        case "isAsyncSupported": return completed != null;
+                        case "startAsync": return async;
+                        case "getProtocol": return "HTTP/1.1";
+                        case "getDateHeader": return -1L;
+                        default: return defaultValue(m.getReturnType());
+                    }
+                });
+        HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(
+                HttpServletResponse.class.getClassLoader(),
+                new Class[] {HttpServletResponse.class},
+                (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "sendError":
+                        case "setStatus":
+                            state.put("status", args[0]);
+                            return null;
+                        case "setHeader":
+                            state.put((String) args[0], args[1]);
+                            return null;
+                        default:
+                            return defaultValue(m.getReturnType());
+                    }
+                });
+
+        try {
+            servlet.service(request, response);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+        return state;
+    }
+
+    // A response that is never committed; written text lands in body once the generator flushes
+    private static HttpServletResponse bufferedResponse(StringWriter body, Map<String, Object> state) {
+        PrintWriter out = new PrintWriter(body);
+        state.put("contentType", "application/json");
+        return (HttpServletResponse) Proxy.newProxyInstance(
+                HttpServletResponse.class.getClassLoader(),
+                new Class[] {HttpServletResponse.class},
+                (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getWriter": return out;
+                        case "getContentType": return state.get("contentType");
+                        case "setContentType":
+                            state.put("contentType", args[0]);
+                            return null;
+                        case "reset":
+                            state.put("reset", true);
+                            state.remove("contentType");
+                            return null;
+                        default: return defaultValue(m.getReturnType());
+                    }
+                });
+    }
+
+    private static ServletConfig buildServletConfig() {
+        ServletContext context = (ServletContext) Proxy.newProxyInstance(
+                ServletContext.class.getClassLoader(),
+                new Class[] {ServletContext.class},
+                (proxy, method, args) -> "getInitParameterNames".equals(method.getName())
+                        ? Collections.emptyEnumeration()
+                        : defaultValue(method.getReturnType()));
+        return (ServletConfig) Proxy.newProxyInstance(
+                ServletConfig.class.getClassLoader(),
+                new Class[] {ServletConfig.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getServletName": return "BlockingServlet";
+                        case "getServletContext": return context;
+                        case "getInitParameterNames": return Collections.emptyEnumeration();
+                        default: return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out waiting", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static Object defaultValue(Class<?> returnType) {
+        if (returnType == null || returnType.equals(Void.TYPE)) {
+            return null;
+        }
+        if (returnType.equals(boolean.class)) {
+            return false;
+        }
+        if (returnType.equals(int.class)) {
+            return 0;
+        }
+        if (returnType.equals(long.class)) {
+            return 0L;
+        }
+        return null;
+    }
+}
@@ -9,18 +9,25 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -104,7 +111,53 @@ public class MenuServletTest {
         assertEquals(HttpServletResponse.SC_NOT_FOUND, byId.status());
     }
 
+    @Test
+    public void menuListsAreServedFromCacheWithConditionalGets() throws Exception {
+        dao.createMenuItem(new MenuItem("m-3", "Soup", "desc", "Starter", 4.0, true, null, "[]"));
+
+        ResponseCapture first = buildResponse();
+        servlet.doGet(buildRequest("/active", "GET", null, Collections.emptyMap()), first.response());
+        String etag = first.header("ETag");
+        assertNotNull(etag);
+        assertTrue(first.body().toString().contains("Soup"));
+
+        // repeat reads and revalidations never reach the database
+        long statements = statementCount();
+        ResponseCapture again = buildResponse();
+        servlet.doGet(buildRequest("/active", "GET", null, Collections.emptyMap(), Map.of("If-None-Match", etag)),
+                again.response());
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, again.status());
+        assertEquals(0, again.bytes().length);
+
+        ResponseCapture zipped = buildResponse();
+        servlet.doGet(buildRequest("/active", "GET", null, Collections.emptyMap(), Map.of("Accept-Encoding", "gzip, br")),
+                zipped.response());
+        assertEquals("gzip", zipped.header("Content-Encoding"));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(zipped.bytes()))) {
+            assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8).contains("Soup"));
+        }
+        assertEquals(statements, statementCount());
+
+        // a DAO write bumps the version, so the old tag no longer matches
+        dao.toggleMenuItemStatus("m-3", false);
+        ResponseCapture changed = buildResponse();
+        servlet.doGet(buildRequest("/active", "GET", null, Collections.emptyMap(), Map.of("If-None-Match", etag)),
+                changed.response());
+        assertEquals(HttpServletResponse.SC_OK, changed.status());
+        assertNotEquals(etag, changed.header("ETag"));
+        assertFalse(changed.body().toString().contains("Soup"));
+    }
+
+    private long statementCount() throws Exception {
+        return ((Number) DatabaseConnection.getPoolStats(null).get("statements")).longValue();
+    }
+
     private HttpServletRequest buildRequest(String pathInfo, String method, String body, Map<String, String> params) {
+        return buildRequest(pathInfo, method, body, params, Collections.emptyMap());
+    }
+
+    private HttpServletRequest buildRequest(String pathInfo, String method, String body, Map<String, String> params,
+            Map<String, String> headers) {
         return (HttpServletRequest) Proxy.newProxyInstance(
                 HttpServletRequest.class.getClassLoader(),
                 new Class[] {HttpServletRequest.class},
@@ -115,6 +168,8 @@ public class MenuServletTest {
                         case "getReader": return new BufferedReader(new StringReader(body != null ? body : ""));
                         case "getParameter":
                             return params.get(args[0]);
+                        case "getHeader":
+                            return headers.get(args[0]);
                         case "getParameterMap":
                             return params;
                         case "getParameterNames":
@@ -147,6 +202,11 @@ public class MenuServletTest {
                             return null;
                         case "getWriter":
                             return state.writer;
+                        case "getOutputStream":
+                            return state.output;
+                        case "setHeader":
+                            state.headers.put((String) args[0], (String) args[1]);
+                            return null;
                         default:
                             return null;
                     }
@@ -197,10 +257,23 @@ public class MenuServletTest {
         String errorMessage;
         StringWriter body = new StringWriter();
         PrintWriter writer = new PrintWriter(body);
+        Map<String, String> headers = new HashMap<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ServletOutputStream output = new ServletOutputStream() {
+            @Override public void write(int b) { bytes.write(b); }
+            @Override public void write(byte[] b, int off, int len) {
+                bytes.write(b, off, len);
+                body.write(new String(b, off, len, StandardCharsets.UTF_8));
+            }
+            @Override public boolean isReady() { return true; }
+            @Override public void setWriteListener(WriteListener listener) {}
+        };
     }
 
     private record ResponseCapture(HttpServletResponse response, StringWriter body, ResponseState state) {
         int status() { return state.status; }
         String errorMessage() { return state.errorMessage != null ? state.errorMessage : ""; }
+        String header(String name) { return state.headers.get(name); }
+        byte[] bytes() { return state.bytes.toByteArray(); }
     }
 }
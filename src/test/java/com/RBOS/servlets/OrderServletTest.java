@@ -251,6 +251,97 @@ public class OrderServletTest {
         assertEquals(Integer.valueOf(1), after.getQtyOnHand());
     }
 
+    @Test
+    public void checkoutPricesLinesFromTheMenuAndStoresThemAll() throws Exception {
+        seedStockedItem("burger-1", 9.5, 10);
+        seedStockedItem("fries-1", 3.0, 10);
+
+        // client prices are ignored in favour of the menu
+        String body = """
+        {
+          "userId":"%s",
+          "source":"web",
+          "status":"placed",
+          "orderItems":[
+            {"itemId":"burger-1","qty":2,"unitPrice":0.01},
+            {"itemId":"fries-1","qty":1,"unitPrice":0.01},
+            {"itemId":"fries-1","qty":0}
+          ]
+        }
+        """.formatted(customerId);
+        ResponseCapture response = buildResponse();
+
+        servlet.doPost(buildPostRequest("/", body, null), response.response());
+
+        assertEquals(HttpServletResponse.SC_CREATED, response.status());
+        Order placed = mapper.readValue(response.body().toString(), Order.class);
+        assertEquals(22.0, placed.getSubtotal(), 0.0001);
+        assertEquals(22.0 * 1.08, placed.getTotal(), 0.0001);
+        assertEquals(customerId, placed.getUserId());
+
+        List<com.RBOS.models.OrderItem> stored = new com.RBOS.dao.OrderItemDAO(null).getOrderItemsByOrderId(placed.getOrderId());
+        assertEquals(2, stored.size());
+        assertEquals(Integer.valueOf(8), com.RBOS.services.InventoryLedger.forContext(null).getAvailable("burger-1"));
+    }
+
+    @Test
+    public void checkoutWithAnUnknownItemWritesNothing() throws Exception {
+        seedStockedItem("burger-2", 9.5, 10);
+        String body = """
+        {"source":"web","status":"placed","orderItems":[
+          {"itemId":"burger-2","qty":1},
+          {"itemId":"no-such-item","qty":1}
+        ]}
+        """;
+        ResponseCapture response = buildResponse();
+
+        servlet.doPost(buildPostRequest("/", body, null), response.response());
+
+        assertEquals(HttpServletResponse.SC_CONFLICT, response.status());
+        assertTrue(response.body().toString().contains("Item not available: no-such-item"));
+        assertNull(new MenuItemDAO(null).getMenuItemById("no-such-item"));
+        assertEquals(Integer.valueOf(10), com.RBOS.services.InventoryLedger.forContext(null).getAvailable("burger-2"));
+    }
+
+    @Test
+    public void checkoutRejectsDeliveryWithoutAnAddress() throws Exception {
+        seedStockedItem("burger-3", 9.5, 10);
+        String body = "{\"fulfillmentType\":\"delivery\",\"orderItems\":[{\"itemId\":\"burger-3\",\"qty\":1}]}";
+        ResponseCapture response = buildResponse();
+
+        servlet.doPost(buildPostRequest("/", body, null), response.response());
+
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.status());
+        assertTrue(response.errorMessage().contains("Delivery address"));
+    }
+
+    @Test
+    public void retriedSubmissionWithTheSameKeyReplaysTheFirstOrder() throws Exception {
+        seedStockedItem("burger-4", 9.5, 10);
+        String body = "{\"orderItems\":[{\"itemId\":\"burger-4\",\"qty\":3}]}";
+        Map<String, String> headers = Map.of("Idempotency-Key", "retry-key-1");
+
+        ResponseCapture first = buildResponse();
+        servlet.doPost(buildPostRequest("/", body, null, headers), first.response());
+        ResponseCapture retry = buildResponse();
+        servlet.doPost(buildPostRequest("/", body, null, headers), retry.response());
+
+        assertEquals(HttpServletResponse.SC_CREATED, first.status());
+        assertEquals(HttpServletResponse.SC_CREATED, retry.status());
+        assertEquals(first.body().toString(), retry.body().toString());
+        assertEquals(Integer.valueOf(7), com.RBOS.services.InventoryLedger.forContext(null).getAvailable("burger-4"));
+        try (java.sql.Connection conn = com.RBOS.utils.DatabaseConnection.getConnection(null);
+             java.sql.ResultSet rs = conn.createStatement().executeQuery(
+                     "SELECT COUNT(*) FROM order_items WHERE item_id = 'burger-4'")) {
+            assertEquals(1, rs.getInt(1));
+        }
+
+        // the same key cannot be reused for a different order
+        ResponseCapture reused = buildResponse();
+        servlet.doPost(buildPostRequest("/", body.replace("3", "1"), null, headers), reused.response());
+        assertEquals(422, reused.status());
+    }
+
     @Test
     public void cartMergeCreatesGuestCartAndRotatesTokenOnLogin() throws Exception {
         // ensure menu item exists to avoid FK helper writes during merge
@@ -286,6 +377,24 @@ public class OrderServletTest {
         assertEquals(1, ((List<?>) merged.get("items")).size());
     }
 
+    private void seedStockedItem(String itemId, double price, int qty) throws Exception {
+        new MenuItemDAO(null).createMenuItem(
+                new com.RBOS.models.MenuItem(itemId, "Item " + itemId, "desc", "Main", price, true, null, "[]"));
+        com.RBOS.models.Inventory inv = new com.RBOS.models.Inventory();
+        inv.setItemId(itemId);
+        inv.setName("Inv " + itemId);
+        inv.setSku("SKU-" + itemId);
+        inv.setCategory("Dry");
+        inv.setUnit(com.RBOS.models.Unit.each);
+        inv.setPackSize(1);
+        inv.setQtyOnHand(qty);
+        inv.setParLevel(0);
+        inv.setReorderPoint(0);
+        inv.setCost(1.0);
+        inv.setActive(true);
+        new InventoryDAO(null).createInventory(inv);
+    }
+
     private String createUser(String name, String email, String password, String role) throws Exception {
         User user = new User();
         user.setFullName(name);
@@ -368,6 +477,11 @@ public class OrderServletTest {
     }
 
     private HttpServletRequest buildPostRequest(String pathInfo, String body, HttpSession session) {
+        return buildPostRequest(pathInfo, body, session, Collections.emptyMap());
+    }
+
+    private HttpServletRequest buildPostRequest(String pathInfo, String body, HttpSession session,
+            Map<String, String> headers) {
         String payload = body == null ? "" : body;
         return (HttpServletRequest) Proxy.newProxyInstance(
                 HttpServletRequest.class.getClassLoader(),
@@ -377,6 +491,7 @@ public class OrderServletTest {
                         case "getPathInfo": return pathInfo;
                         case "getMethod": return "POST";
                         case "getReader": return new BufferedReader(new StringReader(payload));
+                        case "getHeader": return headers.get(args[0]);
                         case "getSession": return session;
                         case "getProtocol": return "HTTP/1.1";
                         case "getScheme": return "http";
@@ -0,0 +1,192 @@
+package com.RBOS.utils;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ConnectionPoolTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setup() throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        Path db = tempDir.newFile("pool.db").toPath();
+        pool = new ConnectionPool(db.toString(), 2, 200, 0, 30_000);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void returnedConnectionsAreReused() throws Exception {
+        try (Connection conn = pool.borrow()) {
+            assertFalse(conn.isClosed());
+        }
+        try (Connection conn = pool.borrow()) {
+            assertFalse(conn.isClosed());
+        }
+
+        Map<String, Object> stats = pool.getStats();
+        assertEquals(1L, stats.get("created"));
+        assertEquals(2L, stats.get("borrows"));
+        assertEquals(0, stats.get("active"));
+        assertEquals(1, stats.get("idle"));
+    }
+
+    @Test
+    public void pragmasAreAppliedToPhysicalConnections() throws Exception {
+        try (Connection conn = pool.borrow();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA foreign_keys")) {
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void borrowTimesOutWhenPoolIsExhausted() throws Exception {
+        Connection first = pool.borrow();
+        Connection second = pool.borrow();
+        try {
+            pool.borrow();
+            fail("Expected timeout when all connections are borrowed");
+        } catch (SQLException expected) {
+            assertTrue(expected.getMessage().contains("Timed out"));
+        } finally {
+            first.close();
+            second.close();
+        }
+        assertEquals(1L, pool.getStats().get("timeouts"));
+    }
+
+    @Test
+    public void openTransactionIsRolledBackOnReturn() throws Exception {
+        try (Connection conn = pool.borrow(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (id INTEGER)");
+        }
+
+        Connection conn = pool.borrow();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO t VALUES (1)");
+        }
+        conn.close();
+
+        try (Connection again = pool.borrow();
+             Statement stmt = again.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM t")) {
+            assertTrue(again.getAutoCommit());
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void handleCannotBeUsedAfterClose() throws Exception {
+        Connection conn = pool.borrow();
+        conn.close();
+        conn.close(); // second close is a no-op
+
+        assertTrue(conn.isClosed());
+        try {
+            conn.createStatement();
+            fail("Expected use-after-close to fail");
+        } catch (SQLException expected) {
+            assertTrue(expected.getMessage().contains("returned to the pool"));
+        }
+        assertEquals(0, pool.getStats().get("active"));
+    }
+
+    @Test
+    public void readOnlyPoolRefusesWritesAndReadsWhileAWriteIsOpen() throws Exception {
+        try (Connection conn = pool.borrow(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (id INTEGER)");
+            stmt.execute("INSERT INTO t VALUES (1)");
+        }
+        ConnectionPool readers = ConnectionPool.readOnly(pool.getDatabasePath(), 2, 200, 0, 30_000,
+                4096, 1024 * 1024, 8);
+        try {
+            assertNull(readers.getWriteCoordinator());
+            try (Connection conn = readers.borrow(); Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT INTO t VALUES (2)");
+                fail("Expected query_only connection to refuse a write");
+            } catch (SQLException expected) {
+            }
+
+            // a reader works from the last commit while the writer holds its lock
+            Connection writer = pool.borrow();
+            writer.setAutoCommit(false);
+            try (Statement stmt = writer.createStatement()) {
+                stmt.execute("INSERT INTO t VALUES (3)");
+                try (Connection reader = readers.borrow();
+                     Statement read = reader.createStatement();
+                     ResultSet rs = read.executeQuery("SELECT COUNT(*) FROM t")) {
+                    assertTrue(rs.next());
+                    assertEquals(1, rs.getInt(1));
+                }
+            } finally {
+                writer.rollback();
+                writer.close();
+            }
+        } finally {
+            readers.close();
+        }
+    }
+
+    @Test
+    public void readOnlyPoolReusesPreparedStatements() throws Exception {
+        try (Connection conn = pool.borrow(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (id INTEGER)");
+            stmt.execute("INSERT INTO t VALUES (1), (2)");
+        }
+        ConnectionPool readers = ConnectionPool.readOnly(pool.getDatabasePath(), 1, 200, 0, 30_000, 0, 0, 8);
+        try {
+            for (int i = 1; i <= 3; i++) {
+                try (Connection conn = readers.borrow();
+                     PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM t WHERE id = ?")) {
+                    pstmt.setInt(1, 2);
+                    ResultSet rs = pstmt.executeQuery();
+                    // left open on purpose: returning the statement closes it
+                    assertTrue(rs.next());
+                    assertEquals(2, rs.getInt(1));
+                }
+            }
+            // the same SQL twice on one borrow gets two statements
+            try (Connection conn = readers.borrow();
+                 PreparedStatement first = conn.prepareStatement("SELECT id FROM t WHERE id = ?");
+                 PreparedStatement second = conn.prepareStatement("SELECT id FROM t WHERE id = ?")) {
+                assertNotSame(first, second);
+                first.setInt(1, 1);
+                second.setInt(1, 2);
+                try (ResultSet a = first.executeQuery(); ResultSet b = second.executeQuery()) {
+                    assertTrue(a.next() && b.next());
+                    assertEquals(1, a.getInt(1));
+                    assertEquals(2, b.getInt(1));
+                }
+            }
+
+            Map<String, Object> stats = readers.getStats();
+            assertEquals(2L, stats.get("statementCacheMisses"));
+            assertEquals(3L, stats.get("statementCacheHits"));
+        } finally {
+            readers.close();
+        }
+    }
+}
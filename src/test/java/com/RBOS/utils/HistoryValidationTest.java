@@ -36,4 +36,16 @@ public class HistoryValidationTest {
         assertEquals("user-a", HistoryValidation.resolveScopedUserId("customer", "user-a", null));
         assertEquals("user-a", HistoryValidation.resolveScopedUserId("customer", "user-a", "user-a"));
     }
+
+    @Test
+    public void parseCursorRejectsTamperedValues() {
+        assertNull(HistoryValidation.parseCursor(null));
+        assertNull(HistoryValidation.parseCursor(" "));
+        try {
+            HistoryValidation.parseCursor("not-a-cursor");
+            fail("Garbage cursor should be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertEquals("Invalid cursor", expected.getMessage());
+        }
+    }
 }
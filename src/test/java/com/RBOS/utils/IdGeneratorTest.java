@@ -0,0 +1,88 @@
+package com.RBOS.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class IdGeneratorTest {
+
+    private static final long NOW = 1_760_000_000_000L;
+
+    @Test
+    public void idsSortInCreationOrderWithinAndAcrossMilliseconds() {
+        AtomicLong clock = new AtomicLong(NOW);
+        IdGenerator generator = new IdGenerator(3, clock::get);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 1_000 == 0) {
+                clock.addAndGet(1);
+            }
+            ids.add(generator.next());
+        }
+
+        List<String> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        assertEquals(ids, sorted);
+        assertEquals(ids.size(), new HashSet<>(ids).size());
+        assertEquals(IdGenerator.LENGTH, ids.get(0).length());
+        assertEquals(NOW + 1, IdGenerator.timestampOf(ids.get(0)));
+    }
+
+    @Test
+    public void clockSteppingBackDoesNotReorderIds() {
+        AtomicLong clock = new AtomicLong(NOW);
+        IdGenerator generator = new IdGenerator(0, clock::get);
+        String before = generator.next();
+        clock.set(NOW - 60_000);
+        String after = generator.next();
+
+        assertTrue(after.compareTo(before) > 0);
+        assertEquals(NOW, IdGenerator.timestampOf(after));
+    }
+
+    @Test
+    public void fullSequenceBorrowsTheNextMillisecond() {
+        IdGenerator generator = new IdGenerator(0, () -> NOW);
+        String last = null;
+        for (int i = 0; i < 4_097; i++) {
+            last = generator.next();
+        }
+        assertEquals(NOW + 1, IdGenerator.timestampOf(last));
+    }
+
+    @Test
+    public void nodesSharingAClockNeverCollide() throws Exception {
+        Set<String> prefixes = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int node = 0; node < 4; node++) {
+            IdGenerator generator = new IdGenerator(node, () -> NOW);
+            for (int t = 0; t < 2; t++) {
+                threads.add(new Thread(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        prefixes.add(generator.next().substring(0, 13));
+                    }
+                }));
+            }
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4 * 2 * 2_000, prefixes.size());
+    }
+
+    @Test
+    public void rejectsOutOfRangeNodeIdsAndForeignIds() {
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(IdGenerator.MAX_NODE_ID + 1));
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(-1));
+        assertEquals(-1, IdGenerator.timestampOf("550e8400-e29b-41d4-a716-446655440000"));
+        assertEquals(-1, IdGenerator.timestampOf("1234567890"));
+    }
+}
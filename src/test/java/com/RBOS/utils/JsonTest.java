@@ -0,0 +1,58 @@
+package com.RBOS.utils;
+
+import static org.junit.Assert.*;
+
+import com.RBOS.models.HistoryResponse;
+import com.RBOS.models.Order;
+import com.RBOS.models.OrderItem;
+import com.RBOS.models.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import org.junit.Test;
+
+public class JsonTest {
+
+    @Test
+    public void sharedWritersProduceTheSameJsonAsAPlainMapper() throws Exception {
+        Json.warmUp();
+        Order order = sampleOrder();
+        ObjectMapper plain = new ObjectMapper();
+
+        assertEquals(plain.writeValueAsString(order), Json.ORDER_WRITER.writeValueAsString(order));
+
+        HistoryResponse<Order> history = new HistoryResponse<>(List.of(order), 1, 25, 1, 13, "2025-01-01");
+        history.setNextCursor("next");
+        assertEquals(plain.writeValueAsString(history), Json.ORDER_HISTORY_WRITER.writeValueAsString(history));
+
+        User user = new User("u1", "customer", "Ada", "ada@example.com", "555-0100");
+        assertEquals(plain.writeValueAsString(user), Json.USER_WRITER.writeValueAsString(user));
+    }
+
+    @Test
+    public void orderReaderReadsWhatTheWriterWrote() throws Exception {
+        Order read = Json.ORDER_READER.readValue(Json.ORDER_WRITER.writeValueAsString(sampleOrder()));
+
+        assertEquals("o1", read.getOrderId());
+        assertEquals(Double.valueOf(21.6), read.getTotal());
+        assertEquals(1, read.getOrderItems().size());
+        assertEquals(Integer.valueOf(2), read.getOrderItems().get(0).getQty());
+    }
+
+    private static Order sampleOrder() {
+        Order order = new Order();
+        order.setOrderId("o1");
+        order.setStatus("PLACED");
+        order.setSubtotal(20.0);
+        order.setTax(1.6);
+        order.setTotal(21.6);
+        OrderItem item = new OrderItem();
+        item.setOrderItemId("oi1");
+        item.setOrderId("o1");
+        item.setItemId("m1");
+        item.setQty(2);
+        item.setUnitPrice(10.0);
+        item.setLineTotal(20.0);
+        order.setOrderItems(List.of(item));
+        return order;
+    }
+}
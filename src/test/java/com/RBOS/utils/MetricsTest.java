@@ -0,0 +1,97 @@
+package com.RBOS.utils;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MetricsTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Before
+    public void reset() {
+        Metrics.reset();
+    }
+
+    @Test
+    public void routesCollapseIdSegments() {
+        assertEquals("/api/orders/{id}/status", Metrics.routeOf("/api/orders", "/01J9ZK3M4N5P6Q7R8S9T/status"));
+        assertEquals("/api/orders/history", Metrics.routeOf("/api/orders", "/history"));
+        assertEquals("/api/menu", Metrics.routeOf("/api/menu", null));
+    }
+
+    @Test
+    public void sqlShapesDropLiteralsAndInListLength() {
+        assertEquals("SELECT * FROM orders WHERE order_id IN (?) AND status = ? AND total > ?",
+                Metrics.shapeOf("SELECT *\n  FROM orders WHERE order_id IN (?, ?, ?) AND status = 'it''s' AND total > 12.5"));
+        assertEquals("SELECT col2 FROM t1 WHERE id = ?", Metrics.shapeOf("SELECT col2 FROM t1 WHERE id = ?"));
+    }
+
+    @Test
+    public void histogramBucketsAreCumulative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(200_000);        // 0.2 ms
+        histogram.record(3_000_000);      // 3 ms
+        histogram.record(20_000_000_000L); // 20 s, above every bound
+
+        long[] counts = histogram.cumulativeCounts();
+        assertEquals(1, counts[0]);
+        assertEquals(2, counts[3]);
+        assertEquals(2, counts[counts.length - 2]);
+        assertEquals(3, counts[counts.length - 1]);
+        assertEquals(3, histogram.getCount());
+    }
+
+    @Test
+    public void requestsBeyondTheSeriesCapAreCountedAsOther() throws Exception {
+        for (int i = 0; i < Metrics.MAX_SERIES + 10; i++) {
+            Metrics.recordRequest("GET", "/api/route" + (char) ('a' + i % 26) + i / 26 + "x", 200, 1000);
+        }
+        String text = scrape();
+        assertTrue(text.contains("route=\"other\""));
+        assertTrue(text.contains("rbos_http_responses_total{method=\"other\",route=\"other\",status=\"200\"}"));
+    }
+
+    @Test
+    public void pooledStatementsAreTimedBySqlShape() throws Exception {
+        System.setProperty("RBOS_DB", tempDir.newFile("metrics.db").toPath().toString());
+        try (Connection conn = DatabaseConnection.getConnection(null)) {
+            for (String id : new String[] {"1", "2"}) {
+                try (PreparedStatement pstmt = conn.prepareStatement("SELECT name FROM menu_items WHERE item_id = ?")) {
+                    pstmt.setString(1, id);
+                    pstmt.executeQuery().close();
+                    assertSame(conn, pstmt.getConnection());
+                }
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeQuery("SELECT COUNT(*) FROM orders WHERE total > 10").close();
+                try {
+                    stmt.execute("SELECT * FROM no_such_table");
+                    fail("expected a failure");
+                } catch (SQLException expected) {
+                }
+            }
+        }
+
+        String text = scrape();
+        assertTrue(text, text.contains(
+                "rbos_db_statement_duration_seconds_count{sql=\"SELECT name FROM menu_items WHERE item_id = ?\"} 2"));
+        assertTrue(text.contains("sql=\"SELECT COUNT(*) FROM orders WHERE total > ?\""));
+        assertTrue(text.contains("rbos_db_statement_errors_total{sql=\"SELECT * FROM no_such_table\"} 1"));
+    }
+
+    private static String scrape() throws Exception {
+        StringWriter out = new StringWriter();
+        Metrics.writePrometheus(out);
+        return out.toString();
+    }
+}
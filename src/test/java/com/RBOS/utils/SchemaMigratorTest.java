@@ -0,0 +1,155 @@
+package com.RBOS.utils;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SchemaMigratorTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private Path db;
+
+    @Before
+    public void setup() throws Exception {
+        db = tempDir.newFile("migrations.db").toPath();
+        Class.forName("org.sqlite.JDBC");
+    }
+
+    @Test
+    public void freshDatabaseIsSeededAtTheLatestVersion() throws Exception {
+        System.setProperty("RBOS_DB", db.toString());
+        try (Connection conn = DatabaseConnection.getConnection(null)) {
+            assertEquals(SchemaMigrator.latestVersion(), SchemaMigrator.currentVersion(conn));
+        }
+    }
+
+    @Test
+    public void legacyDatabaseIsBroughtUpToDateOnce() throws Exception {
+        try (Connection conn = open()) {
+            createLegacySchema(conn);
+            List<SchemaMigrator.Migration> migrations = SchemaMigrator.run(conn, SchemaMigrator.Mode.APPLY);
+
+            assertTrue(migrations.stream().allMatch(SchemaMigrator.Migration::isApplied));
+            assertEquals(SchemaMigrator.latestVersion(), SchemaMigrator.currentVersion(conn));
+            assertTrue(columnExists(conn, "orders", "cart_token"));
+            assertTrue(columnExists(conn, "users", "postal_code"));
+            assertTrue(columnExists(conn, "reservations", "guest_name"));
+            assertTrue(tableExists(conn, "email_outbox"));
+            assertEquals("kept", scalar(conn, "SELECT customer_name FROM orders WHERE order_id = 'legacy-1'"));
+            assertNotNull(scalar(conn, "SELECT created_utc FROM orders WHERE order_id = 'legacy-1'"));
+            // report rollups are created and backfilled by their migration
+            assertEquals("12.5", scalar(conn, "SELECT SUM(revenue) FROM rollup_orders_daily WHERE status = 'paid'"));
+
+            // new rows get a created_utc even though ADD COLUMN could not declare the default
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT INTO orders (order_id, status) VALUES ('new-1', 'cart')");
+            }
+            assertNotNull(scalar(conn, "SELECT created_utc FROM orders WHERE order_id = 'new-1'"));
+
+            SchemaMigrator.run(conn, SchemaMigrator.Mode.APPLY);
+            assertEquals(String.valueOf(SchemaMigrator.MIGRATIONS.length),
+                    scalar(conn, "SELECT COUNT(*) FROM schema_version"));
+        }
+    }
+
+    @Test
+    public void reportAndDryRunLeaveTheDatabaseUntouched() throws Exception {
+        try (Connection conn = open()) {
+            createLegacySchema(conn);
+
+            List<SchemaMigrator.Migration> report = SchemaMigrator.run(conn, SchemaMigrator.Mode.REPORT);
+            assertTrue(report.stream().noneMatch(SchemaMigrator.Migration::isApplied));
+            assertFalse(tableExists(conn, "schema_version"));
+
+            SchemaMigrator.run(conn, SchemaMigrator.Mode.DRY_RUN);
+            assertFalse(columnExists(conn, "orders", "cart_token"));
+            assertEquals(0, SchemaMigrator.currentVersion(conn));
+        }
+    }
+
+    @Test
+    public void failedMigrationThrowsAndKeepsExistingData() throws Exception {
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            // no orders table, so the first migration cannot apply
+            stmt.execute("CREATE TABLE users (user_id TEXT PRIMARY KEY, full_name TEXT)");
+            stmt.execute("INSERT INTO users (user_id, full_name) VALUES ('u1', 'Existing User')");
+
+            try {
+                SchemaMigrator.run(conn, SchemaMigrator.Mode.APPLY);
+                fail("expected the migration to fail");
+            } catch (SQLException e) {
+                assertTrue(e.getMessage().contains("V1"));
+            }
+            assertEquals("Existing User", scalar(conn, "SELECT full_name FROM users WHERE user_id = 'u1'"));
+            assertFalse(columnExists(conn, "users", "phone"));
+            assertEquals(0, SchemaMigrator.currentVersion(conn));
+        }
+    }
+
+    @Test
+    public void parserKeepsTriggerBodiesWhole() throws Exception {
+        String script = "CREATE TABLE t (a TEXT);\n"
+                + "-- comment line\n"
+                + "CREATE TRIGGER t_ai AFTER INSERT ON t BEGIN\n"
+                + "  UPDATE t SET a = 'x' WHERE rowid = NEW.rowid;\n"
+                + "  UPDATE t SET a = 'y' WHERE rowid = NEW.rowid;\n"
+                + "END;\n"
+                + "CREATE INDEX i ON t(a);\n";
+        List<String> statements = DatabaseConnection.parseStatements(
+                new java.io.ByteArrayInputStream(script.getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+        assertEquals(3, statements.size());
+        assertTrue(statements.get(1).startsWith("CREATE TRIGGER"));
+        assertTrue(statements.get(1).endsWith("END"));
+    }
+
+    private Connection open() throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite:" + db);
+    }
+
+    // Shape of an early database: some later columns already added, others missing
+    private static void createLegacySchema(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE users (user_id TEXT PRIMARY KEY, role TEXT, full_name TEXT, email TEXT, phone TEXT)");
+            stmt.execute("CREATE TABLE menu_items (item_id TEXT PRIMARY KEY, name TEXT, price REAL)");
+            stmt.execute("CREATE TABLE reservations (reservation_id TEXT PRIMARY KEY, user_id TEXT, table_id TEXT, "
+                    + "start_utc TEXT, end_utc TEXT, party_size INTEGER, status TEXT)");
+            stmt.execute("CREATE TABLE orders (order_id TEXT PRIMARY KEY, user_id TEXT, source TEXT NOT NULL DEFAULT 'web', "
+                    + "status TEXT, subtotal REAL NOT NULL DEFAULT 0.0, tax REAL NOT NULL DEFAULT 0.0, "
+                    + "total REAL NOT NULL DEFAULT 0.0, customer_name TEXT)");
+            stmt.execute("CREATE TABLE order_items (order_item_id TEXT PRIMARY KEY, order_id TEXT, item_id TEXT, "
+                    + "qty INTEGER, unit_price REAL, line_total REAL, notes TEXT)");
+            stmt.execute("INSERT INTO orders (order_id, source, status, total, customer_name) "
+                    + "VALUES ('legacy-1', 'web', 'paid', 12.5, 'kept')");
+        }
+    }
+
+    private static boolean columnExists(Connection conn, String table, String column) throws SQLException {
+        try (var rs = conn.getMetaData().getColumns(null, null, table, column)) {
+            return rs.next();
+        }
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        try (var rs = conn.getMetaData().getTables(null, null, table, null)) {
+            return rs.next();
+        }
+    }
+
+    private static String scalar(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+}
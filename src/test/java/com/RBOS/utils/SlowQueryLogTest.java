@@ -0,0 +1,112 @@
+package com.RBOS.utils;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SlowQueryLogTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setup() throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        Path db = tempDir.newFile("slow.db").toPath();
+        pool = new ConnectionPool(db.toString(), 2, 200, 0, 30_000);
+        try (Connection conn = pool.borrow(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE orders (order_id TEXT PRIMARY KEY, status TEXT, created_utc TEXT)");
+            stmt.execute("CREATE TABLE users (user_id TEXT PRIMARY KEY, password_hash TEXT)");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void slowStatementsAreLoggedWithParamsAndPlan() throws Exception {
+        SlowQueryLog log = new SlowQueryLog(0, 10);
+        pool.setSlowQueryLog(log);
+
+        try (Connection conn = pool.borrow();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM orders WHERE status = ?")) {
+            pstmt.setString(1, "pending");
+            pstmt.executeQuery().close();
+        }
+
+        List<Map<String, Object>> entries = log.getEntries();
+        assertEquals(1, entries.size());
+        Map<String, Object> entry = entries.get(0);
+        assertEquals("SELECT * FROM orders WHERE status = ?", entry.get("sql"));
+        assertEquals(List.of("pending"), entry.get("params"));
+        assertEquals(Boolean.TRUE, entry.get("fullScan"));
+        assertTrue(entry.get("plan").toString(), entry.get("plan").toString().contains("SCAN orders"));
+    }
+
+    @Test
+    public void indexedLookupsAreNotFullScans() throws Exception {
+        SlowQueryLog log = new SlowQueryLog(0, 10);
+        pool.setSlowQueryLog(log);
+
+        try (Connection conn = pool.borrow();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT status FROM orders WHERE order_id = ?")) {
+            pstmt.setString(1, "o1");
+            pstmt.executeQuery().close();
+        }
+
+        Map<String, Object> entry = log.getEntries().get(0);
+        assertEquals(Boolean.FALSE, entry.get("fullScan"));
+        assertTrue(entry.get("plan").toString(), entry.get("plan").toString().contains("SEARCH orders"));
+    }
+
+    @Test
+    public void fastStatementsAndOldEntriesAreDropped() throws Exception {
+        pool.setSlowQueryLog(new SlowQueryLog(60_000, 10));
+        try (Connection conn = pool.borrow(); Statement stmt = conn.createStatement()) {
+            stmt.executeQuery("SELECT COUNT(*) FROM orders").close();
+        }
+        assertTrue(pool.getSlowQueryLog().getEntries().isEmpty());
+
+        SlowQueryLog log = new SlowQueryLog(0, 2);
+        pool.setSlowQueryLog(log);
+        try (Connection conn = pool.borrow(); Statement stmt = conn.createStatement()) {
+            for (int i = 1; i <= 3; i++) {
+                stmt.executeQuery("SELECT " + i + " AS n").close();
+            }
+        }
+        assertEquals(2, log.getEntries().size());
+        assertEquals(3L, log.getStats().get("recorded"));
+    }
+
+    @Test
+    public void passwordParametersAreRedacted() throws Exception {
+        SlowQueryLog log = new SlowQueryLog(0, 10);
+        pool.setSlowQueryLog(log);
+
+        try (Connection conn = pool.borrow();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "UPDATE users SET password_hash = ? WHERE user_id = ?")) {
+            pstmt.setString(1, "$2a$10$secret");
+            pstmt.setString(2, "u1");
+            pstmt.executeUpdate();
+        }
+
+        Map<String, Object> entry = log.getEntries().get(0);
+        assertEquals(List.of("[redacted]"), entry.get("params"));
+        assertFalse(entry.get("plan").toString().contains("secret"));
+    }
+}
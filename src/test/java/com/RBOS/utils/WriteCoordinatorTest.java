@@ -0,0 +1,235 @@
+package com.RBOS.utils;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WriteCoordinatorTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private ConnectionPool pool;
+    private WriteCoordinator writer;
+
+    @Before
+    public void setup() throws Exception {
+        Class.forName("org.sqlite.JDBC");
+        Path db = tempDir.newFile("writes.db").toPath();
+        pool = new ConnectionPool(db.toString(), 2, 200, 0, 30_000);
+        try (Connection conn = pool.borrow(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE notes (note_id TEXT PRIMARY KEY, body TEXT)");
+        }
+        writer = pool.getWriteCoordinator();
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void queuedWritesCommitTogether() throws Exception {
+        CountDownLatch blocking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(9);
+        try {
+            // hold the writer so the next writes pile up behind it
+            Future<?> first = callers.submit(() -> writer.execute(conn -> {
+                insert(conn, "n0");
+                blocking.countDown();
+                awaitQuietly(release);
+                return null;
+            }));
+            assertTrue(blocking.await(5, TimeUnit.SECONDS));
+
+            List<Future<?>> rest = new ArrayList<>();
+            for (int i = 1; i <= 8; i++) {
+                String id = "n" + i;
+                rest.add(callers.submit(() -> writer.execute(conn -> insert(conn, id))));
+            }
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (writer.getQueueDepth() < 8) {
+                assertTrue("writes never queued", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            first.get(5, TimeUnit.SECONDS);
+            for (Future<?> f : rest) {
+                f.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertEquals(9, count());
+        assertEquals(2L, writer.getStats().get("groups"));
+        assertEquals(8, writer.getStats().get("largestGroup"));
+    }
+
+    @Test
+    public void aFailedWriteDoesNotUndoTheRestOfItsGroup() throws Exception {
+        writer.execute(conn -> insert(conn, "dup"));
+
+        CountDownLatch blocking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> holder = callers.submit(() -> writer.execute(conn -> {
+                blocking.countDown();
+                awaitQuietly(release);
+                return null;
+            }));
+            assertTrue(blocking.await(5, TimeUnit.SECONDS));
+            Future<Integer> failing = callers.submit(() -> writer.execute(conn -> {
+                insert(conn, "before-failure");
+                return insert(conn, "dup");
+            }));
+            Future<Integer> passing = callers.submit(() -> writer.execute(conn -> insert(conn, "ok")));
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (writer.getQueueDepth() < 2) {
+                assertTrue("writes never queued", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            release.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+
+            assertEquals(Integer.valueOf(1), passing.get(5, TimeUnit.SECONDS));
+            try {
+                failing.get(5, TimeUnit.SECONDS);
+                fail("duplicate key should fail");
+            } catch (java.util.concurrent.ExecutionException e) {
+                assertTrue(e.getCause() instanceof SQLException);
+                // SQLITE_CONSTRAINT survives the hand-off so callers can still tell conflicts apart
+                assertEquals(19, ((SQLException) e.getCause()).getErrorCode());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertTrue(exists("ok"));
+        assertFalse(exists("before-failure"));
+        assertEquals(1L, writer.getStats().get("failedTasks"));
+    }
+
+    @Test
+    public void nestedWritesRunInlineAndTasksCannotEndTheTransaction() throws Exception {
+        int inserted = writer.execute(conn -> insert(conn, "outer") + writer.execute(inner -> insert(inner, "inner")));
+        assertEquals(2, inserted);
+        assertTrue(exists("inner"));
+
+        for (String call : new String[] {"commit", "rollback", "autoCommit"}) {
+            try {
+                writer.execute(conn -> {
+                    if ("commit".equals(call)) {
+                        conn.commit();
+                    } else if ("rollback".equals(call)) {
+                        conn.rollback();
+                    } else {
+                        conn.setAutoCommit(true);
+                    }
+                    return null;
+                });
+                fail(call + " should be refused");
+            } catch (SQLException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void submittedWritesCompleteAfterTheirCommit() throws Exception {
+        CompletableFuture<Integer> ok = writer.submit(conn -> insert(conn, "s1"));
+        CompletableFuture<Integer> duplicate = writer.submit(conn -> insert(conn, "s1"));
+        CompletableFuture<Boolean> visible = ok.thenApply(rows -> {
+            try {
+                return exists("s1");
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertEquals(Integer.valueOf(1), ok.get(5, TimeUnit.SECONDS));
+        assertTrue("the callback sees the committed row", visible.get(5, TimeUnit.SECONDS));
+        try {
+            duplicate.get(5, TimeUnit.SECONDS);
+            fail("duplicate key should fail its future");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof SQLException);
+        }
+
+        writer.close();
+        try {
+            writer.submit(conn -> insert(conn, "late")).get(5, TimeUnit.SECONDS);
+            fail("closed writer should refuse");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof SQLException);
+        }
+        assertFalse(exists("late"));
+    }
+
+    @Test
+    public void closedCoordinatorRefusesWrites() throws Exception {
+        writer.execute(conn -> insert(conn, "last"));
+        writer.close();
+        try {
+            writer.execute(conn -> insert(conn, "late"));
+            fail("closed writer should refuse");
+        } catch (SQLException expected) {
+        }
+        assertTrue(exists("last"));
+        assertFalse(exists("late"));
+    }
+
+    private static int insert(Connection conn, String id) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO notes (note_id, body) VALUES (?, ?)")) {
+            pstmt.setString(1, id);
+            pstmt.setString(2, "body");
+            return pstmt.executeUpdate();
+        }
+    }
+
+    private int count() throws SQLException {
+        try (Connection conn = pool.borrow(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM notes")) {
+            return rs.getInt(1);
+        }
+    }
+
+    private boolean exists(String id) throws SQLException {
+        try (Connection conn = pool.borrow();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM notes WHERE note_id = ?")) {
+            pstmt.setString(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.RBOS.websocket;
+
+import static org.junit.Assert.*;
+
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class BroadcastEngineTest {
+
+    @Test
+    public void slowSessionDoesNotHoldUpOthers() {
+        BroadcastEngine engine = new BroadcastEngine(16);
+        Remote slow = new Remote(false);
+        Remote fast = new Remote(true);
+        List<Session> sessions = Arrays.asList(session("slow", slow), session("fast", fast));
+
+        engine.broadcast(sessions, "m1", null);
+        engine.broadcast(sessions, "m2", null);
+        engine.broadcast(sessions, "m3", null);
+
+        assertEquals(Arrays.asList("m1", "m2", "m3"), fast.sent);
+        assertEquals(Arrays.asList("m1"), slow.sent);
+        assertEquals(2, engine.getQueueDepth());
+
+        slow.completePending();
+        slow.completePending();
+        slow.completePending();
+        assertEquals(Arrays.asList("m1", "m2", "m3"), slow.sent);
+        assertEquals(0, engine.getQueueDepth());
+        assertEquals(6L, engine.getStats().get("sent"));
+    }
+
+    @Test
+    public void queuedMessagesWithSameKeyAreCoalesced() {
+        BroadcastEngine engine = new BroadcastEngine(16);
+        Remote slow = new Remote(false);
+        Session session = session("s", slow);
+
+        engine.send(session, "first", null);
+        engine.send(session, "table-1 at 1", "TABLE_MOVED:1");
+        engine.send(session, "table-1 at 2", "TABLE_MOVED:1");
+        engine.send(session, "table-2 at 5", "TABLE_MOVED:2");
+        engine.send(session, "table-1 at 3", "TABLE_MOVED:1");
+
+        assertEquals(2, engine.getQueueDepth());
+        assertEquals(2L, engine.getStats().get("coalesced"));
+
+        slow.completePending();
+        slow.completePending();
+        slow.completePending();
+        // latest position, in the slot of the first queued move
+        assertEquals(Arrays.asList("first", "table-1 at 3", "table-2 at 5"), slow.sent);
+    }
+
+    @Test
+    public void fullQueueDropsOldestMessages() {
+        BroadcastEngine engine = new BroadcastEngine(2);
+        Remote slow = new Remote(false);
+        Session session = session("s", slow);
+
+        for (int i = 0; i < 5; i++) {
+            engine.send(session, "m" + i, null);
+        }
+
+        Map<String, Object> stats = engine.getStats();
+        assertEquals(2, stats.get("queueDepth"));
+        assertEquals(2L, stats.get("dropped"));
+
+        slow.completePending();
+        slow.completePending();
+        slow.completePending();
+        assertEquals(Arrays.asList("m0", "m3", "m4"), slow.sent);
+    }
+
+    @Test
+    public void unregisterDiscardsQueuedMessages() {
+        BroadcastEngine engine = new BroadcastEngine(16);
+        Remote slow = new Remote(false);
+        Session session = session("s", slow);
+
+        engine.send(session, "m0", null);
+        engine.send(session, "m1", null);
+        engine.unregister(session);
+
+        assertEquals(0, engine.getStats().get("sessions"));
+        assertEquals(1L, engine.getStats().get("dropped"));
+    }
+
+    private Session session(String id, RemoteEndpoint.Async remote) {
+        return (Session) Proxy.newProxyInstance(
+                Session.class.getClassLoader(),
+                new Class[] {Session.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getAsyncRemote":
+                            return remote;
+                        case "isOpen":
+                            return true;
+                        case "getId":
+                            return id;
+                        case "hashCode":
+                            return id.hashCode();
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    // Records sends; completes them inline or holds them until completePending()
+    private static class Remote implements RemoteEndpoint.Async {
+        final List<String> sent = new ArrayList<>();
+        final List<SendHandler> pending = new ArrayList<>();
+        final boolean completeInline;
+
+        Remote(boolean completeInline) {
+            this.completeInline = completeInline;
+        }
+
+        void completePending() {
+            if (!pending.isEmpty()) {
+                pending.remove(0).onResult(new SendResult());
+            }
+        }
+
+        @Override public void sendText(String text, SendHandler handler) {
+            sent.add(text);
+            if (completeInline) {
+                handler.onResult(new SendResult());
+            } else {
+                pending.add(handler);
+            }
+        }
+
+        @Override public long getSendTimeout() { return 0; }
+        @Override public void setSendTimeout(long timeoutmillis) {}
+        @Override public Future<Void> sendText(String text) { return CompletableFuture.completedFuture(null); }
+        @Override public Future<Void> sendBinary(ByteBuffer data) { return CompletableFuture.completedFuture(null); }
+        @Override public void sendBinary(ByteBuffer data, SendHandler handler) {}
+        @Override public Future<Void> sendObject(Object data) { return CompletableFuture.completedFuture(null); }
+        @Override public void sendObject(Object data, SendHandler handler) {}
+        @Override public void setBatchingAllowed(boolean allowed) throws IOException {}
+        @Override public boolean getBatchingAllowed() { return false; }
+        @Override public void flushBatch() throws IOException {}
+        @Override public void sendPing(ByteBuffer applicationData) throws IOException {}
+        @Override public void sendPong(ByteBuffer applicationData) throws IOException {}
+    }
+}
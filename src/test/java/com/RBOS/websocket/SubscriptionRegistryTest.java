@@ -0,0 +1,80 @@
+package com.RBOS.websocket;
+
+import static org.junit.Assert.*;
+
+import jakarta.websocket.Session;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+public class SubscriptionRegistryTest {
+
+    @Test
+    public void unsubscribedSessionsReceiveEverything() {
+        SubscriptionRegistry registry = new SubscriptionRegistry();
+        Session session = session("a");
+        registry.register(session);
+
+        assertTrue(registry.recipients("orders", List.of("order:1")).contains(session));
+        assertTrue(registry.recipients("tables", null).contains(session));
+    }
+
+    @Test
+    public void topicAndFilterSubscriptionsResolveWithoutDuplicates() {
+        SubscriptionRegistry registry = new SubscriptionRegistry();
+        Session all = session("all");
+        Session one = session("one");
+        registry.register(all);
+        registry.register(one);
+        registry.subscribe(all, "orders", null);
+        registry.subscribe(all, "orders", "order:1");
+        registry.subscribe(one, "orders", "order:1");
+
+        Set<Session> forOrder1 = registry.recipients("orders", List.of("order:1"));
+        assertEquals(2, forOrder1.size());
+        assertEquals(Set.of(all), registry.recipients("orders", List.of("order:2")));
+        assertTrue(registry.recipients("reservations", null).isEmpty());
+    }
+
+    @Test
+    public void unsubscribeTopicDropsItsFiltersAndRemoveCleansUp() {
+        SubscriptionRegistry registry = new SubscriptionRegistry();
+        Session session = session("s");
+        registry.register(session);
+        registry.subscribe(session, "tables", "table:1");
+        registry.subscribe(session, "tables", "table:2");
+        registry.subscribe(session, "orders", null);
+
+        registry.unsubscribe(session, "tables", null);
+        assertEquals(Set.of("orders"), registry.getSubscriptions(session));
+        assertTrue(registry.recipients("tables", List.of("table:1")).isEmpty());
+
+        registry.remove(session);
+        assertEquals(0, registry.getSubscriberCount("orders"));
+        assertTrue(registry.recipients("orders", null).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownTopics() {
+        new SubscriptionRegistry().subscribe(session("s"), "kitchen", null);
+    }
+
+    private Session session(String id) {
+        return (Session) Proxy.newProxyInstance(
+                Session.class.getClassLoader(),
+                new Class[] {Session.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getId":
+                            return id;
+                        case "hashCode":
+                            return id.hashCode();
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
@@ -2,16 +2,19 @@ package com.RBOS.websocket;
 
 import static org.junit.Assert.*;
 
-import jakarta.websocket.EncodeException;
 import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
 import jakarta.websocket.Session;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Proxy;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 import org.junit.After;
 import org.junit.Test;
 
@@ -19,36 +22,77 @@ public class WebSocketConfigTest {
 
     @After
     public void clearSessions() throws Exception {
+        WebSocketConfig ws = new WebSocketConfig();
+        for (Session session : new ArrayList<>(getSessions())) {
+            ws.onClose(session);
+        }
         getSessions().clear();
     }
 
     @Test
     public void broadcastSendsJsonToOpenSessions() throws Exception {
-        BasicCapture basic = new BasicCapture();
-        Session session = buildSession("s1", basic, true);
-        getSessions().add(session);
+        AsyncCapture remote = new AsyncCapture();
+        Session session = buildSession("s1", remote, true);
+        new WebSocketConfig().onOpen(session, null);
 
         WebSocketConfig.broadcastToAdmins("TYPE", "hello");
 
-        assertNotNull("Message should be sent", basic.lastMessage);
-        assertTrue(basic.lastMessage.contains("TYPE"));
-        assertTrue(basic.lastMessage.contains("hello"));
+        assertNotNull("Message should be sent", remote.lastMessage);
+        assertTrue(remote.lastMessage.contains("TYPE"));
+        assertTrue(remote.lastMessage.contains("hello"));
     }
 
     @Test
     public void onOpenAddsSessionAndOnCloseRemoves() throws Exception {
         WebSocketConfig ws = new WebSocketConfig();
-        BasicCapture basic = new BasicCapture();
-        Session session = buildSession("s2", basic, true);
+        AsyncCapture remote = new AsyncCapture();
+        Session session = buildSession("s2", remote, true);
 
         ws.onOpen(session, null);
         assertFalse(getSessions().isEmpty());
-        assertNotNull("Connection established broadcast", basic.lastMessage);
+        assertNotNull("Connection established broadcast", remote.lastMessage);
 
         ws.onClose(session);
         assertTrue(getSessions().isEmpty());
     }
 
+    @Test
+    public void subscribedSessionsOnlyReceiveMatchingEvents() throws Exception {
+        WebSocketConfig ws = new WebSocketConfig();
+        AsyncCapture kitchen = new AsyncCapture();
+        AsyncCapture floor = new AsyncCapture();
+        AsyncCapture legacy = new AsyncCapture();
+        Session kitchenSession = buildSession("kitchen", kitchen, true);
+        Session floorSession = buildSession("floor", floor, true);
+        ws.onOpen(kitchenSession, null);
+        ws.onOpen(floorSession, null);
+        ws.onOpen(buildSession("legacy", legacy, true), null);
+
+        ws.onMessage("{\"action\":\"subscribe\",\"topic\":\"orders\",\"filter\":\"order:7\"}", kitchenSession);
+        ws.onMessage("{\"action\":\"subscribe\",\"topic\":\"reservations\",\"filters\":[\"table:3\"]}", floorSession);
+        assertTrue(kitchen.lastMessage.contains("SUBSCRIPTIONS"));
+        assertTrue(kitchen.lastMessage.contains("orders|order:7"));
+        kitchen.messages.clear();
+        floor.messages.clear();
+        legacy.messages.clear();
+
+        WebSocketConfig.notifyOrderUpdate("8", "{}");
+        WebSocketConfig.notifyOrderUpdate("7", "{}");
+        WebSocketConfig.notifyNewReservation("r1", "3", "{}");
+        WebSocketConfig.notifyNewReservation("r2", "4", "{}");
+
+        assertEquals(1, kitchen.messages.size());
+        assertTrue(kitchen.messages.get(0).contains("ORDER_UPDATED"));
+        assertEquals(1, floor.messages.size());
+        assertTrue(floor.messages.get(0).contains("NEW_RESERVATION"));
+        // clients that never subscribed still get everything
+        assertEquals(4, legacy.messages.size());
+
+        ws.onMessage("{\"action\":\"subscribe\",\"topic\":\"kitchen\"}", kitchenSession);
+        assertTrue(kitchen.lastMessage.contains("ERROR"));
+        assertTrue(kitchen.lastMessage.contains("Unknown topic"));
+    }
+
     @SuppressWarnings("unchecked")
     private Set<Session> getSessions() throws Exception {
         Field f = WebSocketConfig.class.getDeclaredField("sessions");
@@ -56,14 +100,14 @@ public class WebSocketConfigTest {
         return (Set<Session>) f.get(null);
     }
 
-    private Session buildSession(String id, RemoteEndpoint.Basic basic, boolean isOpen) {
+    private Session buildSession(String id, RemoteEndpoint.Async remote, boolean isOpen) {
         return (Session) Proxy.newProxyInstance(
                 Session.class.getClassLoader(),
                 new Class[] {Session.class},
                 (proxy, method, args) -> {
                     switch (method.getName()) {
-                        case "getBasicRemote":
-                            return basic;
+                        case "getAsyncRemote":
+                            return remote;
                         case "isOpen":
                             return isOpen;
                         case "getId":
@@ -79,16 +123,19 @@ public class WebSocketConfigTest {
                 });
     }
 
-    private static class BasicCapture implements RemoteEndpoint.Basic {
+    // Completes every send inline, like a client that keeps up
+    private static class AsyncCapture implements RemoteEndpoint.Async {
         String lastMessage;
+        final List<String> messages = new ArrayList<>();
 
-        @Override public void sendText(String text) throws IOException { this.lastMessage = text; }
-        @Override public void sendText(String partialMessage, boolean isLast) throws IOException { this.lastMessage = partialMessage; }
-        @Override public void sendBinary(ByteBuffer data) throws IOException {}
-        @Override public void sendBinary(ByteBuffer partialByte, boolean isLast) throws IOException {}
-        @Override public void sendObject(Object data) throws IOException, EncodeException { this.lastMessage = String.valueOf(data); }
-        @Override public OutputStream getSendStream() throws IOException { return null; }
-        @Override public Writer getSendWriter() throws IOException { return null; }
+        @Override public long getSendTimeout() { return 0; }
+        @Override public void setSendTimeout(long timeoutmillis) {}
+        @Override public void sendText(String text, SendHandler handler) { this.lastMessage = text; messages.add(text); handler.onResult(new SendResult()); }
+        @Override public Future<Void> sendText(String text) { this.lastMessage = text; return CompletableFuture.completedFuture(null); }
+        @Override public Future<Void> sendBinary(ByteBuffer data) { return CompletableFuture.completedFuture(null); }
+        @Override public void sendBinary(ByteBuffer data, SendHandler handler) { handler.onResult(new SendResult()); }
+        @Override public Future<Void> sendObject(Object data) { this.lastMessage = String.valueOf(data); return CompletableFuture.completedFuture(null); }
+        @Override public void sendObject(Object data, SendHandler handler) { this.lastMessage = String.valueOf(data); handler.onResult(new SendResult()); }
         @Override public void setBatchingAllowed(boolean allowed) throws IOException {}
         @Override public boolean getBatchingAllowed() { return false; }
         @Override public void flushBatch() throws IOException {}